@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Common setup for all the benchmarks running over the {@link Corpus}.
+ * Every benchmark is executed once per page, the page bytes are loaded
+ * once per trial, so only the parsing itself is measured.
+ *
+ * <p>Run with the gc profiler to see the allocation rate per stage:
+ * <pre>java -jar target/benchmarks.jar -prof gc</pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public abstract class AbstractCorpusBenchmark {
+
+    /** The page to parse. */
+    @Param({"TINY", "PAGE_50K", "PAGE_5M", "TABLE_HEAVY", "SCRIPT_HEAVY", "ENTITY_HEAVY"})
+    protected Corpus corpus;
+
+    /** The raw page. */
+    protected byte[] data;
+
+    @Setup
+    public void loadCorpus() {
+        data = corpus.bytes();
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLInputSource;
+import org.xml.sax.InputSource;
+
+/**
+ * The checked-in benchmark corpus. All pages are UTF-8 encoded and live
+ * next to this class in the <code>corpus</code> resource folder.
+ *
+ * <p>The 5 MB page is not checked in, it is synthesized from the 50 KB page
+ * by repeating its body until the size is reached. That keeps the repository
+ * small but gives the same page shape at a large scale.
+ */
+public enum Corpus {
+    /** A minimal page, measures the fixed per-document setup cost. */
+    TINY("tiny.html"),
+
+    /** A typical blog-like page of about 50 KB. */
+    PAGE_50K("page-50k.html"),
+
+    /** The 50 KB page blown up to about 5 MB. */
+    PAGE_5M("page-50k.html") {
+        @Override
+        byte[] load() {
+            return inflate(super.load(), 5 * 1024 * 1024);
+        }
+    },
+
+    /** Large tables, partly with implied end tags. */
+    TABLE_HEAVY("table-heavy.html"),
+
+    /** Many inline scripts, styles, noscript blocks and comments. */
+    SCRIPT_HEAVY("script-heavy.html"),
+
+    /** Text and attributes full of named and numeric character references. */
+    ENTITY_HEAVY("entity-heavy.html");
+
+    private final String resource_;
+
+    Corpus(final String resource) {
+        resource_ = resource;
+    }
+
+    /**
+     * @return the raw bytes of this page, a fresh array on every call
+     */
+    byte[] load() {
+        try (InputStream in = Corpus.class.getResourceAsStream("corpus/" + resource_)) {
+            if (in == null) {
+                throw new IllegalStateException("Corpus file '" + resource_ + "' not found");
+            }
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+        catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the page content as bytes
+     */
+    public byte[] bytes() {
+        return load();
+    }
+
+    /**
+     * Creates a fresh XNI input source for the given bytes.
+     *
+     * @param data the page
+     * @return the input source
+     */
+    public static XMLInputSource xniSource(final byte[] data) {
+        return new XMLInputSource(null, "http://bench.example.com/", null,
+                                    new ByteArrayInputStream(data), "UTF-8");
+    }
+
+    /**
+     * Creates a fresh SAX input source for the given bytes.
+     *
+     * @param data the page
+     * @return the input source
+     */
+    public static InputSource saxSource(final byte[] data) {
+        final InputSource source = new InputSource(new ByteArrayInputStream(data));
+        source.setSystemId("http://bench.example.com/");
+        source.setEncoding("UTF-8");
+        return source;
+    }
+
+    // Repeats the body of the page until the given size is reached.
+    private static byte[] inflate(final byte[] page, final int size) {
+        final String html = new String(page, StandardCharsets.UTF_8);
+        final int bodyStart = html.indexOf('>', html.indexOf("<body")) + 1;
+        final int bodyEnd = html.lastIndexOf("</body>");
+
+        final String body = html.substring(bodyStart, bodyEnd);
+        final StringBuilder sb = new StringBuilder(size + page.length);
+        sb.append(html, 0, bodyStart);
+        while (sb.length() < size) {
+            sb.append(body);
+        }
+        sb.append(html, bodyEnd, html.length());
+
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.benchmarks;
+
+import java.io.IOException;
+
+import org.htmlunit.cyberneko.html.dom.HTMLDocumentImpl;
+import org.htmlunit.cyberneko.parsers.DOMFragmentParser;
+import org.htmlunit.cyberneko.parsers.DOMParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Setup;
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentFragment;
+import org.xml.sax.SAXException;
+
+/**
+ * Measures the DOM build end to end, with {@link DOMParser} as well as
+ * with {@link DOMFragmentParser}.
+ */
+public class DOMParserBenchmark extends AbstractCorpusBenchmark {
+
+    private DOMParser parser_;
+    private DOMFragmentParser fragmentParser_;
+
+    @Setup
+    public void setup() {
+        parser_ = new DOMParser(HTMLDocumentImpl.class);
+        fragmentParser_ = new DOMFragmentParser();
+    }
+
+    @Benchmark
+    public Document document() throws IOException, SAXException {
+        parser_.parse(Corpus.saxSource(data));
+        return parser_.getDocument();
+    }
+
+    // includes the setup of the whole component graph
+    @Benchmark
+    public Document documentNewParser() throws IOException, SAXException {
+        final DOMParser parser = new DOMParser(HTMLDocumentImpl.class);
+        parser.parse(Corpus.saxSource(data));
+        return parser.getDocument();
+    }
+
+    @Benchmark
+    public DocumentFragment fragment() throws IOException, SAXException {
+        final DocumentFragment fragment = new HTMLDocumentImpl().createDocumentFragment();
+        fragmentParser_.parse(Corpus.saxSource(data), fragment);
+        return fragment;
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.benchmarks;
+
+import java.io.IOException;
+
+import org.htmlunit.cyberneko.parsers.SAXParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Setup;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Measures the complete {@link SAXParser} pipeline with a no-op content handler.
+ */
+public class SAXParserBenchmark extends AbstractCorpusBenchmark {
+
+    private SAXParser parser_;
+
+    @Setup
+    public void setup() {
+        parser_ = new SAXParser();
+        parser_.setContentHandler(new DefaultHandler());
+    }
+
+    @Benchmark
+    public SAXParser parse() throws IOException, SAXException {
+        parser_.parse(Corpus.saxSource(data));
+        return parser_;
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.benchmarks;
+
+import java.io.IOException;
+
+import org.htmlunit.cyberneko.HTMLConfiguration;
+import org.htmlunit.cyberneko.HTMLScanner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Measures the {@link HTMLScanner} alone. No document handler is attached,
+ * so neither the namespace binder nor the tag balancer see any event.
+ */
+public class ScannerBenchmark extends AbstractCorpusBenchmark {
+
+    private HTMLConfiguration config_;
+
+    @Setup
+    public void setup() {
+        config_ = new HTMLConfiguration();
+    }
+
+    @Benchmark
+    public HTMLScanner scan() throws IOException {
+        // setInputSource() resets and wires the pipeline, cut it off afterwards
+        config_.setInputSource(Corpus.xniSource(data));
+        final HTMLScanner scanner = config_.getDocumentScanner();
+        scanner.setDocumentHandler(null);
+        config_.parse(true);
+        return scanner;
+    }
+}
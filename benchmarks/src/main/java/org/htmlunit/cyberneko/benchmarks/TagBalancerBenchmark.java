@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.benchmarks;
+
+import java.io.IOException;
+
+import org.htmlunit.cyberneko.HTMLConfiguration;
+import org.htmlunit.cyberneko.filters.DefaultFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Measures the {@link org.htmlunit.cyberneko.HTMLScanner} together with the
+ * {@link org.htmlunit.cyberneko.HTMLTagBalancer}. Namespace processing is
+ * switched off and the balanced events end up in a no-op handler.
+ */
+public class TagBalancerBenchmark extends AbstractCorpusBenchmark {
+
+    private HTMLConfiguration config_;
+
+    @Setup
+    public void setup() {
+        config_ = new HTMLConfiguration();
+        config_.setFeature("http://xml.org/sax/features/namespaces", false);
+
+        // a filter without a next handler swallows all events
+        config_.setDocumentHandler(new DefaultFilter());
+    }
+
+    @Benchmark
+    public HTMLConfiguration balance() throws IOException {
+        config_.parse(Corpus.xniSource(data));
+        return config_;
+    }
+}
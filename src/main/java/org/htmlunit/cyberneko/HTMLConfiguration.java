@@ -15,7 +15,12 @@
  */
 package org.htmlunit.cyberneko;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.List;
@@ -23,7 +28,10 @@
 import java.util.ResourceBundle;
 
 import org.htmlunit.cyberneko.filters.NamespaceBinder;
+import org.htmlunit.cyberneko.io.BinaryDocumentReader;
+import org.htmlunit.cyberneko.io.BinaryDocumentWriter;
 import org.htmlunit.cyberneko.xerces.util.ParserConfigurationSettings;
+import org.htmlunit.cyberneko.xerces.xni.Augmentations;
 import org.htmlunit.cyberneko.xerces.xni.XMLDocumentHandler;
 import org.htmlunit.cyberneko.xerces.xni.XNIException;
 import org.htmlunit.cyberneko.xerces.xni.parser.XMLConfigurationException;
@@ -55,6 +63,7 @@
  * <li>http://cyberneko.org/html/properties/names/attrs
  * <li>http://cyberneko.org/html/properties/filters
  * <li>http://cyberneko.org/html/properties/error-reporter
+ * <li>http://cyberneko.org/html/properties/parse-cache
  * <li><i>and</i>
  * <li>the properties supported by the scanner and tag balancer.
  * </ul>
@@ -97,6 +106,9 @@ public class HTMLConfiguration extends ParserConfigurationSettings implements XM
     /** Error reporter. */
     protected static final String ERROR_REPORTER = "http://cyberneko.org/html/properties/error-reporter";
 
+    /** Parse cache (see {@link HTMLParseCache}). */
+    protected static final String PARSE_CACHE = "http://cyberneko.org/html/properties/parse-cache";
+
     // other
 
     /** Error domain. */
@@ -128,6 +140,15 @@ public class HTMLConfiguration extends ParserConfigurationSettings implements XM
 
     private final HTMLElements htmlElements_;
 
+    /** The settings as part of the parse cache key, null if changed. */
+    private String settingsKey_;
+
+    /** Records the document for the parse cache. */
+    private CacheRecorder cacheRecorder_;
+
+    /** Replays a document of the parse cache, null if none is replayed. */
+    private BinaryDocumentReader cacheReplay_;
+
     /** Default constructor. */
     public HTMLConfiguration() {
         this(new HTMLElements());
@@ -160,6 +181,7 @@ public HTMLConfiguration(final HTMLElements htmlElements) {
             NAMES_ATTRS,
             FILTERS,
             ERROR_REPORTER,
+            PARSE_CACHE,
         };
         addRecognizedProperties(recognizedProperties);
         setProperty(NAMES_ELEMS, "default");
@@ -185,9 +207,12 @@ protected HTMLScanner createDocumentScanner() {
      * Otherwise, events may appear out of sequence.
      *
      * @param inputSource The new input source to start scanning.
+     * @throws IllegalStateException if a document from the {@link HTMLParseCache} is replayed
      * @see #evaluateInputSource(XMLInputSource)
      */
     public void pushInputSource(final XMLInputSource inputSource) {
+        checkNoCacheReplay();
+        discardCacheRecording();
         documentScanner_.pushInputSource(inputSource);
     }
 
@@ -197,9 +222,12 @@ public void pushInputSource(final XMLInputSource inputSource) {
      * the output written by an embedded script).
      *
      * @param inputSource The new input source to start scanning.
+     * @throws IllegalStateException if a document from the {@link HTMLParseCache} is replayed
      * @see #pushInputSource(XMLInputSource)
      */
     public void evaluateInputSource(final XMLInputSource inputSource) {
+        checkNoCacheReplay();
+        discardCacheRecording();
         documentScanner_.evaluateInputSource(inputSource);
     }
 
@@ -208,6 +236,7 @@ public void evaluateInputSource(final XMLInputSource inputSource) {
     public void setFeature(final String featureId, final boolean state)
         throws XMLConfigurationException {
         super.setFeature(featureId, state);
+        settingsKey_ = null;
         for (final HTMLComponent component : htmlComponents_) {
             component.setFeature(featureId, state);
         }
@@ -218,6 +247,7 @@ public void setFeature(final String featureId, final boolean state)
     public void setProperty(final String propertyId, final Object value)
         throws XMLConfigurationException {
         super.setProperty(propertyId, value);
+        settingsKey_ = null;
 
         if (propertyId.equals(FILTERS)) {
             final XMLDocumentFilter[] filters = (XMLDocumentFilter[]) getProperty(FILTERS);
@@ -290,10 +320,70 @@ public NamespaceBinder getNamespaceBinder() {
     /** Parses a document. */
     @Override
     public void parse(final XMLInputSource source) throws XNIException, IOException {
+        final HTMLParseCache cache = (HTMLParseCache) getProperty(PARSE_CACHE);
+        if (cache != null && source.getByteStream() != null
+                && !getFeature(AUGMENTATIONS) && !getFeature(REPORT_ERRORS)
+                && !(documentHandler_ instanceof HTMLTagBalancingListener)) {
+            parse(source, cache);
+            return;
+        }
+
         setInputSource(source);
         parse(true);
     }
 
+    /**
+     * Parses a document with the parse cache; the events of a cached document
+     * are replayed to the filters, other documents are recorded while parsing.
+     */
+    private void parse(final XMLInputSource source, final HTMLParseCache cache) throws XNIException, IOException {
+        final InputStream stream = source.getByteStream();
+        final byte[] content = HTMLParseCache.readFully(stream, cache.getMaxDocumentSize());
+        if (content.length > cache.getMaxDocumentSize()) {
+            // too large to be cached, the rest is parsed from the stream
+            setInputSource(new XMLInputSource(source.getPublicId(), source.getSystemId(), source.getBaseSystemId(),
+                    new SequenceInputStream(new ByteArrayInputStream(content), stream), source.getEncoding()));
+            parse(true);
+            return;
+        }
+        if (settingsKey_ == null) {
+            final StringBuilder settings = new StringBuilder();
+            appendSettings(settings);
+            settingsKey_ = settings.toString();
+        }
+        final HTMLParseCache.Key key = new HTMLParseCache.Key(content, source.getEncoding(), settingsKey_);
+        final XMLInputSource contentSource = new XMLInputSource(source.getPublicId(), source.getSystemId(),
+                source.getBaseSystemId(), new ByteArrayInputStream(content), source.getEncoding());
+
+        final byte[] events = cache.get(key, content);
+        if (events != null) {
+            reset();
+            final BinaryDocumentReader replay = new BinaryDocumentReader(new ByteArrayInputStream(events));
+            cacheReplay_ = replay;
+            try {
+                replay.replay(tagBalancer_.getDocumentHandler(), contentSource);
+            }
+            finally {
+                cacheReplay_ = null;
+            }
+            return;
+        }
+
+        final ByteArrayOutputStream recording = new ByteArrayOutputStream(content.length);
+        final CacheRecorder recorder = new CacheRecorder(recording);
+        cacheRecorder_ = recorder;
+        try {
+            setInputSource(contentSource);
+            parse(true);
+        }
+        finally {
+            cacheRecorder_ = null;
+        }
+        if (recorder.complete_ && !recorder.discarded_) {
+            cache.put(key, content, recording.toByteArray());
+        }
+    }
+
     /**
      * Sets the input source for the document to parse.
      *
@@ -310,7 +400,8 @@ public void parse(final XMLInputSource source) throws XNIException, IOException
     public void setInputSource(final XMLInputSource inputSource)
         throws XMLConfigurationException, IOException {
         reset();
-        closeStream_ = inputSource.getByteStream() == null && inputSource.getCharacterStream() == null;
+        closeStream_ = inputSource.getByteStream() == null && inputSource.getCharacterStream() == null
+                            && inputSource.getCharArray() == null && inputSource.getByteBuffer() == null;
         documentScanner_.setInputSource(inputSource);
     }
 
@@ -345,6 +436,129 @@ public boolean parse(final boolean complete) throws XNIException, IOException {
         }
     }
 
+    /**
+     * Starts the parsing of a document whose content is pushed with
+     * {@link #feed(ByteBuffer)} as it arrives (e.g. the chunks of a network
+     * response) instead of being pulled from a blocking stream. One thread
+     * can drive the parsing of many documents this way.
+     * <p>
+     * Every chunk is parsed as far as possible, markup or text split between
+     * two chunks is completed with the next one. {@link #endOfInput()} finishes
+     * the document. The encoding has to be known in advance (e.g. from the
+     * content type of the response), a &lt;meta&gt; tag can't change it.
+     *
+     * @param systemId the system identifier of the document, may be null
+     * @param encoding the IANA encoding of the fed bytes; if null, the byte
+     *        order mark or the default encoding is used
+     *
+     * @exception XMLConfigurationException Thrown if there is a
+     *                        configuration error when initializing the
+     *                        parser.
+     * @exception IOException Thrown if the encoding is not supported.
+     */
+    public void startFeeding(final String systemId, final String encoding)
+        throws XMLConfigurationException, IOException {
+        reset();
+        closeStream_ = false;
+        documentScanner_.startFeeding(systemId, encoding);
+    }
+
+    /**
+     * Parses the next chunk of the document started with {@link #startFeeding(String, String)}.
+     * All remaining bytes of the buffer are consumed, the buffer can be reused afterwards.
+     *
+     * @param bytes the next chunk
+     * @return false if the document is finished already (e.g. the parsing was stopped)
+     *
+     * @exception XNIException Any XNI exception, possibly wrapping
+     *                         another exception.
+     * @exception IOException  An IO exception from the parser.
+     */
+    public boolean feed(final ByteBuffer bytes) throws XNIException, IOException {
+        try {
+            final boolean more = documentScanner_.feed(bytes);
+            if (!more) {
+                cleanup();
+            }
+            return more;
+        }
+        catch (final XNIException | IOException e) {
+            cleanup();
+            throw e;
+        }
+    }
+
+    /**
+     * Parses the next chunk of the document started with {@link #startFeeding(String, String)}
+     * if the content is decoded already.
+     *
+     * @param chars the characters
+     * @param offset the offset of the chunk
+     * @param length the length of the chunk
+     * @return false if the document is finished already (e.g. the parsing was stopped)
+     *
+     * @exception XNIException Any XNI exception, possibly wrapping
+     *                         another exception.
+     * @exception IOException  An IO exception from the parser.
+     */
+    public boolean feed(final char[] chars, final int offset, final int length) throws XNIException, IOException {
+        try {
+            final boolean more = documentScanner_.feed(chars, offset, length);
+            if (!more) {
+                cleanup();
+            }
+            return more;
+        }
+        catch (final XNIException | IOException e) {
+            cleanup();
+            throw e;
+        }
+    }
+
+    /**
+     * Marks the end of the fed content and parses the rest of the document.
+     *
+     * @exception XNIException Any XNI exception, possibly wrapping
+     *                         another exception.
+     * @exception IOException  An IO exception from the parser.
+     */
+    public void endOfInput() throws XNIException, IOException {
+        try {
+            documentScanner_.endOfInput();
+        }
+        catch (final IOException e) {
+            cleanup();
+            throw e;
+        }
+        parse(true);
+    }
+
+    /**
+     * Stops the parsing of the current document. A document handler or filter
+     * calls this as soon as it has seen everything it needs (e.g. the end
+     * of the head); this is much cheaper than throwing an exception and
+     * leaves the parser in a state to parse the next document.
+     * <p>
+     * The parsing stops as soon as the scanner has processed the current
+     * markup or text; the events caused by it are still delivered (e.g. the
+     * start of the body following the end of the head). The rest of the
+     * document is not read. Afterwards
+     * {@link #parse(boolean)} returns false and the streams are cleaned up.
+     * The replay of a document from the {@link HTMLParseCache} stops after
+     * the current event.
+     *
+     * @param endDocument whether to report the end of the document; the tag
+     *        balancer closes the open elements in this case
+     */
+    public void stopParsing(final boolean endDocument) {
+        if (cacheReplay_ != null) {
+            cacheReplay_.stop(endDocument);
+            return;
+        }
+        discardCacheRecording();
+        documentScanner_.stopScanning(endDocument);
+    }
+
     /**
      * If the application decides to terminate parsing before the xml document
      * is fully parsed, the application should call this method to free any
@@ -355,6 +569,34 @@ public void cleanup() {
         documentScanner_.cleanup(closeStream_);
     }
 
+    /**
+     * Prepares this configuration for the next document. All streams are
+     * closed, every reference to the last parsed document is dropped and
+     * internal buffers that have grown beyond the given size are replaced
+     * by smaller ones. Features, properties and handlers stay as they are.
+     *
+     * @param maxBufferSize the buffer capacity (in chars) to keep at most
+     */
+    @Override
+    public void recycle(final int maxBufferSize) {
+        cleanup();
+        closeStream_ = false;
+
+        documentScanner_.recycle(maxBufferSize);
+        tagBalancer_.recycle();
+
+        // resets the remaining components (e.g. the namespace binder)
+        reset();
+    }
+
+    /**
+     * @return true if the scanner and the tag balancer hold no state of
+     *         the last parsed document, see {@link #recycle(int)}
+     */
+    public boolean isRecycled() {
+        return documentScanner_.isRecycled() && tagBalancer_.isRecycled();
+    }
+
     // Adds a component.
     protected void addComponent(final HTMLComponent component) {
 
@@ -406,6 +648,13 @@ protected void reset() throws XMLConfigurationException {
         tagBalancer_.setDocumentSource(documentScanner_);
         lastSource = tagBalancer_;
 
+        // the filters follow the recorder, they see the replayed events of a cached document
+        if (cacheRecorder_ != null) {
+            cacheRecorder_.setDocumentSource(lastSource);
+            lastSource.setDocumentHandler(cacheRecorder_);
+            lastSource = cacheRecorder_;
+        }
+
         final XMLDocumentFilter[] filters = (XMLDocumentFilter[]) getProperty(FILTERS);
         if (filters != null) {
             for (final XMLDocumentFilter filter : filters) {
@@ -417,6 +666,40 @@ protected void reset() throws XMLConfigurationException {
         lastSource.setDocumentHandler(documentHandler_);
     }
 
+    // The replayed events of a cached document can't get additional input.
+    private void checkNoCacheReplay() {
+        if (cacheReplay_ != null) {
+            throw new IllegalStateException("No input can be pushed while a cached document is replayed, "
+                    + "don't use a parse cache with filters adding input.");
+        }
+    }
+
+    // The current document can't be cached (e.g. it is incomplete).
+    private void discardCacheRecording() {
+        if (cacheRecorder_ != null) {
+            cacheRecorder_.discarded_ = true;
+        }
+    }
+
+    /**
+     * Records the balanced events of a document for the parse cache.
+     */
+    private static final class CacheRecorder extends BinaryDocumentWriter {
+        private boolean complete_;
+        private boolean discarded_;
+
+        // Constructor.
+        CacheRecorder(final ByteArrayOutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void endDocument(final Augmentations augs) throws XNIException {
+            complete_ = true;
+            super.endDocument(augs);
+        }
+    }
+
     /**
      * Defines an error reporter for reporting HTML errors. There is no such
      * thing as a fatal error in parsing HTML. I/O errors are fatal but should
@@ -574,7 +574,7 @@ private void setupOptimizedVersions() {
         elementsByNameForReference_.values().forEach(v -> elementsByCode_[v.code] = v);
         elementsByCode_[NO_SUCH_ELEMENT.code] = NO_SUCH_ELEMENT;
 
-        // initialize cross references to parent elements
+        // initialize cross references to parent elements and the bit sets of their codes
         for (final Element element : elementsByCode_) {
             if (element != null) {
                 defineParents(element);
@@ -598,6 +598,19 @@ private void defineParents(final Element element) {
             }
             element.parentCodes = null;
         }
+
+        // the parents might have been replaced since the last setup
+        if (element.parent == null) {
+            element.parentBits_ = null;
+        }
+        else {
+            final short[] codes = new short[element.parent.length];
+            for (int j = 0; j < codes.length; j++) {
+                codes[j] = element.parent[j] == null ? -1 : element.parent[j].code;
+            }
+            element.parentBits_ = Element.toBits(codes);
+        }
+        element.parentBitsOf_ = element.parent;
     }
 
     /**
@@ -621,6 +634,8 @@ public final Element getElement(final String ename) {
                                 NO_SUCH_ELEMENT.flags, NO_SUCH_ELEMENT.parentCodes, NO_SUCH_ELEMENT.closes);
             element.parent = NO_SUCH_ELEMENT.parent;
             element.parentCodes = NO_SUCH_ELEMENT.parentCodes;
+            element.parentBits_ = NO_SUCH_ELEMENT.parentBits_;
+            element.parentBitsOf_ = NO_SUCH_ELEMENT.parentBitsOf_;
         }
         return element;
     }
@@ -690,6 +705,15 @@ public static class Element {
         /** Parent elements. */
         private short[] parentCodes;
 
+        /** The codes of the elements this element can close as bit set. */
+        private final long[] closesBits_;
+
+        /** The codes of the parent elements as bit set, computed when the elements are set up. */
+        private long[] parentBits_;
+
+        /** The parent elements the bit set was computed for. */
+        private Element[] parentBitsOf_;
+
         /**
          * Constructs an element object.
          *
@@ -753,6 +777,7 @@ public Element(final short code, final String name, final int flags,
             this.parent = null;
             this.bounds = bounds;
             this.closes = closes;
+            this.closesBits_ = toBits(closes);
         }
 
         /**
@@ -797,14 +822,7 @@ public final boolean isSpecial() {
          * @param tag The element.
          */
         public boolean closes(final short tag) {
-            if (closes != null) {
-                for (final short close : closes) {
-                    if (close == tag) {
-                        return true;
-                    }
-                }
-            }
-            return false;
+            return hasBit(closesBits_, tag);
         }
 
         /**
@@ -844,6 +862,11 @@ public boolean isParent(final Element element) {
             if (parent == null) {
                 return false;
             }
+            if (parentBitsOf_ == parent) {
+                return hasBit(parentBits_, element.code);
+            }
+
+            // not set up by HTMLElements (yet)
             for (final Element element2 : parent) {
                 if (element.code == element2.code) {
                     return true;
@@ -851,5 +874,29 @@ public boolean isParent(final Element element) {
             }
             return false;
         }
+
+        /**
+         * @return the codes as bit set (one bit per code), null for no codes
+         */
+        static long[] toBits(final short[] codes) {
+            if (codes == null) {
+                return null;
+            }
+            int max = -1;
+            for (final short code : codes) {
+                max = Math.max(max, code);
+            }
+            final long[] bits = new long[(max >> 6) + 1];
+            for (final short code : codes) {
+                if (code >= 0) {
+                    bits[code >> 6] |= 1L << code;
+                }
+            }
+            return bits;
+        }
+
+        private static boolean hasBit(final long[] bits, final short code) {
+            return bits != null && code >= 0 && (code >> 6) < bits.length && (bits[code >> 6] & 1L << code) != 0;
+        }
     }
 }
@@ -0,0 +1,317 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of parsed documents for parsers that see the same content again
+ * and again (e.g. the error pages or templates of a crawled site). Set it as
+ * the <code>http://cyberneko.org/html/properties/parse-cache</code> property
+ * of the configuration; one cache can be shared by the configurations of
+ * several threads.
+ *
+ * <pre>
+ * HTMLParseCache cache = new HTMLParseCache(1000, 64 * 1024 * 1024);
+ * DOMParser parser = new DOMParser(HTMLDocumentImpl.class);
+ * parser.setProperty("http://cyberneko.org/html/properties/parse-cache", cache);
+ * </pre>
+ *
+ * <p>The key of a document is a 64 bit hash and the length of its bytes,
+ * the encoding of the input source and the settings (features and simple
+ * properties) of the configuration. The value is the balanced event stream
+ * in the format of {@link org.htmlunit.cyberneko.io.BinaryDocumentWriter};
+ * for a hit the stream is replayed to the filters and the document handler
+ * instead of scanning and balancing the document again. The bytes of a
+ * document are kept as well, a hit has to have the same bytes; documents
+ * with the same hash never get the events of each other.
+ *
+ * <p>Only input sources with a byte stream are cached. The stream is read
+ * completely before the parsing; a document larger than the maximum
+ * document size is parsed from the stream and not cached. Documents are not
+ * cached if the augmentations or the error reporting are enabled (both are
+ * not part of the event stream), if the document handler is a
+ * {@link HTMLTagBalancingListener}, if the parsing was stopped or if a filter
+ * pushed additional input. All configurations using one cache must use
+ * the same {@link HTMLElements}.
+ *
+ * <p>The filters and the document handler are not part of the key. A
+ * replayed document can be stopped like a parsed one, but no input can be
+ * pushed into it; don't share a cache with configurations whose filters
+ * push input (e.g. the output of scripts).
+ *
+ * <p>The least recently used documents are evicted if the number of
+ * documents or their memory usage exceeds the limits.
+ */
+public class HTMLParseCache {
+
+    // estimated memory used by an entry in addition to the bytes and the event stream
+    private static final int ENTRY_OVERHEAD = 128;
+
+    // the largest array some VMs can allocate
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private final int maxEntries_;
+    private final long maxMemory_;
+    private final int maxDocumentSize_;
+
+    private final LinkedHashMap<Key, Entry> entries_ = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryUsage_;
+
+    private long hits_;
+    private long misses_;
+    private long evictions_;
+
+    /**
+     * Creates an empty cache. Documents larger than the maximum memory are
+     * not cached.
+     *
+     * @param maxEntries the maximum number of documents
+     * @param maxMemory the maximum memory (in bytes) used by the documents
+     */
+    public HTMLParseCache(final int maxEntries, final long maxMemory) {
+        this(maxEntries, maxMemory, (int) Math.min(maxMemory, MAX_ARRAY_SIZE - 1));
+    }
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param maxEntries the maximum number of documents
+     * @param maxMemory the maximum memory (in bytes) used by the documents
+     * @param maxDocumentSize the maximum size (in bytes) of a cached document
+     */
+    public HTMLParseCache(final int maxEntries, final long maxMemory, final int maxDocumentSize) {
+        if (maxEntries < 1 || maxMemory < 1 || maxDocumentSize < 1) {
+            throw new IllegalArgumentException("The limits must be positive");
+        }
+        if (maxDocumentSize >= MAX_ARRAY_SIZE) {
+            throw new IllegalArgumentException("The maximum document size must be less than " + MAX_ARRAY_SIZE);
+        }
+        maxEntries_ = maxEntries;
+        maxMemory_ = maxMemory;
+        maxDocumentSize_ = maxDocumentSize;
+    }
+
+    /**
+     * @return the maximum size (in bytes) of a cached document
+     */
+    public int getMaxDocumentSize() {
+        return maxDocumentSize_;
+    }
+
+    /**
+     * @return the number of lookups that found a document
+     */
+    public synchronized long getHitCount() {
+        return hits_;
+    }
+
+    /**
+     * @return the number of lookups that did not find a document
+     */
+    public synchronized long getMissCount() {
+        return misses_;
+    }
+
+    /**
+     * @return the number of documents removed to stay within the limits
+     */
+    public synchronized long getEvictionCount() {
+        return evictions_;
+    }
+
+    /**
+     * @return the number of cached documents
+     */
+    public synchronized int size() {
+        return entries_.size();
+    }
+
+    /**
+     * @return the estimated memory (in bytes) used by the cached documents
+     */
+    public synchronized long getMemoryUsage() {
+        return memoryUsage_;
+    }
+
+    /**
+     * Removes all documents; the statistics are kept.
+     */
+    public synchronized void clear() {
+        entries_.clear();
+        memoryUsage_ = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "HTMLParseCache[size=" + entries_.size() + ", memory=" + memoryUsage_
+                + ", hits=" + hits_ + ", misses=" + misses_ + ", evictions=" + evictions_ + "]";
+    }
+
+    /**
+     * @return the event stream of the document with the given bytes or null
+     */
+    synchronized byte[] get(final Key key, final byte[] content) {
+        final Entry entry = entries_.get(key);
+        // the hash of other bytes might be the same
+        if (entry == null || !Arrays.equals(entry.content_, content)) {
+            misses_++;
+            return null;
+        }
+        hits_++;
+        return entry.events_;
+    }
+
+    /**
+     * Adds a document and evicts the least recently used ones if needed.
+     */
+    synchronized void put(final Key key, final byte[] content, final byte[] events) {
+        final Entry entry = new Entry(content, events);
+        if (entry.size() > maxMemory_) {
+            return;
+        }
+
+        final Entry previous = entries_.put(key, entry);
+        if (previous != null) {
+            memoryUsage_ -= previous.size();
+        }
+        memoryUsage_ += entry.size();
+
+        final Iterator<Map.Entry<Key, Entry>> iterator = entries_.entrySet().iterator();
+        while (entries_.size() > maxEntries_ || memoryUsage_ > maxMemory_) {
+            final Map.Entry<Key, Entry> eldest = iterator.next();
+            memoryUsage_ -= eldest.getValue().size();
+            iterator.remove();
+            evictions_++;
+        }
+    }
+
+    /**
+     * Reads the remaining bytes of the stream, but at most one byte more than
+     * the given maximum; a longer result means the stream has more bytes.
+     */
+    static byte[] readFully(final InputStream in, final int maxLength) throws IOException {
+        final int limit = maxLength + 1;
+        byte[] bytes = new byte[Math.min(8192, limit)];
+        int length = 0;
+        int read;
+        while (length < limit && (read = in.read(bytes, length, bytes.length - length)) != -1) {
+            length += read;
+            if (length == bytes.length && length < limit) {
+                bytes = Arrays.copyOf(bytes, (int) Math.min(2L * length, limit));
+            }
+        }
+        return length == bytes.length ? bytes : Arrays.copyOf(bytes, length);
+    }
+
+    /**
+     * A cached document.
+     */
+    private static final class Entry {
+        private final byte[] content_;
+        private final byte[] events_;
+
+        // Constructor.
+        Entry(final byte[] content, final byte[] events) {
+            content_ = content;
+            events_ = events;
+        }
+
+        long size() {
+            return (long) content_.length + events_.length + ENTRY_OVERHEAD;
+        }
+    }
+
+    /**
+     * The key of a document.
+     */
+    static final class Key {
+        private final long hash_;
+        private final int length_;
+        private final String encoding_;
+        private final String settings_;
+
+        // Constructor.
+        Key(final byte[] content, final String encoding, final String settings) {
+            hash_ = hash(content);
+            length_ = content.length;
+            encoding_ = encoding;
+            settings_ = settings;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return other.hash_ == hash_ && other.length_ == length_
+                    && (encoding_ == null ? other.encoding_ == null : encoding_.equals(other.encoding_))
+                    && settings_.equals(other.settings_);
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (hash_ ^ hash_ >>> 32);
+        }
+
+        /**
+         * A 64 bit hash of the bytes, eight bytes are mixed at a time
+         * (the multipliers and the final mix are the ones of MurmurHash3).
+         */
+        private static long hash(final byte[] bytes) {
+            final int length = bytes.length;
+            long h = 0x9E3779B97F4A7C15L ^ length;
+
+            int i = 0;
+            for (final int end = length & ~7; i < end; i += 8) {
+                final long k = (bytes[i] & 0xFFL)
+                        | (bytes[i + 1] & 0xFFL) << 8
+                        | (bytes[i + 2] & 0xFFL) << 16
+                        | (bytes[i + 3] & 0xFFL) << 24
+                        | (bytes[i + 4] & 0xFFL) << 32
+                        | (bytes[i + 5] & 0xFFL) << 40
+                        | (bytes[i + 6] & 0xFFL) << 48
+                        | (bytes[i + 7] & 0xFFL) << 56;
+                h ^= mix(k);
+                h = Long.rotateLeft(h, 27) * 5 + 0x52DCE729;
+            }
+
+            long k = 0;
+            for (int shift = 0; i < length; i++, shift += 8) {
+                k |= (bytes[i] & 0xFFL) << shift;
+            }
+            h ^= mix(k);
+
+            h ^= h >>> 33;
+            h *= 0xFF51AFD7ED558CCDL;
+            h ^= h >>> 33;
+            h *= 0xC4CEB9FE1A85EC53L;
+            h ^= h >>> 33;
+            return h;
+        }
+
+        private static long mix(final long k) {
+            long m = k * 0x87C37B91114253D5L;
+            m = Long.rotateLeft(m, 31);
+            return m * 0x4CF5AD432745937FL;
+        }
+    }
+}
@@ -22,11 +22,21 @@
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.util.Locale;
 
+import org.htmlunit.cyberneko.io.ByteBufferInputStream;
+import org.htmlunit.cyberneko.io.ByteDecodingReader;
 import org.htmlunit.cyberneko.io.PlaybackInputStream;
 import org.htmlunit.cyberneko.util.MiniStack;
+import org.htmlunit.cyberneko.util.NameTable;
 import org.htmlunit.cyberneko.xerces.util.EncodingMap;
+import org.htmlunit.cyberneko.xerces.util.HTMLChar;
 import org.htmlunit.cyberneko.xerces.util.NamespaceSupport;
 import org.htmlunit.cyberneko.xerces.util.URI;
 import org.htmlunit.cyberneko.xerces.util.XMLAttributesImpl;
@@ -42,6 +52,7 @@
 import org.htmlunit.cyberneko.xerces.xni.parser.XMLConfigurationException;
 import org.htmlunit.cyberneko.xerces.xni.parser.XMLDocumentScanner;
 import org.htmlunit.cyberneko.xerces.xni.parser.XMLInputSource;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLParseException;
 
 /**
  * A simple HTML scanner. This scanner makes no attempt to balance tags or fix
@@ -75,6 +86,12 @@
  * <li>http://cyberneko.org/html/properties/error-reporter
  * <li>http://cyberneko.org/html/properties/doctype/pubid
  * <li>http://cyberneko.org/html/properties/doctype/sysid
+ * <li>http://cyberneko.org/html/properties/limits/max-name-length
+ * <li>http://cyberneko.org/html/properties/limits/max-attributes
+ * <li>http://cyberneko.org/html/properties/limits/max-attribute-value-length
+ * <li>http://cyberneko.org/html/properties/limits/max-text-length
+ * <li>http://cyberneko.org/html/properties/limits/max-parse-time
+ * <li>http://cyberneko.org/html/properties/limits/policy
  * </ul>
  *
  * @see HTMLElements
@@ -238,6 +255,38 @@ public class HTMLScanner implements XMLDocumentScanner, XMLLocator, HTMLComponen
     /** Doctype declaration system identifier. */
     protected static final String DOCTYPE_SYSID = "http://cyberneko.org/html/properties/doctype/sysid";
 
+    /** The maximum length of element and attribute names (Integer, not limited if null or 0). */
+    public static final String MAX_NAME_LENGTH = "http://cyberneko.org/html/properties/limits/max-name-length";
+
+    /** The maximum number of attributes of an element (Integer, not limited if null or 0). */
+    public static final String MAX_ATTRIBUTES = "http://cyberneko.org/html/properties/limits/max-attributes";
+
+    /** The maximum length of an attribute value (Integer, not limited if null or 0). */
+    public static final String MAX_ATTRIBUTE_VALUE_LENGTH = "http://cyberneko.org/html/properties/limits/max-attribute-value-length";
+
+    /**
+     * The maximum length of a text between two tags, of a comment and of the
+     * content of a script or style (Integer, not limited if null or 0).
+     */
+    public static final String MAX_TEXT_LENGTH = "http://cyberneko.org/html/properties/limits/max-text-length";
+
+    /** The maximum time in milliseconds to parse a document (Number, not limited if null or 0). */
+    public static final String MAX_PARSE_TIME = "http://cyberneko.org/html/properties/limits/max-parse-time";
+
+    /**
+     * What to do if a limit is exceeded: { "truncate", "skip", "fail" }.
+     * <ul>
+     * <li>truncate (default): names, values and texts are cut at the limit,
+     * the attributes beyond the limit are ignored
+     * <li>skip: the text, attribute or tag exceeding a limit is ignored, all
+     * attributes of an element with too many attributes are ignored
+     * <li>fail: an {@link XMLParseException} is thrown
+     * </ul>
+     * The parsing is stopped (the document is ended) if the time is exceeded
+     * and the policy is not fail. Exceeded limits are reported as errors.
+     */
+    public static final String LIMIT_POLICY = "http://cyberneko.org/html/properties/limits/policy";
+
     /** Recognized properties. */
     private static final String[] RECOGNIZED_PROPERTIES = {
         NAMES_ELEMS,
@@ -245,7 +294,13 @@ public class HTMLScanner implements XMLDocumentScanner, XMLLocator, HTMLComponen
         DEFAULT_ENCODING,
         ERROR_REPORTER,
         DOCTYPE_PUBID,
-        DOCTYPE_SYSID};
+        DOCTYPE_SYSID,
+        MAX_NAME_LENGTH,
+        MAX_ATTRIBUTES,
+        MAX_ATTRIBUTE_VALUE_LENGTH,
+        MAX_TEXT_LENGTH,
+        MAX_PARSE_TIME,
+        LIMIT_POLICY};
 
     /** Recognized properties defaults. */
     private static final Object[] RECOGNIZED_PROPERTIES_DEFAULTS = {
@@ -254,7 +309,13 @@ public class HTMLScanner implements XMLDocumentScanner, XMLLocator, HTMLComponen
         "Windows-1252",
         null,
         HTML_4_01_TRANSITIONAL_PUBID,
-        HTML_4_01_TRANSITIONAL_SYSID};
+        HTML_4_01_TRANSITIONAL_SYSID,
+        null,
+        null,
+        null,
+        null,
+        null,
+        "truncate"};
 
     // states
 
@@ -264,6 +325,9 @@ public class HTMLScanner implements XMLDocumentScanner, XMLLocator, HTMLComponen
     /** State: markup bracket. */
     protected static final short STATE_MARKUP_BRACKET = 1;
 
+    /** State: content of the element started last (e.g. script). */
+    protected static final short STATE_ELEMENT_CONTENT = 2;
+
     /** State: start document. */
     protected static final short STATE_START_DOCUMENT = 10;
 
@@ -281,6 +345,17 @@ public class HTMLScanner implements XMLDocumentScanner, XMLLocator, HTMLComponen
     /** Lowercase HTML names. */
     protected static final short NAMES_LOWERCASE = 2;
 
+    // limit policies
+
+    /** Cut the content exceeding a limit. */
+    protected static final short LIMIT_TRUNCATE = 0;
+
+    /** Ignore the content exceeding a limit. */
+    protected static final short LIMIT_SKIP = 1;
+
+    /** Stop parsing with an exception if a limit is exceeded. */
+    protected static final short LIMIT_FAIL = 2;
+
     // defaults
 
     /* Default buffer size, 10 cache lines minus overhead
@@ -289,6 +364,27 @@ public class HTMLScanner implements XMLDocumentScanner, XMLLocator, HTMLComponen
      */
     protected static final int DEFAULT_BUFFER_SIZE = (10 * 64) - 24;
 
+    /** The attribute names added to the name table up front, besides the element names. */
+    private static final String[] COMMON_ATTRIBUTE_NAMES = {
+        "accept", "accept-charset", "action", "align", "alt", "async", "autocomplete", "bgcolor", "border",
+        "cellpadding", "cellspacing", "charset", "checked", "class", "cols", "colspan", "content", "crossorigin",
+        "data", "defer", "dir", "disabled", "download", "enctype", "for", "form", "frameborder", "height",
+        "hidden", "href", "hreflang", "http-equiv", "id", "integrity", "itemprop", "itemscope", "itemtype",
+        "lang", "language", "loading", "maxlength", "media", "method", "multiple", "name", "onblur", "onchange",
+        "onclick", "onerror", "onfocus", "onkeydown", "onkeyup", "onload", "onmouseout", "onmouseover",
+        "onsubmit", "placeholder", "property", "readonly", "referrerpolicy", "rel", "required", "role", "rows",
+        "rowspan", "sandbox", "scope", "selected", "size", "sizes", "src", "srcset", "style", "tabindex",
+        "target", "title", "type", "valign", "value", "width", "xmlns",
+    };
+
+    // what the steps scanning fed content wait for, see waitFor()
+    private static final String[] FEED_TAG_END = {">"};
+    private static final String[] FEED_COMMENT_END = {"-->", "--!>"};
+    private static final String[] FEED_SCRIPT_END = {"</script"};
+    private static final String[] FEED_DOUBLE_QUOTE = {"\""};
+    private static final String[] FEED_SINGLE_QUOTE = {"'"};
+    private static final String[] FEED_MARKUP_START = {"<"};
+
     // debugging
 
     /** Set to true to debug changes in the scanner. */
@@ -375,6 +471,24 @@ public class HTMLScanner implements XMLDocumentScanner, XMLLocator, HTMLComponen
     /** Doctype declaration system identifier. */
     protected String fDoctypeSysid;
 
+    /** The maximum name length, {@link Integer#MAX_VALUE} if not limited. */
+    protected int fMaxNameLength;
+
+    /** The maximum number of attributes, {@link Integer#MAX_VALUE} if not limited. */
+    protected int fMaxAttributes;
+
+    /** The maximum attribute value length, {@link Integer#MAX_VALUE} if not limited. */
+    protected int fMaxAttributeValueLength;
+
+    /** The maximum text length, {@link Integer#MAX_VALUE} if not limited. */
+    protected int fMaxTextLength;
+
+    /** The maximum parse time in milliseconds, 0 if not limited. */
+    protected long fMaxParseTime;
+
+    /** What to do if a limit is exceeded. */
+    protected short fLimitPolicy;
+
     // boundary locator information
 
     /** Beginning line number. */
@@ -400,9 +514,72 @@ public class HTMLScanner implements XMLDocumentScanner, XMLLocator, HTMLComponen
     /** The playback byte stream. */
     protected PlaybackInputStream fByteStream;
 
+    /**
+     * The content as byte buffer positioned at the start, kept as long as
+     * the encoding may still be changed.
+     */
+    protected ByteBuffer fByteBuffer;
+
     /** Current entity. */
     protected CurrentEntity fCurrentEntity;
 
+    /** The {@link System#nanoTime()} the parse time is exceeded at. */
+    private long fParseDeadline;
+
+    /** The last name scanned by {@link #scanName(boolean)} has to be skipped (it is too long). */
+    private boolean fSkipName;
+
+    /** Attributes of the current start tag were dropped (there are too many). */
+    private boolean fAttributesExceeded;
+
+    /** The length of the text reported since the last markup. */
+    private int fContentLength;
+
+    /** The text since the last markup exceeds the maximum length. */
+    private boolean fContentExceeded;
+
+    /** The rest of the text since the last markup has to be skipped. */
+    private boolean fSkipContent;
+
+    /** Stop requested by {@link #stopScanning(boolean)}. */
+    private boolean fStopRequested;
+
+    /** Report the end of the document when stopping. */
+    private boolean fStopEndDocument;
+
+    /** The scanning was stopped, the document is finished. */
+    private boolean fStopped;
+
+    /** Decodes the fed bytes, null as long as the encoding is not known. */
+    private CharsetDecoder fFeedDecoder;
+
+    /** The fed bytes not decoded yet (a byte order mark or a split character). */
+    private ByteBuffer fFeedBytes;
+
+    /** The error reporter used while the content is fed. */
+    private FeedErrorReporter fFeedErrorReporter;
+
+    /**
+     * The texts the scanning step of the fed content can't be completed without
+     * one of (e.g. the ends of a comment), null if any content might complete it.
+     */
+    private String[] fFeedDelimiters;
+
+    /** The number of characters the scanning step needs after one of {@link #fFeedDelimiters}. */
+    private int fFeedLookahead;
+
+    /** The character offset of the end of the fed content when the last step was suspended, -1 if none. */
+    private int fFeedSuspendedAt = -1;
+
+    /** The character offset up to which the fed content was searched for {@link #fFeedDelimiters}. */
+    private int fFeedSearchedTo;
+
+    /** The element started last, its content is scanned in {@link #STATE_ELEMENT_CONTENT}. */
+    private String fStartedElement;
+
+    /** The element code of {@link #fStartedElement}. */
+    private short fStartedElementCode;
+
     /** The current entity stack. */
     protected final MiniStack<CurrentEntity> fCurrentEntityStack = new MiniStack<>();
 
@@ -454,6 +631,21 @@ public class HTMLScanner implements XMLDocumentScanner, XMLLocator, HTMLComponen
 
     private final XMLString fScanComment = new XMLString();
 
+    /**
+     * The content of a comment from its first '>' on; the rest of the document
+     * is scanned again from it if the comment has no end.
+     */
+    private final XMLString fScanCommentRest = new XMLString();
+
+    /** The line number of the first '>' of a comment. */
+    private int fCommentRestLineNumber;
+
+    /** The column number of the first '>' of a comment. */
+    private int fCommentRestColumnNumber;
+
+    /** The character offset of the first '>' of a comment. */
+    private int fCommentRestCharacterOffset;
+
     private final XMLString fScanLiteral = new XMLString();
 
     /** Single boolean array. */
@@ -461,6 +653,9 @@ public class HTMLScanner implements XMLDocumentScanner, XMLLocator, HTMLComponen
 
     private final HTMLConfiguration htmlConfiguration_;
 
+    /** The canonical instances of the element and attribute names. */
+    private final NameTable fNameTable = new NameTable();
+
     /**
      * Creates a new HTMLScanner with the given configuration
      *
@@ -483,22 +678,37 @@ public class HTMLScanner implements XMLDocumentScanner, XMLLocator, HTMLComponen
      * @see #evaluateInputSource(XMLInputSource)
      */
     public void pushInputSource(final XMLInputSource inputSource) {
-        final Reader reader = getReader(inputSource);
+        final CurrentEntity entity = createCurrentEntity(inputSource);
 
         fCurrentEntityStack.push(fCurrentEntity);
+        fCurrentEntity = entity;
+    }
+
+    // Creates the entity for a pushed or evaluated input source.
+    private CurrentEntity createCurrentEntity(final XMLInputSource inputSource) {
         final String encoding = inputSource.getEncoding();
         final String publicId = inputSource.getPublicId();
         final String baseSystemId = inputSource.getBaseSystemId();
         final String literalSystemId = inputSource.getSystemId();
         final String expandedSystemId = expandSystemId(literalSystemId, baseSystemId);
-        fCurrentEntity = new CurrentEntity(reader, encoding, publicId, baseSystemId, literalSystemId, expandedSystemId);
+
+        final char[] charArray = inputSource.getCharArray();
+        if (charArray != null) {
+            return new CurrentEntity(charArray, inputSource.getCharArrayOffset(), inputSource.getCharArrayLength(),
+                                        encoding, publicId, baseSystemId, literalSystemId, expandedSystemId);
+        }
+        return new CurrentEntity(getReader(inputSource), encoding, publicId, baseSystemId, literalSystemId, expandedSystemId);
     }
 
     private Reader getReader(final XMLInputSource inputSource) {
         final Reader reader = inputSource.getCharacterStream();
         if (reader == null) {
+            InputStream inputStream = inputSource.getByteStream();
+            if (inputStream == null && inputSource.getByteBuffer() != null) {
+                inputStream = new ByteBufferInputStream(inputSource.getByteBuffer().duplicate());
+            }
             try {
-                return new InputStreamReader(inputSource.getByteStream(), fJavaEncoding);
+                return createReader(inputStream, fJavaEncoding);
             }
             catch (final UnsupportedEncodingException e) {
                 // should not happen as this encoding is already used to parse the "main" source
@@ -518,14 +728,8 @@ public void evaluateInputSource(final XMLInputSource inputSource) {
         final Scanner previousScanner = fScanner;
         final short previousScannerState = fScannerState;
         final CurrentEntity previousEntity = fCurrentEntity;
-        final Reader reader = getReader(inputSource);
 
-        final String encoding = inputSource.getEncoding();
-        final String publicId = inputSource.getPublicId();
-        final String baseSystemId = inputSource.getBaseSystemId();
-        final String literalSystemId = inputSource.getSystemId();
-        final String expandedSystemId = expandSystemId(literalSystemId, baseSystemId);
-        fCurrentEntity = new CurrentEntity(reader, encoding, publicId, baseSystemId, literalSystemId, expandedSystemId);
+        fCurrentEntity = createCurrentEntity(inputSource);
         setScanner(fContentScanner);
         setScannerState(STATE_CONTENT);
         try {
@@ -568,6 +772,63 @@ else if (closeall && fCurrentEntity != null) {
         }
     }
 
+    /**
+     * Drops all references to the last scanned document and shrinks the
+     * internal buffers that have grown beyond the given size. Streams
+     * have to be closed before by calling {@link #cleanup(boolean)}.
+     *
+     * @param maxBufferSize the buffer capacity (in chars) to keep at most
+     */
+    void recycle(final int maxBufferSize) {
+        fCurrentEntity = null;
+        fCurrentEntityStack.clear();
+        fByteStream = null;
+        fByteBuffer = null;
+        fStopRequested = false;
+        fStopped = false;
+        fStartedElement = null;
+        resetFeeding();
+
+        fScanner = fContentScanner;
+        fScannerState = STATE_START_DOCUMENT;
+        fElementCount = 0;
+        fElementDepth = -1;
+
+        fStringBuffer.clearAndShrink(maxBufferSize);
+        fStringBuffer2.clearAndShrink(maxBufferSize);
+        fScanScriptContent.clearAndShrink(maxBufferSize);
+        fScanUntilEndTag.clearAndShrink(maxBufferSize);
+        fScanComment.clearAndShrink(maxBufferSize);
+        fScanCommentRest.clearAndShrink(maxBufferSize);
+        fScanLiteral.clearAndShrink(maxBufferSize);
+        fSpecialScanner.charBuffer_.clearAndShrink(maxBufferSize);
+    }
+
+    /**
+     * @return true if no state of a scanned document is held anymore
+     */
+    boolean isRecycled() {
+        return fCurrentEntity == null
+                && fCurrentEntityStack.size() == 0
+                && fByteStream == null
+                && fByteBuffer == null
+                && !fStopRequested
+                && !fStopped
+                && fFeedDecoder == null
+                && fFeedBytes == null
+                && fFeedErrorReporter == null
+                && fStartedElement == null
+                && fScanner == fContentScanner
+                && fStringBuffer.length() == 0
+                && fStringBuffer2.length() == 0
+                && fScanScriptContent.length() == 0
+                && fScanUntilEndTag.length() == 0
+                && fScanComment.length() == 0
+                && fScanCommentRest.length() == 0
+                && fScanLiteral.length() == 0
+                && fSpecialScanner.charBuffer_.length() == 0;
+    }
+
     /** Returns the encoding. */
     @Override
     public String getEncoding() {
@@ -685,6 +946,31 @@ public void reset(final XMLComponentManager manager) throws XMLConfigurationExce
         fErrorReporter = (HTMLErrorReporter) manager.getProperty(ERROR_REPORTER);
         fDoctypePubid = String.valueOf(manager.getProperty(DOCTYPE_PUBID));
         fDoctypeSysid = String.valueOf(manager.getProperty(DOCTYPE_SYSID));
+        fMaxNameLength = getLimitValue(manager.getProperty(MAX_NAME_LENGTH));
+        fMaxAttributes = getLimitValue(manager.getProperty(MAX_ATTRIBUTES));
+        fMaxAttributeValueLength = getLimitValue(manager.getProperty(MAX_ATTRIBUTE_VALUE_LENGTH));
+        fMaxTextLength = getLimitValue(manager.getProperty(MAX_TEXT_LENGTH));
+        final Object maxParseTime = manager.getProperty(MAX_PARSE_TIME);
+        fMaxParseTime = maxParseTime == null ? 0 : Math.max(0, Long.parseLong(String.valueOf(maxParseTime)));
+        fLimitPolicy = getLimitPolicy(String.valueOf(manager.getProperty(LIMIT_POLICY)));
+
+        // a reused scanner starts over once the names of earlier documents fill the table
+        if (fNameTable.isFull()) {
+            fNameTable.clear();
+        }
+        if (fNameTable.size() == 0) {
+            final HTMLElements htmlElements = htmlConfiguration_.getHtmlElements();
+            for (short code = 0; code < HTMLElements.UNKNOWN; code++) {
+                final HTMLElements.Element element = htmlElements.getElement(code);
+                if (element != null) {
+                    fNameTable.add(element.name);
+                    fNameTable.add(element.lowercaseName);
+                }
+            }
+            for (final String name : COMMON_ATTRIBUTE_NAMES) {
+                fNameTable.add(name);
+            }
+        }
     }
 
     /** Sets a feature. */
@@ -748,7 +1034,14 @@ public void setInputSource(final XMLInputSource source) throws IOException {
         fElementCount = 0;
         fElementDepth = -1;
         fByteStream = null;
+        fByteBuffer = null;
         fCurrentEntityStack.clear();
+        fStopRequested = false;
+        fStopped = false;
+        fStartedElement = null;
+        resetFeeding();
+        fParseDeadline = fMaxParseTime > 0 ? System.nanoTime() + fMaxParseTime * 1_000_000L : 0;
+        endContent();
 
         fBeginLineNumber = 1;
         fBeginColumnNumber = 1;
@@ -768,41 +1061,53 @@ public void setInputSource(final XMLInputSource source) throws IOException {
         final String literalSystemId = source.getSystemId();
         final String expandedSystemId = expandSystemId(literalSystemId, baseSystemId);
 
+        // content already in memory, scan the array directly
+        final char[] charArray = source.getCharArray();
+        if (charArray != null) {
+            fCurrentEntity = new CurrentEntity(charArray, source.getCharArrayOffset(), source.getCharArrayLength(),
+                                                encoding, publicId, baseSystemId, literalSystemId, expandedSystemId);
+
+            // set scanner and state
+            setScanner(fContentScanner);
+            setScannerState(STATE_START_DOCUMENT);
+            return;
+        }
+
         // open stream
         Reader reader = source.getCharacterStream();
         if (reader == null) {
-            InputStream inputStream = source.getByteStream();
-            if (inputStream == null) {
-                final URL url = new URL(expandedSystemId);
-                inputStream = url.openStream();
-            }
-            fByteStream = new PlaybackInputStream(inputStream);
             final String[] encodings = new String[2];
-            if (encoding == null) {
-                fByteStream.detectEncoding(encodings);
+            encodings[0] = encoding;
+
+            final ByteBuffer byteBuffer = source.getByteBuffer();
+            if (byteBuffer != null) {
+                // the whole content is available, the encoding detection
+                // and a later playback work on the buffer itself
+                fByteBuffer = byteBuffer.duplicate();
+                if (encoding == null) {
+                    final int bomLength = PlaybackInputStream.detectEncoding(fByteBuffer, encodings);
+                    fByteBuffer.position(fByteBuffer.position() + bomLength);
+                }
             }
             else {
-                encodings[0] = encoding;
-            }
-            if (encodings[0] == null) {
-                encodings[0] = fDefaultIANAEncoding;
-                if (fReportErrors_) {
-                    fErrorReporter.reportWarning("HTML1000", null);
+                InputStream inputStream = source.getByteStream();
+                if (inputStream == null) {
+                    final URL url = new URL(expandedSystemId);
+                    inputStream = url.openStream();
                 }
-            }
-            if (encodings[1] == null) {
-                encodings[1] = EncodingMap.getIANA2JavaMapping(encodings[0].toUpperCase(Locale.ROOT));
-                if (encodings[1] == null) {
-                    encodings[1] = encodings[0];
-                    if (fReportErrors_) {
-                        fErrorReporter.reportWarning("HTML1001", new Object[] {encodings[0]});
-                    }
+                fByteStream = new PlaybackInputStream(inputStream);
+                if (encoding == null) {
+                    fByteStream.detectEncoding(encodings);
                 }
             }
-            fIANAEncoding = encodings[0];
-            fJavaEncoding = encodings[1];
+            setEncodings(encodings);
             encoding = fIANAEncoding;
-            reader = new InputStreamReader(fByteStream, fJavaEncoding);
+            if (fByteBuffer != null) {
+                reader = createReader(new ByteBufferInputStream(fByteBuffer.duplicate()), fJavaEncoding);
+            }
+            else {
+                reader = createReader(fByteStream, fJavaEncoding);
+            }
         }
         fCurrentEntity = new CurrentEntity(reader, encoding, publicId, baseSystemId, literalSystemId, expandedSystemId);
 
@@ -811,19 +1116,383 @@ public void setInputSource(final XMLInputSource source) throws IOException {
         setScannerState(STATE_START_DOCUMENT);
     }
 
+    /**
+     * Sets the IANA and java encoding, the default encoding is used if
+     * none was specified or detected.
+     */
+    private void setEncodings(final String[] encodings) {
+        if (encodings[0] == null) {
+            encodings[0] = fDefaultIANAEncoding;
+            if (fReportErrors_) {
+                fErrorReporter.reportWarning("HTML1000", null);
+            }
+        }
+        if (encodings[1] == null) {
+            encodings[1] = EncodingMap.getIANA2JavaMapping(encodings[0].toUpperCase(Locale.ROOT));
+            if (encodings[1] == null) {
+                encodings[1] = encodings[0];
+                if (fReportErrors_) {
+                    fErrorReporter.reportWarning("HTML1001", new Object[] {encodings[0]});
+                }
+            }
+        }
+        fIANAEncoding = encodings[0];
+        fJavaEncoding = encodings[1];
+    }
+
+    /**
+     * Creates the reader decoding the given byte stream. For UTF-8, ISO-8859-1 and
+     * windows-1252 our own readers are used, they decode the bytes directly into
+     * the buffer of the current entity.
+     */
+    private static Reader createReader(final InputStream stream, final String javaEncoding)
+            throws UnsupportedEncodingException {
+        final Reader reader = ByteDecodingReader.forEncoding(stream, javaEncoding);
+        if (reader != null) {
+            return reader;
+        }
+        return new InputStreamReader(stream, javaEncoding);
+    }
+
+    /**
+     * Stops the recording of the bytes for a playback, the encoding
+     * can't be changed anymore.
+     */
+    private void clearPlayback() {
+        if (fByteStream != null) {
+            fByteStream.clear();
+            fByteStream = null;
+        }
+        fByteBuffer = null;
+    }
+
+    /** Returns the (historical) name of the encoding used by the given reader. */
+    private static String getReaderEncoding(final Reader reader) {
+        if (reader instanceof ByteDecodingReader) {
+            return ((ByteDecodingReader) reader).getEncoding();
+        }
+        return ((InputStreamReader) reader).getEncoding();
+    }
+
     /** Scans the document. */
     @Override
     public boolean scanDocument(final boolean complete) throws XNIException, IOException {
         do {
+            if (fStopped) {
+                return false;
+            }
             if (!fScanner.scan(complete)) {
                 return false;
             }
+            if (fStopRequested) {
+                finishStop();
+                return false;
+            }
         }
         while (complete);
 
         return true;
     }
 
+    /**
+     * Stops the scanning of the current document. This is meant to be called
+     * from a document handler or filter that has seen everything it needs (e.g.
+     * the end of the head). The scanner stops as soon as the current markup
+     * or text is processed, the remaining input is not read anymore. The
+     * scanning of the next document is not affected.
+     *
+     * @param endDocument whether to report the end of the document when
+     *        stopping; the tag balancer closes the open elements in this case
+     */
+    public void stopScanning(final boolean endDocument) {
+        fStopRequested = true;
+        fStopEndDocument = endDocument;
+    }
+
+    // Finishes the document after a stop request.
+    private void finishStop() {
+        fStopRequested = false;
+        fStopped = true;
+        setScanner(fContentScanner);
+        setScannerState(STATE_END_DOCUMENT);
+
+        if (fStopEndDocument && fDocumentHandler != null && fElementCount >= fElementDepth) {
+            if (DEBUG_CALLBACKS) {
+                System.out.println("endDocument()");
+            }
+            fEndLineNumber = fCurrentEntity.getLineNumber();
+            fEndColumnNumber = fCurrentEntity.getColumnNumber();
+            fEndCharacterOffset = fCurrentEntity.getCharacterOffset();
+            fDocumentHandler.endDocument(locationAugs());
+        }
+    }
+
+    /**
+     * Starts the scanning of a document whose content is pushed with
+     * {@link #feed(ByteBuffer)} or {@link #feed(char[], int, int)} as it arrives
+     * (e.g. the chunks of a network response) instead of being read from a
+     * stream; nothing blocks while waiting for the next chunk.
+     * <p>
+     * Every feed scans as much as possible. If the fed content ends within
+     * some markup or text, its scanning is suspended and repeated from its
+     * start once the fed content might complete it; nothing is reported twice. The end of
+     * the content is marked with {@link #endOfInput()}.
+     * <p>
+     * A &lt;meta&gt; tag can't change the encoding of the fed bytes, the
+     * content is not kept for a playback. Without an encoding the byte
+     * order mark or the default encoding is used.
+     *
+     * @param systemId the system identifier of the document, may be null
+     * @param encoding the IANA encoding of the fed bytes, may be null
+     * @throws IOException if the encoding is not supported
+     */
+    public void startFeeding(final String systemId, final String encoding) throws IOException {
+        setInputSource(new XMLInputSource(null, systemId, null, new char[DEFAULT_BUFFER_SIZE], 0, 0));
+        fCurrentEntity.feeding_ = true;
+        fCurrentEntity.endReached_ = false;
+        fFeedBytes = ByteBuffer.allocate(16);
+        fFeedErrorReporter = new FeedErrorReporter(fErrorReporter);
+        fErrorReporter = fFeedErrorReporter;
+        if (encoding != null) {
+            startDecoding(new String[] {encoding, null});
+        }
+    }
+
+    /**
+     * Scans the next chunk of the document started by {@link #startFeeding(String, String)}.
+     * All remaining bytes of the buffer are consumed.
+     *
+     * @param bytes the next chunk of the document
+     * @return false if the document is finished already (e.g. the scanning was stopped)
+     * @throws IOException in case of io problems
+     */
+    public boolean feed(final ByteBuffer bytes) throws IOException {
+        if (!checkFeeding()) {
+            return false;
+        }
+        if (fFeedDecoder == null) {
+            // the encoding is not known, wait for the bytes of a byte order mark
+            while (bytes.hasRemaining() && fFeedBytes.position() < 3) {
+                fFeedBytes.put(bytes.get());
+            }
+            if (fFeedBytes.position() < 3) {
+                return true;
+            }
+            startDecoding(new String[2]);
+        }
+
+        // complete a character split between two chunks first
+        while (fFeedBytes.position() > 0 && bytes.hasRemaining()) {
+            fFeedBytes.put(bytes.get());
+            fFeedBytes.flip();
+            decode(fFeedBytes, false);
+            fFeedBytes.compact();
+        }
+        decode(bytes, false);
+        fFeedBytes.put(bytes);
+
+        return scanFed();
+    }
+
+    /**
+     * Scans the next chunk of the document started by {@link #startFeeding(String, String)}.
+     *
+     * @param chars the characters
+     * @param offset the offset of the chunk
+     * @param length the length of the chunk
+     * @return false if the document is finished already (e.g. the scanning was stopped)
+     * @throws IOException in case of io problems
+     */
+    public boolean feed(final char[] chars, final int offset, final int length) throws IOException {
+        if (!checkFeeding()) {
+            return false;
+        }
+        final CharBuffer buffer = fCurrentEntity.feedBuffer(length);
+        buffer.put(chars, offset, length);
+        fCurrentEntity.length_ = buffer.position();
+
+        return scanFed();
+    }
+
+    /**
+     * Marks the end of the fed content. The rest of the document is scanned by
+     * the next call of {@link #scanDocument(boolean)}.
+     *
+     * @throws IOException in case of io problems
+     */
+    public void endOfInput() throws IOException {
+        if (!checkFeeding()) {
+            return;
+        }
+        if (fFeedDecoder == null) {
+            startDecoding(new String[2]);
+        }
+        fFeedBytes.flip();
+        decode(fFeedBytes, true);
+        CoderResult result;
+        do {
+            final CharBuffer buffer = fCurrentEntity.feedBuffer(16);
+            result = fFeedDecoder.flush(buffer);
+            fCurrentEntity.length_ = buffer.position();
+        }
+        while (result.isOverflow());
+
+        fCurrentEntity.feeding_ = false;
+        fCurrentEntity.endReached_ = true;
+    }
+
+    // Returns false if the fed document is finished already.
+    private boolean checkFeeding() {
+        if (fCurrentEntity == null || !fCurrentEntity.feeding_) {
+            throw new IllegalStateException("No document to feed, call startFeeding() first.");
+        }
+        return !fStopped;
+    }
+
+    // Sets the encoding of the fed bytes, the byte order mark is detected if none is given.
+    private void startDecoding(final String[] encodings) throws UnsupportedEncodingException {
+        fFeedBytes.flip();
+        if (encodings[0] == null) {
+            final int bomLength = PlaybackInputStream.detectEncoding(fFeedBytes, encodings);
+            fFeedBytes.position(fFeedBytes.position() + bomLength);
+        }
+        fFeedBytes.compact();
+
+        setEncodings(encodings);
+        fCurrentEntity.encoding_ = fIANAEncoding;
+        try {
+            fFeedDecoder = Charset.forName(fJavaEncoding).newDecoder()
+                                .onMalformedInput(CodingErrorAction.REPLACE)
+                                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+        catch (final IllegalArgumentException e) {
+            throw new UnsupportedEncodingException(fJavaEncoding);
+        }
+    }
+
+    // Decodes the given bytes into the buffer of the current entity.
+    private void decode(final ByteBuffer bytes, final boolean endOfInput) {
+        CoderResult result;
+        do {
+            final int length = (int) (bytes.remaining() * fFeedDecoder.maxCharsPerByte()) + 1;
+            final CharBuffer buffer = fCurrentEntity.feedBuffer(length);
+            result = fFeedDecoder.decode(bytes, buffer, endOfInput);
+            fCurrentEntity.length_ = buffer.position();
+        }
+        while (result.isOverflow());
+    }
+
+    /**
+     * Scans the fed content as far as possible. A step that reaches the end
+     * of the fed content is undone, it is repeated with a later chunk.
+     *
+     * @return false if the document is finished
+     */
+    private boolean scanFed() throws IOException {
+        final CurrentEntity entity = fCurrentEntity;
+        if (fFeedSuspendedAt != -1) {
+            if (!canResume(entity)) {
+                return true;
+            }
+            fFeedSuspendedAt = -1;
+        }
+        while (true) {
+            final int offset = entity.offset_;
+            final int lineNumber = entity.lineNumber_;
+            final int base = entity.base_;
+            final int lineStart = entity.lineStart_;
+            final Scanner scanner = fScanner;
+            final short scannerState = fScannerState;
+            final int elementCount = fElementCount;
+            waitFor(null, 0);
+            fFeedErrorReporter.startAttempt();
+            try {
+                if (!scanDocument(false)) {
+                    return false;
+                }
+            }
+            catch (final SuspendException e) {
+                entity.offset_ = offset;
+                entity.lineNumber_ = lineNumber;
+                entity.base_ = base;
+                entity.lineStart_ = lineStart;
+                fScanner = scanner;
+                fScannerState = scannerState;
+                fElementCount = elementCount;
+                fFeedErrorReporter.suspended();
+                fFeedSuspendedAt = entity.base_ + entity.length_;
+                fFeedSearchedTo = fFeedSuspendedAt;
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Sets what the current scanning step of fed content waits for.
+     *
+     * @param delimiters the texts (lowercase) the step can't be completed without one of,
+     *        null if any content might complete it
+     * @param lookahead the number of characters the step needs after the delimiter
+     */
+    private void waitFor(final String[] delimiters, final int lookahead) {
+        fFeedDelimiters = delimiters;
+        fFeedLookahead = lookahead;
+    }
+
+    /**
+     * Returns true if the suspended step might be completed with the fed content.
+     * The step is repeated from its start, a long one (e.g. a script) fed in many
+     * small chunks is therefore repeated only if the fed content completes an
+     * occurrence of its delimiter (including the characters needed after it) or
+     * at least doubled its length; this keeps the scanning linear.
+     */
+    private boolean canResume(final CurrentEntity entity) {
+        final String[] delimiters = fFeedDelimiters;
+        final int end = entity.base_ + entity.length_;
+        if (delimiters == null || end - fFeedSuspendedAt >= fFeedSuspendedAt - entity.base_ - entity.offset_) {
+            return true;
+        }
+
+        final int searchedTo = fFeedSearchedTo - entity.base_;
+        fFeedSearchedTo = end;
+        for (final String delimiter : delimiters) {
+            if (contains(entity, delimiter, searchedTo)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Returns true if an occurrence of the delimiter ends (with the lookahead) after the
+    // given buffer index; this way every occurrence completes the step at most once.
+    private boolean contains(final CurrentEntity entity, final String delimiter, final int searchedTo) {
+        final int length = delimiter.length();
+        final int needed = length + fFeedLookahead;
+        final int from = Math.max(entity.offset_, searchedTo - needed + 1);
+        final char[] buffer = entity.buffer_;
+        OUTER: for (int i = from; i <= entity.length_ - needed; i++) {
+            for (int j = 0; j < length; j++) {
+                if (Character.toLowerCase(buffer[i + j]) != delimiter.charAt(j)) {
+                    continue OUTER;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    // Drops the state of a fed document.
+    private void resetFeeding() {
+        fFeedDecoder = null;
+        fFeedBytes = null;
+        waitFor(null, 0);
+        fFeedSuspendedAt = -1;
+        if (fFeedErrorReporter != null) {
+            fErrorReporter = fFeedErrorReporter.reporter_;
+            fFeedErrorReporter = null;
+        }
+    }
+
     /** Sets the document handler. */
     @Override
     public void setDocumentHandler(final XMLDocumentHandler handler) {
@@ -986,6 +1655,24 @@ protected static String modifyName(final String name, final short mode) {
         return name;
     }
 
+    // Modifies the given name based on the specified mode, returns the
+    // canonical instance of the result.
+    private String foldName(final String name, final short mode) {
+        switch (mode) {
+            case NAMES_UPPERCASE:
+                return fNameTable.toUpperCase(name);
+            case NAMES_LOWERCASE:
+                return fNameTable.toLowerCase(name);
+        }
+        return name;
+    }
+
+    // Returns the code of the element with the given name, UNKNOWN if not an HTML element.
+    private short elementCode(final String ename) {
+        final HTMLElements.Element element = htmlConfiguration_.getHtmlElements().getElement(ename, null);
+        return element != null ? element.code : HTMLElements.UNKNOWN;
+    }
+
     // Converts HTML names string value to constant value.
     //
     // @see #NAMES_NO_CHANGE
@@ -1000,6 +1687,126 @@ protected static short getNamesValue(final String value) {
         }
         return NAMES_NO_CHANGE;
     }
+
+    /**
+     * Converts a limit property to a value.
+     *
+     * @param value the value of the property (a number or null)
+     * @return the limit, {@link Integer#MAX_VALUE} if not limited
+     */
+    protected static int getLimitValue(final Object value) {
+        if (value == null) {
+            return Integer.MAX_VALUE;
+        }
+        final int limit = value instanceof Number ? ((Number) value).intValue() : Integer.parseInt(String.valueOf(value));
+        return limit > 0 ? limit : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Converts the limit policy property to a value.
+     *
+     * @param value the value of the property
+     * @return the policy
+     */
+    protected static short getLimitPolicy(final String value) {
+        if ("skip".equals(value)) {
+            return LIMIT_SKIP;
+        }
+        if ("fail".equals(value)) {
+            return LIMIT_FAIL;
+        }
+        return LIMIT_TRUNCATE;
+    }
+
+    /**
+     * Handles an exceeded limit according to the policy: the error is
+     * reported or an exception is thrown.
+     *
+     * @param key the key of the error message
+     * @param args the arguments of the message
+     * @return true if the content exceeding the limit has to be skipped
+     */
+    protected boolean limitExceeded(final String key, final Object[] args) {
+        if (fLimitPolicy == LIMIT_FAIL) {
+            throw new XMLParseException(this, fErrorReporter.formatMessage(key, args));
+        }
+        if (fReportErrors_) {
+            fErrorReporter.reportError(key, args);
+        }
+        return fLimitPolicy == LIMIT_SKIP;
+    }
+
+    /**
+     * Drops the chars of a text being scanned beyond the maximum text length;
+     * one more char is kept to recognize the exceeded limit.
+     *
+     * @param text the text
+     * @return true if the text exceeds the limit
+     */
+    private boolean limitText(final XMLString text) {
+        if (text.length() <= fMaxTextLength) {
+            return false;
+        }
+        text.shortenBy(text.length() - fMaxTextLength - 1);
+        return true;
+    }
+
+    /**
+     * Cuts a text reported at once (a comment or the content of a script) at
+     * the maximum text length.
+     *
+     * @param text the text
+     * @return true if the text has to be skipped
+     */
+    private boolean capText(final XMLString text) {
+        if (text.length() <= fMaxTextLength) {
+            return false;
+        }
+        text.shortenBy(text.length() - fMaxTextLength);
+        return limitExceeded("HTML1020", new Object[] {String.valueOf(fMaxTextLength)});
+    }
+
+    /**
+     * Cuts the next part of a text reported in parts at the maximum text
+     * length; the text ends with the next markup (see {@link #endContent()}).
+     *
+     * @param text the part of the text
+     * @return true if the part has to be skipped
+     */
+    private boolean capContent(final XMLString text) {
+        final int remaining = fMaxTextLength - fContentLength;
+        if (text.length() <= remaining) {
+            fContentLength += text.length();
+            return false;
+        }
+        text.shortenBy(text.length() - remaining);
+        fContentLength = fMaxTextLength;
+        if (!fContentExceeded) {
+            fContentExceeded = true;
+            fSkipContent = limitExceeded("HTML1020", new Object[] {String.valueOf(fMaxTextLength)});
+        }
+        return fSkipContent || text.length() == 0;
+    }
+
+    /**
+     * Starts a new text for {@link #capContent(XMLString)}.
+     */
+    private void endContent() {
+        fContentLength = 0;
+        fContentExceeded = false;
+        fSkipContent = false;
+    }
+
+    /**
+     * Stops the scanning if the maximum parse time is exceeded.
+     */
+    private void checkParseTime() {
+        if (fParseDeadline != 0 && !fStopRequested && System.nanoTime() - fParseDeadline > 0) {
+            limitExceeded("HTML1021", new Object[] {String.valueOf(fMaxParseTime)});
+            // the incomplete document must not be cached
+            htmlConfiguration_.stopParsing(true);
+        }
+    }
     // debugging
 
     // Sets the scanner.
@@ -1055,7 +1862,7 @@ protected void scanDoctype() throws IOException {
                 }
             }
             else {
-                root = modifyName(root, fNamesElems);
+                root = foldName(root, fNamesElems);
             }
             if (skipSpaces()) {
                 if (skip("PUBLIC", false)) {
@@ -1148,6 +1955,7 @@ protected String scanName(final boolean strict) throws IOException {
         if (DEBUG_BUFFER) {
             fCurrentEntity.debugBufferIfNeeded("(scanName: ");
         }
+        fSkipName = false;
         if (fCurrentEntity.offset_ == fCurrentEntity.length_) {
             if (fCurrentEntity.load(0) == -1) {
                 if (DEBUG_BUFFER) {
@@ -1161,19 +1969,19 @@ protected String scanName(final boolean strict) throws IOException {
             while (fCurrentEntity.hasNext()) {
                 final char c = fCurrentEntity.getNextChar();
                 // this has been split up to cater to the needs of branch prediction
-                if (strict && (!Character.isLetterOrDigit(c) && c != '-' && c != '.' && c != ':' && c != '_')) {
+                if (strict && !HTMLChar.isName(c)) {
                     fCurrentEntity.rewind();
                     break;
                 }
-                // we check for the regular space first because isWhitespace is no inlineable and hence expensive
-                // regular space should be the norm as well as newlines
-                else if (!strict && (c == ' ' || c == '\n' || c == '=' || c == '/' || c == '>' || Character.isWhitespace(c))) {
+                else if (!strict && HTMLChar.isAttributeNameEnd(c)) {
                     fCurrentEntity.rewind();
                     break;
                 }
             }
-            if (fCurrentEntity.offset_ == fCurrentEntity.length_) {
-                final int length = fCurrentEntity.length_ - offset;
+            if (fCurrentEntity.offset_ == fCurrentEntity.length_ && !fCurrentEntity.resident_) {
+                // the chars beyond the maximum length are dropped
+                final int scanned = fCurrentEntity.length_ - offset;
+                final int length = scanned > fMaxNameLength ? fMaxNameLength + 1 : scanned;
                 System.arraycopy(fCurrentEntity.buffer_, offset, fCurrentEntity.buffer_, 0, length);
                 final int count = fCurrentEntity.load(length);
                 offset = 0;
@@ -1182,11 +1990,19 @@ else if (!strict && (c == ' ' || c == '\n' || c == '=' || c == '/' || c == '>' |
                 }
             }
             else {
+                if (fCurrentEntity.offset_ == fCurrentEntity.length_) {
+                    // the name might continue in the next fed chunk
+                    fCurrentEntity.suspendIfFeeding();
+                }
                 break;
             }
         }
-        final int length = fCurrentEntity.offset_ - offset;
-        final String name = length > 0 ? new String(fCurrentEntity.buffer_, offset, length) : null;
+        int length = fCurrentEntity.offset_ - offset;
+        if (length > fMaxNameLength) {
+            length = fMaxNameLength;
+            fSkipName = limitExceeded("HTML1017", new Object[] {String.valueOf(fMaxNameLength)});
+        }
+        final String name = length > 0 ? fNameTable.get(fCurrentEntity.buffer_, offset, length) : null;
         if (DEBUG_BUFFER) {
             fCurrentEntity.debugBufferIfNeeded(")scanName: ", " -> \"" + name + '"');
         }
@@ -1340,7 +2156,7 @@ protected int scanEntityRef(final XMLString str, final boolean content) throws I
     }
 
     private int returnEntityRefString(final XMLString str, final boolean content) {
-        if (content && fDocumentHandler != null && fElementCount >= fElementDepth) {
+        if (content && fDocumentHandler != null && fElementCount >= fElementDepth && !capContent(str)) {
             fEndLineNumber = fCurrentEntity.getLineNumber();
             fEndColumnNumber = fCurrentEntity.getColumnNumber();
             fEndCharacterOffset = fCurrentEntity.getCharacterOffset();
@@ -1354,6 +2170,12 @@ protected boolean skip(final String s, final boolean caseSensitive) throws IOExc
         final int length = s != null ? s.length() : 0;
         for (int i = 0; i < length; i++) {
             if (fCurrentEntity.offset_ == fCurrentEntity.length_) {
+                if (fCurrentEntity.resident_) {
+                    fCurrentEntity.suspendIfFeeding();
+                    // nothing more to load, back to where we started
+                    fCurrentEntity.offset_ -= i;
+                    return false;
+                }
                 System.arraycopy(fCurrentEntity.buffer_, fCurrentEntity.offset_ - i, fCurrentEntity.buffer_, 0, i);
                 if (fCurrentEntity.load(i) == -1) {
                     fCurrentEntity.offset_ = 0;
@@ -1441,9 +2263,7 @@ protected boolean skipSpaces() throws IOException {
                 }
             }
             final char c = fCurrentEntity.getNextChar();
-            // compare against the usual suspects first before going
-            // the expensive route
-            if (c == ' ' || c == '\n' || Character.isWhitespace(c)) {
+            if (HTMLChar.isWhitespace(c)) {
                 spaces = true;
                 // unix \n might dominate
                 if (c == '\n' || c == '\r') {
@@ -1484,6 +2304,9 @@ protected int skipNewlines() throws IOException {
                 if (c == '\n') {
                     newlines++;
                     if (fCurrentEntity.offset_ == fCurrentEntity.length_) {
+                        if (fCurrentEntity.resident_) {
+                            break;
+                        }
                         fCurrentEntity.offset_ = newlines;
                         if (fCurrentEntity.load(newlines) == -1) {
                             break;
@@ -1493,6 +2316,11 @@ protected int skipNewlines() throws IOException {
                 else if (c == '\r') {
                     newlines++;
                     if (fCurrentEntity.offset_ == fCurrentEntity.length_) {
+                        if (fCurrentEntity.resident_) {
+                            // a \n might follow in the next fed chunk
+                            fCurrentEntity.suspendIfFeeding();
+                            break;
+                        }
                         fCurrentEntity.offset_ = newlines;
                         if (fCurrentEntity.load(newlines) == -1) {
                             break;
@@ -1500,7 +2328,6 @@ else if (c == '\r') {
                     }
                     if (fCurrentEntity.getCurrentChar() == '\n') {
                         fCurrentEntity.offset_++;
-                        fCurrentEntity.characterOffset_++;
                     }
                 }
                 else {
@@ -1594,16 +2421,19 @@ public final class CurrentEntity {
         /** Line number. */
         private int lineNumber_ = 1;
 
-        /** Column number. */
-        private int columnNumber_ = 1;
+        /**
+         * Character offset of the first character of the buffer; the character
+         * offset and the column are computed from the buffer offset when needed.
+         */
+        private int base_ = 0;
 
-        /** Character offset in the file. */
-        private int characterOffset_ = 0;
+        /** Character offset of the first character of the current line. */
+        private int lineStart_ = 0;
 
         // buffer
 
         /** Character buffer. */
-        private char[] buffer_ = new char[DEFAULT_BUFFER_SIZE];
+        private char[] buffer_;
 
         /** Offset into character buffer. */
         private int offset_ = 0;
@@ -1613,14 +2443,44 @@ public final class CurrentEntity {
 
         private boolean endReached_ = false;
 
-        // Constructs an entity from the specified stream.
-        public CurrentEntity(final Reader stream, final String encoding, final String publicId, final String baseSystemId, final String literalSystemId, final String expandedSystemId) {
-            stream_ = stream;
+        /**
+         * True if the whole content is already in the buffer (no stream); the
+         * buffer is the array of the input source and must not be modified.
+         */
+        private final boolean resident_;
+
+        /** True while more content is fed into the (resident) buffer, see {@link HTMLScanner#feed(ByteBuffer)}. */
+        private boolean feeding_;
+
+        // Constructs an entity from the specified stream.
+        public CurrentEntity(final Reader stream, final String encoding, final String publicId, final String baseSystemId, final String literalSystemId, final String expandedSystemId) {
+            stream_ = stream;
+            this.encoding_ = encoding;
+            this.publicId = publicId;
+            this.baseSystemId = baseSystemId;
+            this.literalSystemId = literalSystemId;
+            this.expandedSystemId = expandedSystemId;
+            this.buffer_ = new char[DEFAULT_BUFFER_SIZE];
+            this.resident_ = false;
+        }
+
+        // Constructs an entity working directly on the given character array.
+        public CurrentEntity(final char[] chars, final int offset, final int length, final String encoding, final String publicId,
+                    final String baseSystemId, final String literalSystemId, final String expandedSystemId) {
+            stream_ = null;
             this.encoding_ = encoding;
             this.publicId = publicId;
             this.baseSystemId = baseSystemId;
             this.literalSystemId = literalSystemId;
             this.expandedSystemId = expandedSystemId;
+
+            this.buffer_ = chars;
+            this.offset_ = offset;
+            this.base_ = -offset;
+            this.lineStart_ = 0;
+            this.length_ = offset + length;
+            this.endReached_ = true;
+            this.resident_ = true;
         }
 
         private char getCurrentChar() {
@@ -1631,12 +2491,154 @@ private char getCurrentChar() {
          * @return the current character and moves to next one.
          */
         private char getNextChar() {
-            characterOffset_++;
-            columnNumber_++;
             return buffer_[offset_++];
         }
 
+        /**
+         * Moves over the characters of the buffer up to the next given
+         * delimiter, '\r' or '\n'. The characters are the last ones before
+         * the (new) offset.
+         *
+         * @param d1 the delimiter
+         * @return the number of characters moved over
+         */
+        private int skipTo(final char d1) {
+            final char[] buffer = buffer_;
+            final int end = length_;
+            int i = offset_;
+            while (i < end) {
+                final char c = buffer[i];
+                if (c == d1 || c == '\n' || c == '\r') {
+                    break;
+                }
+                i++;
+            }
+
+            final int count = i - offset_;
+            offset_ = i;
+            return count;
+        }
+
+        /**
+         * Like {@link #skipTo(char)} for two delimiters.
+         *
+         * @param d1 a delimiter
+         * @param d2 a delimiter
+         * @return the number of characters moved over
+         */
+        private int skipTo(final char d1, final char d2) {
+            final char[] buffer = buffer_;
+            final int end = length_;
+            int i = offset_;
+            while (i < end) {
+                final char c = buffer[i];
+                if (c == d1 || c == d2 || c == '\n' || c == '\r') {
+                    break;
+                }
+                i++;
+            }
+
+            final int count = i - offset_;
+            offset_ = i;
+            return count;
+        }
+
+        /**
+         * Like {@link #skipTo(char)} for three delimiters.
+         *
+         * @param d1 a delimiter
+         * @param d2 a delimiter
+         * @param d3 a delimiter
+         * @return the number of characters moved over
+         */
+        private int skipTo(final char d1, final char d2, final char d3) {
+            final char[] buffer = buffer_;
+            final int end = length_;
+            int i = offset_;
+            while (i < end) {
+                final char c = buffer[i];
+                if (c == d1 || c == d2 || c == d3 || c == '\n' || c == '\r') {
+                    break;
+                }
+                i++;
+            }
+
+            final int count = i - offset_;
+            offset_ = i;
+            return count;
+        }
+
+        /**
+         * Like {@link #skipTo(char)} but the characters are appended
+         * to the given buffer.
+         */
+        private void appendTo(final XMLString xmlString, final char d1) {
+            append(xmlString, skipTo(d1));
+        }
+
+        /**
+         * Like {@link #skipTo(char, char)} but the characters are appended
+         * to the given buffer.
+         */
+        private void appendTo(final XMLString xmlString, final char d1, final char d2) {
+            append(xmlString, skipTo(d1, d2));
+        }
+
+        /**
+         * Like {@link #skipTo(char, char, char)} but the characters are appended
+         * to the given buffer.
+         */
+        private void appendTo(final XMLString xmlString, final char d1, final char d2, final char d3) {
+            append(xmlString, skipTo(d1, d2, d3));
+        }
+
+        /**
+         * Appends the last count characters before the offset to the given buffer.
+         */
+        private void append(final XMLString xmlString, final int count) {
+            if (count > 0) {
+                xmlString.append(buffer_, offset_ - count, count);
+            }
+        }
+
+        /**
+         * Suspends the current scanning step if the end of the fed content is
+         * reached but more is expected; the step is repeated with more content.
+         *
+         * @throws IOException if the step has to be suspended
+         */
+        private void suspendIfFeeding() throws IOException {
+            if (feeding_) {
+                throw SuspendException.INSTANCE;
+            }
+        }
+
+        /**
+         * Makes room for the given number of fed characters. The characters before
+         * the offset are scanned completely and dropped.
+         *
+         * @param length the number of characters to add
+         * @return the free part of the buffer
+         */
+        private CharBuffer feedBuffer(final int length) {
+            if (offset_ > 0) {
+                System.arraycopy(buffer_, offset_, buffer_, 0, length_ - offset_);
+                length_ -= offset_;
+                base_ += offset_;
+                offset_ = 0;
+            }
+            if (length_ + length > buffer_.length) {
+                final char[] array = new char[Math.max(length_ + length, buffer_.length * 2)];
+                System.arraycopy(buffer_, 0, array, 0, length_);
+                buffer_ = array;
+            }
+            return CharBuffer.wrap(buffer_, length_, buffer_.length - length_);
+        }
+
         private void closeQuietly() {
+            if (stream_ == null) {
+                return;
+            }
             try {
                 stream_.close();
             }
@@ -1664,6 +2666,11 @@ protected int load(final int loadOffset) throws IOException {
             if (DEBUG_BUFFER) {
                 debugBufferIfNeeded("(load: ");
             }
+            // everything is in the buffer already, nothing to load
+            if (resident_) {
+                suspendIfFeeding();
+                return -1;
+            }
             // resize buffer, if needed
             if (loadOffset == this.buffer_.length) {
                 final int adjust = this.buffer_.length / 4;
@@ -1671,6 +2678,10 @@ protected int load(final int loadOffset) throws IOException {
                 System.arraycopy(this.buffer_, 0, array, 0, this.length_);
                 this.buffer_ = array;
             }
+            // the new characters follow the previous ones, the characters
+            // before the load offset are kept (or moved there by the caller)
+            base_ += length_ - loadOffset;
+
             // read a block of characters
             final int count = stream_.read(buffer_, loadOffset, buffer_.length - loadOffset);
             if (count == -1) {
@@ -1704,8 +2715,6 @@ protected int read() throws IOException {
                 }
             }
             final char c = buffer_[offset_++];
-            characterOffset_++;
-            columnNumber_++;
 
             if (DEBUG_BUFFER) {
                 debugBufferIfNeeded(")read: ", " -> " + c);
@@ -1761,14 +2770,14 @@ private void debugBufferIfNeeded(final String prefix, final String suffix) {
             }
         }
 
-        private void setStream(final InputStreamReader inputStreamReader) {
-            stream_ = inputStreamReader;
+        private void setStream(final Reader reader) {
+            stream_ = reader;
             offset_ = 0;
             length_ = 0;
-            characterOffset_ = 0;
+            base_ = 0;
+            lineStart_ = 0;
             lineNumber_ = 1;
-            columnNumber_ = 1;
-            encoding_ = inputStreamReader.getEncoding();
+            encoding_ = getReaderEncoding(reader);
         }
 
         /**
@@ -1776,24 +2785,20 @@ private void setStream(final InputStreamReader inputStreamReader) {
          */
         private void rewind() {
             offset_--;
-            characterOffset_--;
-            columnNumber_--;
         }
 
         private void rewind(final int i) {
             offset_ -= i;
-            characterOffset_ -= i;
-            columnNumber_ -= i;
         }
 
         private void incLine() {
             lineNumber_++;
-            columnNumber_ = 1;
+            lineStart_ = base_ + offset_;
         }
 
         private void incLine(final int nbLines) {
             lineNumber_ += nbLines;
-            columnNumber_ = 1;
+            lineStart_ = base_ + offset_;
         }
 
         public int getLineNumber() {
@@ -1803,8 +2808,8 @@ public int getLineNumber() {
         private void resetBuffer(final XMLString xmlBuffer, final int lineNumber, final int columnNumber,
                 final int characterOffset) {
             lineNumber_ = lineNumber;
-            columnNumber_ = columnNumber;
-            this.characterOffset_ = characterOffset;
+            base_ = characterOffset;
+            lineStart_ = characterOffset - columnNumber + 1;
 
             // TODO RBRi
             this.buffer_ = xmlBuffer.getChars();
@@ -1813,17 +2818,17 @@ private void resetBuffer(final XMLString xmlBuffer, final int lineNumber, final
         }
 
         private int getColumnNumber() {
-            return columnNumber_;
+            return base_ + offset_ - lineStart_ + 1;
         }
 
         private void restorePosition(final int originalOffset, final int originalColumnNumber, final int originalCharacterOffset) {
             this.offset_ = originalOffset;
-            this.columnNumber_ = originalColumnNumber;
-            this.characterOffset_ = originalCharacterOffset;
+            this.base_ = originalCharacterOffset - originalOffset;
+            this.lineStart_ = originalCharacterOffset - originalColumnNumber + 1;
         }
 
         private int getCharacterOffset() {
-            return characterOffset_;
+            return base_ + offset_;
         }
     }
 
@@ -1857,6 +2862,7 @@ public boolean scan(final boolean complete) throws IOException {
                                 throw new EOFException();
                             }
                             if (c == '<') {
+                                endContent();
                                 setScannerState(STATE_MARKUP_BRACKET);
                                 next = true;
                             }
@@ -1870,6 +2876,7 @@ else if (c == '&') {
                             break;
                         }
                         case STATE_MARKUP_BRACKET: {
+                            waitFor(FEED_TAG_END, 0);
                             final int c = fCurrentEntity.read();
                             if (c == -1) {
                                 if (fReportErrors_) {
@@ -1904,6 +2911,7 @@ else if (skip("-!>", false)) {
                                     fDocumentHandler.comment(str, locationAugs());
                                 }
                                 else if (skip("--", false)) {
+                                    waitFor(FEED_COMMENT_END, 0);
                                     scanComment();
                                 }
                                 else if (skip("[CDATA[", false)) {
@@ -1930,39 +2938,52 @@ else if (c == '/') {
                                 fElementCount++;
                                 fSingleBoolean[0] = false;
 
-                                final String ename = scanStartElement(fSingleBoolean);
-                                final String enameLC = ename == null ? null : ename.toLowerCase(Locale.ROOT);
+                                // the content is scanned by the next step; a step waiting for
+                                // more fed content must not have reported anything yet
+                                fStartedElement = scanStartElement(fSingleBoolean);
+                                if (fStartedElement != null) {
+                                    setScannerState(STATE_ELEMENT_CONTENT);
+                                    break;
+                                }
+                            }
+                            setScannerState(STATE_CONTENT);
+                            break;
+                        }
+                        case STATE_ELEMENT_CONTENT: {
+                            final String ename = fStartedElement;
+                            final short code = fStartedElementCode;
 
-                                fBeginLineNumber = fCurrentEntity.getLineNumber();
-                                fBeginColumnNumber = fCurrentEntity.getColumnNumber();
-                                fBeginCharacterOffset = fCurrentEntity.getCharacterOffset();
+                            fBeginLineNumber = fCurrentEntity.getLineNumber();
+                            fBeginColumnNumber = fCurrentEntity.getColumnNumber();
+                            fBeginCharacterOffset = fCurrentEntity.getCharacterOffset();
 
-                                if ("script".equals(enameLC)) {
-                                    scanScriptContent();
-                                }
-                                else if (!fAllowSelfclosingTags_ && !fAllowSelfclosingIframe_ && "iframe".equals(enameLC)) {
-                                    scanUntilEndTag("iframe");
-                                }
-                                else if (!fParseNoScriptContent_ && "noscript".equals(enameLC)) {
-                                    scanUntilEndTag("noscript");
-                                }
-                                else if ("noframes".equals(enameLC)) {
-                                    scanUntilEndTag("noframes");
-                                }
-                                else if ("noembed".equals(enameLC)) {
-                                    scanUntilEndTag("noembed");
+                            if (code == HTMLElements.SCRIPT) {
+                                // the end tag is recognized by the character after the name
+                                waitFor(FEED_SCRIPT_END, 1);
+                                scanScriptContent();
+                            }
+                            else if (!fAllowSelfclosingTags_ && !fAllowSelfclosingIframe_ && code == HTMLElements.IFRAME) {
+                                scanUntilEndTag("iframe");
+                            }
+                            else if (!fParseNoScriptContent_ && code == HTMLElements.NOSCRIPT) {
+                                scanUntilEndTag("noscript");
+                            }
+                            else if (code == HTMLElements.NOFRAMES) {
+                                scanUntilEndTag("noframes");
+                            }
+                            else if (code == HTMLElements.NOEMBED) {
+                                scanUntilEndTag("noembed");
+                            }
+                            else if (htmlConfiguration_.getHtmlElements().getElement(code).isSpecial()
+                                        && (code != HTMLElements.TITLE || isEnded(ename))) {
+                                if (code == HTMLElements.PLAINTEXT) {
+                                    setScanner(new PlainTextScanner());
                                 }
-                                else if (ename != null && htmlConfiguration_.getHtmlElements().getElement(enameLC).isSpecial()
-                                        && (!"title".equals(enameLC) || isEnded(enameLC))) {
-                                    if ("plaintext".equals(enameLC)) {
-                                        setScanner(new PlainTextScanner());
-                                    }
-                                    else {
-                                        setScanner(fSpecialScanner.setElementName(ename));
-                                        setScannerState(STATE_CONTENT);
-                                    }
-                                    return true;
+                                else {
+                                    setScanner(fSpecialScanner.setElementName(ename));
+                                    setScannerState(STATE_CONTENT);
                                 }
+                                return true;
                             }
                             setScannerState(STATE_CONTENT);
                             break;
@@ -1980,7 +3001,7 @@ else if (ename != null && htmlConfiguration_.getHtmlElements().getElement(enameL
                             }
                             if (fInsertDoctype_ && fDocumentHandler != null) {
                                 String root = htmlConfiguration_.getHtmlElements().getElement(HTMLElements.HTML).name;
-                                root = modifyName(root, fNamesElems);
+                                root = foldName(root, fNamesElems);
                                 final String pubid = fDoctypePubid;
                                 final String sysid = fDoctypeSysid;
                                 fDocumentHandler.doctypeDecl(root, pubid, sysid, synthesizedAugs());
@@ -2014,8 +3035,9 @@ else if (ename != null && htmlConfiguration_.getHtmlElements().getElement(enameL
                     }
                     next = true;
                 }
+                checkParseTime();
             }
-            while (next || complete);
+            while ((next || complete) && !fStopRequested);
             return true;
         }
 
@@ -2033,8 +3055,10 @@ private void scanUntilEndTag(final String tagName) throws IOException {
 
             final String end = "/" + tagName;
             final int lengthToScan = tagName.length() + 2;
+            waitFor(new String[] {"<" + end}, 1);
 
             while (true) {
+                limitText(fScanUntilEndTag);
                 final int c = fCurrentEntity.read();
                 if (c == -1) {
                     break;
@@ -2043,7 +3067,7 @@ private void scanUntilEndTag(final String tagName) throws IOException {
                     final String next = nextContent(lengthToScan) + " ";
                     if (next.length() >= lengthToScan && end.equalsIgnoreCase(next.substring(0, end.length()))
                             && ('>' == next.charAt(lengthToScan - 1)
-                                    || Character.isWhitespace(next.charAt(lengthToScan - 1)))) {
+                                    || HTMLChar.isWhitespace(next.charAt(lengthToScan - 1)))) {
                         fCurrentEntity.rewind();
                         break;
                     }
@@ -2066,7 +3090,7 @@ private void scanUntilEndTag(final String tagName) throws IOException {
                     }
                 }
             }
-            if (fScanUntilEndTag.length() > 0 && fDocumentHandler != null) {
+            if (fScanUntilEndTag.length() > 0 && fDocumentHandler != null && !capText(fScanUntilEndTag)) {
                 fEndLineNumber = fCurrentEntity.getLineNumber();
                 fEndColumnNumber = fCurrentEntity.getColumnNumber();
                 fEndCharacterOffset = fCurrentEntity.getCharacterOffset();
@@ -2081,22 +3105,25 @@ private void scanScriptContent() throws IOException {
             boolean invalidComment = false;
 
             while (true) {
+                fCurrentEntity.appendTo(fScanScriptContent, '<', '-', '>');
+                // the end of a script exceeding the limit is not known, the comments are ignored
+                final boolean exceeded = limitText(fScanScriptContent);
                 final int c = fCurrentEntity.read();
                 if (c == -1) {
                     break;
                 }
-                else if (c == '-' && fScanScriptContent.endsWith("<!-")) {
+                else if (c == '-' && !exceeded && fScanScriptContent.endsWith("<!-")) {
                     waitForEndComment = endCommentAvailable();
                 }
-                else if (!waitForEndComment && c == '<') {
+                else if ((exceeded || !waitForEndComment) && c == '<') {
                     final String next = nextContent(8) + " ";
                     if (next.length() >= 8 && "/script".equalsIgnoreCase(next.substring(0, 7))
-                            && ('>' == next.charAt(7) || Character.isWhitespace(next.charAt(7)))) {
+                            && ('>' == next.charAt(7) || HTMLChar.isWhitespace(next.charAt(7)))) {
                         fCurrentEntity.rewind();
                         break;
                     }
                 }
-                else if (c == '>') {
+                else if (c == '>' && !exceeded) {
                     if (fScanScriptContent.endsWith("--")) {
                         waitForEndComment = false;
                     }
@@ -2137,7 +3164,8 @@ else if (c == '>') {
                 fScanScriptContent.trimToContent("<![CDATA[", "]]>");
             }
 
-            if (fScanScriptContent.length() > 0 && fDocumentHandler != null && fElementCount >= fElementDepth) {
+            if (fScanScriptContent.length() > 0 && fDocumentHandler != null && fElementCount >= fElementDepth
+                    && !capText(fScanScriptContent)) {
                 if (DEBUG_CALLBACKS) {
                     System.out.println("characters(" + fScanScriptContent + ")");
                 }
@@ -2166,10 +3194,11 @@ protected String nextContent(final int len) throws IOException {
             for (nbRead = 0; nbRead < len; ++nbRead) {
                 // read() should not clear the buffer
                 if (fCurrentEntity.offset_ == fCurrentEntity.length_) {
-                    if (fCurrentEntity.length_ == fCurrentEntity.buffer_.length) {
+                    if (!fCurrentEntity.resident_ && fCurrentEntity.length_ == fCurrentEntity.buffer_.length) {
                         fCurrentEntity.load(fCurrentEntity.buffer_.length);
                     }
                     else { // everything was already loaded
+                        fCurrentEntity.suspendIfFeeding();
                         break;
                     }
                 }
@@ -2198,18 +3227,11 @@ protected void scanCharacters() throws IOException {
                     }
                     break;
                 }
-                final int offset = fCurrentEntity.offset_ - newlines;
-                for (int i = offset; i < fCurrentEntity.offset_; i++) {
-                    fCurrentEntity.buffer_[i] = '\n';
-                }
-                while (fCurrentEntity.hasNext()) {
-                    final char c = fCurrentEntity.getNextChar();
-                    if (c == '<' || c == '&' || c == '\n' || c == '\r') {
-                        fCurrentEntity.rewind();
-                        break;
-                    }
-                }
-                if (fCurrentEntity.offset_ > offset && fDocumentHandler != null && fElementCount >= fElementDepth) {
+                // the newlines are normalized to \n, the buffer itself is never
+                // changed because it might be the array of a resident input
+                final int offset = fCurrentEntity.offset_;
+                fCurrentEntity.skipTo('<', '&');
+                if ((newlines > 0 || fCurrentEntity.offset_ > offset) && fDocumentHandler != null && fElementCount >= fElementDepth) {
                     if (DEBUG_CALLBACKS) {
                         final XMLString xmlString = new XMLString(fCurrentEntity.buffer_, offset,
                                 fCurrentEntity.offset_ - offset);
@@ -2218,21 +3240,30 @@ protected void scanCharacters() throws IOException {
                     fEndLineNumber = fCurrentEntity.getLineNumber();
                     fEndColumnNumber = fCurrentEntity.getColumnNumber();
                     fEndCharacterOffset = fCurrentEntity.getCharacterOffset();
+                    for (int i = 0; i < newlines; i++) {
+                        fStringBuffer.append('\n');
+                    }
                     fStringBuffer.append(fCurrentEntity.buffer_, offset, fCurrentEntity.offset_ - offset);
                 }
                 if (DEBUG_BUFFER) {
                     fCurrentEntity.debugBufferIfNeeded(")scanCharacters: ");
                 }
 
-                final boolean hasNext = fCurrentEntity.offset_ < fCurrentEntity.buffer_.length;
+                // a resident buffer might be shared, don't read beyond our content
+                final boolean hasNext = fCurrentEntity.offset_
+                        < (fCurrentEntity.resident_ ? fCurrentEntity.length_ : fCurrentEntity.buffer_.length);
                 final int next = hasNext ? fCurrentEntity.getCurrentChar() : -1;
 
+                if (next == -1 && fStringBuffer.length() < DEFAULT_BUFFER_SIZE) {
+                    // wait for the rest of a short text, a longer one is reported in parts
+                    fCurrentEntity.suspendIfFeeding();
+                }
                 if (next == '&' || next == '<' || next == -1) {
                     break;
                 }
             }
 
-            if (fStringBuffer.length() != 0) {
+            if (fStringBuffer.length() != 0 && !capContent(fStringBuffer)) {
                 fDocumentHandler.characters(fStringBuffer, locationAugs());
             }
         }
@@ -2243,23 +3274,26 @@ protected void scanCDATA() throws IOException {
                 fCurrentEntity.debugBufferIfNeeded("(scanCDATA: ");
             }
             fStringBuffer.clear();
-            if (fCDATASections_) {
-                if (fDocumentHandler != null && fElementCount >= fElementDepth) {
-                    fEndLineNumber = fCurrentEntity.getLineNumber();
-                    fEndColumnNumber = fCurrentEntity.getColumnNumber();
-                    fEndCharacterOffset = fCurrentEntity.getCharacterOffset();
+            if (!fCDATASections_) {
+                fStringBuffer.append("[CDATA[");
+            }
+            // the start is reported together with the content, a step waiting
+            // for more fed content must not have reported anything yet
+            final int startLineNumber = fCurrentEntity.getLineNumber();
+            final int startColumnNumber = fCurrentEntity.getColumnNumber();
+            final int startCharacterOffset = fCurrentEntity.getCharacterOffset();
+            final boolean eof = scanCDataContent(fStringBuffer);
+
+            if (fDocumentHandler != null && fElementCount >= fElementDepth && !capText(fStringBuffer)) {
+                if (fCDATASections_) {
+                    fEndLineNumber = startLineNumber;
+                    fEndColumnNumber = startColumnNumber;
+                    fEndCharacterOffset = startCharacterOffset;
                     if (DEBUG_CALLBACKS) {
                         System.out.println("startCDATA()");
                     }
                     fDocumentHandler.startCDATA(locationAugs());
                 }
-            }
-            else {
-                fStringBuffer.append("[CDATA[");
-            }
-            final boolean eof = scanCDataContent(fStringBuffer);
-
-            if (fDocumentHandler != null && fElementCount >= fElementDepth) {
                 fEndLineNumber = fCurrentEntity.getLineNumber();
                 fEndColumnNumber = fCurrentEntity.getColumnNumber();
                 fEndCharacterOffset = fCurrentEntity.getCharacterOffset();
@@ -2298,43 +3332,14 @@ protected void scanComment() throws IOException {
             fEndCharacterOffset = fCurrentEntity.getCharacterOffset();
             fScanComment.clear();
             boolean eof = scanCommentContent(fScanComment);
-            // no --> found, comment with end only with >
-            if (eof) {
-                fCurrentEntity.resetBuffer(fScanComment, fEndLineNumber, fEndColumnNumber, fEndCharacterOffset);
-                fScanComment.clear(); // take a new one to avoid interactions
-                while (true) {
-                    final int c = fCurrentEntity.read();
-                    if (c == -1) {
-                        if (fReportErrors_) {
-                            fErrorReporter.reportError("HTML1007", null);
-                        }
-                        eof = true;
-                        break;
-                    }
-                    else if (c == '\n' || c == '\r') {
-                        fCurrentEntity.rewind();
-                        final int newlines = skipNewlines();
-                        for (int i = 0; i < newlines; i++) {
-                            fScanComment.append('\n');
-                        }
-                        continue;
-                    }
-                    else if (c != '>') {
-                        try {
-                            fScanComment.appendCodePoint(c);
-                        }
-                        catch (final IllegalArgumentException e) {
-                            if (fReportErrors_) {
-                                fErrorReporter.reportError("HTML1005", new Object[] {"&#" + c + ';'});
-                            }
-                        }
-                        continue;
-                    }
-                    eof = false;
-                    break;
-                }
-            }
-            if (fDocumentHandler != null && fElementCount >= fElementDepth) {
+            // no --> found, the comment ends with the first >
+            if (eof && fScanCommentRest.length() > 0) {
+                fCurrentEntity.resetBuffer(fScanCommentRest, fCommentRestLineNumber,
+                        fCommentRestColumnNumber, fCommentRestCharacterOffset);
+                fCurrentEntity.read(); // the >
+                eof = false;
+            }
+            if (fDocumentHandler != null && fElementCount >= fElementDepth && !capText(fScanComment)) {
                 if (DEBUG_CALLBACKS) {
                     System.out.println("comment(" + fScanComment + ")");
                 }
@@ -2353,8 +3358,19 @@ else if (c != '>') {
 
         // Scans markup content.
         protected boolean scanCommentContent(final XMLString buffer) throws IOException {
+            // the content from the first '>' on is kept apart, the rest of the document
+            // is scanned again from it if the comment has no end
+            fScanCommentRest.clear();
+            XMLString text = buffer;
             int c;
             OUTER: while (true) {
+                limitText(buffer);
+                if (text == buffer) {
+                    fCurrentEntity.appendTo(text, '-', '>');
+                }
+                else {
+                    fCurrentEntity.appendTo(text, '-');
+                }
                 c = fCurrentEntity.read();
                 if (c == -1) {
                     if (fReportErrors_) {
@@ -2380,7 +3396,7 @@ protected boolean scanCommentContent(final XMLString buffer) throws IOException
                         break OUTER;
                     }
                     if (count < 2) {
-                        buffer.append('-');
+                        text.append('-');
                         fCurrentEntity.rewind();
                         continue;
                     }
@@ -2396,28 +3412,28 @@ protected boolean scanCommentContent(final XMLString buffer) throws IOException
 
                         if (c == '>') {
                             for (int i = 0; i < count - 2; i++) {
-                                buffer.append('-');
+                                text.append('-');
                             }
                             break;
                         }
 
                         for (int i = 0; i < count; i++) {
-                            buffer.append('-');
+                            text.append('-');
                         }
-                        buffer.append('!');
+                        text.append('!');
                         fCurrentEntity.rewind();
                         continue;
                     }
 
                     if (c == '>') {
                         for (int i = 0; i < count - 2; i++) {
-                            buffer.append('-');
+                            text.append('-');
                         }
                         break;
                     }
 
                     for (int i = 0; i < count; i++) {
-                        buffer.append('-');
+                        text.append('-');
                     }
                     fCurrentEntity.rewind();
                     continue;
@@ -2426,12 +3442,18 @@ else if (c == '\n' || c == '\r') {
                     fCurrentEntity.rewind();
                     final int newlines = skipNewlines();
                     for (int i = 0; i < newlines; i++) {
-                        buffer.append('\n');
+                        text.append('\n');
                     }
                     continue;
                 }
+                else if (c == '>' && text == buffer) {
+                    fCommentRestLineNumber = fCurrentEntity.getLineNumber();
+                    fCommentRestColumnNumber = fCurrentEntity.getColumnNumber() - 1;
+                    fCommentRestCharacterOffset = fCurrentEntity.getCharacterOffset() - 1;
+                    text = fScanCommentRest;
+                }
                 try {
-                    buffer.appendCodePoint(c);
+                    text.appendCodePoint(c);
                 }
                 catch (final IllegalArgumentException e) {
                     if (fReportErrors_) {
@@ -2440,13 +3462,25 @@ else if (c == '\n' || c == '\r') {
                 }
             }
 
-            return c == -1;
+            if (c == -1) {
+                return true;
+            }
+            if (text != buffer) {
+                // the comment ends, the content from its first '>' on is part of it
+                // (one char beyond the maximum text length shows the exceeded limit)
+                limitText(buffer);
+                final int count = Math.min(text.length() - 1, fMaxTextLength - buffer.length()) + 1;
+                buffer.append(text.getChars(), 0, count);
+                text.clear();
+            }
+            return false;
         }
 
         // Scans cdata content.
         protected boolean scanCDataContent(final XMLString xmlString) throws IOException {
             int c;
             OUTER: while (true) {
+                limitText(xmlString);
                 c = fCurrentEntity.read();
                 if (c == -1) {
                     if (fReportErrors_) {
@@ -2541,7 +3575,6 @@ protected void scanPI() throws IOException {
                             }
                             if (c != '\n') {
                                 fCurrentEntity.offset_--;
-                                fCurrentEntity.characterOffset_--;
                             }
                         }
                         fCurrentEntity.incLine();
@@ -2577,7 +3610,6 @@ else if (c == '\r' || c == '\n') {
                             }
                             if (c != '\n') {
                                 fCurrentEntity.offset_--;
-                                fCurrentEntity.characterOffset_--;
                             }
                         }
                         fCurrentEntity.incLine();
@@ -2669,9 +3701,13 @@ else if (c == '>') {
          */
         protected String scanStartElement(final boolean[] empty) throws IOException {
             String ename = scanName(true);
+            if (fSkipName) {
+                empty[0] = skipMarkup(false);
+                return null;
+            }
             final int length = ename != null ? ename.length() : 0;
             final int c = length > 0 ? ename.charAt(0) : -1;
-            if (length == 0 || !((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z'))) {
+            if (length == 0 || !HTMLChar.isNameStart(c)) {
                 if (fReportErrors_) {
                     fErrorReporter.reportError("HTML1009", null);
                 }
@@ -2684,19 +3720,25 @@ protected String scanStartElement(final boolean[] empty) throws IOException {
                 }
                 return null;
             }
-            ename = modifyName(ename, fNamesElems);
+            ename = foldName(ename, fNamesElems);
+            final short code = elementCode(ename);
+            fStartedElementCode = code;
             attributes_.removeAllAttributes();
+            fAttributesExceeded = false;
             final int beginLineNumber = fBeginLineNumber;
             final int beginColumnNumber = fBeginColumnNumber;
             final int beginCharacterOffset = fBeginCharacterOffset;
             while (scanAttribute(attributes_, empty)) {
                 // do nothing
             }
+            if (fAttributesExceeded && limitExceeded("HTML1018", new Object[] {ename, String.valueOf(fMaxAttributes)})) {
+                attributes_.removeAllAttributes();
+            }
             fBeginLineNumber = beginLineNumber;
             fBeginColumnNumber = beginColumnNumber;
             fBeginCharacterOffset = beginCharacterOffset;
-            if (fByteStream != null && fElementDepth == -1) {
-                if ("META".equalsIgnoreCase(ename) && !fIgnoreSpecifiedCharset_) {
+            if ((fByteStream != null || fByteBuffer != null) && fElementDepth == -1) {
+                if (code == HTMLElements.META && !fIgnoreSpecifiedCharset_) {
                     if (DEBUG_CHARSET) {
                         System.out.println("+++ <META>");
                     }
@@ -2724,29 +3766,28 @@ protected String scanStartElement(final boolean[] empty) throws IOException {
                         }
                     }
                 }
-                else if ("BODY".equalsIgnoreCase(ename)) {
-                    fByteStream.clear();
-                    fByteStream = null;
+                else if (code == HTMLElements.BODY) {
+                    clearPlayback();
                 }
                 else {
-                    final HTMLElements.Element element = htmlConfiguration_.getHtmlElements().getElement(ename);
+                    final HTMLElements.Element element = htmlConfiguration_.getHtmlElements().getElement(code);
                     if (element.parent != null && element.parent.length > 0) {
                         if (element.parent[0].code == HTMLElements.BODY) {
-                            fByteStream.clear();
-                            fByteStream = null;
+                            clearPlayback();
                         }
                     }
                 }
             }
             if (fDocumentHandler != null && fElementCount >= fElementDepth) {
                 qName_.setValues(null, ename, ename, null);
+                qName_.setElementCode(code);
                 if (DEBUG_CALLBACKS) {
                     System.out.println("startElement(" + qName_ + ',' + attributes_ + ")");
                 }
                 fEndLineNumber = fCurrentEntity.getLineNumber();
                 fEndColumnNumber = fCurrentEntity.getColumnNumber();
                 fEndCharacterOffset = fCurrentEntity.getCharacterOffset();
-                if (empty[0] && !"BR".equalsIgnoreCase(ename)) {
+                if (empty[0] && code != HTMLElements.BR) {
                     fDocumentHandler.emptyElement(qName_, attributes_, locationAugs());
                 }
                 else {
@@ -2762,7 +3803,7 @@ else if ("BODY".equalsIgnoreCase(ename)) {
         private String removeSpaces(final String content) {
             StringBuilder sb = null;
             for (int i = content.length() - 1; i >= 0; --i) {
-                if (Character.isWhitespace(content.charAt(i))) {
+                if (HTMLChar.isWhitespace(content.charAt(i))) {
                     if (sb == null) {
                         sb = new StringBuilder(content);
                     }
@@ -2780,7 +3821,7 @@ private String removeSpaces(final String content) {
          * @return <code>true</code> when the encoding has been changed
          */
         private boolean changeEncoding(String charset) {
-            if (charset == null || fByteStream == null) {
+            if (charset == null || (fByteStream == null && fByteBuffer == null)) {
                 return false;
             }
             charset = charset.trim();
@@ -2807,8 +3848,14 @@ private boolean changeEncoding(String charset) {
                     // change the charset
                     else {
                         fJavaEncoding = javaEncoding;
-                        fCurrentEntity.setStream(new InputStreamReader(fByteStream, javaEncoding));
-                        fByteStream.playback();
+                        if (fByteBuffer != null) {
+                            fCurrentEntity.setStream(
+                                    createReader(new ByteBufferInputStream(fByteBuffer.duplicate()), javaEncoding));
+                        }
+                        else {
+                            fCurrentEntity.setStream(createReader(fByteStream, javaEncoding));
+                            fByteStream.playback();
+                        }
                         fElementDepth = fElementCount;
                         fElementCount = 0;
                         encodingChanged = true;
@@ -2822,8 +3869,7 @@ private boolean changeEncoding(String charset) {
                 // NOTE: If the encoding change doesn't work,
                 // then there's no point in continuing to
                 // buffer the input stream.
-                fByteStream.clear();
-                fByteStream = null;
+                clearPlayback();
             }
             return encodingChanged;
         }
@@ -2887,6 +3933,7 @@ else if (c == '<') {
             }
             fCurrentEntity.rewind();
             String aname = scanName(false);
+            boolean skipName = fSkipName;
             if (aname == null) {
                 if (fReportErrors_) {
                     fErrorReporter.reportError("HTML1011", null);
@@ -2900,11 +3947,12 @@ else if (c == '<') {
                     return false;
                 }
                 aname = '=' + scanName(false);
+                skipName = fSkipName;
             }
             if (!skippedSpaces && fReportErrors_) {
                 fErrorReporter.reportError("HTML1013", new Object[] {aname});
             }
-            aname = modifyName(aname, fNamesAttrs);
+            aname = foldName(aname, fNamesAttrs);
             skipSpaces();
             c = fCurrentEntity.read();
             if (c == -1) {
@@ -2914,9 +3962,11 @@ else if (c == '<') {
                 throw new EOFException();
             }
             if (c == '/' || c == '>') {
-                qName_.setValues(null, aname, aname, null);
-                attributes.addAttribute(qName_, "CDATA", "");
-                attributes.setSpecified(attributes.getLength() - 1, true);
+                if (acceptAttribute(attributes, skipName)) {
+                    qName_.setValues(null, aname, aname, null);
+                    attributes.addAttribute(qName_, "CDATA", "");
+                    attributes.setSpecified(attributes.getLength() - 1, true);
+                }
                 if (c == '/') {
                     fCurrentEntity.rewind();
                     empty[0] = skipMarkup(false);
@@ -2934,12 +3984,15 @@ else if (c == '<') {
                 }
                 // Xiaowei/Ac: Fix for <a href=/cgi-bin/myscript>...</a>
                 if (c == '>') {
-                    qName_.setValues(null, aname, aname, null);
-                    attributes.addAttribute(qName_, "CDATA", "");
-                    attributes.setSpecified(attributes.getLength() - 1, true);
+                    if (acceptAttribute(attributes, skipName)) {
+                        qName_.setValues(null, aname, aname, null);
+                        attributes.addAttribute(qName_, "CDATA", "");
+                        attributes.setSpecified(attributes.getLength() - 1, true);
+                    }
                     return false;
                 }
                 fStringBuffer.clear();
+                boolean valueExceeded = false;
                 if (c != '\'' && c != '"') {
                     fCurrentEntity.rewind();
                     while (true) {
@@ -2951,7 +4004,7 @@ else if (c == '<') {
                             throw new EOFException();
                         }
                         // Xiaowei/Ac: Fix for <a href=/broken/>...</a>
-                        if (Character.isWhitespace((char) c) || c == '>') {
+                        if (HTMLChar.isWhitespace(c) || c == '>') {
                             // fCharOffset--;
                             fCurrentEntity.rewind();
                             break;
@@ -2970,16 +4023,19 @@ else if (c == '<') {
                                 }
                             }
                         }
+                        valueExceeded = capAttributeValue() || valueExceeded;
                     }
-                    qName_.setValues(null, aname, aname, null);
-                    final String avalue = fStringBuffer.toString();
-                    attributes.addAttribute(qName_, "CDATA", avalue);
+                    if (acceptAttributeValue(attributes, aname, skipName, valueExceeded)) {
+                        qName_.setValues(null, aname, aname, null);
+                        attributes.addAttribute(qName_, "CDATA", fStringBuffer);
 
-                    final int lastattr = attributes.getLength() - 1;
-                    attributes.setSpecified(lastattr, true);
+                        final int lastattr = attributes.getLength() - 1;
+                        attributes.setSpecified(lastattr, true);
+                    }
                     return true;
                 }
                 final char quote = (char) c;
+                waitFor(quote == '"' ? FEED_DOUBLE_QUOTE : FEED_SINGLE_QUOTE, 0);
                 boolean isStart = true;
                 boolean prevSpace = false;
                 do {
@@ -3046,30 +4102,85 @@ else if (c != quote) {
                     // moved into IFs to safe on conditions
                     // prevSpace = c == ' ' || c == '\t' || c == '\r' || c == '\n';
                     isStart = isStart && prevSpace;
+                    valueExceeded = capAttributeValue() || valueExceeded;
                 }
                 while (c != quote);
+                waitFor(FEED_TAG_END, 0);
 
                 if (fNormalizeAttributes_ && fStringBuffer.length() > 0) {
                     // trailing whitespace already normalized to single space
                     fStringBuffer.trimTrailing();
                 }
 
-                qName_.setValues(null, aname, aname, null);
-                final String avalue = fStringBuffer.toString();
-                attributes.addAttribute(qName_, "CDATA", avalue);
+                if (acceptAttributeValue(attributes, aname, skipName, valueExceeded)) {
+                    qName_.setValues(null, aname, aname, null);
+                    attributes.addAttribute(qName_, "CDATA", fStringBuffer);
 
-                final int lastattr = attributes.getLength() - 1;
-                attributes.setSpecified(lastattr, true);
+                    final int lastattr = attributes.getLength() - 1;
+                    attributes.setSpecified(lastattr, true);
+                }
             }
             else {
-                qName_.setValues(null, aname, aname, null);
-                attributes.addAttribute(qName_, "CDATA", "");
-                attributes.setSpecified(attributes.getLength() - 1, true);
+                if (acceptAttribute(attributes, skipName)) {
+                    qName_.setValues(null, aname, aname, null);
+                    attributes.addAttribute(qName_, "CDATA", "");
+                    attributes.setSpecified(attributes.getLength() - 1, true);
+                }
                 fCurrentEntity.rewind();
             }
             return true;
         }
 
+        /**
+         * Checks the limits for a new attribute; the attributes beyond the
+         * maximum number are dropped.
+         *
+         * @param attributes the attributes scanned so far
+         * @param skipName whether the name of the attribute is too long and has to be skipped
+         * @return true if the attribute is added
+         */
+        private boolean acceptAttribute(final XMLAttributesImpl attributes, final boolean skipName) {
+            if (skipName) {
+                return false;
+            }
+            if (attributes.getLength() >= fMaxAttributes) {
+                fAttributesExceeded = true;
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Checks the limits for a new attribute with the value in the string buffer.
+         *
+         * @param attributes the attributes scanned so far
+         * @param aname the name of the attribute
+         * @param skipName whether the name of the attribute is too long and has to be skipped
+         * @param valueExceeded whether the value was cut at the maximum length
+         * @return true if the attribute is added
+         */
+        private boolean acceptAttributeValue(final XMLAttributesImpl attributes, final String aname,
+                final boolean skipName, final boolean valueExceeded) {
+            if (valueExceeded && limitExceeded("HTML1019", new Object[] {aname, String.valueOf(fMaxAttributeValueLength)})) {
+                return false;
+            }
+            return acceptAttribute(attributes, skipName);
+        }
+
+        /**
+         * Cuts the attribute value in the string buffer at the maximum length.
+         *
+         * @return true if the value was too long
+         */
+        private boolean capAttributeValue() {
+            final int length = fStringBuffer.length();
+            if (length <= fMaxAttributeValueLength) {
+                return false;
+            }
+            fStringBuffer.shortenBy(length - fMaxAttributeValueLength);
+            return true;
+        }
+
         // Scans an end element.
         protected void scanEndElement() throws IOException {
             String ename = scanName(true);
@@ -3077,10 +4188,11 @@ protected void scanEndElement() throws IOException {
                 fErrorReporter.reportError("HTML1012", null);
             }
             skipMarkup(false);
-            if (ename != null) {
-                ename = modifyName(ename, fNamesElems);
+            if (ename != null && !fSkipName) {
+                ename = foldName(ename, fNamesElems);
                 if (fDocumentHandler != null && fElementCount >= fElementDepth) {
                     qName_.setValues(null, ename, ename, null);
+                    qName_.setElementCode(elementCode(ename));
                     if (DEBUG_CALLBACKS) {
                         System.out.println("endElement(" + qName_ + ")");
                     }
@@ -3095,10 +4207,17 @@ protected void scanEndElement() throws IOException {
         /**
          * Returns true if the given element has an end-tag.
          */
-        private boolean isEnded(final String ename) {
+        private boolean isEnded(final String ename) throws IOException {
             final String content = new String(fCurrentEntity.buffer_, fCurrentEntity.offset_,
                     fCurrentEntity.length_ - fCurrentEntity.offset_);
-            return content.toLowerCase(Locale.ROOT).contains("</" + ename.toLowerCase(Locale.ROOT) + ">");
+            if (content.toLowerCase(Locale.ROOT).contains("</" + ename.toLowerCase(Locale.ROOT) + ">")) {
+                return true;
+            }
+            // look at a buffer full of fed content at least, like for a stream
+            if (content.length() < DEFAULT_BUFFER_SIZE) {
+                fCurrentEntity.suspendIfFeeding();
+            }
+            return false;
         }
     }
 
@@ -3174,6 +4293,7 @@ public boolean scan(final boolean complete) throws IOException {
                                 fCurrentEntity.rewind();
                                 charBuffer_.clear();
                             }
+                            waitFor(FEED_MARKUP_START, 0);
                             scanCharacters(charBuffer_, -1);
                             break;
                         }
@@ -3185,9 +4305,10 @@ public boolean scan(final boolean complete) throws IOException {
                                 if (ename != null) {
                                     if (ename.equalsIgnoreCase(fElementName)) {
                                         if (fCurrentEntity.read() == '>') {
-                                            ename = modifyName(ename, fNamesElems);
+                                            ename = foldName(ename, fNamesElems);
                                             if (fDocumentHandler != null && fElementCount >= fElementDepth) {
                                                 fQName_.setValues(null, ename, ename, null);
+                                                fQName_.setElementCode(elementCode(ename));
                                                 if (DEBUG_CALLBACKS) {
                                                     System.out.println("endElement(" + fQName_ + ")");
                                                 }
@@ -3196,6 +4317,7 @@ public boolean scan(final boolean complete) throws IOException {
                                                 fEndCharacterOffset = fCurrentEntity.getCharacterOffset();
                                                 fDocumentHandler.endElement(fQName_, locationAugs());
                                             }
+                                            endContent();
                                             setScanner(fContentScanner);
                                             setScannerState(STATE_CONTENT);
                                             return true;
@@ -3237,8 +4359,9 @@ public boolean scan(final boolean complete) throws IOException {
                     }
                     return true;
                 }
+                checkParseTime();
             }
-            while (next || complete);
+            while ((next || complete) && !fStopRequested);
             return true;
         }
 
@@ -3249,6 +4372,8 @@ protected void scanCharacters(final XMLString buffer, final int delimiter) throw
             }
 
             while (true) {
+                fCurrentEntity.appendTo(buffer, '<', '&');
+                limitText(buffer);
                 final int c = fCurrentEntity.read();
 
                 if (c == -1 || (c == '<' || c == '&')) {
@@ -3286,7 +4411,7 @@ else if (c == '\r' || c == '\n') {
                 }
             }
 
-            if (buffer.length() > 0 && fDocumentHandler != null && fElementCount >= fElementDepth) {
+            if (buffer.length() > 0 && fDocumentHandler != null && fElementCount >= fElementDepth && !capContent(buffer)) {
                 if (DEBUG_CALLBACKS) {
                     System.out.println("characters(" + buffer + ")");
                 }
@@ -3311,6 +4436,7 @@ public class PlainTextScanner implements Scanner {
 
         @Override
         public boolean scan(final boolean complete) throws IOException {
+            xmlString_.clear();
             scanCharacters(xmlString_);
             return false;
         }
@@ -3335,6 +4461,7 @@ protected void scanCharacters(final XMLString buffer) throws IOException {
                 if (c == '\n') {
                     fCurrentEntity.incLine();
                 }
+                limitText(buffer);
             }
 
             if (buffer.length() > 0 && fDocumentHandler != null && fElementCount >= fElementDepth) {
@@ -3344,7 +4471,9 @@ protected void scanCharacters(final XMLString buffer) throws IOException {
                 fEndLineNumber = fCurrentEntity.getLineNumber();
                 fEndColumnNumber = fCurrentEntity.getColumnNumber();
                 fEndCharacterOffset = fCurrentEntity.getCharacterOffset();
-                fDocumentHandler.characters(buffer, locationAugs());
+                if (!capText(buffer)) {
+                    fDocumentHandler.characters(buffer, locationAugs());
+                }
                 fDocumentHandler.endDocument(locationAugs());
             }
             if (DEBUG_BUFFER) {
@@ -3353,6 +4482,98 @@ protected void scanCharacters(final XMLString buffer) throws IOException {
         }
     }
 
+    /**
+     * Signals that the fed content ends before the current scanning step is
+     * complete. There is only one instance without a stack trace, this is
+     * not an error.
+     */
+    private static final class SuspendException extends IOException {
+
+        /** The instance. */
+        static final SuspendException INSTANCE = new SuspendException();
+
+        // Constructor.
+        private SuspendException() {
+            super("more content needed");
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    /**
+     * Passes the errors to the error reporter of the configuration. If a scanning
+     * step is repeated after it was suspended, the errors reported by the
+     * suspended attempt are skipped; the step reports the same errors again
+     * because it scans the same content.
+     */
+    private static final class FeedErrorReporter implements HTMLErrorReporter {
+
+        /** The error reporter of the configuration. */
+        private final HTMLErrorReporter reporter_;
+
+        /** The number of errors of the current step passed on. */
+        private int reported_;
+
+        /** The number of errors still to skip in the current attempt. */
+        private int skip_;
+
+        /** The last attempt was suspended, the next one repeats the step. */
+        private boolean suspended_;
+
+        // Constructor.
+        FeedErrorReporter(final HTMLErrorReporter reporter) {
+            reporter_ = reporter;
+        }
+
+        // Called before every attempt to scan a step.
+        void startAttempt() {
+            if (suspended_) {
+                skip_ = reported_;
+                suspended_ = false;
+            }
+            else {
+                reported_ = 0;
+                skip_ = 0;
+            }
+        }
+
+        // Called if an attempt is suspended.
+        void suspended() {
+            suspended_ = true;
+        }
+
+        private boolean skip() {
+            if (skip_ > 0) {
+                skip_--;
+                return true;
+            }
+            reported_++;
+            return false;
+        }
+
+        @Override
+        public String formatMessage(final String key, final Object[] args) {
+            return reporter_.formatMessage(key, args);
+        }
+
+        @Override
+        public void reportWarning(final String key, final Object[] args) {
+            if (!skip()) {
+                reporter_.reportWarning(key, args);
+            }
+        }
+
+        @Override
+        public void reportError(final String key, final Object[] args) {
+            if (!skip()) {
+                reporter_.reportError(key, args);
+            }
+        }
+    }
+
     /**
      * Location infoset item.
      *
@@ -16,6 +16,8 @@
 package org.htmlunit.cyberneko;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
@@ -35,6 +37,7 @@
 import org.htmlunit.cyberneko.xerces.xni.parser.XMLConfigurationException;
 import org.htmlunit.cyberneko.xerces.xni.parser.XMLDocumentFilter;
 import org.htmlunit.cyberneko.xerces.xni.parser.XMLDocumentSource;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLParseException;
 
 /**
  * Balances tags in an HTML document. This component receives document events
@@ -60,6 +63,8 @@
  * <li>http://cyberneko.org/html/properties/names/attrs
  * <li>http://cyberneko.org/html/properties/error-reporter
  * <li>http://cyberneko.org/html/properties/balance-tags/current-stack
+ * <li>http://cyberneko.org/html/properties/limits/max-element-depth
+ * <li>http://cyberneko.org/html/properties/limits/policy
  * </ul>
  *
  * @see HTMLElements
@@ -127,12 +132,20 @@
      */
     public static final String FRAGMENT_CONTEXT_STACK = "http://cyberneko.org/html/properties/balance-tags/fragment-context-stack";
 
+    /**
+     * The maximum depth of the element tree (Integer, not limited if null or 0); the
+     * elements exceeding it are ignored, their content too if the limit policy is skip
+     * (see {@link HTMLScanner#LIMIT_POLICY}).
+     */
+    public static final String MAX_ELEMENT_DEPTH = "http://cyberneko.org/html/properties/limits/max-element-depth";
+
     /** Recognized properties. */
     private static final String[] RECOGNIZED_PROPERTIES = {
         NAMES_ELEMS,
         NAMES_ATTRS,
         ERROR_REPORTER,
         FRAGMENT_CONTEXT_STACK,
+        MAX_ELEMENT_DEPTH,
     };
 
     /** Recognized properties defaults. */
@@ -141,6 +154,7 @@
         null,
         null,
         null,
+        null,
     };
 
     /** Don't modify HTML names. */
@@ -189,6 +203,12 @@
     /** Error reporter. */
     protected HTMLErrorReporter fErrorReporter;
 
+    /** The maximum element depth, {@link Integer#MAX_VALUE} if not limited. */
+    protected int fMaxElementDepth;
+
+    /** What to do if the element depth is exceeded. */
+    protected short fLimitPolicy;
+
     // connections
 
     /** The document source. */
@@ -265,6 +285,13 @@
     private final List<ElementEntry> endElementsBuffer_ = new ArrayList<>();
     private final List<String> discardedStartElements = new ArrayList<>();
 
+    // the locator of the document for the limit exceptions
+    private XMLLocator locator_;
+
+    // the numbers of the elements ignored because of the depth by element code
+    private int[] ignoredByCode_;
+    private int ignoredCount_;
+
     private final HTMLConfiguration htmlConfiguration_;
 
     HTMLTagBalancer(final HTMLConfiguration htmlConfiguration) {
@@ -324,6 +351,8 @@ public void reset(final XMLComponentManager manager)
         // get properties
         fNamesElems = getNamesValue(String.valueOf(manager.getProperty(NAMES_ELEMS)));
         fErrorReporter = (HTMLErrorReporter) manager.getProperty(ERROR_REPORTER);
+        fMaxElementDepth = HTMLScanner.getLimitValue(manager.getProperty(MAX_ELEMENT_DEPTH));
+        fLimitPolicy = HTMLScanner.getLimitPolicy(String.valueOf(manager.getProperty(HTMLScanner.LIMIT_POLICY)));
 
         fragmentContextStack_ = (QName[]) manager.getProperty(FRAGMENT_CONTEXT_STACK);
         fSeenAnything = false;
@@ -398,12 +427,14 @@ public void startDocument(final XMLLocator locator, final String encoding, final
         throws XNIException {
 
         // reset state
-        fElementStack.top = 0;
+        fElementStack.popAll();
+        locator_ = locator;
+        clearIgnored();
         if (fragmentContextStack_ != null) {
             fragmentContextStackSize_ = fragmentContextStack_.length;
             for (final QName name : fragmentContextStack_) {
                 final Element elt = htmlConfiguration_.getHtmlElements().getElement(name.getLocalpart());
-                fElementStack.push(new Info(elt, name));
+                fElementStack.push(elt, name, null);
             }
 
         }
@@ -486,7 +517,7 @@ public void endDocument(final Augmentations augs) throws XNIException {
                 }
                 if (fDocumentHandler != null) {
                     addBodyIfNeeded(info.element.code);
-                    callEndElement(info.qname, synthesizedAugs());
+                    callEndElement(info, synthesizedAugs());
                 }
             }
         }
@@ -520,6 +551,9 @@ private void consumeBufferedEndElements() {
     @Override
     public void comment(final XMLString text, final Augmentations augs) throws XNIException {
         fSeenAnything = true;
+        if (isSkipping()) {
+            return;
+        }
         consumeEarlyTextIfNeeded();
         if (fDocumentHandler != null) {
             fDocumentHandler.comment(text, augs);
@@ -539,6 +573,9 @@ private void consumeEarlyTextIfNeeded() {
     @Override
     public void processingInstruction(final String target, final XMLString data, final Augmentations augs) throws XNIException {
         fSeenAnything = true;
+        if (isSkipping()) {
+            return;
+        }
         consumeEarlyTextIfNeeded();
         if (fDocumentHandler != null) {
             fDocumentHandler.processingInstruction(target, data, augs);
@@ -563,6 +600,18 @@ public void startElement(final QName elem, XMLAttributes attrs, final Augmentati
         // get element information
         final HTMLElements.Element element = getElement(elem);
         final short elementCode = element.code;
+        if (elem.getElementCode() == -1) {
+            // synthesized elements have no code from the scanner
+            elem.setElementCode(elementCode);
+        }
+
+        // the content of an element exceeding the maximum depth is skipped
+        if (isSkipping()) {
+            if (!element.isEmpty()) {
+                ignoreElement(elem, element);
+            }
+            return;
+        }
 
         if (elementCode == HTMLElements.TEMPLATE) {
             fTemplateFragment = true;
@@ -657,25 +706,13 @@ else if (elementCode == HTMLElements.FORM) {
             // check if inside a table
             //    forms are only valid inside td/th/caption
             //    otherwise close the form
-            for (int i = fElementStack.top - 1; i >= 0; i--) {
-                final Info info = fElementStack.data[i];
-                if (info.element.code == HTMLElements.TD
-                        || info.element.code == HTMLElements.TH
-                        || info.element.code == HTMLElements.CAPTION) {
-                    break;
-                }
-                if (info.element.code == HTMLElements.TR
-                        || info.element.code == HTMLElements.THEAD
-                        || info.element.code == HTMLElements.TBODY
-                        || info.element.code == HTMLElements.TFOOT
-                        || info.element.code == HTMLElements.TABLE) {
-                    if (fDocumentHandler != null) {
-                        callStartElement(elem, attrs, augs);
-                        callEndElement(createQName("form"), synthesizedAugs());
-                    }
-                    fOpenedForm = false;
-                    return;
+            if (!isInTableCell()) {
+                if (fDocumentHandler != null) {
+                    callStartElement(elem, attrs, augs);
+                    callEndElement(createQName("form"), synthesizedAugs());
                 }
+                fOpenedForm = false;
+                return;
             }
         }
         else if (fSeenHeadElement
@@ -692,22 +729,9 @@ else if (elementCode == HTMLElements.TABLE) {
             // check if inside another table
             //    tables are only valid inside td/th/caption
             //    otherwise close the surrounding table
-            for (int i = fElementStack.top - 1; i >= 0; i--) {
-                final Info info = fElementStack.data[i];
-                if (info.element.code == HTMLElements.TD
-                        || info.element.code == HTMLElements.TH
-                        || info.element.code == HTMLElements.CAPTION) {
-                    break;
-                }
-                if (info.element.code == HTMLElements.TR
-                        || info.element.code == HTMLElements.THEAD
-                        || info.element.code == HTMLElements.TBODY
-                        || info.element.code == HTMLElements.TFOOT
-                        || info.element.code == HTMLElements.TABLE) {
-                    final QName table = createQName("table");
-                    endElement(table, synthesizedAugs());
-                    break;
-                }
+            if (!isInTableCell()) {
+                final QName table = createQName("table");
+                endElement(table, synthesizedAugs());
             }
         }
 
@@ -771,13 +795,13 @@ else if (!fTemplateFragment && elementCode == HTMLElements.SELECT) {
         int depth = 0;
         if (element.flags == 0) {
             final int length = fElementStack.top;
-            fInlineStack.top = 0;
+            fInlineStack.popAll();
             for (int i = length - 1; i >= 0; i--) {
                 final Info info = fElementStack.data[i];
                 if (!info.element.isInline()) {
                     break;
                 }
-                fInlineStack.push(info);
+                fInlineStack.pushCopy(info);
                 endElement(info.qname, synthesizedAugs());
             }
             depth = fInlineStack.top;
@@ -791,12 +815,14 @@ else if (!fTemplateFragment && elementCode == HTMLElements.SELECT) {
                 || fElementStack.top > 2 && fElementStack.data[fElementStack.top - 2].element.code == HTMLElements.HEAD) {
             final Info info = fElementStack.pop();
             if (fDocumentHandler != null) {
-                callEndElement(info.qname, synthesizedAugs());
+                callEndElement(info, synthesizedAugs());
             }
         }
         if (element.closes != null) {
+            // only the elements from the top down to the lowest closed one are visited
+            final int lowest = getLowestClosedIndex(element);
             int length = fElementStack.top;
-            for (int i = length - 1; i >= 0; i--) {
+            for (int i = length - 1; lowest != -1 && i >= lowest; i--) {
                 Info info = fElementStack.data[i];
 
                 // does it close the element we're looking at?
@@ -813,17 +839,10 @@ else if (!fTemplateFragment && elementCode == HTMLElements.SELECT) {
                         }
                         if (fDocumentHandler != null) {
                             // PATCH: Marc-Andr� Morissette
-                            callEndElement(info.qname, synthesizedAugs());
+                            callEndElement(info, synthesizedAugs());
                         }
                     }
                     length = i;
-                    continue;
-                }
-
-                // should we stop searching?
-                if (info.element.code == HTMLElements.TEMPLATE
-                        || info.element.isBlock() || element.isParent(info.element)) {
-                    break;
                 }
             }
         }
@@ -838,9 +857,14 @@ else if (!fTemplateFragment && elementCode == HTMLElements.SELECT) {
                 fDocumentHandler.emptyElement(elem, attrs, augs);
             }
         }
+        else if (fElementStack.top >= fMaxElementDepth) {
+            ignoreElement(elem, element);
+            // the saved inline elements would exceed the depth as well
+            depth = 0;
+        }
         else {
             final boolean inline = element.isInline();
-            fElementStack.push(new Info(element, elem, inline ? attrs : null));
+            fElementStack.push(element, elem, inline ? attrs : null);
             if (attrs == null) {
                 attrs = new XMLAttributesImpl();
             }
@@ -860,6 +884,44 @@ else if (!fTemplateFragment && elementCode == HTMLElements.SELECT) {
         }
     }
 
+    /**
+     * Ignores an element exceeding the maximum depth; the first one is reported.
+     */
+    private void ignoreElement(final QName elem, final HTMLElements.Element element) {
+        if (ignoredCount_ == 0) {
+            final Object[] args = {elem.getRawname(), String.valueOf(fMaxElementDepth)};
+            if (fLimitPolicy == HTMLScanner.LIMIT_FAIL) {
+                throw new XMLParseException(locator_, fErrorReporter.formatMessage("HTML2012", args));
+            }
+            if (fReportErrors) {
+                fErrorReporter.reportError("HTML2012", args);
+            }
+        }
+
+        final short code = element.code;
+        if (ignoredByCode_ == null || code >= ignoredByCode_.length) {
+            ignoredByCode_ = ignoredByCode_ == null
+                    ? new int[Math.max(HTMLElements.UNKNOWN + 1, code + 1)]
+                    : Arrays.copyOf(ignoredByCode_, code + 1);
+        }
+        ignoredByCode_[code]++;
+        ignoredCount_++;
+    }
+
+    /**
+     * @return true if the content of an element exceeding the maximum depth is skipped
+     */
+    private boolean isSkipping() {
+        return ignoredCount_ > 0 && fLimitPolicy == HTMLScanner.LIMIT_SKIP;
+    }
+
+    private void clearIgnored() {
+        if (ignoredCount_ > 0) {
+            Arrays.fill(ignoredByCode_, 0);
+            ignoredCount_ = 0;
+        }
+    }
+
     /**
      * Forces an element start, taking care to set the information to allow startElement to "see" that's
      * the element has been forced.
@@ -984,7 +1046,7 @@ public void startCDATA(final Augmentations augs) throws XNIException {
         consumeEarlyTextIfNeeded();
 
         // check for end of document
-        if (fSeenRootElementEnd) {
+        if (fSeenRootElementEnd || isSkipping()) {
             return;
         }
 
@@ -1000,7 +1062,7 @@ public void startCDATA(final Augmentations augs) throws XNIException {
     public void endCDATA(final Augmentations augs) throws XNIException {
 
         // check for end of document
-        if (fSeenRootElementEnd) {
+        if (fSeenRootElementEnd || isSkipping()) {
             return;
         }
 
@@ -1015,7 +1077,7 @@ public void endCDATA(final Augmentations augs) throws XNIException {
     @Override
     public void characters(final XMLString text, final Augmentations augs) throws XNIException {
         // check for end of document
-        if (fSeenRootElementEnd || fSeenBodyElementEnd) {
+        if (fSeenRootElementEnd || fSeenBodyElementEnd || isSkipping()) {
             return;
         }
 
@@ -1087,6 +1149,27 @@ public void endElement(final QName element, final Augmentations augs) throws XNI
         // get element information
         final HTMLElements.Element elem = getElement(element);
         final short elementCode = elem.code;
+        if (element.getElementCode() == -1) {
+            element.setElementCode(elementCode);
+        }
+
+        // the end of an element ignored because of the maximum depth
+        if (ignoredCount_ > 0) {
+            if (elementCode < ignoredByCode_.length && ignoredByCode_[elementCode] > 0) {
+                ignoredByCode_[elementCode]--;
+                ignoredCount_--;
+                return;
+            }
+            if (getElementDepth(elem) == -1) {
+                if (isSkipping()) {
+                    return;
+                }
+            }
+            else {
+                // closes an open element, the ignored ones are closed too
+                clearIgnored();
+            }
+        }
 
         if (!fTemplateFragment && fOpenedSelect) {
             if (elementCode == HTMLElements.SELECT) {
@@ -1168,15 +1251,14 @@ else if (!elem.isEmpty()) {
         // find unbalanced inline elements
         if (depth > 1 && elem.isInline()) {
             final int size = fElementStack.top;
-            fInlineStack.top = 0;
+            fInlineStack.popAll();
             for (int i = 0; i < depth - 1; i++) {
                 final Info info = fElementStack.data[size - i - 1];
                 final HTMLElements.Element pelem = info.element;
                 if (pelem.isInline() || pelem.code == HTMLElements.FONT) { // TODO: investigate if only FONT
-                    // NOTE: I don't have to make a copy of the info because
-                    //       it will just be popped off of the element stack
-                    //       as soon as we close it, anyway.
-                    fInlineStack.push(info);
+                    // the info is copied because the popped entries of the
+                    // element stack are reused by the next push
+                    fInlineStack.pushCopy(info);
                 }
             }
         }
@@ -1192,7 +1274,7 @@ else if (!elem.isEmpty()) {
             if (fDocumentHandler != null) {
                 addBodyIfNeeded(info.element.code);
                 // PATCH: Marc-Andr� Morissette
-                callEndElement(info.qname, i < depth - 1 ? synthesizedAugs() : augs);
+                callEndElement(info, i < depth - 1 ? synthesizedAugs() : augs);
             }
         }
 
@@ -1226,6 +1308,13 @@ public XMLDocumentSource getDocumentSource() {
 
     // Returns an HTML element.
     protected HTMLElements.Element getElement(final QName elementName) {
+        // use the code resolved by the scanner, unknown elements are looked up by name
+        // to get an element with the name
+        final short code = elementName.getElementCode();
+        if (code != -1 && code != HTMLElements.UNKNOWN) {
+            return htmlConfiguration_.getHtmlElements().getElement(code);
+        }
+
         String name = elementName.getRawname();
         if (fNamespaces && NamespaceBinder.XHTML_1_0_URI.equals(elementName.getUri())) {
             final int index = name.indexOf(':');
@@ -1263,6 +1352,18 @@ protected final void callEndElement(final QName element, final Augmentations aug
         fDocumentHandler.endElement(element, augs);
     }
 
+    // Call document handler end element for an element popped off the stack;
+    // the info is not reused by a push of the handler.
+    private void callEndElement(final Info info, final Augmentations augs) {
+        info.ending_ = true;
+        try {
+            callEndElement(info.qname, augs);
+        }
+        finally {
+            info.ending_ = false;
+        }
+    }
+
     /**
      * @return the depth of the open tag associated with the specified
      * element name or -1 if no matching element is found.
@@ -1274,25 +1375,77 @@ protected final int getElementDepth(final HTMLElements.Element element) {
         final short elementCode = element.code;
         final boolean tableBodyOrHtml = (elementCode == HTMLElements.TABLE)
             || (elementCode == HTMLElements.BODY) || (elementCode == HTMLElements.HTML);
-        int depth = -1;
-        for (int i = fElementStack.top - 1; i >= fragmentContextStackSize_; i--) {
-            final Info info = fElementStack.data[i];
-            if (info.element.code == element.code
-                    && (elementCode != HTMLElements.UNKNOWN || (elementCode == HTMLElements.UNKNOWN && element.name.equals(info.element.name)))) {
-                depth = fElementStack.top - i;
-                break;
-            }
-            if (!container && info.element.isBlock()) {
-                break;
+        final int index = fElementStack.lastIndexOf(element);
+        if (index < fragmentContextStackSize_) {
+            return -1;
+        }
+
+        // the elements opened after the element that hide it
+        if (!container && fElementStack.lastBlockIndex() > index) {
+            return -1;
+        }
+        if (!tableBodyOrHtml && fElementStack.lastIndexOf(HTMLElements.TABLE) > index) {
+            return -1; // current element not allowed to close a table
+        }
+        if (element.parent != null) {
+            for (final Element parent : element.parent) {
+                if (parent != null && fElementStack.lastIndexOf(parent.code) > index) {
+                    return -1;
+                }
             }
-            if (info.element.code == HTMLElements.TABLE && !tableBodyOrHtml) {
-                return -1; // current element not allowed to close a table
+        }
+        return fElementStack.top - index;
+    }
+
+    /**
+     * @return the index of the lowest open element the given element closes or -1;
+     * the search from the top stops at the first template, block or parent of the
+     * element that is not closed itself
+     *
+     * @param element The element.
+     */
+    private int getLowestClosedIndex(final HTMLElements.Element element) {
+        // where the search stops
+        int bound = -1;
+        if (!element.closes(HTMLElements.TEMPLATE)) {
+            bound = fElementStack.lastIndexOf(HTMLElements.TEMPLATE);
+        }
+        if (element.parent != null) {
+            for (final Element parent : element.parent) {
+                if (parent != null && !element.closes(parent.code)) {
+                    bound = Math.max(bound, fElementStack.lastIndexOf(parent.code));
+                }
             }
-            if (element.isParent(info.element)) {
-                break;
+        }
+        int block = fElementStack.lastBlockIndex();
+        while (block > bound && element.closes(fElementStack.data[block].element.code)) {
+            block = fElementStack.previousBlockIndex(block);
+        }
+        bound = Math.max(bound, block);
+
+        // the closed elements above are ended anyway, walking them costs nothing extra
+        int lowest = -1;
+        for (final short code : element.closes) {
+            for (int i = fElementStack.lastIndexOf(code); i > bound; i = fElementStack.previousIndexOf(i)) {
+                if (lowest == -1 || i < lowest) {
+                    lowest = i;
+                }
             }
         }
-        return depth;
+        return lowest;
+    }
+
+    /**
+     * @return false if a table structure element (row, section or table) is
+     * opened after the topmost table cell (or caption)
+     */
+    private boolean isInTableCell() {
+        final int cell = Math.max(Math.max(fElementStack.lastIndexOf(HTMLElements.TD),
+                fElementStack.lastIndexOf(HTMLElements.TH)), fElementStack.lastIndexOf(HTMLElements.CAPTION));
+        final int structure = Math.max(Math.max(Math.max(fElementStack.lastIndexOf(HTMLElements.TR),
+                fElementStack.lastIndexOf(HTMLElements.THEAD)), Math.max(fElementStack.lastIndexOf(HTMLElements.TBODY),
+                fElementStack.lastIndexOf(HTMLElements.TFOOT))), fElementStack.lastIndexOf(HTMLElements.TABLE));
+        return structure <= cell;
     }
 
     /**
@@ -1304,17 +1457,15 @@ protected final int getElementDepth(final HTMLElements.Element element) {
      */
     protected int getParentDepth(final HTMLElements.Element[] parents, final short bounds) {
         if (parents != null) {
-            for (int i = fElementStack.top - 1; i >= 0; i--) {
-                final Info info = fElementStack.data[i];
-                if (info.element.code == bounds) {
-                    break;
-                }
-                for (final Element parent : parents) {
-                    if (info.element.code == parent.code) {
-                        return fElementStack.top - i;
-                    }
+            int index = -1;
+            for (final Element parent : parents) {
+                if (parent != null) {
+                    index = Math.max(index, fElementStack.lastIndexOf(parent.code));
                 }
             }
+            if (index != -1 && fElementStack.lastIndexOf(bounds) < index) {
+                return fElementStack.top - index;
+            }
         }
         return -1;
     }
@@ -1358,25 +1509,39 @@ protected static short getNamesValue(final String value) {
      * &lt;i&gt;unbalanced &lt;b&gt;HTML&lt;/i&gt; content&lt;/b&gt;
      * </pre>
      * <p>
-     * It seems that it is a waste of processing and memory to copy the
-     * attributes for every start element even if there are no unbalanced
-     * inline elements in the document. However, if the attributes are
-     * <em>not</em> saved, then important attributes such as style
-     * information would be lost.
+     * Only the attributes of inline elements are saved because only these
+     * elements are reopened; if the attributes are <em>not</em> saved, then
+     * important attributes such as style information would be lost.
+     * <p>
+     * The infos are reused by the {@link InfoStack}, the name and the saved
+     * attributes are copied into the existing objects.
      *
      * @author Andy Clark
      */
     public static class Info {
 
         /** The element. */
-        public final HTMLElements.Element element;
+        public HTMLElements.Element element;
 
         /** The element qualified name. */
-        public final QName qname;
+        public final QName qname = new QName();
 
         /** The element attributes. */
         public XMLAttributes attributes;
 
+        // the reused copy of the attributes
+        private XMLAttributesImpl attributesCopy_;
+
+        // the stack indices of the previous infos with the same code, the
+        // same (unknown) name and of the previous block element
+        private int previousSameCode_;
+        private int previousSameName_;
+        private int previousBlock_;
+
+        // true while the end of the popped element is reported, the
+        // handler might push elements (e.g. document.write)
+        private boolean ending_;
+
         /**
          * Creates an element information object.
          * <p>
@@ -1401,22 +1566,43 @@ public Info(final HTMLElements.Element element, final QName qname) {
          * @param qname qname
          */
         public Info(final HTMLElements.Element element, final QName qname, final XMLAttributes attributes) {
+            set(element, qname, attributes);
+        }
+
+        /**
+         * Replaces the element information with a copy of the given one.
+         *
+         * @param element The element.
+         * @param qname The element qualified name.
+         * @param attributes The element attributes.
+         */
+        void set(final HTMLElements.Element element, final QName qname, final XMLAttributes attributes) {
             this.element = element;
-            this.qname = new QName(qname);
+            this.qname.setValues(qname);
+            if (attributes != null && attributes == attributesCopy_) {
+                // the info is pushed again with its own copy
+                this.attributes = attributes;
+                return;
+            }
+            this.attributes = null;
             if (attributes != null) {
                 final int length = attributes.getLength();
                 if (length > 0) {
-                    final QName aqname = new QName();
-                    final XMLAttributes newattrs = new XMLAttributesImpl();
+                    if (attributesCopy_ == null) {
+                        attributesCopy_ = new XMLAttributesImpl();
+                    }
+                    else {
+                        attributesCopy_.removeAllAttributes();
+                    }
                     for (int i = 0; i < length; i++) {
-                        attributes.getName(i, aqname);
+                        final QName aqname = attributes.getName(i);
                         final String type = attributes.getType(i);
                         final String value = attributes.getValue(i);
                         final boolean specified = attributes.isSpecified(i);
-                        newattrs.addAttribute(aqname, type, value);
-                        newattrs.setSpecified(i, specified);
+                        attributesCopy_.addAttribute(aqname, type, value);
+                        attributesCopy_.setSpecified(i, specified);
                     }
-                    this.attributes = newattrs;
+                    this.attributes = attributesCopy_;
                 }
             }
         }
@@ -1430,7 +1616,14 @@ public String toString() {
         }
     }
 
-    /** Unsynchronized stack of element information. */
+    /**
+     * Unsynchronized stack of element information.
+     * <p>
+     * The stack knows the topmost index of every element code, unknown
+     * element name and of the block elements; the scope checks of the
+     * balancer don't have to walk the stack. The top must only be changed
+     * with the push and pop methods to keep this index valid.
+     */
     public static class InfoStack {
 
         /** The top of the stack. */
@@ -1439,14 +1632,46 @@ public static class InfoStack {
         /** The stack data. */
         public Info[] data = new Info[10];
 
-        // Pushes element information onto the stack.
+        // the topmost index by element code, -1 if there is none
+        private int[] lastByCode_ = newIndex(HTMLElements.UNKNOWN + 1);
+
+        // the topmost index by name of the unknown elements
+        private HashMap<String, Integer> lastUnknown_;
+
+        // the topmost index of a block element
+        private int lastBlock_ = -1;
+
+        // Pushes a copy of the element information onto the stack; the given
+        // info stays with the caller.
         public void push(final Info info) {
+            push(info.element, info.qname, info.attributes);
+        }
+
+        // Pushes a copy of the element information onto the stack; the info
+        // of a previously popped entry is reused if there is one.
+        public Info push(final HTMLElements.Element element, final QName qname, final XMLAttributes attributes) {
             if (top == data.length) {
-                final Info[] newarray = new Info[top + 10];
+                // grow by half at least, pushing deep documents stays linear
+                final Info[] newarray = new Info[top + Math.max(10, top >> 1)];
                 System.arraycopy(data, 0, newarray, 0, top);
                 data = newarray;
             }
-            data[top++] = info;
+            Info info = data[top];
+            if (info == null || info.ending_) {
+                info = new Info(element, qname, attributes);
+                data[top] = info;
+            }
+            else {
+                info.set(element, qname, attributes);
+            }
+            index(info);
+            top++;
+            return info;
+        }
+
+        // Pushes a copy of the element information onto the stack.
+        public Info pushCopy(final Info info) {
+            return push(info.element, info.qname, info.attributes);
         }
 
         // Peeks at the top of the stack.
@@ -1456,7 +1681,138 @@ public Info peek() {
 
         // Pops the top item off of the stack.
         public Info pop() {
-            return data[--top];
+            final Info info = data[--top];
+            final short code = info.element.code;
+            lastByCode_[code] = info.previousSameCode_;
+            if (code == HTMLElements.UNKNOWN) {
+                if (info.previousSameName_ == -1) {
+                    lastUnknown_.remove(info.element.name);
+                }
+                else {
+                    lastUnknown_.put(info.element.name, info.previousSameName_);
+                }
+            }
+            if (info.element.isBlock()) {
+                lastBlock_ = info.previousBlock_;
+            }
+            return info;
+        }
+
+        // Pops all items off of the stack, the infos are kept for reuse.
+        public void popAll() {
+            while (top > 0) {
+                pop();
+            }
+        }
+
+        /**
+         * @return the index of the topmost info with the given element code or -1
+         *
+         * @param code The element code.
+         */
+        public int lastIndexOf(final short code) {
+            if (code < 0 || code >= lastByCode_.length) {
+                return -1;
+            }
+            return lastByCode_[code];
+        }
+
+        /**
+         * @return the index of the topmost info of the given element or -1;
+         * unknown elements have to have the same name
+         *
+         * @param element The element.
+         */
+        public int lastIndexOf(final HTMLElements.Element element) {
+            if (element.code != HTMLElements.UNKNOWN) {
+                return lastIndexOf(element.code);
+            }
+            if (lastUnknown_ == null) {
+                return -1;
+            }
+            final Integer index = lastUnknown_.get(element.name);
+            return index == null ? -1 : index;
+        }
+
+        /**
+         * @return the index of the topmost block element or -1
+         */
+        public int lastBlockIndex() {
+            return lastBlock_;
+        }
+
+        /**
+         * @return the index of the next info below the given one with the same element code or -1
+         *
+         * @param index The index of an info on the stack.
+         */
+        public int previousIndexOf(final int index) {
+            return data[index].previousSameCode_;
+        }
+
+        /**
+         * @return the index of the next block element below the given one or -1
+         *
+         * @param index The index of a block element on the stack.
+         */
+        public int previousBlockIndex(final int index) {
+            return data[index].previousBlock_;
+        }
+
+        // adds the info at the top to the index
+        private void index(final Info info) {
+            final short code = info.element.code;
+            if (code >= lastByCode_.length) {
+                final int length = lastByCode_.length;
+                lastByCode_ = Arrays.copyOf(lastByCode_, code + 1);
+                Arrays.fill(lastByCode_, length, code + 1, -1);
+            }
+            info.previousSameCode_ = lastByCode_[code];
+            lastByCode_[code] = top;
+            if (code == HTMLElements.UNKNOWN) {
+                if (lastUnknown_ == null) {
+                    lastUnknown_ = new HashMap<>();
+                }
+                final Integer previous = lastUnknown_.put(info.element.name, top);
+                info.previousSameName_ = previous == null ? -1 : previous;
+            }
+            if (info.element.isBlock()) {
+                info.previousBlock_ = lastBlock_;
+                lastBlock_ = top;
+            }
+        }
+
+        private static int[] newIndex(final int length) {
+            final int[] index = new int[length];
+            Arrays.fill(index, -1);
+            return index;
+        }
+
+        // Empties the stack, drops all references and a grown array.
+        public void clear() {
+            top = 0;
+            if (data.length > 10) {
+                data = new Info[10];
+            }
+            else {
+                Arrays.fill(data, null);
+            }
+            lastByCode_ = newIndex(HTMLElements.UNKNOWN + 1);
+            lastUnknown_ = null;
+            lastBlock_ = -1;
+        }
+
+        // Checks that the stack holds no references anymore.
+        boolean isCleared() {
+            if (top != 0 || lastUnknown_ != null) {
+                return false;
+            }
+            for (final Info info : data) {
+                if (info != null) {
+                    return false;
+                }
+            }
+            return true;
         }
 
         // Simple representation to make debugging easier
@@ -1474,6 +1830,32 @@ public String toString() {
         }
     }
 
+    /**
+     * Drops all references to the last balanced document. The element stacks
+     * are emptied and shrunk back to their initial size if they have grown.
+     */
+    void recycle() {
+        fElementStack.clear();
+        fInlineStack.clear();
+        fragmentContextStackSize_ = 0;
+
+        lostText_.clear();
+        endElementsBuffer_.clear();
+        discardedStartElements.clear();
+    }
+
+    /**
+     * @return true if no state of a balanced document is held anymore
+     */
+    boolean isRecycled() {
+        return fElementStack.isCleared()
+                && fInlineStack.isCleared()
+                && fragmentContextStackSize_ == 0
+                && lostText_.isEmpty()
+                && endElementsBuffer_.isEmpty()
+                && discardedStartElements.isEmpty();
+    }
+
     void setTagBalancingListener(final HTMLTagBalancingListener tagBalancingListener) {
         this.tagBalancingListener = tagBalancingListener;
     }
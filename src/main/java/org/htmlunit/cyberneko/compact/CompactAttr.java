@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.compact;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.TypeInfo;
+
+/**
+ * The read-only view of an attribute of a {@link CompactDocument}. The value
+ * is not exposed as a text child.
+ */
+public final class CompactAttr extends CompactNode implements Attr {
+
+    private final int attribute_;
+
+    // Constructor.
+    CompactAttr(final CompactDocument document, final int element, final int attribute) {
+        super(document, element);
+        attribute_ = attribute;
+    }
+
+    @Override
+    public short getNodeType() {
+        return ATTRIBUTE_NODE;
+    }
+
+    @Override
+    public String getNodeName() {
+        return getName();
+    }
+
+    @Override
+    public String getLocalName() {
+        return getName();
+    }
+
+    @Override
+    public String getNodeValue() throws DOMException {
+        return getValue();
+    }
+
+    @Override
+    public String getTextContent() throws DOMException {
+        return getValue();
+    }
+
+    @Override
+    public Node getParentNode() {
+        return null;
+    }
+
+    @Override
+    public NodeList getChildNodes() {
+        return new CompactNodeList(document_, new int[0]);
+    }
+
+    @Override
+    public Node getFirstChild() {
+        return null;
+    }
+
+    @Override
+    public Node getLastChild() {
+        return null;
+    }
+
+    @Override
+    public Node getPreviousSibling() {
+        return null;
+    }
+
+    @Override
+    public Node getNextSibling() {
+        return null;
+    }
+
+    @Override
+    public boolean hasChildNodes() {
+        return false;
+    }
+
+    @Override
+    public String getName() {
+        return document_.getAttributeName(attribute_);
+    }
+
+    @Override
+    public boolean getSpecified() {
+        return true;
+    }
+
+    @Override
+    public String getValue() {
+        return document_.getAttributeValue(attribute_);
+    }
+
+    @Override
+    public void setValue(final String value) throws DOMException {
+        throw readOnly();
+    }
+
+    @Override
+    public Element getOwnerElement() {
+        return new CompactElement(document_, index_);
+    }
+
+    @Override
+    public TypeInfo getSchemaTypeInfo() {
+        return null;
+    }
+
+    @Override
+    public boolean isId() {
+        return "id".equalsIgnoreCase(getName());
+    }
+
+    @Override
+    public boolean isEqualNode(final Node other) {
+        // the value is compared as a whole, no matter how other implementations split it
+        return other != null && other.getNodeType() == ATTRIBUTE_NODE
+                && getName().equals(other.getNodeName()) && getValue().equals(other.getNodeValue());
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        return super.equals(obj) && ((CompactAttr) obj).attribute_ == attribute_;
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode() * 31 + attribute_;
+    }
+}
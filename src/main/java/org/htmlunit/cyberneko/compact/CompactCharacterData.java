@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.compact;
+
+import org.htmlunit.cyberneko.xerces.dom.DOMMessageFormatter;
+import org.w3c.dom.CharacterData;
+import org.w3c.dom.DOMException;
+
+/**
+ * Base class of the read-only text and comment views of a {@link CompactDocument}.
+ */
+public abstract class CompactCharacterData extends CompactNode implements CharacterData {
+
+    // Constructor.
+    CompactCharacterData(final CompactDocument document, final int index) {
+        super(document, index);
+    }
+
+    @Override
+    public String getNodeValue() throws DOMException {
+        return getData();
+    }
+
+    @Override
+    public String getData() throws DOMException {
+        return document_.getData(index_);
+    }
+
+    @Override
+    public void setData(final String data) throws DOMException {
+        throw readOnly();
+    }
+
+    @Override
+    public int getLength() {
+        return document_.lengths_[index_];
+    }
+
+    @Override
+    public String substringData(final int offset, final int count) throws DOMException {
+        final int length = getLength();
+        if (offset < 0 || offset > length || count < 0) {
+            throw new DOMException(DOMException.INDEX_SIZE_ERR,
+                    DOMMessageFormatter.formatMessage(DOMMessageFormatter.DOM_DOMAIN, "INDEX_SIZE_ERR", null));
+        }
+        return new String(document_.chars_, document_.offsets_[index_] + offset, Math.min(count, length - offset));
+    }
+
+    @Override
+    public void appendData(final String arg) throws DOMException {
+        throw readOnly();
+    }
+
+    @Override
+    public void insertData(final int offset, final String arg) throws DOMException {
+        throw readOnly();
+    }
+
+    @Override
+    public void deleteData(final int offset, final int count) throws DOMException {
+        throw readOnly();
+    }
+
+    @Override
+    public void replaceData(final int offset, final int count, final String arg) throws DOMException {
+        throw readOnly();
+    }
+}
@@ -0,0 +1,711 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.compact;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.htmlunit.cyberneko.xerces.dom.CoreDOMImplementationImpl;
+import org.htmlunit.cyberneko.xerces.xni.XMLAttributes;
+import org.htmlunit.cyberneko.xerces.xni.XMLString;
+import org.w3c.dom.Attr;
+import org.w3c.dom.CDATASection;
+import org.w3c.dom.Comment;
+import org.w3c.dom.DOMConfiguration;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.DOMImplementation;
+import org.w3c.dom.Document;
+import org.w3c.dom.DocumentFragment;
+import org.w3c.dom.DocumentType;
+import org.w3c.dom.Element;
+import org.w3c.dom.EntityReference;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.ProcessingInstruction;
+import org.w3c.dom.Text;
+import org.w3c.dom.UserDataHandler;
+
+/**
+ * A read-only document stored in a few primitive arrays instead of one object
+ * per node. Every node is an index into the arrays holding its type, name,
+ * parent, first and last child and next sibling; text, comments and
+ * attribute values are ranges of one shared char array and all names are
+ * kept once in a string table. The nodes are stored in document order.
+ *
+ * <p>The {@link org.w3c.dom} interfaces are implemented by small views
+ * created on request, so the memory needed by a parsed document is a
+ * fraction of the memory of a {@link org.htmlunit.cyberneko.xerces.dom.DocumentImpl}.
+ * All modifications throw a {@link DOMException}
+ * (NO_MODIFICATION_ALLOWED_ERR); namespaces are not supported.
+ *
+ * <p>A document is created by a {@link Builder}, usually the one of
+ * {@link org.htmlunit.cyberneko.parsers.CompactDOMParser}.
+ */
+public final class CompactDocument extends CompactNode implements Document {
+
+    // the nodes, the document itself is node 0
+    final short[] types_;
+    final int[] names_;
+    final int[] parents_;
+    final int[] firstChildren_;
+    final int[] lastChildren_;
+    final int[] nextSiblings_;
+    final int[] previousSiblings_;
+
+    // text, comments and processing instructions: the range of the data in chars_;
+    // elements: the first attribute and the number of attributes
+    final int[] offsets_;
+    final int[] lengths_;
+    private final int nodeCount_;
+
+    // the attributes
+    final int[] attributeNames_;
+    final int[] attributeOffsets_;
+    final int[] attributeLengths_;
+
+    final char[] chars_;
+    final String[] strings_;
+
+    private final String inputEncoding_;
+    private final String publicId_;
+    private final String systemId_;
+
+    private Map<Node, Map<String, Object>> userData_;
+
+    // Constructor.
+    CompactDocument(final Builder builder) {
+        super(null, 0);
+        nodeCount_ = builder.nodeCount_;
+        types_ = Arrays.copyOf(builder.types_, nodeCount_);
+        names_ = Arrays.copyOf(builder.names_, nodeCount_);
+        parents_ = Arrays.copyOf(builder.parents_, nodeCount_);
+        firstChildren_ = Arrays.copyOf(builder.firstChildren_, nodeCount_);
+        lastChildren_ = Arrays.copyOf(builder.lastChildren_, nodeCount_);
+        nextSiblings_ = Arrays.copyOf(builder.nextSiblings_, nodeCount_);
+        previousSiblings_ = Arrays.copyOf(builder.previousSiblings_, nodeCount_);
+        offsets_ = Arrays.copyOf(builder.offsets_, nodeCount_);
+        lengths_ = Arrays.copyOf(builder.lengths_, nodeCount_);
+
+        attributeNames_ = Arrays.copyOf(builder.attributeNames_, builder.attributeCount_);
+        attributeOffsets_ = Arrays.copyOf(builder.attributeOffsets_, builder.attributeCount_);
+        attributeLengths_ = Arrays.copyOf(builder.attributeLengths_, builder.attributeCount_);
+
+        chars_ = Arrays.copyOf(builder.chars_, builder.charCount_);
+        strings_ = new String[builder.strings_.size()];
+        builder.strings_.forEach((string, index) -> strings_[index] = string);
+
+        inputEncoding_ = builder.inputEncoding_;
+        publicId_ = builder.publicId_;
+        systemId_ = builder.systemId_;
+    }
+
+    /**
+     * @return the number of nodes (without attributes) including the document
+     */
+    public int getNodeCount() {
+        return nodeCount_;
+    }
+
+    /**
+     * @return the approximate number of bytes used by the arrays of this document
+     */
+    public long getMemoryUsage() {
+        long strings = 0;
+        for (final String string : strings_) {
+            strings += 40 + 2L * string.length();
+        }
+        return nodeCount_ * (2L + 7 * 4) + attributeNames_.length * 3L * 4 + chars_.length * 2L + strings;
+    }
+
+    // access used by the views
+
+    CompactNode node(final int index) {
+        if (index < 0) {
+            return null;
+        }
+        switch (types_[index]) {
+            case ELEMENT_NODE:
+                return new CompactElement(this, index);
+            case TEXT_NODE:
+                return new CompactText(this, index);
+            case COMMENT_NODE:
+                return new CompactComment(this, index);
+            case PROCESSING_INSTRUCTION_NODE:
+                return new CompactProcessingInstruction(this, index);
+            case DOCUMENT_TYPE_NODE:
+                return new CompactDocumentType(this, index);
+            default:
+                return this;
+        }
+    }
+
+    String getName(final int index) {
+        switch (types_[index]) {
+            case TEXT_NODE:
+                return "#text";
+            case COMMENT_NODE:
+                return "#comment";
+            case DOCUMENT_NODE:
+                return "#document";
+            default:
+                return strings_[names_[index]];
+        }
+    }
+
+    String getData(final int index) {
+        return new String(chars_, offsets_[index], lengths_[index]);
+    }
+
+    String getAttributeName(final int attribute) {
+        return strings_[attributeNames_[attribute]];
+    }
+
+    String getAttributeValue(final int attribute) {
+        return new String(chars_, attributeOffsets_[attribute], attributeLengths_[attribute]);
+    }
+
+    // returns the index of the attribute or -1
+    int getAttributeIndex(final int element, final String name) {
+        final int first = offsets_[element];
+        final int end = first + lengths_[element];
+        for (int attribute = first; attribute < end; attribute++) {
+            if (getAttributeName(attribute).equalsIgnoreCase(name)) {
+                return attribute;
+            }
+        }
+        return -1;
+    }
+
+    int[] children(final int index) {
+        int count = 0;
+        for (int child = firstChildren_[index]; child >= 0; child = nextSiblings_[child]) {
+            count++;
+        }
+        final int[] children = new int[count];
+        count = 0;
+        for (int child = firstChildren_[index]; child >= 0; child = nextSiblings_[child]) {
+            children[count++] = child;
+        }
+        return children;
+    }
+
+    // returns the index following the last descendant of the node
+    int subtreeEnd(final int index) {
+        int node = index;
+        while (node >= 0 && nextSiblings_[node] < 0) {
+            node = parents_[node];
+        }
+        return node < 0 ? nodeCount_ : nextSiblings_[node];
+    }
+
+    boolean isAncestor(final int ancestor, final int index) {
+        return ancestor < index && index < subtreeEnd(ancestor);
+    }
+
+    String getTextContent(final int index) {
+        switch (types_[index]) {
+            case TEXT_NODE:
+            case COMMENT_NODE:
+            case PROCESSING_INSTRUCTION_NODE:
+                return getData(index);
+            case ELEMENT_NODE:
+                final StringBuilder text = new StringBuilder();
+                final int end = subtreeEnd(index);
+                for (int node = index + 1; node < end; node++) {
+                    if (types_[node] == TEXT_NODE) {
+                        text.append(chars_, offsets_[node], lengths_[node]);
+                    }
+                }
+                return text.toString();
+            default:
+                return null;
+        }
+    }
+
+    NodeList getElementsByTagName(final int index, final String name) {
+        final boolean all = "*".equals(name);
+        int[] found = new int[8];
+        int count = 0;
+        final int end = subtreeEnd(index);
+        for (int node = index + 1; node < end; node++) {
+            if (types_[node] == ELEMENT_NODE && (all || strings_[names_[node]].equalsIgnoreCase(name))) {
+                if (count == found.length) {
+                    found = Arrays.copyOf(found, count * 2);
+                }
+                found[count++] = node;
+            }
+        }
+        return new CompactNodeList(this, Arrays.copyOf(found, count));
+    }
+
+    Object setUserData(final Node node, final String key, final Object data) {
+        if (userData_ == null) {
+            userData_ = new HashMap<>();
+        }
+        final Map<String, Object> userData = userData_.computeIfAbsent(node, k -> new HashMap<>());
+        return data == null ? userData.remove(key) : userData.put(key, data);
+    }
+
+    Object getUserData(final Node node, final String key) {
+        if (userData_ == null) {
+            return null;
+        }
+        final Map<String, Object> userData = userData_.get(node);
+        return userData == null ? null : userData.get(key);
+    }
+
+    // Node
+
+    @Override
+    public short getNodeType() {
+        return DOCUMENT_NODE;
+    }
+
+    @Override
+    public String getNodeName() {
+        return "#document";
+    }
+
+    @Override
+    public CompactDocument getOwnerDocument() {
+        return null;
+    }
+
+    @Override
+    public String getTextContent() throws DOMException {
+        return null;
+    }
+
+    @Override
+    public Object setUserData(final String key, final Object data, final UserDataHandler handler) {
+        return setUserData(this, key, data);
+    }
+
+    @Override
+    public Object getUserData(final String key) {
+        return getUserData(this, key);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        return obj == this;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(this);
+    }
+
+    // Document
+
+    @Override
+    public DocumentType getDoctype() {
+        for (int child = firstChildren_[0]; child >= 0; child = nextSiblings_[child]) {
+            if (types_[child] == DOCUMENT_TYPE_NODE) {
+                return new CompactDocumentType(this, child);
+            }
+        }
+        return null;
+    }
+
+    String getPublicId() {
+        return publicId_;
+    }
+
+    String getSystemId() {
+        return systemId_;
+    }
+
+    @Override
+    public DOMImplementation getImplementation() {
+        return CoreDOMImplementationImpl.getDOMImplementation();
+    }
+
+    @Override
+    public Element getDocumentElement() {
+        for (int child = firstChildren_[0]; child >= 0; child = nextSiblings_[child]) {
+            if (types_[child] == ELEMENT_NODE) {
+                return new CompactElement(this, child);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Element createElement(final String tagName) throws DOMException {
+        throw readOnly();
+    }
+
+    @Override
+    public DocumentFragment createDocumentFragment() {
+        throw readOnly();
+    }
+
+    @Override
+    public Text createTextNode(final String data) {
+        throw readOnly();
+    }
+
+    @Override
+    public Comment createComment(final String data) {
+        throw readOnly();
+    }
+
+    @Override
+    public CDATASection createCDATASection(final String data) throws DOMException {
+        throw readOnly();
+    }
+
+    @Override
+    public ProcessingInstruction createProcessingInstruction(final String target, final String data) throws DOMException {
+        throw readOnly();
+    }
+
+    @Override
+    public Attr createAttribute(final String name) throws DOMException {
+        throw readOnly();
+    }
+
+    @Override
+    public EntityReference createEntityReference(final String name) throws DOMException {
+        throw readOnly();
+    }
+
+    @Override
+    public NodeList getElementsByTagName(final String tagname) {
+        return getElementsByTagName(0, tagname);
+    }
+
+    @Override
+    public Node importNode(final Node importedNode, final boolean deep) throws DOMException {
+        throw readOnly();
+    }
+
+    @Override
+    public Element createElementNS(final String namespaceURI, final String qualifiedName) throws DOMException {
+        throw readOnly();
+    }
+
+    @Override
+    public Attr createAttributeNS(final String namespaceURI, final String qualifiedName) throws DOMException {
+        throw readOnly();
+    }
+
+    @Override
+    public NodeList getElementsByTagNameNS(final String namespaceURI, final String localName) {
+        if (namespaceURI != null && !"*".equals(namespaceURI)) {
+            return new CompactNodeList(this, new int[0]);
+        }
+        return getElementsByTagName(0, localName);
+    }
+
+    @Override
+    public Element getElementById(final String elementId) {
+        for (int node = 1; node < nodeCount_; node++) {
+            if (types_[node] == ELEMENT_NODE) {
+                final int attribute = getAttributeIndex(node, "id");
+                if (attribute >= 0 && elementId.equals(getAttributeValue(attribute))) {
+                    return new CompactElement(this, node);
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String getInputEncoding() {
+        return inputEncoding_;
+    }
+
+    @Override
+    public String getXmlEncoding() {
+        return null;
+    }
+
+    @Override
+    public boolean getXmlStandalone() {
+        return false;
+    }
+
+    @Override
+    public void setXmlStandalone(final boolean xmlStandalone) throws DOMException {
+        throw readOnly();
+    }
+
+    @Override
+    public String getXmlVersion() {
+        return null;
+    }
+
+    @Override
+    public void setXmlVersion(final String xmlVersion) throws DOMException {
+        throw readOnly();
+    }
+
+    @Override
+    public boolean getStrictErrorChecking() {
+        return true;
+    }
+
+    @Override
+    public void setStrictErrorChecking(final boolean strictErrorChecking) {
+        // always strict
+    }
+
+    @Override
+    public String getDocumentURI() {
+        return null;
+    }
+
+    @Override
+    public void setDocumentURI(final String documentURI) {
+        throw readOnly();
+    }
+
+    @Override
+    public Node adoptNode(final Node source) throws DOMException {
+        throw readOnly();
+    }
+
+    @Override
+    public DOMConfiguration getDomConfig() {
+        return null;
+    }
+
+    @Override
+    public void normalizeDocument() {
+        // adjacent text is already merged
+    }
+
+    @Override
+    public Node renameNode(final Node n, final String namespaceURI, final String qualifiedName) throws DOMException {
+        throw readOnly();
+    }
+
+    /**
+     * Collects the nodes of a document in document order. Adjacent text is
+     * merged into one text node.
+     */
+    public static final class Builder {
+        private short[] types_ = new short[64];
+        private int[] names_ = new int[64];
+        private int[] parents_ = new int[64];
+        private int[] firstChildren_ = new int[64];
+        private int[] lastChildren_ = new int[64];
+        private int[] nextSiblings_ = new int[64];
+        private int[] previousSiblings_ = new int[64];
+        private int[] offsets_ = new int[64];
+        private int[] lengths_ = new int[64];
+        private int nodeCount_;
+
+        private int[] attributeNames_ = new int[64];
+        private int[] attributeOffsets_ = new int[64];
+        private int[] attributeLengths_ = new int[64];
+        private int attributeCount_;
+
+        private char[] chars_ = new char[1024];
+        private int charCount_;
+
+        private final Map<String, Integer> strings_ = new HashMap<>();
+
+        private String inputEncoding_;
+        private String publicId_;
+        private String systemId_;
+
+        // the open element (or the document)
+        private int current_;
+
+        /** Creates a builder for a new document. */
+        public Builder() {
+            add(DOCUMENT_NODE, -1, -1);
+            current_ = 0;
+        }
+
+        /**
+         * @param inputEncoding the encoding of the input
+         */
+        public void setInputEncoding(final String inputEncoding) {
+            inputEncoding_ = inputEncoding;
+        }
+
+        /**
+         * Adds the document type.
+         *
+         * @param rootElement the name of the root element
+         * @param publicId the public identifier or null
+         * @param systemId the system identifier or null
+         */
+        public void doctype(final String rootElement, final String publicId, final String systemId) {
+            add(DOCUMENT_TYPE_NODE, string(rootElement), -1);
+            publicId_ = publicId;
+            systemId_ = systemId;
+        }
+
+        /**
+         * Adds an element and makes it the parent of the following nodes.
+         *
+         * @param name the name of the element
+         * @param attributes the attributes, may be null
+         */
+        public void startElement(final String name, final XMLAttributes attributes) {
+            final int element = add(ELEMENT_NODE, string(name), attributeCount_);
+            if (attributes != null) {
+                final int count = attributes.getLength();
+                for (int i = 0; i < count; i++) {
+                    if (attributeCount_ == attributeNames_.length) {
+                        final int capacity = attributeCount_ * 2;
+                        attributeNames_ = Arrays.copyOf(attributeNames_, capacity);
+                        attributeOffsets_ = Arrays.copyOf(attributeOffsets_, capacity);
+                        attributeLengths_ = Arrays.copyOf(attributeLengths_, capacity);
+                    }
+                    final String value = attributes.getValue(i);
+                    attributeNames_[attributeCount_] = string(attributes.getQName(i));
+                    attributeOffsets_[attributeCount_] = charCount_;
+                    attributeLengths_[attributeCount_] = value.length();
+                    appendChars(value);
+                    attributeCount_++;
+                }
+                lengths_[element] = count;
+            }
+            current_ = element;
+        }
+
+        /**
+         * Ends the current element.
+         */
+        public void endElement() {
+            if (current_ > 0) {
+                current_ = parents_[current_];
+            }
+        }
+
+        /**
+         * Adds text, merged with a text node added right before.
+         *
+         * @param text the text
+         */
+        public void characters(final XMLString text) {
+            if (text.length() == 0) {
+                return;
+            }
+            final int last = lastChildren_[current_];
+            if (last >= 0 && types_[last] == TEXT_NODE && offsets_[last] + lengths_[last] == charCount_) {
+                lengths_[last] += text.length();
+            }
+            else {
+                add(TEXT_NODE, -1, charCount_);
+                lengths_[nodeCount_ - 1] = text.length();
+            }
+            appendChars(text);
+        }
+
+        /**
+         * Adds a comment.
+         *
+         * @param text the text of the comment
+         */
+        public void comment(final XMLString text) {
+            add(COMMENT_NODE, -1, charCount_);
+            lengths_[nodeCount_ - 1] = text.length();
+            appendChars(text);
+        }
+
+        /**
+         * Adds a processing instruction.
+         *
+         * @param target the target
+         * @param data the data, may be null
+         */
+        public void processingInstruction(final String target, final XMLString data) {
+            add(PROCESSING_INSTRUCTION_NODE, string(target), charCount_);
+            if (data != null) {
+                lengths_[nodeCount_ - 1] = data.length();
+                appendChars(data);
+            }
+        }
+
+        /**
+         * @return the document, the builder must not be used afterwards
+         */
+        public CompactDocument build() {
+            return new CompactDocument(this);
+        }
+
+        private int add(final short type, final int name, final int offset) {
+            if (nodeCount_ == types_.length) {
+                final int capacity = nodeCount_ * 2;
+                types_ = Arrays.copyOf(types_, capacity);
+                names_ = Arrays.copyOf(names_, capacity);
+                parents_ = Arrays.copyOf(parents_, capacity);
+                firstChildren_ = Arrays.copyOf(firstChildren_, capacity);
+                lastChildren_ = Arrays.copyOf(lastChildren_, capacity);
+                nextSiblings_ = Arrays.copyOf(nextSiblings_, capacity);
+                previousSiblings_ = Arrays.copyOf(previousSiblings_, capacity);
+                offsets_ = Arrays.copyOf(offsets_, capacity);
+                lengths_ = Arrays.copyOf(lengths_, capacity);
+            }
+
+            final int node = nodeCount_++;
+            types_[node] = type;
+            names_[node] = name;
+            firstChildren_[node] = -1;
+            lastChildren_[node] = -1;
+            nextSiblings_[node] = -1;
+            offsets_[node] = offset;
+            lengths_[node] = 0;
+
+            if (node == 0) {
+                parents_[node] = -1;
+                previousSiblings_[node] = -1;
+            }
+            else {
+                parents_[node] = current_;
+                final int last = lastChildren_[current_];
+                previousSiblings_[node] = last;
+                if (last < 0) {
+                    firstChildren_[current_] = node;
+                }
+                else {
+                    nextSiblings_[last] = node;
+                }
+                lastChildren_[current_] = node;
+            }
+            return node;
+        }
+
+        private int string(final String string) {
+            return strings_.computeIfAbsent(string, s -> strings_.size());
+        }
+
+        private void ensureChars(final int length) {
+            if (charCount_ + length > chars_.length) {
+                chars_ = Arrays.copyOf(chars_, Math.max(chars_.length * 2, charCount_ + length));
+            }
+        }
+
+        private void appendChars(final XMLString text) {
+            ensureChars(text.length());
+            text.getChars(chars_, charCount_);
+            charCount_ += text.length();
+        }
+
+        private void appendChars(final String text) {
+            ensureChars(text.length());
+            text.getChars(0, text.length(), chars_, charCount_);
+            charCount_ += text.length();
+        }
+    }
+}
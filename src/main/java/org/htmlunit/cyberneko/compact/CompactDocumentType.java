@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.compact;
+
+import org.w3c.dom.DocumentType;
+import org.w3c.dom.NamedNodeMap;
+
+/**
+ * The read-only view of the document type of a {@link CompactDocument}.
+ */
+public final class CompactDocumentType extends CompactNode implements DocumentType {
+
+    // Constructor.
+    CompactDocumentType(final CompactDocument document, final int index) {
+        super(document, index);
+    }
+
+    @Override
+    public String getName() {
+        return getNodeName();
+    }
+
+    @Override
+    public NamedNodeMap getEntities() {
+        return new CompactNamedNodeMap(document_, index_);
+    }
+
+    @Override
+    public NamedNodeMap getNotations() {
+        return new CompactNamedNodeMap(document_, index_);
+    }
+
+    @Override
+    public String getPublicId() {
+        return document_.getPublicId();
+    }
+
+    @Override
+    public String getSystemId() {
+        return document_.getSystemId();
+    }
+
+    @Override
+    public String getInternalSubset() {
+        return null;
+    }
+}
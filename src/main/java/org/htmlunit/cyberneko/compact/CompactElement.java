@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.compact;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.TypeInfo;
+
+/**
+ * The read-only view of an element of a {@link CompactDocument}. Attribute
+ * names are compared case-insensitive.
+ */
+public final class CompactElement extends CompactNode implements Element {
+
+    // Constructor.
+    CompactElement(final CompactDocument document, final int index) {
+        super(document, index);
+    }
+
+    @Override
+    public String getTagName() {
+        return getNodeName();
+    }
+
+    @Override
+    public String getLocalName() {
+        return getNodeName();
+    }
+
+    @Override
+    public NamedNodeMap getAttributes() {
+        return new CompactNamedNodeMap(document_, index_);
+    }
+
+    @Override
+    public boolean hasAttributes() {
+        return document_.lengths_[index_] > 0;
+    }
+
+    @Override
+    public String getAttribute(final String name) {
+        final int attribute = document_.getAttributeIndex(index_, name);
+        return attribute < 0 ? "" : document_.getAttributeValue(attribute);
+    }
+
+    @Override
+    public void setAttribute(final String name, final String value) throws DOMException {
+        throw readOnly();
+    }
+
+    @Override
+    public void removeAttribute(final String name) throws DOMException {
+        throw readOnly();
+    }
+
+    @Override
+    public Attr getAttributeNode(final String name) {
+        final int attribute = document_.getAttributeIndex(index_, name);
+        return attribute < 0 ? null : new CompactAttr(document_, index_, attribute);
+    }
+
+    @Override
+    public Attr setAttributeNode(final Attr newAttr) throws DOMException {
+        throw readOnly();
+    }
+
+    @Override
+    public Attr removeAttributeNode(final Attr oldAttr) throws DOMException {
+        throw readOnly();
+    }
+
+    @Override
+    public NodeList getElementsByTagName(final String name) {
+        return document_.getElementsByTagName(index_, name);
+    }
+
+    @Override
+    public String getAttributeNS(final String namespaceURI, final String localName) throws DOMException {
+        return isNoNamespace(namespaceURI) ? getAttribute(localName) : "";
+    }
+
+    @Override
+    public void setAttributeNS(final String namespaceURI, final String qualifiedName, final String value) throws DOMException {
+        throw readOnly();
+    }
+
+    @Override
+    public void removeAttributeNS(final String namespaceURI, final String localName) throws DOMException {
+        throw readOnly();
+    }
+
+    @Override
+    public Attr getAttributeNodeNS(final String namespaceURI, final String localName) throws DOMException {
+        return isNoNamespace(namespaceURI) ? getAttributeNode(localName) : null;
+    }
+
+    @Override
+    public Attr setAttributeNodeNS(final Attr newAttr) throws DOMException {
+        throw readOnly();
+    }
+
+    @Override
+    public NodeList getElementsByTagNameNS(final String namespaceURI, final String localName) throws DOMException {
+        if (namespaceURI != null && !"*".equals(namespaceURI)) {
+            return new CompactNodeList(document_, new int[0]);
+        }
+        return getElementsByTagName(localName);
+    }
+
+    @Override
+    public boolean hasAttribute(final String name) {
+        return document_.getAttributeIndex(index_, name) >= 0;
+    }
+
+    @Override
+    public boolean hasAttributeNS(final String namespaceURI, final String localName) throws DOMException {
+        return isNoNamespace(namespaceURI) && hasAttribute(localName);
+    }
+
+    @Override
+    public TypeInfo getSchemaTypeInfo() {
+        return null;
+    }
+
+    @Override
+    public void setIdAttribute(final String name, final boolean isId) throws DOMException {
+        throw readOnly();
+    }
+
+    @Override
+    public void setIdAttributeNS(final String namespaceURI, final String localName, final boolean isId) throws DOMException {
+        throw readOnly();
+    }
+
+    @Override
+    public void setIdAttributeNode(final Attr idAttr, final boolean isId) throws DOMException {
+        throw readOnly();
+    }
+
+    private static boolean isNoNamespace(final String namespaceURI) {
+        return namespaceURI == null || namespaceURI.isEmpty();
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.compact;
+
+import org.w3c.dom.DOMException;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * The read-only attributes of an element of a {@link CompactDocument}.
+ */
+final class CompactNamedNodeMap implements NamedNodeMap {
+
+    private final CompactDocument document_;
+    private final int element_;
+
+    // Constructor.
+    CompactNamedNodeMap(final CompactDocument document, final int element) {
+        document_ = document;
+        element_ = element;
+    }
+
+    @Override
+    public Node getNamedItem(final String name) {
+        final int attribute = document_.getAttributeIndex(element_, name);
+        return attribute < 0 ? null : new CompactAttr(document_, element_, attribute);
+    }
+
+    @Override
+    public Node setNamedItem(final Node arg) throws DOMException {
+        throw CompactNode.readOnly();
+    }
+
+    @Override
+    public Node removeNamedItem(final String name) throws DOMException {
+        throw CompactNode.readOnly();
+    }
+
+    @Override
+    public Node item(final int index) {
+        if (index < 0 || index >= getLength()) {
+            return null;
+        }
+        return new CompactAttr(document_, element_, document_.offsets_[element_] + index);
+    }
+
+    @Override
+    public int getLength() {
+        return document_.lengths_[element_];
+    }
+
+    @Override
+    public Node getNamedItemNS(final String namespaceURI, final String localName) throws DOMException {
+        if (namespaceURI != null && !namespaceURI.isEmpty()) {
+            return null;
+        }
+        return getNamedItem(localName);
+    }
+
+    @Override
+    public Node setNamedItemNS(final Node arg) throws DOMException {
+        throw CompactNode.readOnly();
+    }
+
+    @Override
+    public Node removeNamedItemNS(final String namespaceURI, final String localName) throws DOMException {
+        throw CompactNode.readOnly();
+    }
+}
@@ -0,0 +1,311 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.compact;
+
+import org.htmlunit.cyberneko.xerces.dom.DOMMessageFormatter;
+import org.w3c.dom.DOMException;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.UserDataHandler;
+
+/**
+ * Base class of the read-only node views of a {@link CompactDocument}. A view
+ * only holds the document and the index of the node, it is created when
+ * the node is requested; use {@link #isSameNode(Node)} or
+ * {@link #equals(Object)} to compare nodes, not <code>==</code>.
+ */
+public abstract class CompactNode implements Node {
+
+    /** The document holding the node data. */
+    final CompactDocument document_;
+
+    /** The index of the node in the document. */
+    final int index_;
+
+    // Constructor.
+    CompactNode(final CompactDocument document, final int index) {
+        // the document is its own node 0
+        document_ = document == null ? (CompactDocument) this : document;
+        index_ = index;
+    }
+
+    @Override
+    public String getNodeName() {
+        return document_.getName(index_);
+    }
+
+    @Override
+    public String getNodeValue() throws DOMException {
+        return null;
+    }
+
+    @Override
+    public void setNodeValue(final String nodeValue) throws DOMException {
+        throw readOnly();
+    }
+
+    @Override
+    public short getNodeType() {
+        return document_.types_[index_];
+    }
+
+    @Override
+    public Node getParentNode() {
+        return document_.node(document_.parents_[index_]);
+    }
+
+    @Override
+    public NodeList getChildNodes() {
+        return new CompactNodeList(document_, document_.children(index_));
+    }
+
+    @Override
+    public Node getFirstChild() {
+        return document_.node(document_.firstChildren_[index_]);
+    }
+
+    @Override
+    public Node getLastChild() {
+        return document_.node(document_.lastChildren_[index_]);
+    }
+
+    @Override
+    public Node getPreviousSibling() {
+        return document_.node(document_.previousSiblings_[index_]);
+    }
+
+    @Override
+    public Node getNextSibling() {
+        return document_.node(document_.nextSiblings_[index_]);
+    }
+
+    @Override
+    public NamedNodeMap getAttributes() {
+        return null;
+    }
+
+    @Override
+    public CompactDocument getOwnerDocument() {
+        return document_;
+    }
+
+    @Override
+    public Node insertBefore(final Node newChild, final Node refChild) throws DOMException {
+        throw readOnly();
+    }
+
+    @Override
+    public Node replaceChild(final Node newChild, final Node oldChild) throws DOMException {
+        throw readOnly();
+    }
+
+    @Override
+    public Node removeChild(final Node oldChild) throws DOMException {
+        throw readOnly();
+    }
+
+    @Override
+    public Node appendChild(final Node newChild) throws DOMException {
+        throw readOnly();
+    }
+
+    @Override
+    public boolean hasChildNodes() {
+        return document_.firstChildren_[index_] >= 0;
+    }
+
+    @Override
+    public Node cloneNode(final boolean deep) {
+        throw new DOMException(DOMException.NOT_SUPPORTED_ERR,
+                DOMMessageFormatter.formatMessage(DOMMessageFormatter.DOM_DOMAIN, "NOT_SUPPORTED_ERR", null));
+    }
+
+    @Override
+    public void normalize() {
+        // adjacent text is already merged
+    }
+
+    @Override
+    public boolean isSupported(final String feature, final String version) {
+        return false;
+    }
+
+    @Override
+    public String getNamespaceURI() {
+        return null;
+    }
+
+    @Override
+    public String getPrefix() {
+        return null;
+    }
+
+    @Override
+    public void setPrefix(final String prefix) throws DOMException {
+        throw readOnly();
+    }
+
+    @Override
+    public String getLocalName() {
+        return null;
+    }
+
+    @Override
+    public boolean hasAttributes() {
+        return false;
+    }
+
+    @Override
+    public String getBaseURI() {
+        return null;
+    }
+
+    @Override
+    public short compareDocumentPosition(final Node other) throws DOMException {
+        if (isSameNode(other)) {
+            return 0;
+        }
+        if (!(other instanceof CompactNode) || ((CompactNode) other).document_ != document_
+                || other.getNodeType() == ATTRIBUTE_NODE || getNodeType() == ATTRIBUTE_NODE) {
+            return DOCUMENT_POSITION_DISCONNECTED | DOCUMENT_POSITION_IMPLEMENTATION_SPECIFIC;
+        }
+
+        // the nodes are stored in document order
+        final int otherIndex = ((CompactNode) other).index_;
+        if (otherIndex < index_) {
+            return document_.isAncestor(otherIndex, index_)
+                    ? (short) (DOCUMENT_POSITION_CONTAINS | DOCUMENT_POSITION_PRECEDING)
+                    : DOCUMENT_POSITION_PRECEDING;
+        }
+        return document_.isAncestor(index_, otherIndex)
+                ? (short) (DOCUMENT_POSITION_CONTAINED_BY | DOCUMENT_POSITION_FOLLOWING)
+                : DOCUMENT_POSITION_FOLLOWING;
+    }
+
+    @Override
+    public String getTextContent() throws DOMException {
+        return document_.getTextContent(index_);
+    }
+
+    @Override
+    public void setTextContent(final String textContent) throws DOMException {
+        throw readOnly();
+    }
+
+    @Override
+    public boolean isSameNode(final Node other) {
+        return equals(other);
+    }
+
+    @Override
+    public String lookupPrefix(final String namespaceURI) {
+        return null;
+    }
+
+    @Override
+    public boolean isDefaultNamespace(final String namespaceURI) {
+        return namespaceURI == null;
+    }
+
+    @Override
+    public String lookupNamespaceURI(final String prefix) {
+        return null;
+    }
+
+    @Override
+    public boolean isEqualNode(final Node other) {
+        if (other == null || getNodeType() != other.getNodeType()
+                || !equals(getNodeName(), other.getNodeName())
+                || !equals(getNodeValue(), other.getNodeValue())) {
+            return false;
+        }
+
+        final NamedNodeMap attributes = getAttributes();
+        final NamedNodeMap otherAttributes = other.getAttributes();
+        if (attributes != null || otherAttributes != null) {
+            if (attributes == null || otherAttributes == null || attributes.getLength() != otherAttributes.getLength()) {
+                return false;
+            }
+            for (int i = 0; i < attributes.getLength(); i++) {
+                final Node attribute = attributes.item(i);
+                final Node otherAttribute = otherAttributes.getNamedItem(attribute.getNodeName());
+                if (otherAttribute == null || !attribute.isEqualNode(otherAttribute)) {
+                    return false;
+                }
+            }
+        }
+
+        Node child = getFirstChild();
+        Node otherChild = other.getFirstChild();
+        while (child != null && otherChild != null) {
+            if (!child.isEqualNode(otherChild)) {
+                return false;
+            }
+            child = child.getNextSibling();
+            otherChild = otherChild.getNextSibling();
+        }
+        return child == null && otherChild == null;
+    }
+
+    @Override
+    public Object getFeature(final String feature, final String version) {
+        return null;
+    }
+
+    @Override
+    public Object setUserData(final String key, final Object data, final UserDataHandler handler) {
+        return document_.setUserData(this, key, data);
+    }
+
+    @Override
+    public Object getUserData(final String key) {
+        return document_.getUserData(this, key);
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (obj == null || obj.getClass() != getClass()) {
+            return false;
+        }
+        final CompactNode other = (CompactNode) obj;
+        return other.document_ == document_ && other.index_ == index_;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(document_) * 31 + index_;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + getNodeName() + ": " + getNodeValue() + "]";
+    }
+
+    private static boolean equals(final String s1, final String s2) {
+        return s1 == null ? s2 == null : s1.equals(s2);
+    }
+
+    /**
+     * @return the exception thrown by all modifications
+     */
+    static DOMException readOnly() {
+        return new DOMException(DOMException.NO_MODIFICATION_ALLOWED_ERR,
+                DOMMessageFormatter.formatMessage(DOMMessageFormatter.DOM_DOMAIN, "NO_MODIFICATION_ALLOWED_ERR", null));
+    }
+}
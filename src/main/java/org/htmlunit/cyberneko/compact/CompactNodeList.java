@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.compact;
+
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * A static list of nodes of a {@link CompactDocument}.
+ */
+final class CompactNodeList implements NodeList {
+
+    private final CompactDocument document_;
+    private final int[] nodes_;
+
+    // Constructor.
+    CompactNodeList(final CompactDocument document, final int[] nodes) {
+        document_ = document;
+        nodes_ = nodes;
+    }
+
+    @Override
+    public Node item(final int index) {
+        if (index < 0 || index >= nodes_.length) {
+            return null;
+        }
+        return document_.node(nodes_[index]);
+    }
+
+    @Override
+    public int getLength() {
+        return nodes_.length;
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.compact;
+
+import org.w3c.dom.DOMException;
+import org.w3c.dom.ProcessingInstruction;
+
+/**
+ * The read-only view of a processing instruction of a {@link CompactDocument}.
+ */
+public final class CompactProcessingInstruction extends CompactNode implements ProcessingInstruction {
+
+    // Constructor.
+    CompactProcessingInstruction(final CompactDocument document, final int index) {
+        super(document, index);
+    }
+
+    @Override
+    public String getNodeValue() throws DOMException {
+        return getData();
+    }
+
+    @Override
+    public String getTarget() {
+        return getNodeName();
+    }
+
+    @Override
+    public String getData() {
+        return document_.getData(index_);
+    }
+
+    @Override
+    public void setData(final String data) throws DOMException {
+        throw readOnly();
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.compact;
+
+import org.w3c.dom.DOMException;
+import org.w3c.dom.Text;
+
+/**
+ * The read-only view of a text node of a {@link CompactDocument}.
+ */
+public final class CompactText extends CompactCharacterData implements Text {
+
+    // Constructor.
+    CompactText(final CompactDocument document, final int index) {
+        super(document, index);
+    }
+
+    @Override
+    public Text splitText(final int offset) throws DOMException {
+        throw readOnly();
+    }
+
+    @Override
+    public boolean isElementContentWhitespace() {
+        return false;
+    }
+
+    @Override
+    public String getWholeText() {
+        // adjacent text is merged while building
+        return getData();
+    }
+
+    @Override
+    public Text replaceWholeText(final String content) throws DOMException {
+        throw readOnly();
+    }
+}
@@ -18,6 +18,7 @@
 import java.util.Locale;
 
 import org.htmlunit.cyberneko.HTMLConfiguration;
+import org.htmlunit.cyberneko.HTMLElements;
 import org.htmlunit.cyberneko.xerces.xni.Augmentations;
 import org.htmlunit.cyberneko.xerces.xni.NamespaceContext;
 import org.htmlunit.cyberneko.xerces.xni.QName;
@@ -298,6 +299,16 @@ protected static String modifyName(final String name, final short mode) {
         return name;
     }
 
+    // Returns true if the local part of the element name is an HTML element.
+    private boolean isHtmlElement(final QName element) {
+        // the code resolved by the scanner is for the rawname
+        final short code = element.getElementCode();
+        if (code != -1 && element.getLocalpart() == element.getRawname()) {
+            return code != HTMLElements.UNKNOWN;
+        }
+        return htmlConfiguration_.getHtmlElements().getElement(element.getLocalpart(), null) != null;
+    }
+
     // Binds namespaces.
     protected void bindNamespaces(final QName element, final XMLAttributes attrs) {
         // split element qname
@@ -344,7 +355,7 @@ protected void bindNamespaces(final QName element, final XMLAttributes attrs) {
                     // final String prefix = alocal != rawname ? alocal : "";
                     String uri = avalue.length() > 0 ? avalue : null;
                     if (fOverrideNamespaces_ && prefix.equals(element.getPrefix())
-                            && htmlConfiguration_.getHtmlElements().getElement(element.getLocalpart(), null) != null) {
+                            && isHtmlElement(element)) {
                         uri = fNamespacesURI_;
                     }
                     fNamespaceContext_.declarePrefix(prefix, uri);
@@ -365,7 +376,7 @@ protected void bindNamespaces(final QName element, final XMLAttributes attrs) {
 
         // do we need to insert namespace bindings?
         if (fInsertNamespaces_ && attrs != null
-                && htmlConfiguration_.getHtmlElements().getElement(element.getLocalpart(), null) != null) {
+                && isHtmlElement(element)) {
             if (element.getPrefix() == null || fNamespaceContext_.getURI(element.getPrefix()) == null) {
                 final String xmlns = "xmlns" + ((element.getPrefix() != null)
                              ? ":" + element.getPrefix() : "");
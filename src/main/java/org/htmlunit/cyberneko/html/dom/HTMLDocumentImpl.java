@@ -16,12 +16,12 @@
 package org.htmlunit.cyberneko.html.dom;
 
 import java.io.StringWriter;
-import java.lang.reflect.Constructor;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
 
+import org.htmlunit.cyberneko.HTMLElements;
 import org.htmlunit.cyberneko.util.FastHashMap;
 import org.htmlunit.cyberneko.xerces.dom.DocumentImpl;
 import org.htmlunit.cyberneko.xerces.dom.ElementImpl;
@@ -119,125 +119,184 @@ public class HTMLDocumentImpl extends DocumentImpl implements HTMLDocument {
     private StringWriter        writer_;
 
     /**
-     * Holds names and classes of HTML element types. When an element with a
-     * particular tag name is created, the matching {@link java.lang.Class}
-     * is used to create the element object. For example, &lt;A&gt; matches
-     * {@link HTMLAnchorElementImpl}. This static table is shared across all
-     * HTML documents.
+     * Creates the object of an HTML element type, e.g.
+     * <code>HTMLDivElementImpl::new</code>.
      *
-     * @see #createElement
+     * @see #registerElementFactory(String, ElementFactory)
      */
-    private static final FastHashMap<String, ElementTypesHTMLHolder> elementTypesHTMLLower_ = new FastHashMap<>(11, 0.5f);
-    private static final FastHashMap<String, ElementTypesHTMLHolder> elementTypesHTMLUpper_ = new FastHashMap<>(11, 0.5f);
+    @FunctionalInterface
+    public interface ElementFactory {
+
+        /**
+         * @param owner the owner document
+         * @param tagName the uppercase tag name
+         * @return the new element
+         */
+        HTMLElementImpl create(HTMLDocumentImpl owner, String tagName);
+    }
+
+    /** Creates the elements without a specific class. */
+    private static final ElementFactory GENERIC_FACTORY = HTMLElementImpl::new;
 
     /**
-     * Signature used to locate constructor of HTML element classes. This
-     * static array is shared across all HTML documents.
+     * Holds the factories of the HTML element types. When an element with a
+     * particular tag name is created, the matching factory is used to create
+     * the element object. For example, &lt;A&gt; matches
+     * {@link HTMLAnchorElementImpl}. This static table is shared across all
+     * HTML documents, it is replaced when a factory is registered.
      *
      * @see #createElement
      */
-    private static final Class<?>[]    elemClassSigHTML_ = new Class[] {HTMLDocumentImpl.class, String.class};
+    private static volatile ElementTypes elementTypes_;
 
     static {
-        final Map<String, Class<? extends HTMLElementImpl>> tMap = new HashMap<>();
+        final Map<String, ElementFactory> factories = new HashMap<>();
 
         // register all HTML5 elements that are not deprecated as simple
         // HTMLElementImpl first and overwrite them later
         // https://developer.mozilla.org/en-US/docs/Web/HTML/Element
-        Arrays.stream(HTML5ELEMENTS).forEach(t -> tMap.put(t, HTMLElementImpl.class));
-
-        tMap.put("A", HTMLAnchorElementImpl.class);
-        tMap.put("APPLET", HTMLAppletElementImpl.class);
-        tMap.put("AREA", HTMLAreaElementImpl.class);
-        tMap.put("BASE",  HTMLBaseElementImpl.class);
-        tMap.put("BASEFONT", HTMLBaseFontElementImpl.class);
-        tMap.put("BLOCKQUOTE", HTMLQuoteElementImpl.class);
-        tMap.put("BODY", HTMLBodyElementImpl.class);
-        tMap.put("BR", HTMLBRElementImpl.class);
-        tMap.put("BUTTON", HTMLButtonElementImpl.class);
-        tMap.put("DEL", HTMLModElementImpl.class);
-        tMap.put("DIR", HTMLDirectoryElementImpl.class);
-        tMap.put("DIV",  HTMLDivElementImpl.class);
-        tMap.put("DL", HTMLDListElementImpl.class);
-        tMap.put("FIELDSET", HTMLFieldSetElementImpl.class);
-        tMap.put("FONT", HTMLFontElementImpl.class);
-        tMap.put("FORM", HTMLFormElementImpl.class);
-        tMap.put("FRAME", HTMLFrameElementImpl.class);
-        tMap.put("FRAMESET", HTMLFrameSetElementImpl.class);
-        tMap.put("HEAD", HTMLHeadElementImpl.class);
-        tMap.put("H1", HTMLHeadingElementImpl.class);
-        tMap.put("H2", HTMLHeadingElementImpl.class);
-        tMap.put("H3", HTMLHeadingElementImpl.class);
-        tMap.put("H4", HTMLHeadingElementImpl.class);
-        tMap.put("H5", HTMLHeadingElementImpl.class);
-        tMap.put("H6", HTMLHeadingElementImpl.class);
-        tMap.put("HR", HTMLHRElementImpl.class);
-        tMap.put("HTML", HTMLHtmlElementImpl.class);
-        tMap.put("IFRAME", HTMLIFrameElementImpl.class);
-        tMap.put("IMG", HTMLImageElementImpl.class);
-        tMap.put("INPUT", HTMLInputElementImpl.class);
-        tMap.put("INS", HTMLModElementImpl.class);
-        tMap.put("ISINDEX", HTMLIsIndexElementImpl.class);
-        tMap.put("LABEL", HTMLLabelElementImpl.class);
-        tMap.put("LEGEND", HTMLLegendElementImpl.class);
-        tMap.put("LI", HTMLLIElementImpl.class);
-        tMap.put("LINK", HTMLLinkElementImpl.class);
-        tMap.put("MAP", HTMLMapElementImpl.class);
-        tMap.put("MENU", HTMLMenuElementImpl.class);
-        tMap.put("META", HTMLMetaElementImpl.class);
-        tMap.put("OBJECT", HTMLObjectElementImpl.class);
-        tMap.put("OL", HTMLOListElementImpl.class);
-        tMap.put("OPTGROUP", HTMLOptGroupElementImpl.class);
-        tMap.put("OPTION", HTMLOptionElementImpl.class);
-        tMap.put("P", HTMLParagraphElementImpl.class);
-        tMap.put("PARAM", HTMLParamElementImpl.class);
-        tMap.put("PRE", HTMLPreElementImpl.class);
-        tMap.put("Q", HTMLQuoteElementImpl.class);
-        tMap.put("SCRIPT", HTMLScriptElementImpl.class);
-        tMap.put("SELECT", HTMLSelectElementImpl.class);
-        tMap.put("STYLE", HTMLStyleElementImpl.class);
-        tMap.put("TABLE", HTMLTableElementImpl.class);
-        tMap.put("CAPTION", HTMLTableCaptionElementImpl.class);
-        tMap.put("TD", HTMLTableCellElementImpl.class);
-        tMap.put("TH", HTMLTableCellElementImpl.class);
-        tMap.put("COL", HTMLTableColElementImpl.class);
-        tMap.put("COLGROUP", HTMLTableColElementImpl.class);
-        tMap.put("TR", HTMLTableRowElementImpl.class);
-        tMap.put("TBODY", HTMLTableSectionElementImpl.class);
-        tMap.put("THEAD", HTMLTableSectionElementImpl.class);
-        tMap.put("TFOOT", HTMLTableSectionElementImpl.class);
-        tMap.put("TEXTAREA", HTMLTextAreaElementImpl.class);
-        tMap.put("TITLE", HTMLTitleElementImpl.class);
-        tMap.put("UL", HTMLUListElementImpl.class);
-
-        // also put all lowercase versions here to safe on lookup
-        tMap.entrySet().forEach(e -> {
-            final String key = e.getKey();
-            final Class<? extends HTMLElementImpl> value = e.getValue();
-
-            final String uKey = key.toUpperCase(Locale.ENGLISH);
-            final String lKey = key.toLowerCase(Locale.ENGLISH);
-
-            try {
-                final Constructor<? extends HTMLElementImpl> ctr = value.getConstructor(elemClassSigHTML_);
-
-                final ElementTypesHTMLHolder holder = new ElementTypesHTMLHolder(uKey, ctr);
-                elementTypesHTMLUpper_.put(uKey, holder);
-                elementTypesHTMLLower_.put(lKey, holder);
-            }
-            catch (NoSuchMethodException | SecurityException ex) {
-                throw new IllegalStateException("HTM15 Tag '" + key + "' associated with an Element class that failed to construct.\n" + key, ex);
+        Arrays.stream(HTML5ELEMENTS).forEach(t -> factories.put(t, GENERIC_FACTORY));
+
+        factories.put("A", HTMLAnchorElementImpl::new);
+        factories.put("APPLET", HTMLAppletElementImpl::new);
+        factories.put("AREA", HTMLAreaElementImpl::new);
+        factories.put("BASE", HTMLBaseElementImpl::new);
+        factories.put("BASEFONT", HTMLBaseFontElementImpl::new);
+        final ElementFactory quote = HTMLQuoteElementImpl::new;
+        factories.put("BLOCKQUOTE", quote);
+        factories.put("Q", quote);
+        factories.put("BODY", HTMLBodyElementImpl::new);
+        factories.put("BR", HTMLBRElementImpl::new);
+        factories.put("BUTTON", HTMLButtonElementImpl::new);
+        final ElementFactory mod = HTMLModElementImpl::new;
+        factories.put("DEL", mod);
+        factories.put("INS", mod);
+        factories.put("DIR", HTMLDirectoryElementImpl::new);
+        factories.put("DIV", HTMLDivElementImpl::new);
+        factories.put("DL", HTMLDListElementImpl::new);
+        factories.put("FIELDSET", HTMLFieldSetElementImpl::new);
+        factories.put("FONT", HTMLFontElementImpl::new);
+        factories.put("FORM", HTMLFormElementImpl::new);
+        factories.put("FRAME", HTMLFrameElementImpl::new);
+        factories.put("FRAMESET", HTMLFrameSetElementImpl::new);
+        factories.put("HEAD", HTMLHeadElementImpl::new);
+        final ElementFactory heading = HTMLHeadingElementImpl::new;
+        factories.put("H1", heading);
+        factories.put("H2", heading);
+        factories.put("H3", heading);
+        factories.put("H4", heading);
+        factories.put("H5", heading);
+        factories.put("H6", heading);
+        factories.put("HR", HTMLHRElementImpl::new);
+        factories.put("HTML", HTMLHtmlElementImpl::new);
+        factories.put("IFRAME", HTMLIFrameElementImpl::new);
+        factories.put("IMG", HTMLImageElementImpl::new);
+        factories.put("INPUT", HTMLInputElementImpl::new);
+        factories.put("ISINDEX", HTMLIsIndexElementImpl::new);
+        factories.put("LABEL", HTMLLabelElementImpl::new);
+        factories.put("LEGEND", HTMLLegendElementImpl::new);
+        factories.put("LI", HTMLLIElementImpl::new);
+        factories.put("LINK", HTMLLinkElementImpl::new);
+        factories.put("MAP", HTMLMapElementImpl::new);
+        factories.put("MENU", HTMLMenuElementImpl::new);
+        factories.put("META", HTMLMetaElementImpl::new);
+        factories.put("OBJECT", HTMLObjectElementImpl::new);
+        factories.put("OL", HTMLOListElementImpl::new);
+        factories.put("OPTGROUP", HTMLOptGroupElementImpl::new);
+        factories.put("OPTION", HTMLOptionElementImpl::new);
+        factories.put("P", HTMLParagraphElementImpl::new);
+        factories.put("PARAM", HTMLParamElementImpl::new);
+        factories.put("PRE", HTMLPreElementImpl::new);
+        factories.put("SCRIPT", HTMLScriptElementImpl::new);
+        factories.put("SELECT", HTMLSelectElementImpl::new);
+        factories.put("STYLE", HTMLStyleElementImpl::new);
+        factories.put("TABLE", HTMLTableElementImpl::new);
+        factories.put("CAPTION", HTMLTableCaptionElementImpl::new);
+        final ElementFactory tableCell = HTMLTableCellElementImpl::new;
+        factories.put("TD", tableCell);
+        factories.put("TH", tableCell);
+        final ElementFactory tableCol = HTMLTableColElementImpl::new;
+        factories.put("COL", tableCol);
+        factories.put("COLGROUP", tableCol);
+        factories.put("TR", HTMLTableRowElementImpl::new);
+        final ElementFactory tableSection = HTMLTableSectionElementImpl::new;
+        factories.put("TBODY", tableSection);
+        factories.put("THEAD", tableSection);
+        factories.put("TFOOT", tableSection);
+        factories.put("TEXTAREA", HTMLTextAreaElementImpl::new);
+        factories.put("TITLE", HTMLTitleElementImpl::new);
+        factories.put("UL", HTMLUListElementImpl::new);
+
+        elementTypes_ = new ElementTypes(factories);
+    }
+
+    /**
+     * Registers the factory for the elements with the given tag name, replacing
+     * the factory used so far. Affects all documents.
+     *
+     * @param tagName the tag name (case insensitive)
+     * @param factory creates the elements
+     */
+    public static synchronized void registerElementFactory(final String tagName, final ElementFactory factory) {
+        final Map<String, ElementFactory> factories = new HashMap<>(elementTypes_.factories_);
+        factories.put(tagName.toUpperCase(Locale.ENGLISH), factory);
+        elementTypes_ = new ElementTypes(factories);
+    }
+
+    /**
+     * Removes the factory for the elements with the given tag name; these
+     * elements are created as generic elements afterwards. Affects all documents.
+     *
+     * @param tagName the tag name (case insensitive)
+     */
+    public static synchronized void unregisterElementFactory(final String tagName) {
+        final Map<String, ElementFactory> factories = new HashMap<>(elementTypes_.factories_);
+        factories.remove(tagName.toUpperCase(Locale.ENGLISH));
+        elementTypes_ = new ElementTypes(factories);
+    }
+
+    /**
+     * The lookup tables of the element factories, never changed after creation.
+     */
+    private static final class ElementTypes {
+        private final Map<String, ElementFactory> factories_;
+        private final FastHashMap<String, ElementTypesHTMLHolder> lower_ = new FastHashMap<>(11, 0.5f);
+        private final FastHashMap<String, ElementTypesHTMLHolder> upper_ = new FastHashMap<>(11, 0.5f);
+
+        // indexed by the HTMLElements code
+        private final ElementTypesHTMLHolder[] byCode_ = new ElementTypesHTMLHolder[HTMLElements.UNKNOWN];
+
+        ElementTypes(final Map<String, ElementFactory> factories) {
+            factories_ = factories;
+
+            // also put all lowercase versions here to safe on lookup
+            factories.forEach((key, factory) -> {
+                final String uKey = key.toUpperCase(Locale.ENGLISH);
+                final String lKey = key.toLowerCase(Locale.ENGLISH);
+
+                final ElementTypesHTMLHolder holder = new ElementTypesHTMLHolder(uKey, factory);
+                upper_.put(uKey, holder);
+                lower_.put(lKey, holder);
+            });
+
+            final HTMLElements htmlElements = new HTMLElements();
+            for (short code = 0; code < HTMLElements.UNKNOWN; code++) {
+                final HTMLElements.Element element = htmlElements.getElement(code);
+                if (element != null) {
+                    final ElementTypesHTMLHolder holder = upper_.get(element.name);
+                    byCode_[code] = holder != null ? holder : new ElementTypesHTMLHolder(element.name, GENERIC_FACTORY);
+                }
             }
-        });
+        }
     }
 
     static class ElementTypesHTMLHolder {
         public final String tagName;
-        public final Constructor<? extends HTMLElementImpl> ctr;
+        public final ElementFactory factory;
 
-        ElementTypesHTMLHolder(final String tagName, final Constructor<? extends HTMLElementImpl> ctr) {
+        ElementTypesHTMLHolder(final String tagName, final ElementFactory factory) {
             this.tagName = tagName;
-            this.ctr = ctr;
+            this.factory = factory;
         }
     }
 
@@ -509,6 +568,15 @@ public Element createElementNS(final String namespaceURI, final String qualified
         return createElementNS(namespaceURI, qualifiedName);
     }
 
+    @Override
+    public Element createElementNS(final String namespaceURI, final String qualifiedName, final String localpart,
+                final short elementCode) throws DOMException {
+        if (namespaceURI == null || namespaceURI.length() == 0) {
+            return createElement(qualifiedName, elementCode);
+        }
+        return super.createElementNS(namespaceURI, qualifiedName);
+    }
+
     @Override
     public Element createElementNS(final String namespaceURI, final String qualifiedname) {
         if (namespaceURI == null || namespaceURI.length() == 0) {
@@ -520,28 +588,44 @@ public Element createElementNS(final String namespaceURI, final String qualified
     @Override
     public Element createElement(final String tagName) throws DOMException {
         // First, make sure tag name is all upper case, next get the associated
-        // element class. If no class is found, generate a generic HTML element.
-        // Do so also if an unexpected exception occurs.
-        ElementTypesHTMLHolder htmlHolder = elementTypesHTMLLower_.get(tagName);
-        if (htmlHolder == null) {
-            // try uppercase but only if needed and don't use this string to create
-            // the element but the stored one to keep the memory usage low when the
-            // tree is kept in memory longer
-            htmlHolder = elementTypesHTMLUpper_.get(tagName.toUpperCase(Locale.ENGLISH));
+        // element factory. If no factory is found, generate a generic HTML element.
+        final ElementTypesHTMLHolder htmlHolder = getElementType(tagName);
+        if (htmlHolder != null) {
+            // don't use the given string to create the element but the stored one
+            // to keep the memory usage low when the tree is kept in memory longer
+            return htmlHolder.factory.create(this, htmlHolder.tagName);
+        }
+        return new HTMLElementImpl(this, tagName.toUpperCase(Locale.ENGLISH));
+    }
+
+    /**
+     * NON-DOM: creates an element of a known type without looking up the name.
+     *
+     * @param tagName the tag name
+     * @param elementCode the code of the element (see {@link HTMLElements})
+     *        resolved for the tag name or -1 if not known
+     * @return the new element
+     */
+    public Element createElement(final String tagName, final short elementCode) {
+        final ElementTypesHTMLHolder[] byCode = elementTypes_.byCode_;
+        if (elementCode >= 0 && elementCode < byCode.length) {
+            final ElementTypesHTMLHolder htmlHolder = byCode[elementCode];
+            if (htmlHolder != null) {
+                return htmlHolder.factory.create(this, htmlHolder.tagName);
+            }
         }
+        return createElement(tagName);
+    }
 
+    // Returns the element type of the tag name, null if not known.
+    private static ElementTypesHTMLHolder getElementType(final String tagName) {
+        final ElementTypes types = elementTypes_;
+        final ElementTypesHTMLHolder htmlHolder = types.lower_.get(tagName);
         if (htmlHolder != null) {
-            // Get the constructor for the element. The signature specifies an
-            // owner document and a tag name. Use the constructor to instantiate
-            // a new object and return it.
-            try {
-                return htmlHolder.ctr.newInstance(new Object[] {this, htmlHolder.tagName});
-            }
-            catch (final Exception e) {
-                throw new IllegalStateException("HTM15 Tag '" + tagName + "' associated with an Element class that failed to construct.\n" + tagName, e);
-            }
+            return htmlHolder;
         }
-        return new HTMLElementImpl(this, tagName.toUpperCase(Locale.ENGLISH));
+        // try uppercase but only if needed
+        return types.upper_.get(tagName.toUpperCase(Locale.ENGLISH));
     }
 
     /**
@@ -685,9 +769,9 @@ protected boolean canRenameElements(final String newNamespaceURI, final String n
         }
 
         // check whether a class change is required
-        final Constructor<?> newCtr = elementTypesHTMLUpper_.get(newNodeName.toUpperCase(Locale.ENGLISH)).ctr;
-        final Constructor<?> oldCtr = elementTypesHTMLUpper_.get(el.getTagName()).ctr;
-        return newCtr == oldCtr;
+        final ElementTypesHTMLHolder newType = getElementType(newNodeName);
+        final ElementTypesHTMLHolder oldType = getElementType(el.getTagName());
+        return (newType == null ? GENERIC_FACTORY : newType.factory) == (oldType == null ? GENERIC_FACTORY : oldType.factory);
     }
 
     /**
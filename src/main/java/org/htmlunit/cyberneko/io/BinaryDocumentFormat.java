@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.io;
+
+/**
+ * The constants of the binary document format written by
+ * {@link BinaryDocumentWriter} and read by {@link BinaryDocumentReader}.
+ *
+ * <p>A stream starts with the {@link #MAGIC} bytes and the {@link #VERSION}
+ * followed by one record per document event. A record starts with the
+ * event byte.
+ * <ul>
+ * <li>Numbers are unsigned varints (7 bits per byte, low bits first).</li>
+ * <li>Strings (names, identifiers) are references into a string table built
+ * while writing: 0 is null, 1 is a new string (its text follows and it
+ * gets the next index), n &gt; 1 is the string with the index n - 2.</li>
+ * <li>Text is the number of chars followed by the chars, one to three bytes
+ * per char (like the modified UTF-8 of {@link java.io.DataOutput}).</li>
+ * <li>A name is a flags byte, the raw name, the local part (unless the same
+ * as the raw name), the prefix and uri (if not null) and the element code
+ * of {@link org.htmlunit.cyberneko.HTMLElements} + 1.</li>
+ * </ul>
+ */
+final class BinaryDocumentFormat {
+
+    /** The first bytes of a stream. */
+    static final byte[] MAGIC = {'N', 'K', 'B', 'D'};
+
+    /** The version of the format. */
+    static final int VERSION = 1;
+
+    // the events
+    static final int START_DOCUMENT = 1;
+    static final int XML_DECL = 2;
+    static final int DOCTYPE_DECL = 3;
+    static final int START_ELEMENT = 4;
+    static final int EMPTY_ELEMENT = 5;
+    static final int END_ELEMENT = 6;
+    static final int CHARACTERS = 7;
+    static final int IGNORABLE_WHITESPACE = 8;
+    static final int COMMENT = 9;
+    static final int PROCESSING_INSTRUCTION = 10;
+    static final int START_CDATA = 11;
+    static final int END_CDATA = 12;
+    static final int START_GENERAL_ENTITY = 13;
+    static final int END_GENERAL_ENTITY = 14;
+    static final int TEXT_DECL = 15;
+    static final int END_DOCUMENT = 16;
+
+    // the string references
+    static final int NULL_STRING = 0;
+    static final int NEW_STRING = 1;
+    static final int STRING_INDEX_OFFSET = 2;
+
+    // the flags of a name
+    static final int LOCALPART_IS_RAWNAME = 1;
+    static final int HAS_PREFIX = 2;
+    static final int HAS_URI = 4;
+    static final int NOT_SPECIFIED = 8;
+
+    private BinaryDocumentFormat() {
+    }
+}
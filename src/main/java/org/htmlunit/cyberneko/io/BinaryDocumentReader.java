@@ -0,0 +1,594 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.io;
+
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.CHARACTERS;
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.COMMENT;
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.DOCTYPE_DECL;
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.EMPTY_ELEMENT;
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.END_CDATA;
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.END_DOCUMENT;
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.END_ELEMENT;
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.END_GENERAL_ENTITY;
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.HAS_PREFIX;
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.HAS_URI;
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.IGNORABLE_WHITESPACE;
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.LOCALPART_IS_RAWNAME;
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.MAGIC;
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.NEW_STRING;
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.NOT_SPECIFIED;
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.NULL_STRING;
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.PROCESSING_INSTRUCTION;
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.START_CDATA;
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.START_DOCUMENT;
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.START_ELEMENT;
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.START_GENERAL_ENTITY;
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.STRING_INDEX_OFFSET;
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.TEXT_DECL;
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.VERSION;
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.XML_DECL;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.htmlunit.cyberneko.HTMLScanner;
+import org.htmlunit.cyberneko.filters.DefaultFilter;
+import org.htmlunit.cyberneko.xerces.dom.CoreDocumentImpl;
+import org.htmlunit.cyberneko.xerces.dom.EventTape;
+import org.htmlunit.cyberneko.xerces.util.XMLAttributesImpl;
+import org.htmlunit.cyberneko.xerces.xni.Augmentations;
+import org.htmlunit.cyberneko.xerces.xni.NamespaceContext;
+import org.htmlunit.cyberneko.xerces.xni.QName;
+import org.htmlunit.cyberneko.xerces.xni.XMLAttributes;
+import org.htmlunit.cyberneko.xerces.xni.XMLDocumentHandler;
+import org.htmlunit.cyberneko.xerces.xni.XMLLocator;
+import org.htmlunit.cyberneko.xerces.xni.XMLString;
+import org.htmlunit.cyberneko.xerces.xni.XNIException;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLInputSource;
+
+/**
+ * Reads a document written by {@link BinaryDocumentWriter}. The events
+ * can be replayed to any document handler or a DOM document can be
+ * built directly; the document is neither scanned nor balanced again.
+ *
+ * <pre>
+ * try (InputStream in = ...) {
+ *     final HTMLDocumentImpl document = new HTMLDocumentImpl();
+ *     new BinaryDocumentReader(in).readDocument(document);
+ * }
+ * </pre>
+ *
+ * <p>The replayed events have no augmentations and no namespace context,
+ * the locator only provides the system id and the encoding of the
+ * original document. Documents written one after the other to the same
+ * stream are read by successive calls.
+ *
+ * <p><strong>Note:</strong> This class is not thread safe.
+ */
+public class BinaryDocumentReader {
+
+    private final InputStream in_;
+
+    private final byte[] buffer_ = new byte[8192];
+    private int position_;
+    private int length_;
+
+    private final List<String> strings_ = new ArrayList<>();
+
+    private char[] chars_ = new char[256];
+
+    private final XMLString xmlString_ = new XMLString();
+    private final QName qName_ = new QName();
+    private final QName attributeQName_ = new QName();
+    private final XMLAttributesImpl attributes_ = new XMLAttributesImpl();
+
+    // the started elements not ended yet, ended if the replay is stopped
+    private QName[] openElements_ = new QName[16];
+    private int openCount_;
+
+    private boolean stopRequested_;
+    private boolean stopEndDocument_;
+
+    /**
+     * Creates a reader.
+     *
+     * @param in the stream to read from, positioned at the start of a
+     *        written document
+     */
+    public BinaryDocumentReader(final InputStream in) {
+        in_ = in;
+    }
+
+    /**
+     * Replays the events of the document.
+     *
+     * @param handler the handler to notify
+     * @throws IOException in case of a read error or if the content is
+     *         not a document in the binary format
+     * @throws XNIException if the handler throws it
+     */
+    public void replay(final XMLDocumentHandler handler) throws IOException {
+        replay(handler, null);
+    }
+
+    /**
+     * Replays the events of the document as the content of the given source
+     * (e.g. a document with the same content at another location); the
+     * locator reports the identifiers of the source instead of the recorded
+     * system id.
+     *
+     * @param handler the handler to notify
+     * @param source the source of the document or null
+     * @throws IOException in case of a read error or if the content is
+     *         not a document in the binary format
+     * @throws XNIException if the handler throws it
+     */
+    public void replay(final XMLDocumentHandler handler, final XMLInputSource source) throws IOException {
+        readHeader();
+        openCount_ = 0;
+        stopRequested_ = false;
+
+        int event;
+        do {
+            event = readByte();
+            switch (event) {
+                case START_DOCUMENT:
+                    final String systemId = readString();
+                    final String encoding = readString();
+                    final Locator locator;
+                    if (source == null) {
+                        locator = new Locator(null, systemId, systemId, systemId, encoding);
+                    }
+                    else {
+                        locator = new Locator(source.getPublicId(), source.getSystemId(), source.getBaseSystemId(),
+                                HTMLScanner.expandSystemId(source.getSystemId(), source.getBaseSystemId()), encoding);
+                    }
+                    handler.startDocument(locator, encoding, null, null);
+                    break;
+
+                case XML_DECL:
+                    handler.xmlDecl(readString(), readString(), readString(), null);
+                    break;
+
+                case DOCTYPE_DECL:
+                    handler.doctypeDecl(readString(), readString(), readString(), null);
+                    break;
+
+                case START_ELEMENT:
+                    readElement();
+                    open(qName_);
+                    handler.startElement(qName_, attributes_, null);
+                    break;
+
+                case EMPTY_ELEMENT:
+                    readElement();
+                    handler.emptyElement(qName_, attributes_, null);
+                    break;
+
+                case END_ELEMENT:
+                    readName(qName_);
+                    openCount_--;
+                    handler.endElement(qName_, null);
+                    break;
+
+                case CHARACTERS:
+                    handler.characters(readText(), null);
+                    break;
+
+                case IGNORABLE_WHITESPACE:
+                    handler.ignorableWhitespace(readText(), null);
+                    break;
+
+                case COMMENT:
+                    handler.comment(readText(), null);
+                    break;
+
+                case PROCESSING_INSTRUCTION:
+                    final String target = readString();
+                    handler.processingInstruction(target, readByte() == 0 ? null : readText(), null);
+                    break;
+
+                case START_CDATA:
+                    handler.startCDATA(null);
+                    break;
+
+                case END_CDATA:
+                    handler.endCDATA(null);
+                    break;
+
+                case START_GENERAL_ENTITY:
+                    handler.startGeneralEntity(readString(), readString(), null);
+                    break;
+
+                case TEXT_DECL:
+                    handler.textDecl(readString(), readString(), null);
+                    break;
+
+                case END_GENERAL_ENTITY:
+                    handler.endGeneralEntity(readString(), null);
+                    break;
+
+                case END_DOCUMENT:
+                    handler.endDocument(null);
+                    break;
+
+                default:
+                    throw new IOException("Invalid event " + event);
+            }
+
+            if (stopRequested_ && event != END_DOCUMENT) {
+                finishStop(handler);
+                return;
+            }
+        }
+        while (event != END_DOCUMENT);
+    }
+
+    /**
+     * Stops the running replay after the current event. This is meant to be
+     * called from the handler that has seen everything it needs; the rest of
+     * the document is not read.
+     *
+     * @param endDocument whether to end the open elements and the document
+     *        when stopping, like the tag balancer does for a stopped parsing
+     */
+    public void stop(final boolean endDocument) {
+        stopRequested_ = true;
+        stopEndDocument_ = endDocument;
+    }
+
+    // Finishes the replayed document after a stop request.
+    private void finishStop(final XMLDocumentHandler handler) {
+        stopRequested_ = false;
+        if (stopEndDocument_) {
+            while (openCount_ > 0) {
+                handler.endElement(openElements_[--openCount_], null);
+            }
+            handler.endDocument(null);
+        }
+    }
+
+    private void open(final QName element) {
+        if (openCount_ == openElements_.length) {
+            openElements_ = Arrays.copyOf(openElements_, openCount_ * 2);
+        }
+        QName open = openElements_[openCount_];
+        if (open == null) {
+            open = new QName();
+            openElements_[openCount_] = open;
+        }
+        open.setValues(element);
+        openCount_++;
+    }
+
+    /**
+     * Builds the content of the given (empty) document from the events like
+     * the DOM parser with its default settings. The nodes are created when
+     * they are accessed (see {@link EventTape}).
+     *
+     * @param document the document to fill
+     * @throws IOException in case of a read error or if the content is
+     *         not a document in the binary format
+     */
+    public void readDocument(final CoreDocumentImpl document) throws IOException {
+        final boolean strictErrorChecking = document.getStrictErrorChecking();
+        document.setStrictErrorChecking(false);
+        try {
+            final DocumentBuilder builder = new DocumentBuilder(document);
+            replay(builder);
+            builder.tape_.attach(document);
+        }
+        finally {
+            document.setStrictErrorChecking(strictErrorChecking);
+        }
+    }
+
+    private void readHeader() throws IOException {
+        // the strings of a previous document are not referenced
+        strings_.clear();
+        for (final byte b : MAGIC) {
+            if (readByte() != b) {
+                throw new IOException("Not a binary document");
+            }
+        }
+        final int version = readVarint();
+        if (version != VERSION) {
+            throw new IOException("Unsupported version " + version);
+        }
+    }
+
+    private void readElement() throws IOException {
+        readName(qName_);
+
+        attributes_.removeAllAttributes();
+        final int count = readVarint();
+        for (int i = 0; i < count; i++) {
+            final int flags = readName(attributeQName_);
+            final String type = readString();
+            final int index = attributes_.addAttribute(attributeQName_, type, readText());
+            attributes_.setSpecified(index, (flags & NOT_SPECIFIED) == 0);
+        }
+    }
+
+    private int readName(final QName name) throws IOException {
+        final int flags = readByte();
+        final String rawname = readString();
+        final String localpart = (flags & LOCALPART_IS_RAWNAME) == 0 ? readString() : rawname;
+        final String prefix = (flags & HAS_PREFIX) == 0 ? null : readString();
+        final String uri = (flags & HAS_URI) == 0 ? null : readString();
+        name.setValues(prefix, localpart, rawname, uri);
+        name.setElementCode((short) (readVarint() - 1));
+        return flags;
+    }
+
+    private String readString() throws IOException {
+        final int ref = readVarint();
+        if (ref == NULL_STRING) {
+            return null;
+        }
+        if (ref == NEW_STRING) {
+            final int length = readChars();
+            final String string = new String(chars_, 0, length);
+            strings_.add(string);
+            return string;
+        }
+        final int index = ref - STRING_INDEX_OFFSET;
+        if (index >= strings_.size()) {
+            throw new IOException("Invalid string reference " + ref);
+        }
+        return strings_.get(index);
+    }
+
+    private XMLString readText() throws IOException {
+        final int length = readChars();
+        xmlString_.clear();
+        xmlString_.append(chars_, 0, length);
+        return xmlString_;
+    }
+
+    /**
+     * Reads a text into the chars.
+     *
+     * @return the number of chars
+     */
+    private int readChars() throws IOException {
+        final int length = readVarint();
+        if (length > chars_.length) {
+            chars_ = new char[Math.max(length, chars_.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+            final int b = readByte();
+            if (b < 0x80) {
+                chars_[i] = (char) b;
+            }
+            else if (b < 0xE0) {
+                chars_[i] = (char) ((b & 0x1F) << 6 | readByte() & 0x3F);
+            }
+            else {
+                chars_[i] = (char) ((b & 0x0F) << 12 | (readByte() & 0x3F) << 6 | readByte() & 0x3F);
+            }
+        }
+        return length;
+    }
+
+    private int readVarint() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            final int b = readByte();
+            value |= (b & 0x7F) << shift;
+            if (b < 0x80) {
+                return value;
+            }
+        }
+        throw new IOException("Invalid number");
+    }
+
+    private int readByte() throws IOException {
+        if (position_ == length_) {
+            length_ = in_.read(buffer_, 0, buffer_.length);
+            position_ = 0;
+            if (length_ <= 0) {
+                length_ = 0;
+                throw new EOFException();
+            }
+        }
+        return buffer_[position_++] & 0xFF;
+    }
+
+    /**
+     * The locator of the replayed document.
+     */
+    private static final class Locator implements XMLLocator {
+        private final String publicId_;
+        private final String literalSystemId_;
+        private final String baseSystemId_;
+        private final String expandedSystemId_;
+        private final String encoding_;
+
+        // Constructor.
+        Locator(final String publicId, final String literalSystemId, final String baseSystemId,
+                final String expandedSystemId, final String encoding) {
+            publicId_ = publicId;
+            literalSystemId_ = literalSystemId;
+            baseSystemId_ = baseSystemId;
+            expandedSystemId_ = expandedSystemId;
+            encoding_ = encoding;
+        }
+
+        @Override
+        public String getPublicId() {
+            return publicId_;
+        }
+
+        @Override
+        public String getLiteralSystemId() {
+            return literalSystemId_;
+        }
+
+        @Override
+        public String getBaseSystemId() {
+            return baseSystemId_;
+        }
+
+        @Override
+        public String getExpandedSystemId() {
+            return expandedSystemId_;
+        }
+
+        @Override
+        public int getLineNumber() {
+            return -1;
+        }
+
+        @Override
+        public int getColumnNumber() {
+            return -1;
+        }
+
+        @Override
+        public int getCharacterOffset() {
+            return -1;
+        }
+
+        @Override
+        public String getEncoding() {
+            return encoding_;
+        }
+
+        @Override
+        public String getXMLVersion() {
+            return "1.0";
+        }
+    }
+
+    /**
+     * Records the events of a document on an {@link EventTape} like the
+     * DOM parser does with deferred node expansion.
+     */
+    private static final class DocumentBuilder extends DefaultFilter {
+        private final CoreDocumentImpl document_;
+        private final EventTape tape_ = new EventTape(true);
+        private boolean inCDATA_;
+
+        // Constructor.
+        DocumentBuilder(final CoreDocumentImpl document) {
+            document_ = document;
+        }
+
+        @Override
+        public void startDocument(final XMLLocator locator, final String encoding,
+                final NamespaceContext nscontext, final Augmentations augs) throws XNIException {
+            document_.setInputEncoding(encoding);
+            document_.setDocumentURI(locator.getExpandedSystemId());
+        }
+
+        @Override
+        public void xmlDecl(final String version, final String encoding, final String standalone,
+                final Augmentations augs) throws XNIException {
+            if (version != null) {
+                document_.setXmlVersion(version);
+            }
+            document_.setXmlEncoding(encoding);
+            document_.setXmlStandalone("yes".equals(standalone));
+        }
+
+        @Override
+        public void doctypeDecl(final String root, final String publicId, final String systemId,
+                final Augmentations augs) throws XNIException {
+            tape_.doctype(root, publicId, systemId);
+        }
+
+        @Override
+        public void comment(final XMLString text, final Augmentations augs) throws XNIException {
+            tape_.comment(text);
+        }
+
+        @Override
+        public void processingInstruction(final String target, final XMLString data, final Augmentations augs)
+                throws XNIException {
+            tape_.processingInstruction(target, data);
+        }
+
+        @Override
+        public void startElement(final QName element, final XMLAttributes attributes, final Augmentations augs)
+                throws XNIException {
+            tape_.startElement(element, attributes);
+        }
+
+        @Override
+        public void emptyElement(final QName element, final XMLAttributes attributes, final Augmentations augs)
+                throws XNIException {
+            tape_.startElement(element, attributes);
+            tape_.endElement();
+        }
+
+        @Override
+        public void characters(final XMLString text, final Augmentations augs) throws XNIException {
+            if (inCDATA_) {
+                tape_.cdata(text);
+            }
+            else {
+                tape_.characters(text, false);
+            }
+        }
+
+        @Override
+        public void ignorableWhitespace(final XMLString text, final Augmentations augs) throws XNIException {
+            tape_.characters(text, true);
+        }
+
+        @Override
+        public void startCDATA(final Augmentations augs) throws XNIException {
+            inCDATA_ = true;
+            tape_.startCDATA();
+        }
+
+        @Override
+        public void endCDATA(final Augmentations augs) throws XNIException {
+            inCDATA_ = false;
+        }
+
+        @Override
+        public void endElement(final QName element, final Augmentations augs) throws XNIException {
+            tape_.endElement();
+        }
+
+        @Override
+        public void startGeneralEntity(final String name, final String encoding, final Augmentations augs)
+                throws XNIException {
+            // only the content is kept, like the deferred DOM parser
+        }
+
+        @Override
+        public void textDecl(final String version, final String encoding, final Augmentations augs)
+                throws XNIException {
+            // ignored
+        }
+
+        @Override
+        public void endGeneralEntity(final String name, final Augmentations augs) throws XNIException {
+            // ignored
+        }
+
+        @Override
+        public void endDocument(final Augmentations augs) throws XNIException {
+            // the tape is attached by the reader
+        }
+    }
+}
@@ -0,0 +1,376 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.io;
+
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.CHARACTERS;
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.COMMENT;
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.DOCTYPE_DECL;
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.EMPTY_ELEMENT;
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.END_CDATA;
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.END_DOCUMENT;
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.END_ELEMENT;
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.END_GENERAL_ENTITY;
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.HAS_PREFIX;
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.HAS_URI;
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.IGNORABLE_WHITESPACE;
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.LOCALPART_IS_RAWNAME;
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.MAGIC;
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.NEW_STRING;
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.NOT_SPECIFIED;
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.NULL_STRING;
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.PROCESSING_INSTRUCTION;
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.START_CDATA;
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.START_DOCUMENT;
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.START_ELEMENT;
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.START_GENERAL_ENTITY;
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.STRING_INDEX_OFFSET;
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.TEXT_DECL;
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.VERSION;
+import static org.htmlunit.cyberneko.io.BinaryDocumentFormat.XML_DECL;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.htmlunit.cyberneko.filters.DefaultFilter;
+import org.htmlunit.cyberneko.xerces.xni.Augmentations;
+import org.htmlunit.cyberneko.xerces.xni.NamespaceContext;
+import org.htmlunit.cyberneko.xerces.xni.QName;
+import org.htmlunit.cyberneko.xerces.xni.XMLAttributes;
+import org.htmlunit.cyberneko.xerces.xni.XMLLocator;
+import org.htmlunit.cyberneko.xerces.xni.XMLString;
+import org.htmlunit.cyberneko.xerces.xni.XNIException;
+
+/**
+ * Writes the document events in the binary format of {@link BinaryDocumentFormat},
+ * to be replayed later by a {@link BinaryDocumentReader} without scanning and
+ * balancing the document again. The events are passed on to the next handler,
+ * so this filter can be added at the end of the pipeline (see the
+ * <code>http://cyberneko.org/html/properties/filters</code> property) or be
+ * used as document handler of a configuration.
+ *
+ * <pre>
+ * HTMLConfiguration config = new HTMLConfiguration();
+ * try (OutputStream out = ...) {
+ *     config.setDocumentHandler(new BinaryDocumentWriter(out));
+ *     config.parse(source);
+ * }
+ * </pre>
+ *
+ * <p>Augmentations (e.g. the locations) are not written. The output is
+ * flushed at the end of the document. Every document starts with the header
+ * of the format and is readable on its own; a writer can be used for several
+ * documents one after the other.
+ *
+ * <p><strong>Note:</strong> This class is not thread safe.
+ */
+public class BinaryDocumentWriter extends DefaultFilter implements Flushable {
+
+    private final OutputStream out_;
+
+    private final byte[] buffer_ = new byte[8192];
+    private int length_;
+
+    private final Map<String, Integer> strings_ = new HashMap<>();
+
+    private final QName qName_ = new QName();
+
+    /**
+     * Creates a writer.
+     *
+     * @param out the stream to write to
+     */
+    public BinaryDocumentWriter(final OutputStream out) {
+        out_ = out;
+    }
+
+    /**
+     * Writes the buffered bytes to the stream.
+     *
+     * @throws IOException in case of an error
+     */
+    @Override
+    public void flush() throws IOException {
+        if (length_ > 0) {
+            out_.write(buffer_, 0, length_);
+            length_ = 0;
+        }
+        out_.flush();
+    }
+
+    @Override
+    public void startDocument(final XMLLocator locator, final String encoding, final NamespaceContext nscontext,
+            final Augmentations augs) throws XNIException {
+        // every document has its own header and strings
+        strings_.clear();
+        for (final byte b : MAGIC) {
+            writeByte(b);
+        }
+        writeVarint(VERSION);
+
+        writeByte(START_DOCUMENT);
+        writeString(locator == null ? null : locator.getExpandedSystemId());
+        writeString(encoding);
+        super.startDocument(locator, encoding, nscontext, augs);
+    }
+
+    @Override
+    public void xmlDecl(final String version, final String encoding, final String standalone,
+            final Augmentations augs) throws XNIException {
+        writeByte(XML_DECL);
+        writeString(version);
+        writeString(encoding);
+        writeString(standalone);
+        super.xmlDecl(version, encoding, standalone, augs);
+    }
+
+    @Override
+    public void doctypeDecl(final String root, final String publicId, final String systemId,
+            final Augmentations augs) throws XNIException {
+        writeByte(DOCTYPE_DECL);
+        writeString(root);
+        writeString(publicId);
+        writeString(systemId);
+        super.doctypeDecl(root, publicId, systemId, augs);
+    }
+
+    @Override
+    public void comment(final XMLString text, final Augmentations augs) throws XNIException {
+        writeByte(COMMENT);
+        writeText(text);
+        super.comment(text, augs);
+    }
+
+    @Override
+    public void processingInstruction(final String target, final XMLString data, final Augmentations augs)
+            throws XNIException {
+        writeByte(PROCESSING_INSTRUCTION);
+        writeString(target);
+        if (data == null) {
+            writeByte(0);
+        }
+        else {
+            writeByte(1);
+            writeText(data);
+        }
+        super.processingInstruction(target, data, augs);
+    }
+
+    @Override
+    public void startElement(final QName element, final XMLAttributes attributes, final Augmentations augs)
+            throws XNIException {
+        writeByte(START_ELEMENT);
+        writeElement(element, attributes);
+        super.startElement(element, attributes, augs);
+    }
+
+    @Override
+    public void emptyElement(final QName element, final XMLAttributes attributes, final Augmentations augs)
+            throws XNIException {
+        writeByte(EMPTY_ELEMENT);
+        writeElement(element, attributes);
+        super.emptyElement(element, attributes, augs);
+    }
+
+    @Override
+    public void characters(final XMLString text, final Augmentations augs) throws XNIException {
+        writeByte(CHARACTERS);
+        writeText(text);
+        super.characters(text, augs);
+    }
+
+    @Override
+    public void ignorableWhitespace(final XMLString text, final Augmentations augs) throws XNIException {
+        writeByte(IGNORABLE_WHITESPACE);
+        writeText(text);
+        super.ignorableWhitespace(text, augs);
+    }
+
+    @Override
+    public void startGeneralEntity(final String name, final String encoding, final Augmentations augs)
+            throws XNIException {
+        writeByte(START_GENERAL_ENTITY);
+        writeString(name);
+        writeString(encoding);
+        super.startGeneralEntity(name, encoding, augs);
+    }
+
+    @Override
+    public void textDecl(final String version, final String encoding, final Augmentations augs)
+            throws XNIException {
+        writeByte(TEXT_DECL);
+        writeString(version);
+        writeString(encoding);
+        super.textDecl(version, encoding, augs);
+    }
+
+    @Override
+    public void endGeneralEntity(final String name, final Augmentations augs) throws XNIException {
+        writeByte(END_GENERAL_ENTITY);
+        writeString(name);
+        super.endGeneralEntity(name, augs);
+    }
+
+    @Override
+    public void startCDATA(final Augmentations augs) throws XNIException {
+        writeByte(START_CDATA);
+        super.startCDATA(augs);
+    }
+
+    @Override
+    public void endCDATA(final Augmentations augs) throws XNIException {
+        writeByte(END_CDATA);
+        super.endCDATA(augs);
+    }
+
+    @Override
+    public void endElement(final QName element, final Augmentations augs) throws XNIException {
+        writeByte(END_ELEMENT);
+        writeName(element, 0);
+        super.endElement(element, augs);
+    }
+
+    @Override
+    public void endDocument(final Augmentations augs) throws XNIException {
+        writeByte(END_DOCUMENT);
+        try {
+            flush();
+        }
+        catch (final IOException e) {
+            throw new XNIException(e);
+        }
+        super.endDocument(augs);
+    }
+
+    private void writeElement(final QName element, final XMLAttributes attributes) {
+        writeName(element, 0);
+
+        final int count = attributes == null ? 0 : attributes.getLength();
+        writeVarint(count);
+        for (int i = 0; i < count; i++) {
+            attributes.getName(i, qName_);
+            writeName(qName_, attributes.isSpecified(i) ? 0 : NOT_SPECIFIED);
+            writeString(attributes.getType(i));
+            writeText(attributes.getValue(i));
+        }
+    }
+
+    private void writeName(final QName name, final int flags) {
+        final String rawname = name.getRawname();
+        final String localpart = name.getLocalpart();
+        final String prefix = name.getPrefix();
+        final String uri = name.getUri();
+
+        int allFlags = flags;
+        if (localpart == rawname || localpart != null && localpart.equals(rawname)) {
+            allFlags |= LOCALPART_IS_RAWNAME;
+        }
+        if (prefix != null) {
+            allFlags |= HAS_PREFIX;
+        }
+        if (uri != null) {
+            allFlags |= HAS_URI;
+        }
+        writeByte(allFlags);
+        writeString(rawname);
+        if ((allFlags & LOCALPART_IS_RAWNAME) == 0) {
+            writeString(localpart);
+        }
+        if (prefix != null) {
+            writeString(prefix);
+        }
+        if (uri != null) {
+            writeString(uri);
+        }
+        writeVarint(name.getElementCode() + 1);
+    }
+
+    private void writeString(final String string) {
+        if (string == null) {
+            writeVarint(NULL_STRING);
+            return;
+        }
+        final Integer index = strings_.get(string);
+        if (index != null) {
+            writeVarint(index + STRING_INDEX_OFFSET);
+            return;
+        }
+        strings_.put(string, strings_.size());
+        writeVarint(NEW_STRING);
+        writeText(string);
+    }
+
+    private void writeText(final XMLString text) {
+        final int length = text.length();
+        writeVarint(length);
+        for (int i = 0; i < length; i++) {
+            writeChar(text.unsafeCharAt(i));
+        }
+    }
+
+    private void writeText(final String text) {
+        final int length = text.length();
+        writeVarint(length);
+        for (int i = 0; i < length; i++) {
+            writeChar(text.charAt(i));
+        }
+    }
+
+    private void writeChar(final char c) {
+        if (c < 0x80) {
+            writeByte(c);
+        }
+        else if (c < 0x800) {
+            ensure(2);
+            buffer_[length_++] = (byte) (0xC0 | c >> 6);
+            buffer_[length_++] = (byte) (0x80 | c & 0x3F);
+        }
+        else {
+            ensure(3);
+            buffer_[length_++] = (byte) (0xE0 | c >> 12);
+            buffer_[length_++] = (byte) (0x80 | c >> 6 & 0x3F);
+            buffer_[length_++] = (byte) (0x80 | c & 0x3F);
+        }
+    }
+
+    private void writeVarint(final int value) {
+        ensure(5);
+        int v = value;
+        while ((v & ~0x7F) != 0) {
+            buffer_[length_++] = (byte) (v & 0x7F | 0x80);
+            v >>>= 7;
+        }
+        buffer_[length_++] = (byte) v;
+    }
+
+    private void writeByte(final int b) {
+        ensure(1);
+        buffer_[length_++] = (byte) b;
+    }
+
+    private void ensure(final int count) {
+        if (length_ + count > buffer_.length) {
+            try {
+                out_.write(buffer_, 0, length_);
+            }
+            catch (final IOException e) {
+                throw new XNIException(e);
+            }
+            length_ = 0;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.io;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An input stream reading the remaining bytes of a byte buffer (e.g. a
+ * memory mapped file). The bytes are transferred in bulk into the array of
+ * the reader, there is no additional buffering. Closing this stream does
+ * nothing.
+ * <p>
+ * <strong>Note:</strong> This class is not thread safe.
+ */
+public final class ByteBufferInputStream extends InputStream {
+
+    /** The buffer, the position is our read position. */
+    private final ByteBuffer buffer_;
+
+    // Constructor.
+    public ByteBufferInputStream(final ByteBuffer buffer) {
+        buffer_ = buffer;
+    }
+
+    /** Read a byte. */
+    @Override
+    public int read() {
+        return buffer_.hasRemaining() ? buffer_.get() & 0xFF : -1;
+    }
+
+    /** Read an array of bytes. */
+    @Override
+    public int read(final byte[] array, final int offset, final int length) {
+        if (length == 0) {
+            return 0;
+        }
+        final int remaining = buffer_.remaining();
+        if (remaining == 0) {
+            return -1;
+        }
+        final int count = Math.min(length, remaining);
+        buffer_.get(array, offset, count);
+        return count;
+    }
+
+    /** Skips bytes. */
+    @Override
+    public long skip(final long n) {
+        if (n <= 0) {
+            return 0;
+        }
+        final int count = (int) Math.min(n, buffer_.remaining());
+        buffer_.position(buffer_.position() + count);
+        return count;
+    }
+
+    /** @return the number of remaining bytes */
+    @Override
+    public int available() {
+        return buffer_.remaining();
+    }
+}
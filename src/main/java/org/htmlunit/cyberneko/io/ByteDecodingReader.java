@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Base class of the built-in readers used by the scanner for the most common
+ * encodings. In contrast to the {@link java.io.InputStreamReader} there is no
+ * additional decoder layer and no locking; the bytes are decoded from our byte
+ * buffer directly into the character array passed to
+ * {@link #read(char[], int, int)}, which is the buffer of the scanner.
+ * <p>
+ * Malformed input is replaced with U+FFFD the same way the decoders of the JDK
+ * do it, therefore the result is identical to the one of an
+ * {@link java.io.InputStreamReader} for the same encoding.
+ * <p>
+ * <strong>Note:</strong> This class is not thread safe.
+ */
+public abstract class ByteDecodingReader extends Reader {
+
+    /** The replacement character for malformed input. */
+    protected static final char REPLACEMENT = '\uFFFD';
+
+    /** The size of the byte buffer. */
+    private static final int BUFFER_SIZE = 8192;
+
+    /** The windows-1252 charset or null if not supported by the runtime. */
+    private static final Charset WINDOWS_1252 = Charset.isSupported("windows-1252")
+                                                    ? Charset.forName("windows-1252") : null;
+
+    /** The byte stream. */
+    private final InputStream in_;
+
+    /** Byte buffer. */
+    protected final byte[] bytes_ = new byte[BUFFER_SIZE];
+
+    /** Offset of the next byte to decode. */
+    protected int byteOffset_;
+
+    /** Length of bytes read into the byte buffer. */
+    protected int byteLength_;
+
+    /**
+     * Ctor.
+     *
+     * @param in the byte stream to read from
+     */
+    protected ByteDecodingReader(final InputStream in) {
+        in_ = in;
+    }
+
+    /**
+     * Returns the built-in reader for the given (java) encoding.
+     *
+     * @param in the byte stream to read from
+     * @param javaEncoding the java encoding name
+     * @return the reader or null if there is no built-in reader for this encoding
+     */
+    public static ByteDecodingReader forEncoding(final InputStream in, final String javaEncoding) {
+        final Charset charset;
+        try {
+            charset = Charset.forName(javaEncoding);
+        }
+        catch (final IllegalArgumentException e) {
+            return null;
+        }
+
+        if (StandardCharsets.UTF_8.equals(charset)) {
+            return new UTF8Reader(in);
+        }
+        if (StandardCharsets.ISO_8859_1.equals(charset)) {
+            return new SingleByteReader(in, null, "ISO8859_1");
+        }
+        if (WINDOWS_1252 != null && WINDOWS_1252.equals(charset)) {
+            return new SingleByteReader(in, SingleByteReader.upperHalf(WINDOWS_1252), "Cp1252");
+        }
+        return null;
+    }
+
+    /**
+     * Returns the historical name of the encoding, the same way
+     * {@link java.io.InputStreamReader#getEncoding()} does.
+     *
+     * @return the encoding name
+     */
+    public abstract String getEncoding();
+
+    /**
+     * Reads more bytes into the byte buffer. The bytes not decoded so far are
+     * moved to the beginning of the buffer first.
+     *
+     * @return false if the end of the stream was reached
+     * @throws IOException in case of io problems
+     */
+    protected boolean fill() throws IOException {
+        final int remaining = byteLength_ - byteOffset_;
+        if (remaining > 0 && byteOffset_ > 0) {
+            System.arraycopy(bytes_, byteOffset_, bytes_, 0, remaining);
+        }
+        byteOffset_ = 0;
+        byteLength_ = remaining;
+
+        int count;
+        do {
+            count = in_.read(bytes_, remaining, bytes_.length - remaining);
+        }
+        while (count == 0);
+
+        if (count == -1) {
+            return false;
+        }
+        byteLength_ += count;
+        return true;
+    }
+
+    /** Closes the underlying byte stream. */
+    @Override
+    public void close() throws IOException {
+        in_.close();
+    }
+}
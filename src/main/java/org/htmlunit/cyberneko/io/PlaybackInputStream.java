@@ -17,6 +17,7 @@
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 /**
  * A playback input stream. This class has the ability to save the bytes read
@@ -121,6 +122,50 @@ else if (b1 == 0xFE && b2 == 0xFF) {
         pushbackLength_ = 2;
     }
 
+    /**
+     * Detects the encoding by looking at the byte order mark at the position of
+     * the given buffer. This is the counterpart of {@link #detectEncoding(String[])}
+     * for content that is completely available as buffer (e.g. a memory mapped
+     * file); there is no need to record the bytes for a playback, the buffer
+     * is simply read again.
+     *
+     * @param bytes the content, the position is not changed
+     * @param encodings the detected IANA and java encoding, if any
+     * @return the length of the byte order mark to skip
+     */
+    public static int detectEncoding(final ByteBuffer bytes, final String[] encodings) {
+        final int pos = bytes.position();
+        final int remaining = bytes.remaining();
+        if (remaining < 2) {
+            return 0;
+        }
+        final int b1 = bytes.get(pos) & 0xFF;
+        final int b2 = bytes.get(pos + 1) & 0xFF;
+        // UTF-8 BOM: 0xEFBBBF
+        if (b1 == 0xEF && b2 == 0xBB) {
+            if (remaining > 2 && (bytes.get(pos + 2) & 0xFF) == 0xBF) {
+                encodings[0] = "UTF-8";
+                encodings[1] = "UTF8";
+                return 3;
+            }
+            return 0;
+        }
+        // UTF-16 LE BOM: 0xFFFE
+        if (b1 == 0xFF && b2 == 0xFE) {
+            encodings[0] = "UTF-16";
+            encodings[1] = "UnicodeLittleUnmarked";
+            return 2;
+        }
+        // UTF-16 BE BOM: 0xFEFF
+        if (b1 == 0xFE && b2 == 0xFF) {
+            encodings[0] = "UTF-16";
+            encodings[1] = "UnicodeBigUnmarked";
+            return 2;
+        }
+        // unknown
+        return 0;
+    }
+
     /** Playback buffer contents. */
     public void playback() {
         playback_ = true;
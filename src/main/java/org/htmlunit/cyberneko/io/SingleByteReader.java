@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Reader for the single byte encodings ISO-8859-1 and windows-1252.
+ * ASCII bytes are copied, the bytes 0x80 - 0xFF are mapped using a table
+ * (or 1:1 for ISO-8859-1).
+ */
+public final class SingleByteReader extends ByteDecodingReader {
+
+    /** Mapping of the bytes 0x80 - 0xFF, null for ISO-8859-1. */
+    private final char[] upperHalf_;
+
+    /** The historical encoding name. */
+    private final String encoding_;
+
+    // Constructor.
+    SingleByteReader(final InputStream in, final char[] upperHalf, final String encoding) {
+        super(in);
+        upperHalf_ = upperHalf;
+        encoding_ = encoding;
+    }
+
+    /**
+     * @param charset a single byte charset
+     * @return the chars for the bytes 0x80 - 0xFF decoded with the given charset
+     */
+    static char[] upperHalf(final Charset charset) {
+        final byte[] bytes = new byte[128];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (0x80 + i);
+        }
+        return new String(bytes, charset).toCharArray();
+    }
+
+    /** Read an array of chars. */
+    @Override
+    public int read(final char[] cbuf, final int off, final int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (byteOffset_ == byteLength_ && !fill()) {
+            return -1;
+        }
+
+        final byte[] bytes = bytes_;
+        final char[] upperHalf = upperHalf_;
+        int i = byteOffset_;
+        final int count = Math.min(len, byteLength_ - i);
+        final int end = off + count;
+
+        if (upperHalf == null) {
+            for (int out = off; out < end; out++) {
+                cbuf[out] = (char) (bytes[i++] & 0xFF);
+            }
+        }
+        else {
+            for (int out = off; out < end; out++) {
+                final byte b = bytes[i++];
+                cbuf[out] = b >= 0 ? (char) b : upperHalf[b + 128];
+            }
+        }
+
+        byteOffset_ = i;
+        return count;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getEncoding() {
+        return encoding_;
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reader for UTF-8 with a fast path for runs of ASCII bytes.
+ * <p>
+ * A malformed sequence is replaced by one U+FFFD for every maximal subpart
+ * (an encoded surrogate by a single one), a truncated sequence at the end of
+ * the stream by a single U+FFFD; this is the behavior of the UTF-8 decoder
+ * of the JDK.
+ */
+public final class UTF8Reader extends ByteDecodingReader {
+
+    /**
+     * The low surrogate of a supplementary character that did not fit into
+     * the last read request, 0 if none.
+     */
+    private char pendingLow_;
+
+    // Constructor.
+    UTF8Reader(final InputStream in) {
+        super(in);
+    }
+
+    /** Read an array of chars. */
+    @Override
+    public int read(final char[] cbuf, final int off, final int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        int out = off;
+        final int outEnd = off + len;
+        if (pendingLow_ != 0) {
+            cbuf[out++] = pendingLow_;
+            pendingLow_ = 0;
+            if (out == outEnd) {
+                return 1;
+            }
+        }
+
+        while (true) {
+            out = decode(cbuf, out, outEnd);
+            if (out > off) {
+                return out - off;
+            }
+
+            if (!fill()) {
+                if (byteOffset_ < byteLength_) {
+                    // truncated sequence at the end of the stream
+                    byteOffset_ = byteLength_;
+                    cbuf[off] = REPLACEMENT;
+                    return 1;
+                }
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Decodes the buffered bytes until the output is full or an incomplete
+     * sequence is found at the end of the byte buffer.
+     *
+     * @return the new output position
+     */
+    private int decode(final char[] cbuf, int out, final int outEnd) {
+        final byte[] bytes = bytes_;
+        final int end = byteLength_;
+        int i = byteOffset_;
+
+        while (out < outEnd && i < end) {
+            int b0 = bytes[i];
+
+            // ASCII fast path
+            if (b0 >= 0) {
+                final int max = i + Math.min(outEnd - out, end - i);
+                do {
+                    cbuf[out++] = (char) b0;
+                    i++;
+                }
+                while (i < max && (b0 = bytes[i]) >= 0);
+                continue;
+            }
+
+            b0 &= 0xFF;
+
+            // expected length and valid range of the second byte
+            final int n;
+            final int lo;
+            final int hi;
+            if (b0 < 0xC2) {
+                // continuation byte or overlong two byte sequence
+                cbuf[out++] = REPLACEMENT;
+                i++;
+                continue;
+            }
+            else if (b0 < 0xE0) {
+                n = 2;
+                lo = 0x80;
+                hi = 0xBF;
+            }
+            else if (b0 < 0xF0) {
+                n = 3;
+                lo = b0 == 0xE0 ? 0xA0 : 0x80;
+                hi = 0xBF;
+            }
+            else if (b0 < 0xF5) {
+                n = 4;
+                lo = b0 == 0xF0 ? 0x90 : 0x80;
+                hi = b0 == 0xF4 ? 0x8F : 0xBF;
+            }
+            else {
+                cbuf[out++] = REPLACEMENT;
+                i++;
+                continue;
+            }
+
+            int valid = 1;
+            while (valid < n && i + valid < end) {
+                final int b = bytes[i + valid] & 0xFF;
+                if (valid == 1 ? b < lo || b > hi : (b & 0xC0) != 0x80) {
+                    break;
+                }
+                valid++;
+            }
+            if (valid < n) {
+                if (i + valid == end) {
+                    // incomplete, wait for more bytes
+                    break;
+                }
+                cbuf[out++] = REPLACEMENT;
+                i += valid;
+                continue;
+            }
+
+            final int b1 = bytes[i + 1] & 0x3F;
+            if (n == 2) {
+                cbuf[out++] = (char) (((b0 & 0x1F) << 6) | b1);
+            }
+            else if (n == 3) {
+                final char c = (char) (((b0 & 0x0F) << 12) | (b1 << 6) | (bytes[i + 2] & 0x3F));
+                // like the jdk we replace an encoded surrogate as a whole
+                cbuf[out++] = Character.isSurrogate(c) ? REPLACEMENT : c;
+            }
+            else {
+                final int cp = ((b0 & 0x07) << 18) | (b1 << 12) | ((bytes[i + 2] & 0x3F) << 6) | (bytes[i + 3] & 0x3F);
+                cbuf[out++] = Character.highSurrogate(cp);
+                if (out < outEnd) {
+                    cbuf[out++] = Character.lowSurrogate(cp);
+                }
+                else {
+                    pendingLow_ = Character.lowSurrogate(cp);
+                }
+            }
+            i += n;
+        }
+
+        byteOffset_ = i;
+        return out;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String getEncoding() {
+        return "UTF8";
+    }
+}
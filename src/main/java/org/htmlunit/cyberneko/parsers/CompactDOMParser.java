@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.parsers;
+
+import org.htmlunit.cyberneko.HTMLConfiguration;
+import org.htmlunit.cyberneko.compact.CompactDocument;
+import org.htmlunit.cyberneko.xerces.parsers.AbstractXMLDocumentParser;
+import org.htmlunit.cyberneko.xerces.xni.Augmentations;
+import org.htmlunit.cyberneko.xerces.xni.NamespaceContext;
+import org.htmlunit.cyberneko.xerces.xni.QName;
+import org.htmlunit.cyberneko.xerces.xni.XMLAttributes;
+import org.htmlunit.cyberneko.xerces.xni.XMLLocator;
+import org.htmlunit.cyberneko.xerces.xni.XMLString;
+import org.htmlunit.cyberneko.xerces.xni.XNIException;
+
+/**
+ * A parser for HTML documents building a read-only {@link CompactDocument}
+ * instead of a mutable DOM. Use it when the parse result is only read, e.g.
+ * for scraping or indexing; it needs a fraction of the memory and the
+ * allocations of a {@link DOMParser}.
+ *
+ * <p>CDATA sections and ignorable whitespace are added as text, entity
+ * boundaries are not kept.
+ */
+public class CompactDOMParser extends AbstractXMLDocumentParser {
+
+    private CompactDocument.Builder builder_;
+    private CompactDocument document_;
+
+    /** Default constructor. */
+    public CompactDOMParser() {
+        super(new HTMLConfiguration());
+    }
+
+    /**
+     * @return the document of the last parse or null
+     */
+    public CompactDocument getDocument() {
+        return document_;
+    }
+
+    @Override
+    protected void reset() throws XNIException {
+        super.reset();
+        builder_ = null;
+        document_ = null;
+    }
+
+    @Override
+    public void startDocument(final XMLLocator locator, final String encoding,
+            final NamespaceContext namespaceContext, final Augmentations augs) throws XNIException {
+        builder_ = new CompactDocument.Builder();
+        builder_.setInputEncoding(encoding);
+    }
+
+    @Override
+    public void doctypeDecl(final String rootElement, final String publicId, final String systemId,
+            final Augmentations augs) throws XNIException {
+        builder_.doctype(rootElement, publicId, systemId);
+    }
+
+    @Override
+    public void startElement(final QName element, final XMLAttributes attributes, final Augmentations augs)
+            throws XNIException {
+        builder_.startElement(element.getRawname(), attributes);
+    }
+
+    @Override
+    public void emptyElement(final QName element, final XMLAttributes attributes, final Augmentations augs)
+            throws XNIException {
+        builder_.startElement(element.getRawname(), attributes);
+        builder_.endElement();
+    }
+
+    @Override
+    public void characters(final XMLString text, final Augmentations augs) throws XNIException {
+        builder_.characters(text);
+    }
+
+    @Override
+    public void ignorableWhitespace(final XMLString text, final Augmentations augs) throws XNIException {
+        builder_.characters(text);
+    }
+
+    @Override
+    public void endElement(final QName element, final Augmentations augs) throws XNIException {
+        builder_.endElement();
+    }
+
+    @Override
+    public void comment(final XMLString text, final Augmentations augs) throws XNIException {
+        builder_.comment(text);
+    }
+
+    @Override
+    public void processingInstruction(final String target, final XMLString data, final Augmentations augs)
+            throws XNIException {
+        builder_.processingInstruction(target, data);
+    }
+
+    @Override
+    public void endDocument(final Augmentations augs) throws XNIException {
+        document_ = builder_.build();
+        builder_ = null;
+    }
+}
@@ -0,0 +1,358 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.parsers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.htmlunit.cyberneko.html.dom.HTMLDocumentImpl;
+import org.htmlunit.cyberneko.xerces.parsers.XMLParser;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLInputSource;
+import org.w3c.dom.Document;
+
+/**
+ * Parses a batch of independent documents concurrently. At most
+ * <code>parallelism</code> documents are parsed at the same time; the
+ * parsers are taken from a {@link HTMLParserPool}, every worker reuses
+ * the parsers of the documents parsed before.
+ *
+ * <p>If the JDK supports virtual threads (Java 21 and later), a virtual
+ * thread is started for every document; this is the cheapest way to wait
+ * for documents read from the network. Otherwise a fixed pool of
+ * platform threads is used.
+ *
+ * <p>The results are passed to the consumer in the order of the inputs or
+ * as soon as they are completed, always on the thread calling
+ * {@link #parse(Iterator, boolean, Consumer)}. A document that fails to
+ * parse is reported as failed {@link Result}, the rest of the batch is
+ * not affected.
+ *
+ * <pre>
+ * try (HTMLBatchParser&lt;DOMParser, Document&gt; batch = HTMLBatchParser.forDocuments(8)) {
+ *     batch.parse(sources.iterator(), false, result -&gt; {
+ *         if (result.isFailed()) {
+ *             ...
+ *         }
+ *         final Document document = result.getValue();
+ *         ...
+ *     });
+ * }
+ * </pre>
+ *
+ * @param <P> the type of the parsers
+ * @param <R> the type of the result of a document
+ */
+public class HTMLBatchParser<P extends XMLParser, R> implements AutoCloseable {
+
+    /**
+     * Parses one document and builds the result (e.g. the DOM or what a
+     * handler has collected).
+     *
+     * @param <P> the type of the parser
+     * @param <R> the type of the result
+     */
+    @FunctionalInterface
+    public interface DocumentParser<P, R> {
+
+        /**
+         * @param parser the parser to use, it is reused for other documents afterwards
+         * @param source the document to parse
+         * @return the result of the document
+         * @throws Exception in case of problems, the document is reported as failed
+         */
+        R parse(P parser, XMLInputSource source) throws Exception;
+    }
+
+    /**
+     * The outcome of a document.
+     *
+     * @param <R> the type of the result
+     */
+    public static final class Result<R> {
+        private final int index_;
+        private final XMLInputSource source_;
+        private final R value_;
+        private final Throwable failure_;
+        private final long nanos_;
+
+        // Constructor.
+        Result(final int index, final XMLInputSource source, final R value, final Throwable failure, final long nanos) {
+            index_ = index;
+            source_ = source;
+            value_ = value;
+            failure_ = failure;
+            nanos_ = nanos;
+        }
+
+        /**
+         * @return the position of the document in the batch, starting with 0
+         */
+        public int getIndex() {
+            return index_;
+        }
+
+        /**
+         * @return the input source of the document
+         */
+        public XMLInputSource getSource() {
+            return source_;
+        }
+
+        /**
+         * @return the result of the document, null if failed
+         */
+        public R getValue() {
+            return value_;
+        }
+
+        /**
+         * @return the problem if the document failed, null otherwise
+         */
+        public Throwable getFailure() {
+            return failure_;
+        }
+
+        /**
+         * @return true if the document failed
+         */
+        public boolean isFailed() {
+            return failure_ != null;
+        }
+
+        /**
+         * @return the time spent parsing the document in nanoseconds (without
+         *         the time waiting for a free worker)
+         */
+        public long getNanos() {
+            return nanos_;
+        }
+    }
+
+    private final HTMLParserPool<P> pool_;
+    private final DocumentParser<? super P, ? extends R> documentParser_;
+    private final int parallelism_;
+    private final ExecutorService executor_;
+    private final boolean virtualThreads_;
+
+    /**
+     * Creates a batch parser using virtual threads if available.
+     *
+     * @param factory creates the parsers
+     * @param documentParser parses a document and builds its result
+     * @param parallelism the max number of documents parsed at the same time
+     */
+    public HTMLBatchParser(final Supplier<P> factory, final DocumentParser<? super P, ? extends R> documentParser,
+                final int parallelism) {
+        this(factory, documentParser, parallelism, true);
+    }
+
+    /**
+     * Creates a batch parser.
+     *
+     * @param factory creates the parsers
+     * @param documentParser parses a document and builds its result
+     * @param parallelism the max number of documents parsed at the same time
+     * @param virtualThreads whether to use virtual threads if the JDK supports them
+     */
+    public HTMLBatchParser(final Supplier<P> factory, final DocumentParser<? super P, ? extends R> documentParser,
+                final int parallelism, final boolean virtualThreads) {
+        if (documentParser == null) {
+            throw new IllegalArgumentException("documentParser must not be null");
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1, but was " + parallelism);
+        }
+        pool_ = new HTMLParserPool<>(factory, parallelism);
+        documentParser_ = documentParser;
+        parallelism_ = parallelism;
+
+        final ExecutorService virtual = virtualThreads ? newVirtualThreadExecutor() : null;
+        virtualThreads_ = virtual != null;
+        executor_ = virtual != null ? virtual : Executors.newFixedThreadPool(parallelism, new WorkerThreadFactory());
+    }
+
+    /**
+     * Creates a batch parser building a DOM for every document.
+     *
+     * @param parallelism the max number of documents parsed at the same time
+     * @return the batch parser
+     */
+    public static HTMLBatchParser<DOMParser, Document> forDocuments(final int parallelism) {
+        return new HTMLBatchParser<>(() -> new DOMParser(HTMLDocumentImpl.class),
+                (parser, source) -> {
+                    parser.parse(source);
+                    return parser.getDocument();
+                },
+                parallelism);
+    }
+
+    /**
+     * @return the max number of documents parsed at the same time
+     */
+    public int getParallelism() {
+        return parallelism_;
+    }
+
+    /**
+     * @return true if the documents are parsed by virtual threads
+     */
+    public boolean usesVirtualThreads() {
+        return virtualThreads_;
+    }
+
+    /**
+     * Parses all documents and passes the results to the consumer. Returns
+     * when all documents are done.
+     *
+     * @param sources the documents to parse; the iterator is only used by the calling thread
+     * @param ordered true to pass the results in the order of the sources,
+     *        false to pass them as soon as they are completed
+     * @param consumer gets the results, called by the calling thread only
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public void parse(final Iterator<? extends XMLInputSource> sources, final boolean ordered,
+                final Consumer<? super Result<R>> consumer) throws InterruptedException {
+        final LinkedBlockingQueue<Result<R>> completed = new LinkedBlockingQueue<>();
+
+        // in order, the results of the documents following a slow one have to be kept
+        // back; the number of documents started ahead is limited to bound the memory
+        final int window = ordered ? parallelism_ * 4 : parallelism_;
+        final Map<Integer, Result<R>> waiting = new HashMap<>();
+
+        int submitted = 0;
+        int delivered = 0;
+        int running = 0;
+        while (true) {
+            while (running < parallelism_ && running + waiting.size() < window && sources.hasNext()) {
+                final int index = submitted++;
+                final XMLInputSource source = sources.next();
+                executor_.execute(() -> completed.add(parse(index, source)));
+                running++;
+            }
+            if (running == 0) {
+                return;
+            }
+
+            final Result<R> result = completed.take();
+            running--;
+            if (!ordered) {
+                consumer.accept(result);
+                continue;
+            }
+
+            waiting.put(result.getIndex(), result);
+            Result<R> next;
+            while ((next = waiting.remove(delivered)) != null) {
+                delivered++;
+                consumer.accept(next);
+            }
+        }
+    }
+
+    /**
+     * Parses all documents, see {@link #parse(Iterator, boolean, Consumer)}.
+     *
+     * @param sources the documents to parse
+     * @return the results in the order of the sources
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public List<Result<R>> parseAll(final Iterable<? extends XMLInputSource> sources) throws InterruptedException {
+        final List<Result<R>> results = new ArrayList<>();
+        parse(sources.iterator(), true, results::add);
+        return results;
+    }
+
+    /**
+     * Parses all documents, see {@link #parse(Iterator, boolean, Consumer)}.
+     *
+     * @param sources the documents to parse
+     * @param ordered true to pass the results in the order of the sources,
+     *        false to pass them as soon as they are completed
+     * @param consumer gets the results, called by the calling thread only
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public void parse(final Stream<? extends XMLInputSource> sources, final boolean ordered,
+                final Consumer<? super Result<R>> consumer) throws InterruptedException {
+        parse(sources.iterator(), ordered, consumer);
+    }
+
+    // Parses one document, never throws.
+    private Result<R> parse(final int index, final XMLInputSource source) {
+        final long start = System.nanoTime();
+        P parser = null;
+        try {
+            parser = pool_.borrow();
+            final R value = documentParser_.parse(parser, source);
+            return new Result<>(index, source, value, null, System.nanoTime() - start);
+        }
+        catch (final Throwable e) {
+            return new Result<>(index, source, null, e, System.nanoTime() - start);
+        }
+        finally {
+            pool_.release(parser);
+        }
+    }
+
+    /**
+     * Stops the worker threads. Documents still being parsed are finished.
+     */
+    @Override
+    public void close() {
+        executor_.shutdown();
+        pool_.clear();
+    }
+
+    /**
+     * @return a new executor starting a virtual thread per task or null if
+     *         the JDK does not support virtual threads
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (final ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Creates the daemon threads of the fixed pool.
+     */
+    private static final class WorkerThreadFactory implements ThreadFactory {
+        private static final AtomicInteger BATCH_COUNT = new AtomicInteger();
+
+        private final int batch_ = BATCH_COUNT.incrementAndGet();
+        private final AtomicInteger count_ = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable,
+                        "neko-batch-" + batch_ + "-worker-" + count_.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,462 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.parsers;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.NoSuchElementException;
+
+import org.htmlunit.cyberneko.HTMLConfiguration;
+import org.htmlunit.cyberneko.xerces.util.XMLAttributesImpl;
+import org.htmlunit.cyberneko.xerces.xni.Augmentations;
+import org.htmlunit.cyberneko.xerces.xni.NamespaceContext;
+import org.htmlunit.cyberneko.xerces.xni.QName;
+import org.htmlunit.cyberneko.xerces.xni.XMLAttributes;
+import org.htmlunit.cyberneko.xerces.xni.XMLDocumentHandler;
+import org.htmlunit.cyberneko.xerces.xni.XMLLocator;
+import org.htmlunit.cyberneko.xerces.xni.XMLString;
+import org.htmlunit.cyberneko.xerces.xni.XNIException;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLDocumentSource;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLInputSource;
+
+/**
+ * A pull parser for HTML documents (similar to a StAX stream reader). The
+ * document is scanned step by step (see
+ * {@link HTMLConfiguration#parse(boolean)}) only as far as needed to deliver
+ * the next event. The events are the balanced ones, the same a
+ * {@link SAXParser} reports.
+ *
+ * <pre>
+ * try (HTMLEventReader reader = new HTMLEventReader()) {
+ *     reader.setInputSource(source);
+ *     while (reader.hasNext()) {
+ *         if (reader.next() == HTMLEventReader.END_ELEMENT
+ *                 &amp;&amp; "head".equals(reader.getName().getRawname())) {
+ *             break; // the rest of the document is not scanned at all
+ *         }
+ *         ...
+ *     }
+ * }
+ * </pre>
+ *
+ * <p>Adjacent text is reported as a single {@link #CHARACTERS} event. An empty
+ * element is reported as {@link #START_ELEMENT} followed by {@link #END_ELEMENT}.
+ * Names, attributes and text of the current event are only valid until the
+ * next call of {@link #next()}; the event objects are reused.
+ *
+ * <p>The event type constants have the same values as the ones of
+ * {@code javax.xml.stream.XMLStreamConstants}.
+ *
+ * <p><strong>Note:</strong> This class is not thread safe.
+ */
+public class HTMLEventReader implements Closeable {
+
+    /** Start of an element, see {@link #getName()} and {@link #getAttributes()}. */
+    public static final int START_ELEMENT = 1;
+
+    /** End of an element, see {@link #getName()}. */
+    public static final int END_ELEMENT = 2;
+
+    /** Processing instruction, the target is the name, the data the text. */
+    public static final int PROCESSING_INSTRUCTION = 3;
+
+    /** Text, see {@link #getText()}. */
+    public static final int CHARACTERS = 4;
+
+    /** Comment, see {@link #getText()}. */
+    public static final int COMMENT = 5;
+
+    /** Start of the document. */
+    public static final int START_DOCUMENT = 7;
+
+    /** End of the document; this is always the last event. */
+    public static final int END_DOCUMENT = 8;
+
+    /** Document type declaration, the root element is the name. */
+    public static final int DTD = 11;
+
+    /** Text of a CDATA section, see {@link #getText()}. */
+    public static final int CDATA = 12;
+
+    /** The parser configuration. */
+    private final HTMLConfiguration configuration_;
+
+    /** The event queue, the slots are reused. */
+    private Event[] events_ = new Event[8];
+
+    /** Index of the current event in the queue. */
+    private int current_ = -1;
+
+    /** Number of events in the queue. */
+    private int size_;
+
+    /** True as long as there is more to scan. */
+    private boolean more_;
+
+    /** True while scanning a CDATA section. */
+    private boolean inCDATA_;
+
+    /** Creates a reader using a new {@link HTMLConfiguration}. */
+    public HTMLEventReader() {
+        this(new HTMLConfiguration());
+    }
+
+    /**
+     * Creates a reader using the given configuration. The document handler of
+     * the configuration is replaced.
+     *
+     * @param configuration the configuration
+     */
+    public HTMLEventReader(final HTMLConfiguration configuration) {
+        configuration_ = configuration;
+        configuration_.setDocumentHandler(new EventCollector());
+        for (int i = 0; i < events_.length; i++) {
+            events_[i] = new Event();
+        }
+    }
+
+    /** @return the parser configuration, e.g. to set features and properties */
+    public HTMLConfiguration getConfiguration() {
+        return configuration_;
+    }
+
+    /**
+     * Starts reading the given document. A document read before is abandoned.
+     *
+     * @param source the document
+     * @throws IOException in case of io problems
+     */
+    public void setInputSource(final XMLInputSource source) throws IOException {
+        if (more_) {
+            configuration_.cleanup();
+        }
+        current_ = -1;
+        size_ = 0;
+        inCDATA_ = false;
+
+        configuration_.setInputSource(source);
+        more_ = true;
+    }
+
+    /**
+     * @return true if there are more events
+     * @throws IOException in case of io problems
+     */
+    public boolean hasNext() throws IOException {
+        return fill(current_ + 1);
+    }
+
+    /**
+     * Moves to the next event.
+     *
+     * @return the type of the next event
+     * @throws IOException in case of io problems
+     * @throws NoSuchElementException if there are no more events
+     */
+    public int next() throws IOException {
+        if (!fill(current_ + 1)) {
+            throw new NoSuchElementException();
+        }
+        current_++;
+        return events_[current_].type_;
+    }
+
+    /** @return the type of the current event */
+    public int getEventType() {
+        return current().type_;
+    }
+
+    /**
+     * @return the name of the current element, processing instruction target
+     *         or doctype root element; null for the other events
+     */
+    public QName getName() {
+        final Event event = current();
+        switch (event.type_) {
+            case START_ELEMENT:
+            case END_ELEMENT:
+            case PROCESSING_INSTRUCTION:
+            case DTD:
+                return event.name_;
+            default:
+                return null;
+        }
+    }
+
+    /** @return the attributes of the current start element, empty for the other events */
+    public XMLAttributes getAttributes() {
+        return current().attributes_;
+    }
+
+    /**
+     * @return the text of the current characters, comment, CDATA or processing
+     *         instruction event; null for the other events
+     */
+    public String getText() {
+        final XMLString text = getTextCharacters();
+        return text == null ? null : text.toString();
+    }
+
+    /**
+     * Like {@link #getText()} but without creating a string.
+     *
+     * @return the text of the current event
+     */
+    public XMLString getTextCharacters() {
+        final Event event = current();
+        switch (event.type_) {
+            case CHARACTERS:
+            case CDATA:
+            case COMMENT:
+            case PROCESSING_INSTRUCTION:
+                return event.text_;
+            default:
+                return null;
+        }
+    }
+
+    /** @return the public id of the current doctype declaration */
+    public String getPublicId() {
+        return current().publicId_;
+    }
+
+    /** @return the system id of the current doctype declaration */
+    public String getSystemId() {
+        return current().systemId_;
+    }
+
+    /**
+     * Stops reading the current document; the rest of the document is not
+     * scanned. Streams opened by the parser are closed.
+     */
+    @Override
+    public void close() {
+        if (more_) {
+            more_ = false;
+            configuration_.cleanup();
+        }
+        current_ = -1;
+        size_ = 0;
+    }
+
+    private Event current() {
+        if (current_ < 0 || current_ >= size_) {
+            throw new IllegalStateException("No current event, call next() first.");
+        }
+        return events_[current_];
+    }
+
+    /**
+     * Scans until the event with the given index is available. The text is
+     * coalesced, therefore a text event is only available after the next
+     * event has been reported.
+     */
+    private boolean fill(int index) throws IOException {
+        if (index >= size_ && current_ > 0) {
+            // all events consumed, reuse the slots
+            final Event last = events_[current_];
+            events_[current_] = events_[0];
+            events_[0] = last;
+            current_ = 0;
+            size_ = 1;
+            index = 1;
+        }
+
+        while (more_ && (index >= size_ || index == size_ - 1 && isText(events_[index].type_))) {
+            try {
+                more_ = configuration_.parse(false);
+                if (!more_) {
+                    // the scanner reports the end of the document (and the
+                    // tag balancer closes the open elements) only when
+                    // scanning completely
+                    configuration_.parse(true);
+                }
+            }
+            catch (final IOException | XNIException e) {
+                more_ = false;
+                throw e;
+            }
+        }
+        return index < size_;
+    }
+
+    private static boolean isText(final int type) {
+        return type == CHARACTERS || type == CDATA;
+    }
+
+    private Event add(final int type) {
+        if (size_ == events_.length) {
+            final Event[] events = new Event[events_.length * 2];
+            System.arraycopy(events_, 0, events, 0, size_);
+            for (int i = size_; i < events.length; i++) {
+                events[i] = new Event();
+            }
+            events_ = events;
+        }
+        final Event event = events_[size_++];
+        event.type_ = type;
+        event.attributes_.removeAllAttributes();
+        event.publicId_ = null;
+        event.systemId_ = null;
+        return event;
+    }
+
+    private void addText(final int type, final XMLString text) {
+        if (size_ > current_ + 1) {
+            final Event last = events_[size_ - 1];
+            if (last.type_ == type) {
+                last.text_.append(text);
+                return;
+            }
+        }
+        add(type).text_.clear().append(text);
+    }
+
+    private void addStartElement(final QName element, final XMLAttributes attributes) {
+        final Event event = add(START_ELEMENT);
+        event.name_.setValues(element);
+
+        final XMLAttributesImpl copy = event.attributes_;
+        if (attributes != null) {
+            for (int i = 0; i < attributes.getLength(); i++) {
+                final int index = copy.addAttribute(attributes.getName(i), attributes.getType(i), attributes.getValue(i));
+                copy.setSpecified(index, attributes.isSpecified(i));
+            }
+        }
+    }
+
+    /** One slot of the event queue. */
+    private static final class Event {
+        private int type_;
+        private final QName name_ = new QName();
+        private final XMLAttributesImpl attributes_ = new XMLAttributesImpl();
+        private final XMLString text_ = new XMLString();
+        private String publicId_;
+        private String systemId_;
+    }
+
+    /** The document handler at the end of the pipeline, fills the queue. */
+    private final class EventCollector implements XMLDocumentHandler {
+
+        private XMLDocumentSource documentSource_;
+
+        @Override
+        public void startDocument(final XMLLocator locator, final String encoding,
+                final NamespaceContext namespaceContext, final Augmentations augs) throws XNIException {
+            add(START_DOCUMENT);
+        }
+
+        @Override
+        public void xmlDecl(final String version, final String encoding, final String standalone,
+                final Augmentations augs) throws XNIException {
+            // ignore
+        }
+
+        @Override
+        public void doctypeDecl(final String rootElement, final String publicId, final String systemId,
+                final Augmentations augs) throws XNIException {
+            final Event event = add(DTD);
+            event.name_.setValues(null, rootElement, rootElement, null);
+            event.publicId_ = publicId;
+            event.systemId_ = systemId;
+        }
+
+        @Override
+        public void comment(final XMLString text, final Augmentations augs) throws XNIException {
+            add(COMMENT).text_.clear().append(text);
+        }
+
+        @Override
+        public void processingInstruction(final String target, final XMLString data,
+                final Augmentations augs) throws XNIException {
+            final Event event = add(PROCESSING_INSTRUCTION);
+            event.name_.setValues(null, target, target, null);
+            event.text_.clear();
+            if (data != null) {
+                event.text_.append(data);
+            }
+        }
+
+        @Override
+        public void startElement(final QName element, final XMLAttributes attributes,
+                final Augmentations augs) throws XNIException {
+            addStartElement(element, attributes);
+        }
+
+        @Override
+        public void emptyElement(final QName element, final XMLAttributes attributes,
+                final Augmentations augs) throws XNIException {
+            addStartElement(element, attributes);
+            add(END_ELEMENT).name_.setValues(element);
+        }
+
+        @Override
+        public void startGeneralEntity(final String name, final String encoding,
+                final Augmentations augs) throws XNIException {
+            // ignore
+        }
+
+        @Override
+        public void textDecl(final String version, final String encoding, final Augmentations augs)
+                throws XNIException {
+            // ignore
+        }
+
+        @Override
+        public void endGeneralEntity(final String name, final Augmentations augs) throws XNIException {
+            // ignore
+        }
+
+        @Override
+        public void characters(final XMLString text, final Augmentations augs) throws XNIException {
+            addText(inCDATA_ ? CDATA : CHARACTERS, text);
+        }
+
+        @Override
+        public void ignorableWhitespace(final XMLString text, final Augmentations augs) throws XNIException {
+            addText(inCDATA_ ? CDATA : CHARACTERS, text);
+        }
+
+        @Override
+        public void endElement(final QName element, final Augmentations augs) throws XNIException {
+            add(END_ELEMENT).name_.setValues(element);
+        }
+
+        @Override
+        public void startCDATA(final Augmentations augs) throws XNIException {
+            inCDATA_ = true;
+        }
+
+        @Override
+        public void endCDATA(final Augmentations augs) throws XNIException {
+            inCDATA_ = false;
+        }
+
+        @Override
+        public void endDocument(final Augmentations augs) throws XNIException {
+            add(END_DOCUMENT);
+        }
+
+        @Override
+        public void setDocumentSource(final XMLDocumentSource source) {
+            documentSource_ = source;
+        }
+
+        @Override
+        public XMLDocumentSource getDocumentSource() {
+            return documentSource_;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.parsers;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.function.Supplier;
+
+import org.htmlunit.cyberneko.xerces.parsers.XMLParser;
+
+/**
+ * A bounded, thread-safe pool of parser instances. Setting up the component
+ * graph of a parser (scanner, tag balancer, namespace binder, buffers)
+ * is a noticeable part of the work for small documents; the pool allows to
+ * reuse that.
+ *
+ * <p>Every parser given back is recycled (see {@link XMLParser#recycle(int)})
+ * before it becomes available again: streams are closed, all references to
+ * the last document are dropped (element stacks, lost text, fragment context,
+ * scanner entities and buffers) and buffers that have grown beyond
+ * the configured size are shrunk. Features, properties and handlers are
+ * kept, so configure the parsers in the factory and don't change them
+ * between {@link #borrow()} and {@link #release(XMLParser)}.
+ *
+ * <pre>
+ * final HTMLParserPool&lt;DOMParser&gt; pool =
+ *         new HTMLParserPool&lt;&gt;(() -&gt; new DOMParser(HTMLDocumentImpl.class), 16);
+ *
+ * final DOMParser parser = pool.borrow();
+ * try {
+ *     parser.parse(source);
+ *     final Document document = parser.getDocument();
+ *     ...
+ * }
+ * finally {
+ *     pool.release(parser);
+ * }
+ * </pre>
+ *
+ * <p>The pool never blocks; if no idle parser is available, a new one is
+ * created. The bound only limits the number of idle parsers kept.
+ *
+ * @param <P> the type of the pooled parsers
+ */
+public class HTMLParserPool<P extends XMLParser> {
+
+    /** The default buffer capacity (in chars) a pooled parser keeps at most. */
+    public static final int DEFAULT_MAX_BUFFER_SIZE = 8 * 1024;
+
+    private final Supplier<P> factory_;
+    private final ArrayBlockingQueue<P> idle_;
+    private final int maxBufferSize_;
+
+    /**
+     * Creates a new pool using the {@link #DEFAULT_MAX_BUFFER_SIZE}.
+     *
+     * @param factory creates new parser instances
+     * @param maxIdle the max number of idle parsers kept by the pool
+     */
+    public HTMLParserPool(final Supplier<P> factory, final int maxIdle) {
+        this(factory, maxIdle, DEFAULT_MAX_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a new pool.
+     *
+     * @param factory creates new parser instances
+     * @param maxIdle the max number of idle parsers kept by the pool
+     * @param maxBufferSize the buffer capacity (in chars) a parser keeps at most
+     *        when given back to the pool
+     */
+    public HTMLParserPool(final Supplier<P> factory, final int maxIdle, final int maxBufferSize) {
+        if (factory == null) {
+            throw new IllegalArgumentException("factory must not be null");
+        }
+        if (maxIdle < 1) {
+            throw new IllegalArgumentException("maxIdle must be at least 1, but was " + maxIdle);
+        }
+        factory_ = factory;
+        idle_ = new ArrayBlockingQueue<>(maxIdle);
+        maxBufferSize_ = Math.max(0, maxBufferSize);
+    }
+
+    /**
+     * @return an idle parser from the pool or a new one if none is available
+     */
+    public P borrow() {
+        final P parser = idle_.poll();
+        if (parser != null) {
+            return parser;
+        }
+        return factory_.get();
+    }
+
+    /**
+     * Gives a parser back to the pool. The parser is recycled and kept if the
+     * pool has room for it. Don't use the parser anymore after calling this.
+     *
+     * @param parser the parser to give back, null is ignored
+     */
+    public void release(final P parser) {
+        if (parser == null) {
+            return;
+        }
+
+        try {
+            parser.recycle(maxBufferSize_);
+        }
+        catch (final RuntimeException e) {
+            // a parser we are not able to clean up is not kept
+            return;
+        }
+        idle_.offer(parser);
+    }
+
+    /**
+     * @return the number of idle parsers currently in the pool
+     */
+    public int getIdleCount() {
+        return idle_.size();
+    }
+
+    /**
+     * Removes all idle parsers from the pool.
+     */
+    public void clear() {
+        idle_.clear();
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.util;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A bounded symbol table for element and attribute names. A name is looked
+ * up directly from the characters of the scan buffer, a String is only
+ * created the first time a name is seen. All lookups of the same characters
+ * return the same instance, the case converted versions are cached as well.
+ *
+ * <p>The table stops growing when the max size is reached; names seen
+ * afterwards (and names longer than the max length) are returned as new
+ * Strings without being added. This way a document with many random names
+ * can't fill the memory. The bucket of a name is chosen by mixing its hash
+ * code with a random seed and a bucket takes only a few names, so names
+ * sharing a hash code (or the bits of it used for the bucket) can't make
+ * the lookups walk long chains. A table reused for many documents can be
+ * cleared when it is full.
+ *
+ * <p>Not thread safe, every scanner has its own table.
+ */
+public class NameTable {
+
+    /** The default max number of names. */
+    public static final int DEFAULT_MAX_SIZE = 4096;
+
+    /** The default max length of a name kept in the table. */
+    public static final int DEFAULT_MAX_LENGTH = 64;
+
+    // the max number of names in one bucket
+    private static final int MAX_CHAIN_LENGTH = 8;
+
+    // a name with its cached case conversions
+    private static final class Entry {
+        private final String name_;
+        private final int hash_;
+        private final Entry next_;
+        private String lowerCase_;
+        private String upperCase_;
+
+        Entry(final String name, final int hash, final Entry next) {
+            name_ = name;
+            hash_ = hash;
+            next_ = next;
+        }
+    }
+
+    private final Entry[] buckets_;
+    private final int shift_;
+    private final int maxSize_;
+    private final int maxLength_;
+    private int size_;
+    private int seed_;
+
+    /**
+     * Creates a table with the default limits.
+     */
+    public NameTable() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_MAX_LENGTH);
+    }
+
+    /**
+     * Creates a table.
+     *
+     * @param maxSize the max number of names in the table
+     * @param maxLength the max length of a name in the table
+     */
+    public NameTable(final int maxSize, final int maxLength) {
+        // two entries per bucket on average when full
+        int buckets = 16;
+        while (buckets < maxSize / 2) {
+            buckets <<= 1;
+        }
+        buckets_ = new Entry[buckets];
+        shift_ = Integer.numberOfLeadingZeros(buckets) + 1;
+        maxSize_ = maxSize;
+        maxLength_ = maxLength;
+        seed_ = ThreadLocalRandom.current().nextInt();
+    }
+
+    /**
+     * Returns the name of the given characters.
+     *
+     * @param chars the buffer
+     * @param offset the start of the name
+     * @param length the length of the name
+     * @return the canonical instance of the name
+     */
+    public String get(final char[] chars, final int offset, final int length) {
+        // same as String.hashCode()
+        int hash = 0;
+        final int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            hash = 31 * hash + chars[i];
+        }
+
+        for (Entry entry = buckets_[index(hash)]; entry != null; entry = entry.next_) {
+            if (entry.hash_ == hash && matches(entry.name_, chars, offset, length)) {
+                return entry.name_;
+            }
+        }
+
+        final String name = new String(chars, offset, length);
+        add(name, hash);
+        return name;
+    }
+
+    /**
+     * Adds the name if not already known.
+     *
+     * @param name the name
+     * @return the canonical instance of the name
+     */
+    public String add(final String name) {
+        final Entry entry = entry(name);
+        if (entry != null) {
+            return entry.name_;
+        }
+        add(name, name.hashCode());
+        return name;
+    }
+
+    /**
+     * @param name the name
+     * @return the lowercase version of the name, the canonical instance if the name is known
+     */
+    public String toLowerCase(final String name) {
+        final Entry entry = entry(name);
+        if (entry == null) {
+            return name.toLowerCase(Locale.ROOT);
+        }
+        if (entry.lowerCase_ == null) {
+            entry.lowerCase_ = add(name.toLowerCase(Locale.ROOT));
+        }
+        return entry.lowerCase_;
+    }
+
+    /**
+     * @param name the name
+     * @return the uppercase version of the name, the canonical instance if the name is known
+     */
+    public String toUpperCase(final String name) {
+        final Entry entry = entry(name);
+        if (entry == null) {
+            return name.toUpperCase(Locale.ROOT);
+        }
+        if (entry.upperCase_ == null) {
+            entry.upperCase_ = add(name.toUpperCase(Locale.ROOT));
+        }
+        return entry.upperCase_;
+    }
+
+    /**
+     * @return the number of names in the table
+     */
+    public int size() {
+        return size_;
+    }
+
+    /**
+     * @return true if no more names are added to the table
+     */
+    public boolean isFull() {
+        return size_ >= maxSize_;
+    }
+
+    /**
+     * Removes all names; the table chooses new buckets for the names added afterwards.
+     */
+    public void clear() {
+        Arrays.fill(buckets_, null);
+        size_ = 0;
+        seed_ = ThreadLocalRandom.current().nextInt();
+    }
+
+    // the bucket of the hash code, the high bits of the mixed hash
+    private int index(final int hash) {
+        return ((hash ^ seed_) * 0x9E3779B9) >>> shift_;
+    }
+
+    private Entry entry(final String name) {
+        final int hash = name.hashCode();
+        for (Entry entry = buckets_[index(hash)]; entry != null; entry = entry.next_) {
+            if (entry.name_ == name || (entry.hash_ == hash && entry.name_.equals(name))) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private void add(final String name, final int hash) {
+        if (size_ < maxSize_ && name.length() <= maxLength_) {
+            final int index = index(hash);
+            int length = 0;
+            for (Entry entry = buckets_[index]; entry != null; entry = entry.next_) {
+                if (++length == MAX_CHAIN_LENGTH) {
+                    return;
+                }
+            }
+            buckets_[index] = new Entry(name, hash, buckets_[index]);
+            size_++;
+        }
+    }
+
+    private static boolean matches(final String name, final char[] chars, final int offset, final int length) {
+        if (name.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != chars[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
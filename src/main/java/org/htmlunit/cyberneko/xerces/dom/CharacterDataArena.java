@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.xerces.dom;
+
+import java.util.Arrays;
+
+import org.htmlunit.cyberneko.xerces.xni.XMLString;
+
+/**
+ * The characters of the text and comment nodes of a document in one array
+ * (see {@link CoreDocumentImpl#createTextNode(XMLString)}); a node only
+ * knows the range of its data until the data is requested.
+ *
+ * <p>Short whitespace runs (the indentation between elements) are stored
+ * once and share their string when materialized.
+ */
+final class CharacterDataArena {
+
+    // the longest whitespace run that is shared
+    private static final int MAX_SHARED_LENGTH = 32;
+
+    // the size of the table of shared whitespace runs
+    private static final int SHARED_TABLE_BITS = 6;
+    private static final int SHARED_TABLE_SIZE = 1 << SHARED_TABLE_BITS;
+
+    // the number of slots checked for a run
+    private static final int PROBES = 4;
+
+    private char[] chars_ = new char[1024];
+    private int length_;
+
+    // the shared whitespace runs by hash
+    private final int[] sharedOffsets_ = new int[SHARED_TABLE_SIZE];
+    private final int[] sharedLengths_ = new int[SHARED_TABLE_SIZE];
+    private final String[] sharedStrings_ = new String[SHARED_TABLE_SIZE];
+
+    /**
+     * Adds the characters.
+     *
+     * @param text the characters
+     * @return the offset of the characters
+     */
+    int append(final XMLString text) {
+        final int end = length_;
+        return share(appendChars(text), text.length(), end);
+    }
+
+    /**
+     * Adds the characters to the given range; the range is extended in place
+     * if it is the end of the arena, otherwise it is copied to the end first.
+     *
+     * @param offset the offset of the range
+     * @param length the length of the range
+     * @param text the characters to add
+     * @return the offset of the extended range
+     */
+    int append(final int offset, final int length, final XMLString text) {
+        final int end = length_;
+        if (offset + length == end) {
+            appendChars(text);
+            return share(offset, length + text.length(), end);
+        }
+
+        ensureCapacity(length + text.length());
+        System.arraycopy(chars_, offset, chars_, length_, length);
+        final int newOffset = length_;
+        length_ += length;
+        appendChars(text);
+        return share(newOffset, length + text.length(), end);
+    }
+
+    /**
+     * @param offset the offset of the range
+     * @param length the length of the range
+     * @return the characters of the range as string
+     */
+    String getString(final int offset, final int length) {
+        if (length == 0) {
+            return "";
+        }
+        if (length <= MAX_SHARED_LENGTH) {
+            final int hash = whitespaceHash(offset, length);
+            if (hash != -1) {
+                for (int i = 0, slot = slot(hash); i < PROBES; i++, slot = (slot + 1) & (SHARED_TABLE_SIZE - 1)) {
+                    if (sharedOffsets_[slot] == offset && sharedLengths_[slot] == length) {
+                        String string = sharedStrings_[slot];
+                        if (string == null) {
+                            string = new String(chars_, offset, length);
+                            sharedStrings_[slot] = string;
+                        }
+                        return string;
+                    }
+                }
+            }
+        }
+        return new String(chars_, offset, length);
+    }
+
+    private int appendChars(final XMLString text) {
+        final int length = text.length();
+        ensureCapacity(length);
+        text.getChars(chars_, length_);
+        final int offset = length_;
+        length_ += length;
+        return offset;
+    }
+
+    private void ensureCapacity(final int additional) {
+        if (length_ + additional > chars_.length) {
+            chars_ = Arrays.copyOf(chars_, Math.max(chars_.length + (chars_.length >> 1), length_ + additional));
+        }
+    }
+
+    /**
+     * Replaces a short whitespace range at the end of the arena with an equal
+     * shared one; the chars added since the given end are removed in this case.
+     *
+     * @return the offset of the range to use
+     */
+    private int share(final int offset, final int length, final int end) {
+        if (length > MAX_SHARED_LENGTH) {
+            return offset;
+        }
+        final int hash = whitespaceHash(offset, length);
+        if (hash == -1) {
+            return offset;
+        }
+
+        int free = -1;
+        for (int i = 0, slot = slot(hash); i < PROBES; i++, slot = (slot + 1) & (SHARED_TABLE_SIZE - 1)) {
+            final int sharedLength = sharedLengths_[slot];
+            if (sharedLength == 0) {
+                if (free == -1) {
+                    free = slot;
+                }
+            }
+            else if (sharedLength == length && regionMatches(sharedOffsets_[slot], offset, length)) {
+                if (sharedOffsets_[slot] != offset) {
+                    length_ = end;
+                }
+                return sharedOffsets_[slot];
+            }
+        }
+
+        // the first slot is replaced if all are used
+        final int slot = free == -1 ? slot(hash) : free;
+        sharedOffsets_[slot] = offset;
+        sharedLengths_[slot] = length;
+        sharedStrings_[slot] = null;
+        return offset;
+    }
+
+    // the upper bits of the product spread the similar hashes of short runs
+    private static int slot(final int hash) {
+        return (hash * 0x9E3779B1) >>> (32 - SHARED_TABLE_BITS);
+    }
+
+    private boolean regionMatches(final int offset1, final int offset2, final int length) {
+        for (int i = 0; i < length; i++) {
+            if (chars_[offset1 + i] != chars_[offset2 + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the hash of a range with whitespace only, -1 if there are other chars
+     */
+    private int whitespaceHash(final int offset, final int length) {
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            final char c = chars_[i];
+            if (c != ' ' && c != '\n' && c != '\t' && c != '\r') {
+                return -1;
+            }
+            hash = hash * 31 + c;
+        }
+        return hash & 0x7FFFFFFF;
+    }
+}
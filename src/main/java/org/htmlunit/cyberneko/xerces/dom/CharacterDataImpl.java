@@ -34,6 +34,11 @@ public abstract class CharacterDataImpl extends ChildNode {
 
     protected String data_;
 
+    // the range of the data in the character data arena of the owner
+    // document as long as the data is not materialized (see needsSyncData())
+    int arenaOffset_;
+    int arenaLength_;
+
     /** Empty child nodes. */
     private static final NodeList singletonNodeList = new NodeList() {
         @Override
@@ -58,6 +63,29 @@ protected CharacterDataImpl(final CoreDocumentImpl ownerDocument, final String d
         data_ = data;
     }
 
+    /**
+     * Factory constructor for data in the character data arena of the owner document.
+     *
+     * @param ownerDocument the owner document
+     * @param arenaOffset   the offset of the data in the arena
+     * @param arenaLength   the length of the data
+     */
+    CharacterDataImpl(final CoreDocumentImpl ownerDocument, final int arenaOffset, final int arenaLength) {
+        super(ownerDocument);
+        arenaOffset_ = arenaOffset;
+        arenaLength_ = arenaLength;
+        needsSyncData(true);
+    }
+
+    /**
+     * Creates the string of data kept in the character data arena.
+     */
+    @Override
+    protected void synchronizeData() {
+        needsSyncData(false);
+        data_ = ownerDocument().characterDataArena_.getString(arenaOffset_, arenaLength_);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -153,7 +181,7 @@ public String getData() {
     @Override
     public int getLength() {
         if (needsSyncData()) {
-            synchronizeData();
+            return arenaLength_;
         }
         return data_.length();
     }
@@ -32,6 +32,11 @@ public CommentImpl(final CoreDocumentImpl ownerDoc, final String data) {
         super(ownerDoc, data);
     }
 
+    // Factory constructor for data in the character data arena.
+    CommentImpl(final CoreDocumentImpl ownerDoc, final int arenaOffset, final int arenaLength) {
+        super(ownerDoc, arenaOffset, arenaLength);
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -22,6 +22,7 @@
 import org.htmlunit.cyberneko.xerces.util.XML11Char;
 import org.htmlunit.cyberneko.xerces.util.XMLChar;
 import org.htmlunit.cyberneko.xerces.xni.NamespaceContext;
+import org.htmlunit.cyberneko.xerces.xni.XMLString;
 import org.w3c.dom.Attr;
 import org.w3c.dom.CDATASection;
 import org.w3c.dom.Comment;
@@ -91,6 +92,12 @@ public class CoreDocumentImpl extends ParentNode implements Document {
     /** Identifiers. */
     private HashMap<String, Element> identifiers_;
 
+    /** The recorded events of nodes not expanded yet (deferred node expansion). */
+    EventTape eventTape_;
+
+    /** The character data of text and comment nodes created from parsed chars. */
+    CharacterDataArena characterDataArena_;
+
     /** Table for quick check of child insertion. */
     private static final int[] kidOK;
 
@@ -443,6 +450,17 @@ public Comment createComment(final String data) {
         return new CommentImpl(this, data);
     }
 
+    /**
+     * Factory method; creates a Comment whose data is kept in the character
+     * data arena of this document like {@link #createTextNode(XMLString)}.
+     *
+     * @param data The initial contents of the Comment.
+     * @return comment
+     */
+    public CommentImpl createComment(final XMLString data) {
+        return new CommentImpl(this, characterDataArena().append(data), data.length());
+    }
+
     /**
      * Factory method; creates a DocumentFragment having this Document as its
      * OwnerDoc.
@@ -526,6 +544,26 @@ public Text createTextNode(final String data) {
         return new TextImpl(this, data);
     }
 
+    /**
+     * Factory method; creates a Text node whose data is appended to the
+     * character data arena of this document, one array shared by all nodes
+     * created this way. The String of the data is created the first time it
+     * is requested; short whitespace runs are stored only once.
+     *
+     * @param data The initial contents of the Text.
+     * @return the text
+     */
+    public TextImpl createTextNode(final XMLString data) {
+        return new TextImpl(this, characterDataArena().append(data), data.length());
+    }
+
+    private CharacterDataArena characterDataArena() {
+        if (characterDataArena_ == null) {
+            characterDataArena_ = new CharacterDataArena();
+        }
+        return characterDataArena_;
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -1578,6 +1616,24 @@ public Element createElementNS(final String namespaceURI, final String qualified
         return new ElementNSImpl(this, namespaceURI, qualifiedName, localpart);
     }
 
+    /**
+     * NON-DOM: a factory method used by the Xerces DOM parser to create an element
+     * of an element type already resolved by the parser.
+     *
+     * @param namespaceURI  The namespace URI of the element to create.
+     * @param qualifiedName The qualified name of the element type to instantiate.
+     * @param localpart     The local name of the attribute to instantiate.
+     * @param elementCode   The code of the HTML element or -1 if not known.
+     *
+     * @return Element A new Element object with the following attributes:
+     * @exception DOMException INVALID_CHARACTER_ERR: Raised if the specified name
+     *                         contains an invalid character.
+     */
+    public Element createElementNS(final String namespaceURI, final String qualifiedName, final String localpart,
+                final short elementCode) throws DOMException {
+        return createElementNS(namespaceURI, qualifiedName, localpart);
+    }
+
     /**
      * Introduced in DOM Level 2.
      * <p>
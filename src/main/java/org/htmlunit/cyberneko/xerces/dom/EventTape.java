@@ -0,0 +1,444 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.xerces.dom;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.htmlunit.cyberneko.xerces.xni.NamespaceContext;
+import org.htmlunit.cyberneko.xerces.xni.QName;
+import org.htmlunit.cyberneko.xerces.xni.XMLAttributes;
+import org.htmlunit.cyberneko.xerces.xni.XMLString;
+
+/**
+ * Records the (balanced) document events of a parse and creates the nodes
+ * from the recording when they are needed. This is used for deferred node
+ * expansion: after the parse only the children of the document are created,
+ * the children of an element are created the first time they are accessed
+ * (see {@link ParentNode#synchronizeChildren()}).
+ *
+ * <p>The events are stored in an int array; names are indexes into a string
+ * table, text, comments and attribute values are ranges of one char array.
+ * Every element record knows where its content ends, so the content of
+ * elements that are never accessed is skipped.
+ *
+ * <p><strong>Note:</strong> The expansion modifies the tree, so a deferred
+ * document must not be read by several threads at the same time.
+ */
+public final class EventTape {
+
+    // the record types
+    private static final int ELEMENT = 1;
+    private static final int END_ELEMENT = 2;
+    private static final int TEXT = 3;
+    private static final int CDATA = 4;
+    private static final int COMMENT = 5;
+    private static final int PROCESSING_INSTRUCTION = 6;
+    private static final int DOCTYPE = 7;
+
+    // ELEMENT, end, rawname, localpart, prefix, uri, element code, attribute count
+    private static final int ELEMENT_HEADER = 8;
+
+    // rawname, localpart, prefix, uri, value offset, value length, specified
+    private static final int ATTRIBUTE_SIZE = 7;
+
+    private final boolean namespaceAware_;
+
+    private int[] tape_ = new int[256];
+    private int length_;
+
+    private char[] chars_ = new char[1024];
+    private int charsLength_;
+
+    private final List<String> strings_ = new ArrayList<>();
+    private Map<String, Integer> stringIndexes_ = new HashMap<>();
+
+    // the start of the open elements
+    private int[] open_ = new int[16];
+    private int depth_;
+
+    // the position of the last text record as long as it can be extended
+    private int lastText_ = -1;
+
+    // the nodes whose children are not created yet and the position of their record
+    private final Map<ParentNode, Integer> deferred_ = new IdentityHashMap<>();
+
+    /**
+     * Creates an empty tape.
+     *
+     * @param namespaceAware whether elements and attributes are created with
+     *        their namespace (see {@link CoreDocumentImpl#createElementNS(String, String, String, short)})
+     */
+    public EventTape(final boolean namespaceAware) {
+        namespaceAware_ = namespaceAware;
+    }
+
+    /**
+     * Records the document type.
+     *
+     * @param rootElement the name of the root element
+     * @param publicId the public identifier or null
+     * @param systemId the system identifier or null
+     */
+    public void doctype(final String rootElement, final String publicId, final String systemId) {
+        final int pos = reserve(4);
+        tape_[pos] = DOCTYPE;
+        tape_[pos + 1] = string(rootElement);
+        tape_[pos + 2] = string(publicId);
+        tape_[pos + 3] = string(systemId);
+        lastText_ = -1;
+    }
+
+    /**
+     * Records the start of an element.
+     *
+     * @param element the element
+     * @param attributes the attributes
+     */
+    public void startElement(final QName element, final XMLAttributes attributes) {
+        final int attributeCount = attributes.getLength();
+        final int pos = reserve(ELEMENT_HEADER + attributeCount * ATTRIBUTE_SIZE);
+        tape_[pos] = ELEMENT;
+        tape_[pos + 1] = -1;
+        tape_[pos + 2] = string(element.getRawname());
+        tape_[pos + 3] = string(element.getLocalpart());
+        tape_[pos + 4] = string(element.getPrefix());
+        tape_[pos + 5] = string(element.getUri());
+        tape_[pos + 6] = element.getElementCode();
+        tape_[pos + 7] = attributeCount;
+
+        final QName name = new QName();
+        int attr = pos + ELEMENT_HEADER;
+        for (int i = 0; i < attributeCount; i++) {
+            attributes.getName(i, name);
+            tape_[attr] = string(name.getRawname());
+            tape_[attr + 1] = string(name.getLocalpart());
+            tape_[attr + 2] = string(name.getPrefix());
+            tape_[attr + 3] = string(name.getUri());
+            final String value = attributes.getValue(i);
+            tape_[attr + 4] = charsLength_;
+            tape_[attr + 5] = value.length();
+            tape_[attr + 6] = attributes.isSpecified(i) ? 1 : 0;
+            appendChars(value);
+            attr += ATTRIBUTE_SIZE;
+        }
+
+        if (depth_ == open_.length) {
+            open_ = Arrays.copyOf(open_, depth_ * 2);
+        }
+        open_[depth_++] = pos;
+        lastText_ = -1;
+    }
+
+    /**
+     * Records the end of the current element.
+     */
+    public void endElement() {
+        if (depth_ == 0) {
+            return;
+        }
+        final int pos = reserve(1);
+        tape_[pos] = END_ELEMENT;
+        tape_[open_[--depth_] + 1] = length_;
+        lastText_ = -1;
+    }
+
+    /**
+     * Records text; text following other text is appended to it.
+     *
+     * @param text the text
+     * @param ignorableWhitespace whether the text is ignorable whitespace
+     */
+    public void characters(final XMLString text, final boolean ignorableWhitespace) {
+        if (text.length() == 0) {
+            return;
+        }
+        if (lastText_ != -1) {
+            tape_[lastText_ + 2] += text.length();
+        }
+        else {
+            final int pos = reserve(4);
+            tape_[pos] = TEXT;
+            tape_[pos + 1] = charsLength_;
+            tape_[pos + 2] = text.length();
+            tape_[pos + 3] = ignorableWhitespace ? 1 : 0;
+            lastText_ = pos;
+        }
+        appendChars(text);
+    }
+
+    /**
+     * Records the start of a CDATA section, the content is added with
+     * {@link #cdata(XMLString)}.
+     */
+    public void startCDATA() {
+        final int pos = reserve(3);
+        tape_[pos] = CDATA;
+        tape_[pos + 1] = charsLength_;
+        tape_[pos + 2] = 0;
+        lastText_ = -1;
+    }
+
+    /**
+     * Records content of the current CDATA section.
+     *
+     * @param text the text
+     */
+    public void cdata(final XMLString text) {
+        // the CDATA record is the last one
+        tape_[length_ - 1] += text.length();
+        appendChars(text);
+    }
+
+    /**
+     * Records a comment.
+     *
+     * @param text the text of the comment
+     */
+    public void comment(final XMLString text) {
+        final int pos = reserve(3);
+        tape_[pos] = COMMENT;
+        tape_[pos + 1] = charsLength_;
+        tape_[pos + 2] = text.length();
+        appendChars(text);
+        lastText_ = -1;
+    }
+
+    /**
+     * Records a processing instruction.
+     *
+     * @param target the target
+     * @param data the data or null
+     */
+    public void processingInstruction(final String target, final XMLString data) {
+        final int pos = reserve(4);
+        tape_[pos] = PROCESSING_INSTRUCTION;
+        tape_[pos + 1] = string(target);
+        tape_[pos + 2] = charsLength_;
+        tape_[pos + 3] = data == null ? 0 : data.length();
+        if (data != null) {
+            appendChars(data);
+        }
+        lastText_ = -1;
+    }
+
+    /**
+     * Ends the recording and creates the children of the document. The
+     * content of the elements is created when accessed.
+     *
+     * @param document the document to fill
+     */
+    public void attach(final CoreDocumentImpl document) {
+        while (depth_ > 0) {
+            tape_[open_[--depth_] + 1] = length_;
+        }
+        stringIndexes_ = null;
+
+        document.eventTape_ = this;
+        deferred_.put(document, -1);
+        expand(document);
+    }
+
+    /**
+     * Creates the children of the given node if they are not created yet.
+     *
+     * @param parent the node
+     */
+    void expand(final ParentNode parent) {
+        final Integer pos = deferred_.remove(parent);
+        if (pos == null) {
+            return;
+        }
+
+        final CoreDocumentImpl document = parent.ownerDocument();
+        final boolean errorChecking = document.errorChecking;
+        final int changes = document.changes;
+        document.errorChecking = false;
+        try {
+            if (pos == -1) {
+                expand(document, parent, 0, length_);
+            }
+            else {
+                final int start = pos + ELEMENT_HEADER + tape_[pos + 7] * ATTRIBUTE_SIZE;
+                // the end includes the END_ELEMENT record if the element was closed
+                expand(document, parent, start, tape_[pos + 1]);
+            }
+        }
+        finally {
+            // creating the nodes does not change the document as seen by node lists
+            document.errorChecking = errorChecking;
+            document.changes = changes;
+            if (deferred_.isEmpty()) {
+                document.eventTape_ = null;
+            }
+        }
+    }
+
+    /**
+     * @return the number of nodes whose children are not created yet
+     */
+    public int getDeferredCount() {
+        return deferred_.size();
+    }
+
+    private void expand(final CoreDocumentImpl document, final ParentNode parent, final int start, final int end) {
+        int pos = start;
+        while (pos < end) {
+            switch (tape_[pos]) {
+                case ELEMENT:
+                    final ElementImpl element = createElement(document, pos);
+                    parent.appendChild(element);
+                    final int next = tape_[pos + 1];
+                    final int content = pos + ELEMENT_HEADER + tape_[pos + 7] * ATTRIBUTE_SIZE;
+                    if (content < next && tape_[content] != END_ELEMENT) {
+                        deferred_.put(element, pos);
+                        element.needsSyncChildren(true);
+                    }
+                    pos = next;
+                    break;
+
+                case TEXT:
+                    final TextImpl text = (TextImpl) document.createTextNode(
+                            new String(chars_, tape_[pos + 1], tape_[pos + 2]));
+                    if (tape_[pos + 3] == 1) {
+                        text.setIgnorableWhitespace(true);
+                    }
+                    parent.appendChild(text);
+                    pos += 4;
+                    break;
+
+                case CDATA:
+                    if (tape_[pos + 2] > 0) {
+                        parent.appendChild(document.createCDATASection(
+                                new String(chars_, tape_[pos + 1], tape_[pos + 2])));
+                    }
+                    pos += 3;
+                    break;
+
+                case COMMENT:
+                    parent.appendChild(document.createComment(new String(chars_, tape_[pos + 1], tape_[pos + 2])));
+                    pos += 3;
+                    break;
+
+                case PROCESSING_INSTRUCTION:
+                    parent.appendChild(document.createProcessingInstruction(strings_.get(tape_[pos + 1]),
+                            new String(chars_, tape_[pos + 2], tape_[pos + 3])));
+                    pos += 4;
+                    break;
+
+                case DOCTYPE:
+                    parent.appendChild(document.createDocumentType(stringAt(pos + 1), stringAt(pos + 2), stringAt(pos + 3)));
+                    pos += 4;
+                    break;
+
+                default:
+                    // END_ELEMENT of the parent
+                    pos++;
+                    break;
+            }
+        }
+    }
+
+    private ElementImpl createElement(final CoreDocumentImpl document, final int pos) {
+        final ElementImpl element;
+        if (namespaceAware_) {
+            element = (ElementImpl) document.createElementNS(stringAt(pos + 5), stringAt(pos + 2), stringAt(pos + 3),
+                    (short) tape_[pos + 6]);
+        }
+        else {
+            element = (ElementImpl) document.createElement(stringAt(pos + 2));
+        }
+
+        final int attributeCount = tape_[pos + 7];
+        boolean seenSchemaDefault = false;
+        int attr = pos + ELEMENT_HEADER;
+        for (int i = 0; i < attributeCount; i++) {
+            final String uri = stringAt(attr + 3);
+            final AttrImpl attrImpl;
+            if (namespaceAware_) {
+                attrImpl = (AttrImpl) document.createAttributeNS(uri, stringAt(attr), stringAt(attr + 1));
+            }
+            else {
+                attrImpl = (AttrImpl) document.createAttribute(stringAt(attr));
+            }
+            attrImpl.setValue(new String(chars_, tape_[attr + 4], tape_[attr + 5]));
+
+            // same as AbstractDOMParser.startElement()
+            final boolean specified = tape_[attr + 6] == 1;
+            if (!specified && (seenSchemaDefault
+                    || (uri != null && !NamespaceContext.XMLNS_URI.equals(uri) && stringAt(attr + 2) == null))) {
+                element.setAttributeNodeNS(attrImpl);
+                seenSchemaDefault = true;
+            }
+            else {
+                element.setAttributeNode(attrImpl);
+            }
+            attrImpl.setType(null);
+            attrImpl.setSpecified(specified);
+            attr += ATTRIBUTE_SIZE;
+        }
+        return element;
+    }
+
+    // returns the string stored at the given tape position
+    private String stringAt(final int pos) {
+        final int index = tape_[pos];
+        return index == -1 ? null : strings_.get(index);
+    }
+
+    private int string(final String string) {
+        if (string == null) {
+            return -1;
+        }
+        Integer index = stringIndexes_.get(string);
+        if (index == null) {
+            index = strings_.size();
+            strings_.add(string);
+            stringIndexes_.put(string, index);
+        }
+        return index;
+    }
+
+    private int reserve(final int size) {
+        if (length_ + size > tape_.length) {
+            tape_ = Arrays.copyOf(tape_, Math.max(tape_.length * 2, length_ + size));
+        }
+        final int pos = length_;
+        length_ += size;
+        return pos;
+    }
+
+    private void ensureChars(final int length) {
+        if (charsLength_ + length > chars_.length) {
+            chars_ = Arrays.copyOf(chars_, Math.max(chars_.length * 2, charsLength_ + length));
+        }
+    }
+
+    private void appendChars(final XMLString text) {
+        ensureChars(text.length());
+        text.getChars(chars_, charsLength_);
+        charsLength_ += text.length();
+    }
+
+    private void appendChars(final String text) {
+        ensureChars(text.length());
+        text.getChars(0, text.length(), chars_, charsLength_);
+        charsLength_ += text.length();
+    }
+}
@@ -824,6 +824,12 @@ public boolean isEqualNode(final Node arg) {
     protected void synchronizeChildren() {
         // By default just change the flag to avoid calling this method again
         needsSyncChildren(false);
+
+        // create the children of a deferred node
+        final EventTape eventTape = ownerDocument.eventTape_;
+        if (eventTape != null) {
+            eventTape.expand(this);
+        }
     }
 
     /**
@@ -14,6 +14,7 @@
  */
 package org.htmlunit.cyberneko.xerces.dom;
 
+import org.htmlunit.cyberneko.xerces.xni.XMLString;
 import org.w3c.dom.DOMException;
 import org.w3c.dom.Node;
 import org.w3c.dom.Text;
@@ -38,6 +39,11 @@ public TextImpl(final CoreDocumentImpl ownerDoc, final String data) {
         super(ownerDoc, data);
     }
 
+    // Factory constructor for data in the character data arena.
+    TextImpl(final CoreDocumentImpl ownerDoc, final int arenaOffset, final int arenaLength) {
+        super(ownerDoc, arenaOffset, arenaLength);
+    }
+
     /**
      * {@inheritDoc}
      *
@@ -553,12 +559,27 @@ public Text splitText(final int offset) throws DOMException {
 
     // NON-DOM (used by DOMParser): Reset data for the node.
     public void replaceData(final String value) {
+        needsSyncData(false);
         data_ = value;
     }
 
+    // NON-DOM (used by DOMParser): Appends the characters without notification.
+    // Data in the character data arena stays there.
+    public void appendData(final XMLString chars) {
+        if (needsSyncData()) {
+            arenaOffset_ = ownerDocument().characterDataArena_.append(arenaOffset_, arenaLength_, chars);
+            arenaLength_ += chars.length();
+            return;
+        }
+        data_ = data_ + chars;
+    }
+
     // NON-DOM (used by DOMParser: Sets data to empty string.
     // Returns the value the data was set to.
     public String removeData() {
+        if (needsSyncData()) {
+            synchronizeData();
+        }
         final String olddata = data_;
         data_ = "";
         return olddata;
@@ -24,6 +24,7 @@
 import org.htmlunit.cyberneko.xerces.dom.DocumentImpl;
 import org.htmlunit.cyberneko.xerces.dom.EntityImpl;
 import org.htmlunit.cyberneko.xerces.dom.EntityReferenceImpl;
+import org.htmlunit.cyberneko.xerces.dom.EventTape;
 import org.htmlunit.cyberneko.xerces.dom.TextImpl;
 import org.htmlunit.cyberneko.xerces.util.ErrorHandlerWrapper;
 import org.htmlunit.cyberneko.xerces.util.SAXMessageFormatter;
@@ -90,13 +91,23 @@ public class AbstractDOMParser extends AbstractXMLDocumentParser {
     protected static final String INCLUDE_IGNORABLE_WHITESPACE = Constants.XERCES_FEATURE_PREFIX
             + Constants.INCLUDE_IGNORABLE_WHITESPACE;
 
+    /** Feature id: defer node expansion. */
+    protected static final String DEFER_NODE_EXPANSION = Constants.XERCES_FEATURE_PREFIX
+            + Constants.DEFER_NODE_EXPANSION_FEATURE;
+
+    /** Feature id: keep the character data of text and comment nodes in one array. */
+    protected static final String CHARACTER_DATA_ARENA = Constants.XERCES_FEATURE_PREFIX
+            + Constants.CHARACTER_DATA_ARENA_FEATURE;
+
     /** Recognized features. */
     private static final String[] RECOGNIZED_FEATURES = {
         NAMESPACES,
         CREATE_ENTITY_REF_NODES,
         INCLUDE_COMMENTS_FEATURE,
         CREATE_CDATA_NODES_FEATURE,
-        INCLUDE_IGNORABLE_WHITESPACE};
+        INCLUDE_IGNORABLE_WHITESPACE,
+        DEFER_NODE_EXPANSION,
+        CHARACTER_DATA_ARENA};
 
     /** Recognized properties. */
     private static final String[] RECOGNIZED_PROPERTIES = {};
@@ -115,6 +126,15 @@ public class AbstractDOMParser extends AbstractXMLDocumentParser {
     /** Create cdata nodes. */
     protected boolean fCreateCDATANodes;
 
+    /** Defer node expansion. */
+    protected boolean fDeferNodeExpansion;
+
+    /** Character data arena (see {@link CoreDocumentImpl#createTextNode(XMLString)}). */
+    protected boolean fCharacterDataArena;
+
+    /** The recorded events when deferring node expansion. */
+    protected EventTape fEventTape;
+
     /** The document. */
     protected Document fDocument;
 
@@ -166,6 +186,8 @@ protected AbstractDOMParser(final XMLParserConfiguration config, final Class<? e
         fConfiguration.setFeature(INCLUDE_IGNORABLE_WHITESPACE, true);
         fConfiguration.setFeature(INCLUDE_COMMENTS_FEATURE, true);
         fConfiguration.setFeature(CREATE_CDATA_NODES_FEATURE, true);
+        fConfiguration.setFeature(DEFER_NODE_EXPANSION, false);
+        fConfiguration.setFeature(CHARACTER_DATA_ARENA, false);
 
         // add recognized properties
         fConfiguration.addRecognizedProperties(RECOGNIZED_PROPERTIES);
@@ -176,8 +198,7 @@ protected AbstractDOMParser(final XMLParserConfiguration config, final Class<? e
     /**
      * This method allows the programmer to decide which document factory to use
      * when constructing the DOM tree. However, doing so will lose the functionality
-     * of the default factory. Also, a document class other than the default will
-     * lose the ability to defer node expansion on the DOM tree produced.
+     * of the default factory.
      *
      * @param documentClass The document factory to use when constructing the DOM
      *                      tree.
@@ -188,9 +209,19 @@ protected void setDocumentClass(final Class<? extends DocumentImpl> documentClas
 
     /** @return the DOM document object. */
     public Document getDocument() {
+        // the end of the document is not reported for all input (e.g. an empty plaintext)
+        attachEventTape();
         return fDocument;
     }
 
+    // creates the children of the document from the recorded events
+    private void attachEventTape() {
+        if (fEventTape != null) {
+            fEventTape.attach(fDocumentImpl);
+            fEventTape = null;
+        }
+    }
+
     /**
      * Resets the parser state.
      *
@@ -211,11 +242,16 @@ public void reset() throws XNIException {
 
         fCreateCDATANodes = fConfiguration.getFeature(CREATE_CDATA_NODES_FEATURE);
 
+        fDeferNodeExpansion = fConfiguration.getFeature(DEFER_NODE_EXPANSION);
+
+        fCharacterDataArena = fConfiguration.getFeature(CHARACTER_DATA_ARENA);
+
         // reset dom information
         fDocument = null;
         fDocumentImpl = null;
         fDocumentType = null;
         fCurrentNode = null;
+        fEventTape = null;
 
         // reset string buffer
         fStringBuffer.clear();
@@ -228,6 +264,18 @@ public void reset() throws XNIException {
         fBaseURIStack.removeAllElements();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void recycle(final int maxBufferSize) {
+        super.recycle(maxBufferSize);
+
+        fStringBuffer.clearAndShrink(maxBufferSize);
+        fCurrentEntityDecl = null;
+        fLocator = null;
+    }
+
     /**
      * This method notifies the start of a general entity.
      * <p>
@@ -250,6 +298,10 @@ public void startGeneralEntity(final String name, final String encoding, final A
         if (DEBUG_EVENTS) {
             System.out.println("==>startGeneralEntity (" + name + ")");
         }
+        if (fEventTape != null) {
+            // the entity boundaries are not recorded, only the content
+            return;
+        }
 
         setCharacterData(true);
         final EntityReference er = fDocument.createEntityReference(name);
@@ -315,8 +367,14 @@ public void comment(final XMLString text, final Augmentations augs) throws XNIEx
         if (!fIncludeComments) {
             return;
         }
+        if (fEventTape != null) {
+            fEventTape.comment(text);
+            return;
+        }
 
-        final Comment comment = fDocument.createComment(text.toString());
+        final Comment comment = fCharacterDataArena
+                ? fDocumentImpl.createComment(text)
+                : fDocument.createComment(text.toString());
         setCharacterData(false);
         fCurrentNode.appendChild(comment);
     }
@@ -342,6 +400,10 @@ public void processingInstruction(final String target, final XMLString data, fin
         if (DEBUG_EVENTS) {
             System.out.println("==>processingInstruction (" + target + ")");
         }
+        if (fEventTape != null) {
+            fEventTape.processingInstruction(target, data);
+            return;
+        }
 
         final ProcessingInstruction pi = fDocument.createProcessingInstruction(target, data.toString());
         setCharacterData(false);
@@ -408,6 +470,10 @@ public void startDocument(final XMLLocator locator, final String encoding, final
             }
         }
         fCurrentNode = fDocument;
+
+        if (fDeferNodeExpansion) {
+            fEventTape = new EventTape(fNamespaceAware);
+        }
     }
 
     /**
@@ -451,7 +517,10 @@ public void xmlDecl(final String version, final String encoding, final String st
     @Override
     public void doctypeDecl(final String rootElement, final String publicId, final String systemId, final Augmentations augs)
             throws XNIException {
-        if (fDocumentImpl != null) {
+        if (fEventTape != null) {
+            fEventTape.doctype(rootElement, publicId, systemId);
+        }
+        else if (fDocumentImpl != null) {
             fDocumentType = fDocumentImpl.createDocumentType(rootElement, publicId, systemId);
             fCurrentNode.appendChild(fDocumentType);
         }
@@ -474,6 +543,10 @@ public void startElement(final QName element, final XMLAttributes attributes, fi
         if (DEBUG_EVENTS) {
             System.out.println("==>startElement (" + element.getRawname() + ")");
         }
+        if (fEventTape != null) {
+            fEventTape.startElement(element, attributes);
+            return;
+        }
 
         final Element el = createElementNode(element);
         final int attrCount = attributes.getLength();
@@ -550,6 +623,15 @@ public void characters(final XMLString text, final Augmentations augs) throws XN
         if (DEBUG_EVENTS) {
             System.out.println("==>characters(): " + text.toString());
         }
+        if (fEventTape != null) {
+            if (fInCDATASection && fCreateCDATANodes) {
+                fEventTape.cdata(text);
+            }
+            else {
+                fEventTape.characters(text, false);
+            }
+            return;
+        }
 
         if (fInCDATASection && fCreateCDATANodes) {
             if (fCurrentCDATASection == null) {
@@ -569,7 +651,10 @@ public void characters(final XMLString text, final Augmentations augs) throws XN
             }
 
             final Node child = fCurrentNode.getLastChild();
-            if (child != null && child.getNodeType() == Node.TEXT_NODE) {
+            if (child != null && child.getNodeType() == Node.TEXT_NODE && fCharacterDataArena) {
+                ((TextImpl) child).appendData(text);
+            }
+            else if (child != null && child.getNodeType() == Node.TEXT_NODE) {
                 // collect all the data into the string buffer.
                 if (fFirstChunk) {
                     if (fDocumentImpl != null) {
@@ -582,12 +667,14 @@ public void characters(final XMLString text, final Augmentations augs) throws XN
                     fFirstChunk = false;
                 }
                 if (text.length() > 0) {
-                    text.append(fStringBuffer);
+                    fStringBuffer.append(text);
                 }
             }
             else {
                 fFirstChunk = true;
-                final Text textNode = fDocument.createTextNode(text.toString());
+                final Text textNode = fCharacterDataArena
+                        ? fDocumentImpl.createTextNode(text)
+                        : fDocument.createTextNode(text.toString());
                 fCurrentNode.appendChild(textNode);
             }
 
@@ -612,6 +699,10 @@ public void ignorableWhitespace(final XMLString text, final Augmentations augs)
         if (!fIncludeIgnorableWhitespace) {
             return;
         }
+        if (fEventTape != null) {
+            fEventTape.characters(text, true);
+            return;
+        }
         final Node child = fCurrentNode.getLastChild();
         if (child != null && child.getNodeType() == Node.TEXT_NODE) {
             final Text textNode = (Text) child;
@@ -640,6 +731,10 @@ public void endElement(final QName element, final Augmentations augs) throws XNI
         if (DEBUG_EVENTS) {
             System.out.println("==>endElement (" + element.getRawname() + ")");
         }
+        if (fEventTape != null) {
+            fEventTape.endElement();
+            return;
+        }
         setCharacterData(false);
         fCurrentNode = fCurrentNode.getParentNode();
     }
@@ -654,7 +749,12 @@ public void endElement(final QName element, final Augmentations augs) throws XNI
     @Override
     public void startCDATA(final Augmentations augs) throws XNIException {
         fInCDATASection = true;
-        if (fCreateCDATANodes) {
+        if (fEventTape != null) {
+            if (fCreateCDATANodes) {
+                fEventTape.startCDATA();
+            }
+        }
+        else if (fCreateCDATANodes) {
             setCharacterData(false);
         }
     }
@@ -689,6 +789,7 @@ public void endDocument(final Augmentations augs) throws XNIException {
         // REVISIT: when DOM Level 3 is REC rely on Document.support
         // instead of specific class
         // set the actual encoding and set DOM error checking back on
+        attachEventTape();
         if (fDocumentImpl != null) {
             if (fLocator != null) {
                 fDocumentImpl.setInputEncoding(fLocator.getEncoding());
@@ -714,6 +815,9 @@ public void endGeneralEntity(final String name, final Augmentations augs) throws
         if (DEBUG_EVENTS) {
             System.out.println("==>endGeneralEntity: (" + name + ")");
         }
+        if (fEventTape != null) {
+            return;
+        }
 
         setCharacterData(true);
 
@@ -818,7 +922,8 @@ protected Element createElementNode(final QName element) {
             // if we are using xerces DOM implementation, call our
             // own constructor to reuse the strings we have here.
             if (fDocumentImpl != null) {
-                el = fDocumentImpl.createElementNS(element.getUri(), element.getRawname(), element.getLocalpart());
+                el = fDocumentImpl.createElementNS(element.getUri(), element.getRawname(), element.getLocalpart(),
+                        element.getElementCode());
             }
             else {
                 el = fDocument.createElementNS(element.getUri(), element.getRawname());
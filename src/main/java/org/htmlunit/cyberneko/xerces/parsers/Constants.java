@@ -74,6 +74,12 @@ public final class Constants {
      */
     public static final String INCLUDE_IGNORABLE_WHITESPACE = "dom/include-ignorable-whitespace";
 
+    /** Defer node expansion feature ("dom/defer-node-expansion"). */
+    public static final String DEFER_NODE_EXPANSION_FEATURE = "dom/defer-node-expansion";
+
+    /** Character data arena feature ("dom/character-data-arena"). */
+    public static final String CHARACTER_DATA_ARENA_FEATURE = "dom/character-data-arena";
+
     // xerces properties
 
     /** Xerces properties prefix ("http://apache.org/xml/properties/"). */
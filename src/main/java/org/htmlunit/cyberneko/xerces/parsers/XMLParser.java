@@ -78,4 +78,24 @@ public void parse(final XMLInputSource inputSource) throws XNIException, IOExcep
      */
     protected void reset() throws XNIException {
     }
+
+    /**
+     * Drops all references to the last parsed document and shrinks the internal
+     * buffers that have grown beyond the given size, so that this parser can be
+     * kept for the next document (see
+     * {@link org.htmlunit.cyberneko.parsers.HTMLParserPool}).
+     *
+     * @param maxBufferSize the buffer capacity (in chars) to keep at most
+     */
+    public void recycle(final int maxBufferSize) {
+        reset();
+        fConfiguration.recycle(maxBufferSize);
+    }
+
+    /**
+     * @return the parser configuration
+     */
+    public XMLParserConfiguration getXMLParserConfiguration() {
+        return fConfiguration;
+    }
 }
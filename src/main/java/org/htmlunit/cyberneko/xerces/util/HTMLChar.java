@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.xerces.util;
+
+/**
+ * The character classes used by the HTML scanner. The classes of the ASCII
+ * characters are looked up in a table; only the other characters are
+ * classified by the (slower) methods of {@link Character}.
+ */
+public final class HTMLChar {
+
+    /** The flags of the ASCII characters. */
+    private static final byte[] ASCII = new byte[128];
+
+    /** Whitespace mask, the characters of {@link Character#isWhitespace(int)}. */
+    private static final int MASK_SPACE = 0x01;
+
+    /** Element name start character mask (the letters). */
+    private static final int MASK_NAME_START = 0x02;
+
+    /** Element name character mask (letters, digits, '-', '.', ':' and '_'). */
+    private static final int MASK_NAME = 0x04;
+
+    /** Attribute name end character mask (whitespace, '=', '/' and '&gt;'). */
+    private static final int MASK_ATTRIBUTE_NAME_END = 0x08;
+
+    static {
+        for (int c = 0; c < ASCII.length; c++) {
+            int flags = 0;
+            if (Character.isWhitespace(c)) {
+                flags |= MASK_SPACE | MASK_ATTRIBUTE_NAME_END;
+            }
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+                flags |= MASK_NAME_START | MASK_NAME;
+            }
+            if ((c >= '0' && c <= '9') || c == '-' || c == '.' || c == ':' || c == '_') {
+                flags |= MASK_NAME;
+            }
+            if (c == '=' || c == '/' || c == '>') {
+                flags |= MASK_ATTRIBUTE_NAME_END;
+            }
+            ASCII[c] = (byte) flags;
+        }
+    }
+
+    private HTMLChar() {
+    }
+
+    /**
+     * @param c the character (or -1)
+     * @return true if the character is whitespace as defined by {@link Character#isWhitespace(int)}
+     */
+    public static boolean isWhitespace(final int c) {
+        if ((c & ~0x7F) == 0) {
+            return (ASCII[c] & MASK_SPACE) != 0;
+        }
+        return Character.isWhitespace(c);
+    }
+
+    /**
+     * @param c the character (or -1)
+     * @return true if the character can start an element name (an ASCII letter)
+     */
+    public static boolean isNameStart(final int c) {
+        return (c & ~0x7F) == 0 && (ASCII[c] & MASK_NAME_START) != 0;
+    }
+
+    /**
+     * @param c the character (or -1)
+     * @return true if the character is part of an element name (a letter
+     *         or digit as defined by {@link Character#isLetterOrDigit(int)},
+     *         '-', '.', ':' or '_')
+     */
+    public static boolean isName(final int c) {
+        if ((c & ~0x7F) == 0) {
+            return (ASCII[c] & MASK_NAME) != 0;
+        }
+        return c != -1 && Character.isLetterOrDigit(c);
+    }
+
+    /**
+     * @param c the character (or -1)
+     * @return true if the character ends an attribute name (whitespace, '=', '/' or '&gt;')
+     */
+    public static boolean isAttributeNameEnd(final int c) {
+        if ((c & ~0x7F) == 0) {
+            return (ASCII[c] & MASK_ATTRIBUTE_NAME_END) != 0;
+        }
+        return Character.isWhitespace(c);
+    }
+}
@@ -16,6 +16,8 @@
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
 
 import org.htmlunit.cyberneko.xerces.xni.parser.XMLComponentManager;
 import org.htmlunit.cyberneko.xerces.xni.parser.XMLConfigurationException;
@@ -222,4 +224,24 @@ protected void checkProperty(final String propertyId) throws XMLConfigurationExc
             throw new XMLConfigurationException(type, propertyId);
         }
     }
+
+    /**
+     * Appends the states of the features and the values of the properties
+     * that are strings, numbers or booleans in a stable order; other property
+     * values (e.g. handlers) are not included. Configurations with the same
+     * settings append the same text.
+     *
+     * @param buffer the buffer to append to
+     */
+    protected void appendSettings(final StringBuilder buffer) {
+        for (final Map.Entry<String, Boolean> feature : new TreeMap<>(fFeatures_).entrySet()) {
+            buffer.append(feature.getKey()).append('=').append(feature.getValue()).append('\n');
+        }
+        for (final Map.Entry<String, Object> property : new TreeMap<>(fProperties_).entrySet()) {
+            final Object value = property.getValue();
+            if (value instanceof String || value instanceof Number || value instanceof Boolean) {
+                buffer.append(property.getKey()).append('=').append(value).append('\n');
+            }
+        }
+    }
 }
@@ -14,10 +14,11 @@
  */
 package org.htmlunit.cyberneko.xerces.util;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 
 import org.htmlunit.cyberneko.xerces.xni.QName;
 import org.htmlunit.cyberneko.xerces.xni.XMLAttributes;
+import org.htmlunit.cyberneko.xerces.xni.XMLString;
 
 /**
  * The XMLAttributesImpl class is an implementation of the XMLAttributes
@@ -29,6 +30,11 @@
  * The attributes are read-write so that subsequent stages in the document
  * pipeline can modify the values or change the attributes that are propogated
  * to the next stage.
+ * <p>
+ * The attribute objects are reused after {@link #removeAllAttributes()}.
+ * Values added with {@link #addAttribute(QName, String, XMLString)} are
+ * kept as characters in an internal buffer, the String is only created
+ * if the value is requested.
  *
  * @see org.htmlunit.cyberneko.xerces.xni.XMLDocumentHandler#startElement
  *
@@ -38,12 +44,23 @@
  */
 public class XMLAttributesImpl implements XMLAttributes {
 
-    /** Attribute information. */
-    private final ArrayList<Attribute> attributes_;
+    private static final Attribute[] NO_ATTRIBUTES = new Attribute[0];
+
+    /** Attribute information, the entries from length_ on are free for reuse. */
+    private Attribute[] attributes_;
+
+    /** The number of attributes. */
+    private int length_;
+
+    /** The characters of the values not materialized so far. */
+    private char[] chars_;
+
+    /** The used part of chars_. */
+    private int charsLength_;
 
     /** Default constructor. */
     public XMLAttributesImpl() {
-        attributes_ = new ArrayList<>();
+        attributes_ = NO_ATTRIBUTES;
     }
 
     /**
@@ -70,16 +87,73 @@ public XMLAttributesImpl() {
      */
     @Override
     public int addAttribute(final QName name, final String type, final String value) {
-        // set values
-        final Attribute attribute = new Attribute();
+        final Attribute attribute = nextAttribute(name, type);
+        attribute.value_ = value;
+        return length_ - 1;
+    }
+
+    /**
+     * Adds an attribute like {@link #addAttribute(QName, String, String)}.
+     * The characters of the value are copied, the String is only created
+     * if the value is requested.
+     *
+     * @param name  The attribute name.
+     * @param type  The attribute type.
+     * @param value The attribute value.
+     *
+     * @return Returns the attribute index.
+     */
+    public int addAttribute(final QName name, final String type, final XMLString value) {
+        final Attribute attribute = nextAttribute(name, type);
+        final int length = value.length();
+        if (length == 0) {
+            attribute.value_ = "";
+            return length_ - 1;
+        }
+
+        if (chars_ == null) {
+            chars_ = new char[Math.max(256, length)];
+        }
+        else if (charsLength_ + length > chars_.length) {
+            chars_ = Arrays.copyOf(chars_, Math.max(chars_.length * 2, charsLength_ + length));
+        }
+        value.getChars(chars_, charsLength_);
+        attribute.valueOffset_ = charsLength_;
+        attribute.valueLength_ = length;
+        charsLength_ += length;
+        return length_ - 1;
+    }
+
+    /**
+     * Appends a (reused) attribute with the given name and type.
+     */
+    private Attribute nextAttribute(final QName name, final String type) {
+        if (length_ == attributes_.length) {
+            attributes_ = Arrays.copyOf(attributes_, Math.max(8, length_ * 2));
+        }
+        Attribute attribute = attributes_[length_];
+        if (attribute == null) {
+            attribute = new Attribute();
+            attributes_[length_] = attribute;
+        }
+        length_++;
+
         attribute.name_.setValues(name);
         attribute.type_ = type;
-        attribute.value_ = value;
+        attribute.valueOffset_ = -1;
         attribute.specified_ = false;
+        return attribute;
+    }
 
-        attributes_.add(attribute);
-        return attributes_.size() - 1;
-
+    /**
+     * @return the value of the attribute, materialized if needed
+     */
+    private String value(final Attribute attribute) {
+        if (attribute.valueOffset_ != -1) {
+            attribute.value_ = new String(chars_, attribute.valueOffset_, attribute.valueLength_);
+            attribute.valueOffset_ = -1;
+        }
+        return attribute.value_;
     }
 
     /**
@@ -88,7 +162,11 @@ public int addAttribute(final QName name, final String type, final String value)
      */
     @Override
     public void removeAllAttributes() {
-        attributes_.clear();
+        for (int i = 0; i < length_; i++) {
+            attributes_[i].value_ = null;
+        }
+        length_ = 0;
+        charsLength_ = 0;
     }
 
     /**
@@ -101,7 +179,16 @@ public void removeAllAttributes() {
      */
     @Override
     public void removeAttributeAt(final int attrIndex) {
-        attributes_.remove(attrIndex);
+        if (attrIndex < 0 || attrIndex >= length_) {
+            throw new IndexOutOfBoundsException("Index: " + attrIndex + ", Size: " + length_);
+        }
+
+        // keep the removed instance for reuse
+        final Attribute removed = attributes_[attrIndex];
+        removed.value_ = null;
+        System.arraycopy(attributes_, attrIndex + 1, attributes_, attrIndex, length_ - attrIndex - 1);
+        length_--;
+        attributes_[length_] = removed;
     }
 
     /**
@@ -112,7 +199,7 @@ public void removeAttributeAt(final int attrIndex) {
      */
     @Override
     public void setName(final int attrIndex, final QName attrName) {
-        attributes_.get(attrIndex).name_.setValues(attrName);
+        attributes_[attrIndex].name_.setValues(attrName);
     }
 
     /**
@@ -124,7 +211,7 @@ public void setName(final int attrIndex, final QName attrName) {
      */
     @Override
     public void getName(final int attrIndex, final QName attrName) {
-        attrName.setValues(attributes_.get(attrIndex).name_);
+        attrName.setValues(attributes_[attrIndex].name_);
     }
 
     /**
@@ -141,7 +228,7 @@ public void getName(final int attrIndex, final QName attrName) {
      */
     @Override
     public void setType(final int attrIndex, final String attrType) {
-        attributes_.get(attrIndex).type_ = attrType;
+        attributes_[attrIndex].type_ = attrType;
     }
 
     /**
@@ -153,8 +240,9 @@ public void setType(final int attrIndex, final String attrType) {
      */
     @Override
     public void setValue(final int attrIndex, final String attrValue) {
-        final Attribute attribute = attributes_.get(attrIndex);
+        final Attribute attribute = attributes_[attrIndex];
         attribute.value_ = attrValue;
+        attribute.valueOffset_ = -1;
     }
 
     /**
@@ -165,7 +253,7 @@ public void setValue(final int attrIndex, final String attrValue) {
      */
     @Override
     public void setSpecified(final int attrIndex, final boolean specified) {
-        attributes_.get(attrIndex).specified_ = specified;
+        attributes_[attrIndex].specified_ = specified;
     }
 
     /**
@@ -175,7 +263,7 @@ public void setSpecified(final int attrIndex, final boolean specified) {
      */
     @Override
     public boolean isSpecified(final int attrIndex) {
-        return attributes_.get(attrIndex).specified_;
+        return attributes_[attrIndex].specified_;
     }
 
     /**
@@ -189,7 +277,7 @@ public boolean isSpecified(final int attrIndex) {
      */
     @Override
     public int getLength() {
-        return attributes_.size();
+        return length_;
     }
 
     /**
@@ -223,7 +311,7 @@ public String getType(final int index) {
         if (index < 0 || index >= getLength()) {
             return null;
         }
-        return getReportableType(attributes_.get(index).type_);
+        return getReportableType(attributes_[index].type_);
     }
 
     /**
@@ -241,7 +329,7 @@ public String getType(final int index) {
     @Override
     public String getType(final String qname) {
         final int index = getIndex(qname);
-        return index != -1 ? getReportableType(attributes_.get(index).type_) : null;
+        return index != -1 ? getReportableType(attributes_[index].type_) : null;
     }
 
     /**
@@ -263,7 +351,7 @@ public String getValue(final int index) {
         if (index < 0 || index >= getLength()) {
             return null;
         }
-        return attributes_.get(index).value_;
+        return value(attributes_[index]);
     }
 
     /**
@@ -281,7 +369,7 @@ public String getValue(final int index) {
     @Override
     public String getValue(final String qname) {
         final int index = getIndex(qname);
-        return index != -1 ? attributes_.get(index).value_ : null;
+        return index != -1 ? value(attributes_[index]) : null;
     }
 
     /**
@@ -307,7 +395,7 @@ public String getNameRawName(final int index) {
         if (index < 0 || index >= getLength()) {
             return null;
         }
-        return attributes_.get(index).name_.getRawname();
+        return attributes_[index].name_.getRawname();
     }
 
     /**
@@ -315,7 +403,7 @@ public String getNameRawName(final int index) {
      */
     @Override
     public QName getName(final int index) {
-        return attributes_.get(index).name_;
+        return attributes_[index].name_;
     }
 
     /**
@@ -327,7 +415,7 @@ public QName getName(final int index) {
     @Override
     public int getIndex(final String qName) {
         for (int i = 0; i < getLength(); i++) {
-            final Attribute attribute = attributes_.get(i);
+            final Attribute attribute = attributes_[i];
             if (attribute.name_.getRawname() != null && attribute.name_.getRawname().equals(qName)) {
                 return i;
             }
@@ -345,7 +433,7 @@ public int getIndex(final String qName) {
     @Override
     public int getIndex(final String uri, final String localPart) {
         for (int i = 0; i < getLength(); i++) {
-            final Attribute attribute = attributes_.get(i);
+            final Attribute attribute = attributes_[i];
             if (attribute.name_.getLocalpart() != null && attribute.name_.getLocalpart().equals(localPart)
                     && ((uri == attribute.name_.getUri())
                             || (uri != null && attribute.name_.getUri() != null && attribute.name_.getUri().equals(uri)))) {
@@ -368,7 +456,7 @@ public String getLocalName(final int index) {
         if (index < 0 || index >= getLength()) {
             return null;
         }
-        return attributes_.get(index).name_.getLocalpart();
+        return attributes_[index].name_.getLocalpart();
     }
 
     /**
@@ -384,7 +472,7 @@ public String getQName(final int index) {
         if (index < 0 || index >= getLength()) {
             return null;
         }
-        final String rawname = attributes_.get(index).name_.getRawname();
+        final String rawname = attributes_[index].name_.getRawname();
         return rawname != null ? rawname : "";
     }
 
@@ -404,7 +492,7 @@ public String getQName(final int index) {
     @Override
     public String getType(final String uri, final String localName) {
         final int index = getIndex(uri, localName);
-        return index != -1 ? getReportableType(attributes_.get(index).type_) : null;
+        return index != -1 ? getReportableType(attributes_[index].type_) : null;
     }
 
     /**
@@ -419,7 +507,7 @@ public String getURI(final int index) {
         if (index < 0 || index >= getLength()) {
             return null;
         }
-        return attributes_.get(index).name_.getUri();
+        return attributes_[index].name_.getUri();
     }
 
     /**
@@ -466,14 +554,7 @@ public String getValue(final String uri, final String localName) {
      * @see #setSpecified
      */
     public void addAttributeNS(final QName name, final String type, final String value) {
-        // set values
-        final Attribute attribute = new Attribute();
-        attribute.name_.setValues(name);
-        attribute.type_ = type;
-        attribute.value_ = value;
-        attribute.specified_ = false;
-
-        attributes_.add(attribute);
+        addAttribute(name, type, value);
     }
 
     /**
@@ -502,9 +583,15 @@ private static final class Attribute {
         /** Type. */
         private String type_;
 
-        /** Value. */
+        /** Value, if already materialized. */
         private String value_;
 
+        /** The offset of the value in chars_ or -1 if value_ is set. */
+        private int valueOffset_ = -1;
+
+        /** The length of the value in chars_. */
+        private int valueLength_;
+
         /** Specified. */
         private boolean specified_;
     }
@@ -50,6 +50,14 @@ public class QName implements Cloneable {
      */
     private String uri_;
 
+    /**
+     * The code of the HTML element named by the rawname (see
+     * <code>HTMLElements</code>) or -1 if not resolved. The scanner resolves
+     * the element once, the later stages use the code instead of looking up
+     * the name again. Changing the rawname resets the code.
+     */
+    private short elementCode_ = -1;
+
     /** Default constructor. */
     public QName() {
     }
@@ -82,6 +90,7 @@ public String getRawname() {
 
     public void setRawname(final String rawname) {
         rawname_ = rawname;
+        elementCode_ = -1;
     }
 
     public String getUri() {
@@ -92,6 +101,20 @@ public void setUri(final String uri) {
         uri_ = uri;
     }
 
+    /**
+     * @return the code of the HTML element named by the rawname or -1 if not resolved
+     */
+    public short getElementCode() {
+        return elementCode_;
+    }
+
+    /**
+     * @param elementCode the code of the HTML element named by the rawname
+     */
+    public void setElementCode(final short elementCode) {
+        elementCode_ = elementCode;
+    }
+
     /**
      * Convenience method to set the values of the qname components.
      *
@@ -102,6 +125,7 @@ public void setValues(final QName qname) {
         localpart_ = qname.localpart_;
         rawname_ = qname.rawname_;
         uri_ = qname.uri_;
+        elementCode_ = qname.elementCode_;
     }
 
     /**
@@ -117,6 +141,7 @@ public void setValues(final String prefix, final String localpart, final String
         localpart_ = localpart;
         rawname_ = rawname;
         uri_ = uri;
+        elementCode_ = -1;
     }
 
     // Splits a qualified name.
@@ -16,6 +16,7 @@
 
 import java.util.Arrays;
 
+import org.htmlunit.cyberneko.xerces.util.HTMLChar;
 import org.xml.sax.ContentHandler;
 import org.xml.sax.SAXException;
 import org.xml.sax.ext.LexicalHandler;
@@ -302,6 +303,25 @@ public XMLString clearAndAppend(final char c) {
         return this;
     }
 
+    /**
+     * Resets the buffer to 0 length and replaces the backing array
+     * by a smaller one in case it has grown beyond the given capacity.
+     * Meant for buffers that live longer than a single document, to
+     * release the memory a large document has claimed.
+     *
+     * @param maxCapacity the capacity we want to keep at most
+     * @return this instance for fluid programming
+     */
+    public XMLString clearAndShrink(final int maxCapacity) {
+        this.length_ = 0;
+
+        if (this.data_.length > maxCapacity) {
+            this.data_ = new char[Math.max(0, maxCapacity)];
+        }
+
+        return this;
+    }
+
     /**
      * Does this buffer end with this string? If we check for
      * the empty string, we get true. If we would support JDK 11, we could
@@ -369,7 +389,7 @@ public XMLString trimToContent(final String startMarker, final String endMarker)
         // run over starting whitespaces
         int sPos = 0;
         for ( ; sPos < this.length_ - markerLength; sPos++) {
-            if (!Character.isWhitespace(this.data_[sPos])) {
+            if (!HTMLChar.isWhitespace(this.data_[sPos])) {
                 break;
             }
         }
@@ -377,7 +397,7 @@ public XMLString trimToContent(final String startMarker, final String endMarker)
         // run over ending whitespaces
         int ePos = this.length_ - 1;
         for ( ; ePos > sPos - markerLength; ePos--) {
-            if (!Character.isWhitespace(this.data_[ePos])) {
+            if (!HTMLChar.isWhitespace(this.data_[ePos])) {
                 break;
             }
         }
@@ -425,7 +445,7 @@ public XMLString trimToContent(final String startMarker, final String endMarker)
      */
     public boolean isWhitespace() {
         for (int i = 0; i < this.length_; i++) {
-            if (!Character.isWhitespace(this.data_[i])) {
+            if (!HTMLChar.isWhitespace(this.data_[i])) {
                 return false;
             }
         }
@@ -452,7 +472,7 @@ public XMLString trimLeading() {
         // run over starting whitespace
         int sPos = 0;
         for ( ; sPos < this.length_; sPos++) {
-            if (!Character.isWhitespace(this.data_[sPos])) {
+            if (!HTMLChar.isWhitespace(this.data_[sPos])) {
                 break;
             }
         }
@@ -500,7 +520,7 @@ public XMLString trimTrailing() {
         // run over ending whitespaces
         int ePos = this.length_ - 1;
         for ( ; ePos >= 0; ePos--) {
-            if (!Character.isWhitespace(this.data_[ePos])) {
+            if (!HTMLChar.isWhitespace(this.data_[ePos])) {
                 break;
             }
         }
@@ -536,6 +556,18 @@ public char[] getChars() {
         return Arrays.copyOf(this.data_, this.length_);
     }
 
+    /**
+     * Copies the characters into the destination array, like
+     * {@link String#getChars(int, int, char[], int)} but for the
+     * whole content.
+     *
+     * @param dst the destination array
+     * @param dstBegin the start offset in the destination array
+     */
+    public void getChars(final char[] dst, final int dstBegin) {
+        System.arraycopy(this.data_, 0, dst, dstBegin, this.length_);
+    }
+
     /**
      * Returns a string representation of this buffer. This will be a copy
      * operation. If the buffer is emoty, we get a constant empty String back
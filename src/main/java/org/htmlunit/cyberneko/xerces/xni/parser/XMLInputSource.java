@@ -14,8 +14,15 @@
  */
 package org.htmlunit.cyberneko.xerces.xni.parser;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.htmlunit.cyberneko.xerces.xni.XMLString;
 
 /**
  * This class represents an input source for an XML document. The basic
@@ -23,7 +30,7 @@
  * <ul>
  * <li>public identifier</li>
  * <li>system identifier</li>
- * <li>byte stream or character stream</li>
+ * <li>byte stream, byte buffer, character stream or character array</li>
  * <li>
  * </ul>
  *
@@ -43,9 +50,21 @@ public class XMLInputSource {
     /** Byte stream. */
     private InputStream byteStream_;
 
+    /** Byte buffer, e.g. a memory mapped file. */
+    private ByteBuffer byteBuffer_;
+
     /** Character stream. */
     private Reader charStream_;
 
+    /** Character array, the whole content already in memory. */
+    private char[] charArray_;
+
+    /** Start of the content in the character array. */
+    private int charArrayOffset_;
+
+    /** Length of the content in the character array. */
+    private int charArrayLength_;
+
     /** Encoding. */
     private String encoding_;
 
@@ -91,6 +110,88 @@ public XMLInputSource(final String publicId, final String systemId, final String
         encoding_ = encoding;
     }
 
+    /**
+     * Constructs an input source from a byte buffer. The scanner reads the
+     * remaining bytes of the buffer directly; there is no stream and the
+     * bytes are not buffered again for the encoding detection or an
+     * encoding change triggered by a meta tag.
+     * The buffer must not be changed as long as the parsing is in progress.
+     *
+     * @param publicId     The public identifier, if known.
+     * @param systemId     The system identifier. This value should always be set,
+     *                     if possible, and can be relative or absolute. If the
+     *                     system identifier is relative, then the base system
+     *                     identifier should be set.
+     * @param baseSystemId The base system identifier. This value should always be
+     *                     set to the fully expanded URI of the base system
+     *                     identifier, if possible.
+     * @param byteBuffer   The byte buffer.
+     * @param encoding     The encoding of the bytes, if known.
+     */
+    public XMLInputSource(final String publicId, final String systemId, final String baseSystemId,
+                final ByteBuffer byteBuffer, final String encoding) {
+        publicId_ = publicId;
+        systemId_ = systemId;
+        baseSystemId_ = baseSystemId;
+        byteBuffer_ = byteBuffer;
+        encoding_ = encoding;
+    }
+
+    /**
+     * Constructs an input source from the content of the channel starting at the
+     * current position of the channel. The content is memory mapped, the channel
+     * can be closed afterwards.
+     *
+     * @param publicId     The public identifier, if known.
+     * @param systemId     The system identifier. This value should always be set,
+     *                     if possible, and can be relative or absolute. If the
+     *                     system identifier is relative, then the base system
+     *                     identifier should be set.
+     * @param baseSystemId The base system identifier. This value should always be
+     *                     set to the fully expanded URI of the base system
+     *                     identifier, if possible.
+     * @param channel      The file channel.
+     * @param encoding     The encoding of the file, if known.
+     * @throws IOException if the file could not be mapped
+     */
+    public XMLInputSource(final String publicId, final String systemId, final String baseSystemId,
+                final FileChannel channel, final String encoding) throws IOException {
+        this(publicId, systemId, baseSystemId, map(channel), encoding);
+    }
+
+    /**
+     * Constructs an input source from a file. The file is memory mapped, which is
+     * the fastest way to parse (large) local files.
+     *
+     * @param publicId     The public identifier, if known.
+     * @param systemId     The system identifier. If null the URI of the file is used.
+     * @param baseSystemId The base system identifier. This value should always be
+     *                     set to the fully expanded URI of the base system
+     *                     identifier, if possible.
+     * @param file         The file.
+     * @param encoding     The encoding of the file, if known.
+     * @throws IOException if the file could not be opened or mapped
+     */
+    public XMLInputSource(final String publicId, final String systemId, final String baseSystemId,
+                final Path file, final String encoding) throws IOException {
+        this(publicId, systemId == null ? file.toUri().toString() : systemId, baseSystemId, map(file), encoding);
+    }
+
+    private static ByteBuffer map(final Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return map(channel);
+        }
+    }
+
+    private static ByteBuffer map(final FileChannel channel) throws IOException {
+        final long position = channel.position();
+        final long size = channel.size() - position;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Content too large to be mapped (" + size + " bytes)");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+    }
+
     /**
      * Constructs an input source from a character stream.
      *
@@ -114,6 +215,70 @@ public XMLInputSource(final String publicId, final String systemId, final String
         encoding_ = encoding;
     }
 
+    /**
+     * Constructs an input source from a character array. The scanner works
+     * directly on the given array, no copy is made and no reader is involved.
+     * The array is only read, but it must not be changed as long as
+     * the parsing is in progress.
+     *
+     * @param publicId     The public identifier, if known.
+     * @param systemId     The system identifier. This value should always be set,
+     *                     if possible, and can be relative or absolute. If the
+     *                     system identifier is relative, then the base system
+     *                     identifier should be set.
+     * @param baseSystemId The base system identifier. This value should always be
+     *                     set to the fully expanded URI of the base system
+     *                     identifier, if possible.
+     * @param charArray    The character array holding the content.
+     * @param offset       The start of the content in the array.
+     * @param length       The length of the content.
+     */
+    public XMLInputSource(final String publicId, final String systemId, final String baseSystemId,
+                final char[] charArray, final int offset, final int length) {
+        publicId_ = publicId;
+        systemId_ = systemId;
+        baseSystemId_ = baseSystemId;
+        setCharArray(charArray, offset, length);
+    }
+
+    /**
+     * Constructs an input source from content that is already in memory.
+     * Strings and other character sequences are copied once into a character
+     * array (there is no way to access the chars of a string without a copy);
+     * this is still cheaper than going through a reader and the buffer
+     * handling of the scanner.
+     *
+     * @param publicId     The public identifier, if known.
+     * @param systemId     The system identifier. This value should always be set,
+     *                     if possible, and can be relative or absolute. If the
+     *                     system identifier is relative, then the base system
+     *                     identifier should be set.
+     * @param baseSystemId The base system identifier. This value should always be
+     *                     set to the fully expanded URI of the base system
+     *                     identifier, if possible.
+     * @param content      The content.
+     */
+    public XMLInputSource(final String publicId, final String systemId, final String baseSystemId,
+                final CharSequence content) {
+        this(publicId, systemId, baseSystemId, toCharArray(content), 0, content.length());
+    }
+
+    private static char[] toCharArray(final CharSequence content) {
+        if (content instanceof String) {
+            return ((String) content).toCharArray();
+        }
+        if (content instanceof XMLString) {
+            return ((XMLString) content).getChars();
+        }
+
+        final int length = content.length();
+        final char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = content.charAt(i);
+        }
+        return chars;
+    }
+
     /**
      * Sets the public identifier.
      *
@@ -173,6 +338,21 @@ public InputStream getByteStream() {
         return byteStream_;
     }
 
+    /**
+     * Sets the byte buffer. The scanner reads the remaining bytes of the buffer,
+     * it must not be changed as long as the parsing is in progress.
+     *
+     * @param byteBuffer The new byte buffer.
+     */
+    public void setByteBuffer(final ByteBuffer byteBuffer) {
+        byteBuffer_ = byteBuffer;
+    }
+
+    /** @return the byte buffer. */
+    public ByteBuffer getByteBuffer() {
+        return byteBuffer_;
+    }
+
     /**
      * Sets the character stream. If the character stream is not already opened when
      * this object is instantiated, then the code that opens the stream should also
@@ -192,6 +372,39 @@ public Reader getCharacterStream() {
         return charStream_;
     }
 
+    /**
+     * Sets the character array. The scanner works directly on the given array,
+     * it must not be changed as long as the parsing is in progress.
+     *
+     * @param charArray The character array holding the content.
+     * @param offset    The start of the content in the array.
+     * @param length    The length of the content.
+     */
+    public void setCharArray(final char[] charArray, final int offset, final int length) {
+        if (charArray != null && (offset < 0 || length < 0 || offset + length > charArray.length)) {
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + length
+                                                    + ", array length " + charArray.length);
+        }
+        charArray_ = charArray;
+        charArrayOffset_ = offset;
+        charArrayLength_ = length;
+    }
+
+    /** @return the character array, or null if the content is not in memory. */
+    public char[] getCharArray() {
+        return charArray_;
+    }
+
+    /** @return the start of the content in the character array. */
+    public int getCharArrayOffset() {
+        return charArrayOffset_;
+    }
+
+    /** @return the length of the content in the character array. */
+    public int getCharArrayLength() {
+        return charArrayLength_;
+    }
+
     /**
      * Sets the encoding of the stream.
      *
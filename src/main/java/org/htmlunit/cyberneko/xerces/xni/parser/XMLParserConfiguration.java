@@ -204,4 +204,16 @@ public interface XMLParserConfiguration extends XMLComponentManager {
      * allocated during parsing. For example, close all opened streams.
      */
     void cleanup();
+
+    /**
+     * Prepares the configuration for the reuse with another document. Besides
+     * the {@link #cleanup()}, all references to the last parsed document have
+     * to be dropped and internal buffers larger than the given size should be
+     * shrunk.
+     *
+     * @param maxBufferSize the buffer capacity (in chars) to keep at most
+     */
+    default void recycle(final int maxBufferSize) {
+        cleanup();
+    }
 }
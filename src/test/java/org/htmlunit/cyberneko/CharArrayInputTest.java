@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko;
+
+import static org.htmlunit.cyberneko.TestFiles.parse;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.htmlunit.cyberneko.xerces.xni.XMLString;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLInputSource;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+
+/**
+ * Tests for the parsing of content already in memory (char array,
+ * string, char sequence). The result has to be the same as for
+ * the parsing using a reader.
+ */
+public class CharArrayInputTest {
+    @TestFactory
+    public Iterable<DynamicTest> sameAsReader() {
+        final List<File> dataFiles = TestFiles.dataFiles();
+
+        final List<DynamicTest> tests = new ArrayList<>();
+        for (final File dataFile : dataFiles) {
+            tests.add(DynamicTest.dynamicTest(dataFile.getName(), () -> {
+                final String html = new String(Files.readAllBytes(dataFile.toPath()), StandardCharsets.ISO_8859_1);
+                final File settings = new File(dataFile.getPath() + ".settings");
+
+                final String expected = parse(new XMLInputSource(null, "foo", null, new StringReader(html), null), settings);
+                assertEquals(expected, parse(new XMLInputSource(null, "foo", null, html), settings));
+
+                // content in the middle of a larger array, the array has to stay untouched
+                final char[] chars = ("<p>before</p>" + html + "<p>after</p>").toCharArray();
+                final char[] copy = Arrays.copyOf(chars, chars.length);
+                assertEquals(expected, parse(new XMLInputSource(null, "foo", null, chars, 13, html.length()), settings));
+                assertArrayEquals(copy, chars);
+            }));
+        }
+        return tests;
+    }
+
+    @Test
+    public void charSequence() throws Exception {
+        final String html = "<html><body><p>line1\r\nline2\rline3</p>&amp; &lt;<b>bold</body></html>";
+        final String expected = parse(new XMLInputSource(null, "foo", null, new StringReader(html), null), null);
+
+        assertEquals(expected, parse(new XMLInputSource(null, "foo", null, new StringBuilder(html)), null));
+        assertEquals(expected, parse(new XMLInputSource(null, "foo", null, new XMLString(html)), null));
+    }
+
+    @Test
+    public void endsInTheMiddleOfMarkup() throws Exception {
+        final String[] htmls = {"<p>text</p", "<p>text</", "<p>text<", "<p", "<!-- comment", "<!-- comment -",
+            "<p a='x", "<p a=", "text\r", "text\r\n", "text\n\n", "&am", "<![CDATA[ cdata", "<script>var x;</scr"};
+        for (final String html : htmls) {
+            final String expected = parse(new XMLInputSource(null, "foo", null, new StringReader(html), null), null);
+            assertEquals(expected, parse(new XMLInputSource(null, "foo", null, html), null), html);
+
+            final char[] chars = (html + "<b>ignored</b>").toCharArray();
+            assertEquals(expected, parse(new XMLInputSource(null, "foo", null, chars, 0, html.length()), null), html);
+        }
+    }
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.htmlunit.cyberneko.filters.DefaultFilter;
+import org.htmlunit.cyberneko.xerces.xni.Augmentations;
+import org.htmlunit.cyberneko.xerces.xni.QName;
+import org.htmlunit.cyberneko.xerces.xni.XMLAttributes;
+import org.htmlunit.cyberneko.xerces.xni.XMLString;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLDocumentFilter;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLInputSource;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+
+/**
+ * Tests for the parsing of fed content. The result has to be the same as for
+ * the parsing of a byte stream, no matter where the chunks are split.
+ */
+public class FeedInputTest {
+    @TestFactory
+    public Iterable<DynamicTest> sameAsByteStream() {
+        final List<File> dataFiles = TestFiles.dataFiles();
+
+        final List<DynamicTest> tests = new ArrayList<>();
+        for (final File dataFile : dataFiles) {
+            tests.add(DynamicTest.dynamicTest(dataFile.getName(), () -> {
+                final File settings = new File(dataFile.getPath() + ".settings");
+                final byte[] bytes = Files.readAllBytes(dataFile.toPath());
+
+                final StringWriter expected = new StringWriter();
+                final HTMLConfiguration parser = createParser(expected, settings);
+                parser.parse(new XMLInputSource(null, "foo", null, new ByteArrayInputStream(bytes), null));
+
+                // an auto detecting decoder decides on the first chunk
+                final boolean autoDetect = settings.exists()
+                        && new String(Files.readAllBytes(settings.toPath()), StandardCharsets.UTF_8).contains("AutoDetect");
+                for (final int chunkSize : autoDetect ? new int[] {4096} : new int[] {1, 3, 64, 4096}) {
+                    final StringWriter out = new StringWriter();
+                    feed(createParser(out, settings), bytes, chunkSize);
+                    assertEquals(expected.toString(), out.toString(), "chunk size " + chunkSize);
+                }
+            }));
+        }
+        return tests;
+    }
+
+    @Test
+    public void splitCharacters() throws Exception {
+        final String html = "<html><head><title>äöü € 𝄞</title></head><body>"
+                                + "<p title='€'>a &amp; b &euro;</p><script>var x = '<p>ü</p>';</script>"
+                                + "<!-- comment € --><![CDATA[ cdata ]]></body></html>";
+        final byte[] bytes = html.getBytes(StandardCharsets.UTF_8);
+
+        final StringWriter expected = new StringWriter();
+        createParser(expected, null).parse(
+                new XMLInputSource(null, "foo", null, new ByteArrayInputStream(bytes), "UTF-8"));
+
+        for (int chunkSize = 1; chunkSize < 10; chunkSize++) {
+            final StringWriter out = new StringWriter();
+            final HTMLConfiguration parser = createParser(out, null);
+            parser.startFeeding("foo", "UTF-8");
+            for (int i = 0; i < bytes.length; i += chunkSize) {
+                assertTrue(parser.feed(ByteBuffer.wrap(bytes, i, Math.min(chunkSize, bytes.length - i))));
+            }
+            parser.endOfInput();
+            assertEquals(expected.toString(), out.toString(), "chunk size " + chunkSize);
+        }
+    }
+
+    @Test
+    public void chars() throws Exception {
+        final String html = "<p>line 1\r\nline 2\rline 3</p><textarea>a &lt; b</textarea>";
+
+        final StringWriter expected = new StringWriter();
+        createParser(expected, null).parse(new XMLInputSource(null, "foo", null, html));
+
+        final StringWriter out = new StringWriter();
+        final HTMLConfiguration parser = createParser(out, null);
+        parser.startFeeding("foo", null);
+        final char[] chars = html.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            parser.feed(chars, i, 1);
+        }
+        parser.endOfInput();
+        assertEquals(expected.toString(), out.toString());
+    }
+
+    @Test
+    public void waitsForMoreContent() throws Exception {
+        final List<String> events = new ArrayList<>();
+        final HTMLConfiguration parser = new HTMLConfiguration();
+        parser.setDocumentHandler(new DefaultFilter() {
+            @Override
+            public void startElement(final QName element, final XMLAttributes attributes, final Augmentations augs) {
+                events.add("<" + element.getRawname() + ">");
+            }
+
+            @Override
+            public void characters(final XMLString text, final Augmentations augs) {
+                events.add(text.toString());
+            }
+
+            @Override
+            public void endDocument(final Augmentations augs) {
+                events.add("end");
+            }
+        });
+
+        parser.startFeeding("foo", "UTF-8");
+        parser.feed(ByteBuffer.wrap("<html><bo".getBytes(StandardCharsets.UTF_8)));
+        assertEquals("[<html>]", events.toString());
+
+        parser.feed(ByteBuffer.wrap("dy>hello wo".getBytes(StandardCharsets.UTF_8)));
+        assertEquals("[<html>, <head>, <body>]", events.toString());
+
+        parser.feed(ByteBuffer.wrap("rld<".getBytes(StandardCharsets.UTF_8)));
+        assertEquals("[<html>, <head>, <body>, hello world]", events.toString());
+
+        parser.endOfInput();
+        assertEquals("[<html>, <head>, <body>, hello world, <, end]", events.toString());
+    }
+
+    @Test
+    public void longMarkup() throws Exception {
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 5_000; i++) {
+            text.append("a > b -- c ").append(i).append(' ');
+        }
+        final String html = "<html><body><script>" + text + "</script><!--" + text + "-->"
+                                + "<p title='" + text + "' id=\"" + text + "\">x</p><textarea>" + text + "</textarea>"
+                                + "<iframe>" + text + "</iframe><p>" + text + "</p></body></html>";
+        final byte[] bytes = html.getBytes(StandardCharsets.UTF_8);
+
+        final StringWriter expected = new StringWriter();
+        createParser(expected, null).parse(
+                new XMLInputSource(null, "foo", null, new ByteArrayInputStream(bytes), "UTF-8"));
+
+        for (final int chunkSize : new int[] {7, 100, 1024}) {
+            final StringWriter out = new StringWriter();
+            feed(createParser(out, null), bytes, chunkSize);
+            assertEquals(expected.toString(), out.toString(), "chunk size " + chunkSize);
+        }
+    }
+
+    @Test
+    public void resumesWithDelimiter() throws Exception {
+        final List<String> events = new ArrayList<>();
+        final HTMLConfiguration parser = new HTMLConfiguration();
+        parser.setDocumentHandler(new DefaultFilter() {
+            @Override
+            public void characters(final XMLString text, final Augmentations augs) {
+                events.add(text.length() + " chars");
+            }
+
+            @Override
+            public void comment(final XMLString text, final Augmentations augs) {
+                events.add(text.length() + " comment");
+            }
+        });
+
+        final char[] chars = new char[1000];
+        Arrays.fill(chars, 'x');
+        parser.startFeeding("foo", "UTF-8");
+        parser.feed(ByteBuffer.wrap(("<html><body><!--" + new String(chars)).getBytes(StandardCharsets.UTF_8)));
+        parser.feed(ByteBuffer.wrap("x-".getBytes(StandardCharsets.UTF_8)));
+        assertEquals("[]", events.toString());
+
+        // the end of the comment is split
+        parser.feed(ByteBuffer.wrap("->".getBytes(StandardCharsets.UTF_8)));
+        assertEquals("[1001 comment]", events.toString());
+
+        parser.feed(ByteBuffer.wrap(("<script>" + new String(chars) + "</scr").getBytes(StandardCharsets.UTF_8)));
+        parser.feed(ByteBuffer.wrap("ipt>".getBytes(StandardCharsets.UTF_8)));
+        assertEquals("[1001 comment, 1000 chars]", events.toString());
+
+        parser.endOfInput();
+    }
+
+    @Test
+    public void splitTerminator() throws Exception {
+        final char[] chars = new char[1000];
+        Arrays.fill(chars, 'x');
+        final String content = new String(chars);
+
+        final String[][] cases = {
+            {"<!--" + content, "-->", "1000 comment"},
+            {"<!--" + content, "--!>", "1000 comment"},
+            {"<script>" + content, "</script>", "1000 chars"},
+            {"<script>" + content, "</script >", "1000 chars"},
+            {"<textarea>" + content, "</textarea>", "1000 chars"},
+            {"<iframe>" + content, "</iframe>", "1000 chars"},
+        };
+        for (final String[] test : cases) {
+            final String terminator = test[1];
+            for (int split = 1; split <= terminator.length(); split++) {
+                final List<String> events = new ArrayList<>();
+                final HTMLConfiguration parser = new HTMLConfiguration();
+                parser.setDocumentHandler(new DefaultFilter() {
+                    @Override
+                    public void characters(final XMLString text, final Augmentations augs) {
+                        events.add(text.length() + " chars");
+                    }
+
+                    @Override
+                    public void comment(final XMLString text, final Augmentations augs) {
+                        events.add(text.length() + " comment");
+                    }
+                });
+
+                parser.startFeeding("foo", "UTF-8");
+                parser.feed(ByteBuffer.wrap(("<html><body>" + test[0] + terminator.substring(0, split))
+                                                .getBytes(StandardCharsets.UTF_8)));
+                // the rest of the terminator one character at a time
+                for (int i = split; i < terminator.length(); i++) {
+                    parser.feed(ByteBuffer.wrap(terminator.substring(i, i + 1).getBytes(StandardCharsets.UTF_8)));
+                }
+                final String message = terminator + " split at " + split;
+                assertEquals("[" + test[2] + "]", events.toString(), message);
+
+                parser.feed(ByteBuffer.wrap("<p>more text".getBytes(StandardCharsets.UTF_8)));
+                assertEquals("[" + test[2] + "]", events.toString(), message);
+                parser.feed(ByteBuffer.wrap("<".getBytes(StandardCharsets.UTF_8)));
+                assertEquals("[" + test[2] + ", 9 chars]", events.toString(), message);
+                parser.endOfInput();
+            }
+        }
+    }
+
+    @Test
+    public void stopParsing() throws Exception {
+        final HTMLConfiguration parser = new HTMLConfiguration();
+        parser.setDocumentHandler(new DefaultFilter() {
+            @Override
+            public void endElement(final QName element, final Augmentations augs) {
+                if ("title".equalsIgnoreCase(element.getRawname())) {
+                    parser.stopParsing(false);
+                }
+            }
+        });
+
+        parser.startFeeding("foo", "UTF-8");
+        assertTrue(parser.feed(ByteBuffer.wrap("<html><head><title>t".getBytes(StandardCharsets.UTF_8))));
+        assertFalse(parser.feed(ByteBuffer.wrap("</title></head><body>".getBytes(StandardCharsets.UTF_8))));
+        assertFalse(parser.feed(ByteBuffer.wrap("<p>ignored</p>".getBytes(StandardCharsets.UTF_8))));
+        parser.endOfInput();
+    }
+
+    @Test
+    public void notStarted() throws Exception {
+        final HTMLConfiguration parser = new HTMLConfiguration();
+        assertThrows(IllegalStateException.class, () -> parser.feed(ByteBuffer.allocate(0)));
+
+        parser.startFeeding("foo", "UTF-8");
+        parser.endOfInput();
+        assertThrows(IllegalStateException.class, () -> parser.feed(ByteBuffer.allocate(0)));
+    }
+
+    private static void feed(final HTMLConfiguration parser, final byte[] bytes, final int chunkSize) throws Exception {
+        parser.startFeeding("foo", null);
+        // reuse the buffer like a network client does
+        final ByteBuffer buffer = ByteBuffer.allocate(chunkSize);
+        for (int i = 0; i < bytes.length; i += chunkSize) {
+            buffer.clear();
+            buffer.put(bytes, i, Math.min(chunkSize, bytes.length - i));
+            buffer.flip();
+            parser.feed(buffer);
+            assertFalse(buffer.hasRemaining());
+        }
+        parser.endOfInput();
+    }
+
+    private static HTMLConfiguration createParser(final StringWriter out, final File settings) throws Exception {
+        final HTMLConfiguration parser = new HTMLConfiguration();
+        parser.setProperty("http://cyberneko.org/html/properties/filters", new XMLDocumentFilter[] {new Writer(out)});
+        // fed content can't change the encoding
+        parser.setFeature(HTMLScanner.IGNORE_SPECIFIED_CHARSET, true);
+
+        TestFiles.applySettings(parser, settings, out);
+        return parser;
+    }
+}
@@ -16,9 +16,12 @@
 package org.htmlunit.cyberneko;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.time.Duration;
 
 import org.htmlunit.cyberneko.html.dom.HTMLDocumentImpl;
 import org.htmlunit.cyberneko.parsers.DOMParser;
@@ -109,6 +112,23 @@ public void newlineInPiLf() throws Exception {
                 FEATURES);
     }
 
+    @Test
+    public void manyUnclosedElements() throws Exception {
+        final StringBuilder html = new StringBuilder();
+        for (int i = 0; i < 100_000; i++) {
+            html.append("<div><span>");
+        }
+
+        // the open elements are not searched for every start tag
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+            final StringWriter out = new StringWriter();
+            final HTMLConfiguration parser = new HTMLConfiguration();
+            parser.setProperty("http://cyberneko.org/html/properties/filters", new XMLDocumentFilter[] {new Writer(out)});
+            parser.parse(new XMLInputSource(null, "foo", null, new StringReader(html.toString()), null));
+            assertTrue(out.toString().endsWith(")span\n)div\n)BODY\n)HTML\n"));
+        });
+    }
+
     public static void doTest(final String html, final String[] contextStack, final String expected, final String... features) throws Exception {
         final DOMParser parser = new DOMParser(HTMLDocumentImpl.class);
         for (final String feature : features) {
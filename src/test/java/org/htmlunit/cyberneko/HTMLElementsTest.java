@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.htmlunit.cyberneko.HTMLElements.Element;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link HTMLElements}.
+ */
+public class HTMLElementsTest {
+
+    @Test
+    public void closes() {
+        final HTMLElements elements = new HTMLElements();
+        for (short code = 0; code <= HTMLElements.UNKNOWN; code++) {
+            final Element element = elements.getElement(code);
+            for (short other = -1; other <= HTMLElements.UNKNOWN + 70; other++) {
+                assertEquals(contains(element.closes, other), element.closes(other), element.name + " closes " + other);
+            }
+        }
+
+        final Element p = elements.getElement(HTMLElements.P);
+        assertTrue(p.closes(HTMLElements.P));
+        assertFalse(p.closes(HTMLElements.TD));
+    }
+
+    @Test
+    public void isParent() {
+        final HTMLElements elements = new HTMLElements();
+        for (short code = 0; code <= HTMLElements.UNKNOWN; code++) {
+            final Element element = elements.getElement(code);
+            for (short other = 0; other <= HTMLElements.UNKNOWN; other++) {
+                final Element parent = elements.getElement(other);
+                assertEquals(contains(element.parent, parent), element.isParent(parent),
+                        element.name + " parent " + parent.name);
+            }
+        }
+
+        assertTrue(elements.getElement("custom").isParent(elements.getElement(HTMLElements.BODY)));
+        assertTrue(elements.getElement(HTMLElements.TD).isParent(elements.getElement(HTMLElements.TR)));
+    }
+
+    @Test
+    public void customElement() {
+        final HTMLElements elements = new HTMLElements();
+        final short code = HTMLElements.UNKNOWN + 100;
+        elements.setElement(new Element(code, "CUSTOM", Element.BLOCK,
+                new short[] {HTMLElements.DIV, HTMLElements.SECTION}, new short[] {HTMLElements.P, code}));
+
+        final Element custom = elements.getElement("custom");
+        assertEquals(code, custom.code);
+        assertTrue(custom.closes(HTMLElements.P));
+        assertTrue(custom.closes(code));
+        assertFalse(custom.closes(HTMLElements.DIV));
+        assertTrue(custom.isParent(elements.getElement(HTMLElements.SECTION)));
+        assertFalse(custom.isParent(elements.getElement(HTMLElements.BODY)));
+
+        // replaced parents are used even before the next set up
+        custom.parent = new Element[] {elements.getElement(HTMLElements.BODY)};
+        assertTrue(custom.isParent(elements.getElement(HTMLElements.BODY)));
+        assertFalse(custom.isParent(elements.getElement(HTMLElements.SECTION)));
+    }
+
+    private static boolean contains(final short[] codes, final short code) {
+        if (codes != null) {
+            for (final short c : codes) {
+                if (c == code) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean contains(final Element[] parents, final Element element) {
+        if (parents != null) {
+            for (final Element parent : parents) {
+                if (parent.code == element.code) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Locale;
+
+import org.htmlunit.cyberneko.filters.DefaultFilter;
+import org.htmlunit.cyberneko.xerces.xni.Augmentations;
+import org.htmlunit.cyberneko.xerces.xni.XMLString;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLDocumentFilter;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLInputSource;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLParseException;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the limits of {@link HTMLScanner} and {@link HTMLTagBalancer}.
+ */
+public class HTMLLimitsTest {
+
+    @Test
+    public void noLimits() throws Exception {
+        final String html = "<div id='a' class='b'><span>text</span><!-- comment --></div>";
+        final HTMLConfiguration config = new HTMLConfiguration();
+        config.setProperty(HTMLScanner.MAX_TEXT_LENGTH, 0);
+        assertEquals(parse(new HTMLConfiguration(), html), parse(config, html));
+    }
+
+    @Test
+    public void nameLength() throws Exception {
+        final String html = "<abcdefgh xyz12345=1 id=2>text</abcdefgh>";
+
+        HTMLConfiguration config = config(HTMLScanner.MAX_NAME_LENGTH, 4, "truncate");
+        assertEquals("(abcd Aid 2 Axyz1 1 \"text )abcd", parseBody(config, html));
+
+        config = config(HTMLScanner.MAX_NAME_LENGTH, 4, "skip");
+        assertEquals("\"text", parseBody(config, html));
+
+        config = config(HTMLScanner.MAX_NAME_LENGTH, 4, "skip");
+        assertEquals("(p Aid 2 \"text )p", parseBody(config, "<p xyz12345=1 id=2>text</p>"));
+    }
+
+    @Test
+    public void longNameFromStream() throws Exception {
+        final StringBuilder name = new StringBuilder("x");
+        for (int i = 0; i < 20_000; i++) {
+            name.append('y');
+        }
+        final String html = "<p " + name + "=1 id=2>text</p>";
+
+        final HTMLConfiguration config = config(HTMLScanner.MAX_NAME_LENGTH, 3, "truncate");
+        assertEquals("(p Aid 2 Axyy 1 \"text )p", parseBody(config, html));
+    }
+
+    @Test
+    public void attributes() throws Exception {
+        final String html = "<p a=1 b=2 c d=4>text</p><p x=1>more</p>";
+
+        HTMLConfiguration config = config(HTMLScanner.MAX_ATTRIBUTES, 2, "truncate");
+        assertEquals("(p Aa 1 Ab 2 \"text )p (p Ax 1 \"more )p", parseBody(config, html));
+
+        config = config(HTMLScanner.MAX_ATTRIBUTES, 2, "skip");
+        assertEquals("(p \"text )p (p Ax 1 \"more )p", parseBody(config, html));
+    }
+
+    @Test
+    public void attributeValueLength() throws Exception {
+        final String html = "<p a='12345' b=123456 c=\"1 2\">text</p>";
+
+        HTMLConfiguration config = config(HTMLScanner.MAX_ATTRIBUTE_VALUE_LENGTH, 3, "truncate");
+        assertEquals("(p Aa 123 Ab 123 Ac 1 2 \"text )p", parseBody(config, html));
+
+        config = config(HTMLScanner.MAX_ATTRIBUTE_VALUE_LENGTH, 3, "skip");
+        assertEquals("(p Ac 1 2 \"text )p", parseBody(config, html));
+    }
+
+    @Test
+    public void textLength() throws Exception {
+        final String html = "<p>abcdefgh&amp;ijk<b>xy</b>z</p><!--12345678--><script>1234567</script>";
+
+        HTMLConfiguration config = config(HTMLScanner.MAX_TEXT_LENGTH, 5, "truncate");
+        assertEquals("(p \"abcde (b \"xy )b \"z )p #12345 (script \"12345 )script", parseBody(config, html));
+
+        config = config(HTMLScanner.MAX_TEXT_LENGTH, 5, "skip");
+        assertEquals("(p (b \"xy )b \"z )p (script )script", parseBody(config, html));
+    }
+
+    @Test
+    public void longComment() throws Exception {
+        final StringBuilder html = new StringBuilder("<p><!--");
+        for (int i = 0; i < 20_000; i++) {
+            html.append("comment ");
+        }
+        html.append("--></p>");
+
+        final HTMLConfiguration config = config(HTMLScanner.MAX_TEXT_LENGTH, 10, "truncate");
+        assertEquals("(p #comment co )p", parseBody(config, html.toString()));
+    }
+
+    @Test
+    public void longCommentFromStream() throws Exception {
+        // only the chars up to the limit are kept, terminated or not
+        assertTrue(commentCapacity("--></p>") < 100_000);
+        assertTrue(commentCapacity("") < 100_000);
+    }
+
+    /**
+     * Parses a comment of ten million chars from a stream.
+     * @return the capacity of the buffer the comment was reported in
+     */
+    private static int commentCapacity(final String end) throws Exception {
+        final int[] capacity = new int[1];
+        final HTMLConfiguration config = config(HTMLScanner.MAX_TEXT_LENGTH, 100, "truncate");
+        config.setDocumentHandler(new DefaultFilter() {
+            @Override
+            public void comment(final XMLString text, final Augmentations augs) {
+                assertEquals(100, text.length());
+                capacity[0] = text.capacity();
+            }
+        });
+
+        final String start = "<p><!--";
+        final Reader reader = new Reader() {
+            private final int commentEnd_ = start.length() + 10_000_000;
+            private int position_;
+
+            @Override
+            public int read(final char[] cbuf, final int off, final int len) {
+                int count = 0;
+                while (count < len && position_ < commentEnd_ + end.length()) {
+                    if (position_ < start.length()) {
+                        cbuf[off + count] = start.charAt(position_);
+                    }
+                    else if (position_ < commentEnd_) {
+                        cbuf[off + count] = 'x';
+                    }
+                    else {
+                        cbuf[off + count] = end.charAt(position_ - commentEnd_);
+                    }
+                    position_++;
+                    count++;
+                }
+                return count == 0 ? -1 : count;
+            }
+
+            @Override
+            public void close() {
+                // nothing to do
+            }
+        };
+        config.parse(new XMLInputSource(null, "about:blank", null, reader, null));
+        assertTrue(capacity[0] > 0, "no comment");
+        return capacity[0];
+    }
+
+    @Test
+    public void unterminatedComment() throws Exception {
+        final String html = "<p><!-- xxxxxxxxxxxxxxxxxxxx-y ><p>after-para</p><div>tail-x</div>";
+
+        for (final int limit : new int[] {10, 50}) {
+            final HTMLConfiguration config = config(HTMLScanner.MAX_TEXT_LENGTH, limit, "truncate");
+            final String expected = "(p #" + " xxxxxxxxxxxxxxxxxxxx-y ".substring(0, Math.min(limit, 24))
+                                        + " )p (p \"after-para )p (div \"tail-x )div";
+            assertEquals(expected, parseBody(config, html), "limit " + limit);
+
+            // the content of a string is scanned from memory
+            final StringWriter out = new StringWriter();
+            config.setProperty("http://cyberneko.org/html/properties/filters", new XMLDocumentFilter[] {new Writer(out)});
+            config.parse(new XMLInputSource(null, "about:blank", null, html));
+            assertEquals(parse(config, html), out.toString(), "limit " + limit);
+        }
+    }
+
+    @Test
+    public void elementDepth() throws Exception {
+        final String html = "<div><div><div><b>x</b>y</div>z</div></div><p>after</p>";
+
+        // html, body and two divs
+        HTMLConfiguration config = config(HTMLTagBalancer.MAX_ELEMENT_DEPTH, 4, "truncate");
+        assertEquals("(div (div \"xyz )div )div (p \"after )p", parseBody(config, html));
+
+        config = config(HTMLTagBalancer.MAX_ELEMENT_DEPTH, 4, "skip");
+        assertEquals("(div (div \"z )div )div (p \"after )p", parseBody(config, html));
+    }
+
+    @Test
+    public void elementDepthUnclosed() throws Exception {
+        final String html = "<div><span><span><span>x</div><p>after</p>";
+
+        final HTMLConfiguration config = config(HTMLTagBalancer.MAX_ELEMENT_DEPTH, 4, "skip");
+        assertEquals("(div (span )span )div (p \"after )p", parseBody(config, html));
+    }
+
+    @Test
+    public void fail() throws Exception {
+        final HTMLConfiguration config = config(HTMLScanner.MAX_ATTRIBUTES, 1, "fail");
+        final XMLParseException e = assertThrows(XMLParseException.class,
+            () -> parse(config, "<p>\n<a b=1 c=2>text</a></p>"));
+        assertEquals("Element <a> has more than 1 attributes.", e.getMessage());
+        assertEquals(2, e.getLineNumber());
+
+        final HTMLConfiguration depth = config(HTMLTagBalancer.MAX_ELEMENT_DEPTH, 3, "fail");
+        assertThrows(XMLParseException.class, () -> parse(depth, "<div><p>text</p></div>"));
+    }
+
+    @Test
+    public void reportErrors() throws Exception {
+        final StringWriter errors = new StringWriter();
+        final HTMLConfiguration config = config(HTMLScanner.MAX_TEXT_LENGTH, 2, "truncate");
+        config.setFeature(HTMLScanner.REPORT_ERRORS, true);
+        config.setErrorHandler(new HTMLErrorHandler(errors));
+        parse(config, "<p>abc</p><p>de</p>");
+        assertTrue(errors.toString().contains("[Err] HTML1020 Text longer than 2 characters.\n"), errors.toString());
+        assertEquals(errors.toString().indexOf("HTML1020"), errors.toString().lastIndexOf("HTML1020"));
+    }
+
+    @Test
+    public void parseTime() throws Exception {
+        final StringBuilder html = new StringBuilder();
+        for (int i = 0; i < 500_000; i++) {
+            html.append("<p>paragraph</p>");
+        }
+
+        final HTMLConfiguration config = config(HTMLScanner.MAX_PARSE_TIME, 1, "truncate");
+        final String out = parse(config, html.toString());
+        assertTrue(out.length() < html.length(), String.valueOf(out.length()));
+        assertTrue(out.toLowerCase(Locale.ROOT).endsWith(")body\n)html\n"), out.substring(out.length() - 20));
+
+        final HTMLConfiguration failing = config(HTMLScanner.MAX_PARSE_TIME, 1, "fail");
+        assertThrows(XMLParseException.class, () -> parse(failing, html.toString()));
+    }
+
+    private static HTMLConfiguration config(final String limit, final int value, final String policy) {
+        final HTMLConfiguration config = new HTMLConfiguration();
+        config.setProperty(limit, value);
+        config.setProperty(HTMLScanner.LIMIT_POLICY, policy);
+        return config;
+    }
+
+    /**
+     * @return the events within the body on one line
+     */
+    private static String parseBody(final HTMLConfiguration config, final String html) throws Exception {
+        final String out = parse(config, html);
+        // the synthesized body is named like the first element
+        final String lower = out.toLowerCase(Locale.ROOT);
+        final int start = lower.indexOf("(body\n") + 6;
+        final int end = lower.lastIndexOf(")body\n");
+        return out.substring(start, end).trim().replace('\n', ' ');
+    }
+
+    private static String parse(final HTMLConfiguration config, final String html) throws Exception {
+        final StringWriter out = new StringWriter();
+        config.setProperty("http://cyberneko.org/html/properties/filters", new XMLDocumentFilter[] {new Writer(out)});
+        config.parse(new XMLInputSource(null, "about:blank", null, new StringReader(html), null));
+        return out.toString();
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import org.htmlunit.cyberneko.filters.DefaultFilter;
+import org.htmlunit.cyberneko.html.dom.HTMLDocumentImpl;
+import org.htmlunit.cyberneko.parsers.DOMParser;
+import org.htmlunit.cyberneko.xerces.xni.Augmentations;
+import org.htmlunit.cyberneko.xerces.xni.QName;
+import org.htmlunit.cyberneko.xerces.xni.XMLAttributes;
+import org.htmlunit.cyberneko.xerces.xni.XNIException;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLDocumentFilter;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLInputSource;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+
+/**
+ * Unit tests for {@link HTMLParseCache}.
+ */
+public class HTMLParseCacheTest {
+
+    private static final String PARSE_CACHE = "http://cyberneko.org/html/properties/parse-cache";
+
+    private static final String HTML = "<!DOCTYPE html><html><head><title>Not found</title></head>"
+            + "<body class='error'><h1>404 &amp; gone</h1><p>café<br>text<!-- c --></body></html>";
+
+    @Test
+    public void domParserHit() throws Exception {
+        final HTMLParseCache cache = new HTMLParseCache(10, 1024 * 1024);
+
+        final Document first = parseDocument(cache, HTML, "http://example.com/a");
+        assertEquals(0, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.size());
+
+        final Document second = parseDocument(cache, HTML, "http://example.com/b");
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        assertTrue(first.getDocumentElement().isEqualNode(second.getDocumentElement()));
+        assertEquals("Not found", ((HTMLDocumentImpl) second).getTitle());
+        assertEquals("http://example.com/b", second.getDocumentURI());
+    }
+
+    @Test
+    public void filtersSeeReplayedEvents() throws Exception {
+        final HTMLParseCache cache = new HTMLParseCache(10, 1024 * 1024);
+
+        final String first = write(cache, HTML);
+        final String second = write(cache, HTML);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(first, second);
+        assertEquals(write(null, HTML), second);
+    }
+
+    @Test
+    public void settingsArePartOfTheKey() throws Exception {
+        final HTMLParseCache cache = new HTMLParseCache(10, 1024 * 1024);
+
+        final DOMParser parser = new DOMParser(HTMLDocumentImpl.class);
+        parser.setProperty(PARSE_CACHE, cache);
+        parse(parser, HTML);
+        parser.setProperty("http://cyberneko.org/html/properties/names/elems", "lower");
+        parse(parser, HTML);
+        assertEquals(0, cache.getHitCount());
+        assertEquals(2, cache.size());
+
+        parse(parser, HTML);
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void eviction() throws Exception {
+        final HTMLParseCache cache = new HTMLParseCache(2, 1024 * 1024);
+
+        final DOMParser parser = new DOMParser(HTMLDocumentImpl.class);
+        parser.setProperty(PARSE_CACHE, cache);
+        parse(parser, "<p>1</p>");
+        parse(parser, "<p>2</p>");
+        parse(parser, "<p>1</p>");
+        parse(parser, "<p>3</p>");
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+
+        // <p>2</p> was the least recently used one
+        parse(parser, "<p>1</p>");
+        parse(parser, "<p>2</p>");
+        assertEquals(2, cache.getHitCount());
+        assertEquals(2, cache.getEvictionCount());
+    }
+
+    @Test
+    public void memoryLimit() throws Exception {
+        final HTMLParseCache cache = new HTMLParseCache(100, 1000);
+
+        final DOMParser parser = new DOMParser(HTMLDocumentImpl.class);
+        parser.setProperty(PARSE_CACHE, cache);
+        final StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            large.append("<p>paragraph ").append(i).append("</p>");
+        }
+        parse(parser, large.toString());
+        assertEquals(0, cache.size());
+
+        for (int i = 0; i < 20; i++) {
+            parse(parser, "<p>" + i + "</p>");
+        }
+        assertTrue(cache.getMemoryUsage() <= 1000);
+        assertTrue(cache.getEvictionCount() > 0);
+    }
+
+    @Test
+    public void largeDocumentIsNotCached() throws Exception {
+        final HTMLParseCache cache = new HTMLParseCache(10, 1024 * 1024, 100);
+
+        final String first = write(cache, HTML);
+        final String second = write(cache, HTML);
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getHitCount());
+        assertEquals(write(null, HTML), first);
+        assertEquals(first, second);
+
+        write(cache, "<p>small</p>");
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void sameHashOtherContent() throws Exception {
+        final HTMLParseCache cache = new HTMLParseCache(10, 1024 * 1024);
+        final byte[] content = "<p>1</p>".getBytes(StandardCharsets.UTF_8);
+        final byte[] other = "<p>2</p>".getBytes(StandardCharsets.UTF_8);
+        final byte[] events = {1, 2, 3};
+
+        // a key equal to the one of the content, like for a hash collision
+        final HTMLParseCache.Key key = new HTMLParseCache.Key(content, "UTF-8", "");
+        cache.put(key, content, events);
+        assertNull(cache.get(key, other));
+        assertEquals(1, cache.getMissCount());
+        assertArrayEquals(events, cache.get(key, content.clone()));
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void readFully() throws Exception {
+        final byte[] bytes = new byte[20_000];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        assertArrayEquals(bytes, HTMLParseCache.readFully(new ByteArrayInputStream(bytes), 20_000));
+        assertArrayEquals(Arrays.copyOf(bytes, 10_001), HTMLParseCache.readFully(new ByteArrayInputStream(bytes), 10_000));
+        assertArrayEquals(Arrays.copyOf(bytes, 2), HTMLParseCache.readFully(new ByteArrayInputStream(bytes), 1));
+        assertEquals(0, HTMLParseCache.readFully(new ByteArrayInputStream(new byte[0]), Integer.MAX_VALUE - 9).length);
+    }
+
+    @Test
+    public void stoppedParsingIsNotCached() throws Exception {
+        final HTMLParseCache cache = new HTMLParseCache(10, 1024 * 1024);
+
+        final HTMLConfiguration config = new HTMLConfiguration();
+        config.setProperty(PARSE_CACHE, cache);
+        config.setDocumentHandler(new DefaultFilter() {
+            @Override
+            public void startElement(final QName element, final XMLAttributes attributes, final Augmentations augs)
+                    throws XNIException {
+                if ("h1".equalsIgnoreCase(element.getRawname())) {
+                    config.stopParsing(true);
+                }
+            }
+        });
+        config.parse(source(HTML));
+        config.parse(source(HTML));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @Test
+    public void stopReplayedDocument() throws Exception {
+        final HTMLParseCache cache = new HTMLParseCache(10, 1024 * 1024);
+        write(cache, HTML);
+
+        assertEquals("[(html, (head, (title, )title, )head, (body, )body, )html, END]", stopAtBody(cache, true));
+        assertEquals("[(html, (head, (title, )title, )head, (body]", stopAtBody(cache, false));
+        assertEquals(2, cache.getHitCount());
+        assertEquals(stopAtBody(null, true), stopAtBody(cache, true));
+        assertEquals(stopAtBody(null, false), stopAtBody(cache, false));
+    }
+
+    @Test
+    public void pushIntoReplayedDocument() throws Exception {
+        final HTMLParseCache cache = new HTMLParseCache(10, 1024 * 1024);
+        write(cache, HTML);
+
+        final HTMLConfiguration config = new HTMLConfiguration();
+        config.setProperty(PARSE_CACHE, cache);
+        config.setDocumentHandler(new DefaultFilter() {
+            @Override
+            public void endElement(final QName element, final Augmentations augs) throws XNIException {
+                if ("title".equalsIgnoreCase(element.getRawname())) {
+                    config.evaluateInputSource(source("<p>written</p>"));
+                }
+            }
+        });
+        assertThrows(IllegalStateException.class, () -> config.parse(source(HTML)));
+        assertEquals(1, cache.getHitCount());
+
+        // the configuration can parse again
+        config.setDocumentHandler(new DefaultFilter());
+        config.parse(source(HTML));
+        assertEquals(2, cache.getHitCount());
+    }
+
+    private static String stopAtBody(final HTMLParseCache cache, final boolean endDocument) throws Exception {
+        final List<String> events = new ArrayList<>();
+        final HTMLConfiguration config = new HTMLConfiguration();
+        config.setProperty(PARSE_CACHE, cache);
+        config.setDocumentHandler(new DefaultFilter() {
+            @Override
+            public void startElement(final QName element, final XMLAttributes attributes, final Augmentations augs)
+                    throws XNIException {
+                events.add("(" + element.getRawname().toLowerCase(Locale.ROOT));
+                if ("body".equalsIgnoreCase(element.getRawname())) {
+                    config.stopParsing(endDocument);
+                }
+            }
+
+            @Override
+            public void endElement(final QName element, final Augmentations augs) throws XNIException {
+                events.add(")" + element.getRawname().toLowerCase(Locale.ROOT));
+            }
+
+            @Override
+            public void endDocument(final Augmentations augs) throws XNIException {
+                events.add("END");
+            }
+        });
+        config.parse(source(HTML));
+        return events.toString();
+    }
+
+    private static Document parseDocument(final HTMLParseCache cache, final String html, final String systemId)
+            throws Exception {
+        final DOMParser parser = new DOMParser(HTMLDocumentImpl.class);
+        parser.setProperty(PARSE_CACHE, cache);
+        final InputSource source = new InputSource(new ByteArrayInputStream(html.getBytes(StandardCharsets.UTF_8)));
+        source.setSystemId(systemId);
+        source.setEncoding("UTF-8");
+        parser.parse(source);
+        return parser.getDocument();
+    }
+
+    private static void parse(final DOMParser parser, final String html) throws Exception {
+        final InputSource source = new InputSource(new ByteArrayInputStream(html.getBytes(StandardCharsets.UTF_8)));
+        source.setEncoding("UTF-8");
+        parser.parse(source);
+    }
+
+    private static String write(final HTMLParseCache cache, final String html) throws Exception {
+        final StringWriter out = new StringWriter();
+        final HTMLConfiguration config = new HTMLConfiguration();
+        config.setProperty("http://cyberneko.org/html/properties/filters", new XMLDocumentFilter[] {new Writer(out)});
+        config.setProperty(PARSE_CACHE, cache);
+        config.parse(source(html));
+        return out.toString();
+    }
+
+    private static XMLInputSource source(final String html) {
+        return new XMLInputSource(null, "about:blank", null,
+                new ByteArrayInputStream(html.getBytes(StandardCharsets.UTF_8)), "UTF-8");
+    }
+}
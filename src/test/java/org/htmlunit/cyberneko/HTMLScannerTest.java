@@ -30,6 +30,7 @@
 import org.htmlunit.cyberneko.xerces.xni.Augmentations;
 import org.htmlunit.cyberneko.xerces.xni.QName;
 import org.htmlunit.cyberneko.xerces.xni.XMLAttributes;
+import org.htmlunit.cyberneko.xerces.xni.XMLString;
 import org.htmlunit.cyberneko.xerces.xni.XNIException;
 import org.htmlunit.cyberneko.xerces.xni.parser.XMLDocumentFilter;
 import org.htmlunit.cyberneko.xerces.xni.parser.XMLInputSource;
@@ -83,6 +84,27 @@ public void evaluateInputSource() throws Exception {
         assertEquals(Arrays.asList(expectedString), filter.collectedStrings_);
     }
 
+    @Test
+    public void evaluateInputSourceInEndElement() throws Exception {
+        final String string = "<html><body><div><script>x</script></div><p>after</p></body></html>";
+        final HTMLConfiguration parser = new HTMLConfiguration();
+        final List<String> ends = new ArrayList<>();
+        parser.setDocumentHandler(new DefaultFilter() {
+            @Override
+            public void endElement(final QName element, final Augmentations augs) throws XNIException {
+                if ("script".equalsIgnoreCase(element.getRawname())) {
+                    // the written elements must not change the name of the ended one
+                    parser.evaluateInputSource(new XMLInputSource(null, "write", null,
+                                                    new StringReader("<div>w</div>"), "UTF-8"));
+                }
+                ends.add(element.getRawname());
+            }
+        });
+        parser.parse(new XMLInputSource(null, "myTest", null, new StringReader(string), "UTF-8"));
+
+        assertEquals(Arrays.asList("head", "div", "script", "div", "p", "body", "html"), ends);
+    }
+
     /**
      * Ensure that the current locale doesn't affect the HTML tags.
      * see issue https://sourceforge.net/tracker/?func=detail&atid=952178&aid=3544334&group_id=195122
@@ -296,4 +318,77 @@ public void invalidProcessingInstruction3() throws Exception {
         final String[] expected = {"(HTML", "(head", ")head", "(body", ")body", ")html"};
         assertEquals(Arrays.asList(expected).toString(), filter.collectedStrings_.toString());
     }
+
+    /**
+     * The scanner resolves the element code, the code is passed to the filters
+     * with the element name; the balancer sets it for synthesized elements.
+     * @throws Exception on error
+     */
+    @Test
+    public void elementCode() throws Exception {
+        final String string = "<html><body><DIV>a</DIV><my-element>b</my-element><h:p xmlns:h='x'>c</h:p></body></html>";
+
+        final List<String> codes = new ArrayList<>();
+        final HTMLConfiguration parser = new HTMLConfiguration();
+        parser.setProperty("http://cyberneko.org/html/properties/filters", new XMLDocumentFilter[] {new DefaultFilter() {
+            @Override
+            public void startElement(final QName element, final XMLAttributes attributes, final Augmentations augs) {
+                codes.add(element.getRawname() + "=" + element.getElementCode());
+            }
+
+            @Override
+            public void endElement(final QName element, final Augmentations augs) {
+                codes.add("/" + element.getRawname() + "=" + element.getElementCode());
+            }
+        }});
+        parser.parse(new XMLInputSource(null, "myTest", null, new StringReader(string), "UTF-8"));
+
+        final String[] expected = {"html=" + HTMLElements.HTML, "head=" + HTMLElements.HEAD, "/head=" + HTMLElements.HEAD, "body=" + HTMLElements.BODY,
+            "DIV=" + HTMLElements.DIV, "/DIV=" + HTMLElements.DIV,
+            "my-element=" + HTMLElements.UNKNOWN, "/my-element=" + HTMLElements.UNKNOWN,
+            "h:p=" + HTMLElements.UNKNOWN, "/h:p=" + HTMLElements.UNKNOWN,
+            "/body=" + HTMLElements.BODY, "/html=" + HTMLElements.HTML};
+        assertEquals(Arrays.asList(expected).toString(), codes.toString());
+    }
+
+    /**
+     * Runs of plain characters are scanned in bulk; the positions have to be
+     * the same as for scanning char by char.
+     * @throws Exception on error
+     */
+    @Test
+    public void characterPositions() throws Exception {
+        final StringBuilder line = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            line.append('x');
+        }
+        final String string = "<p>" + line + "\n" + line + "</p><!--" + line + "\r\n-" + line + "--><script>"
+                + line + "\nif (a < b && c-- > 0) {}</script><style>" + line + "</style>";
+
+        final List<String> positions = new ArrayList<>();
+        final HTMLConfiguration parser = new HTMLConfiguration();
+        parser.setFeature("http://cyberneko.org/html/features/augmentations", true);
+        parser.setProperty("http://cyberneko.org/html/properties/filters", new XMLDocumentFilter[] {new DefaultFilter() {
+            @Override
+            public void characters(final XMLString text, final Augmentations augs) {
+                add("characters", text, augs);
+            }
+
+            @Override
+            public void comment(final XMLString text, final Augmentations augs) {
+                add("comment", text, augs);
+            }
+
+            private void add(final String event, final XMLString text, final Augmentations augs) {
+                final HTMLEventInfo info = (HTMLEventInfo) augs;
+                positions.add(event + " " + text.length() + " " + info.getEndLineNumber()
+                        + ":" + info.getEndColumnNumber() + ":" + info.getEndCharacterOffset());
+            }
+        }});
+        parser.parse(new XMLInputSource(null, "myTest", null, new StringReader(string), "UTF-8"));
+
+        final String[] expected = {"characters 601 2:301:604", "comment 602 3:305:1218",
+            "characters 325 4:25:1551", "characters 300 4:341:1867"};
+        assertEquals(Arrays.asList(expected).toString(), positions.toString());
+    }
 }
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.htmlunit.cyberneko.HTMLTagBalancer.Info;
+import org.htmlunit.cyberneko.HTMLTagBalancer.InfoStack;
+import org.htmlunit.cyberneko.xerces.util.XMLAttributesImpl;
+import org.htmlunit.cyberneko.xerces.xni.QName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link InfoStack}.
+ */
+public class InfoStackTest {
+
+    private final HTMLElements elements_ = new HTMLElements();
+
+    @Test
+    public void pushKeepsCallerInfo() {
+        final XMLAttributesImpl attributes = new XMLAttributesImpl();
+        attributes.addAttribute(new QName(null, "id", "id", null), "CDATA", "x");
+        final Info info = new Info(elements_.getElement(HTMLElements.B), new QName(null, "b", "b", null), attributes);
+
+        final InfoStack stack = new InfoStack();
+        stack.push(info);
+        assertNotSame(info, stack.peek());
+        stack.pop();
+
+        // the slot of the popped entry is reused
+        stack.push(elements_.getElement(HTMLElements.I), new QName(null, "i", "i", null), null);
+        assertEquals("b", info.qname.getRawname());
+        assertEquals(HTMLElements.B, info.element.code);
+        assertEquals("x", info.attributes.getValue(0));
+        assertEquals(0, stack.lastIndexOf(HTMLElements.I));
+        assertEquals(-1, stack.lastIndexOf(HTMLElements.B));
+    }
+
+    @Test
+    public void pushPoppedInfo() {
+        final XMLAttributesImpl attributes = new XMLAttributesImpl();
+        attributes.addAttribute(new QName(null, "id", "id", null), "CDATA", "x");
+
+        final InfoStack stack = new InfoStack();
+        stack.push(elements_.getElement(HTMLElements.B), new QName(null, "b", "b", null), attributes);
+        final Info popped = stack.pop();
+
+        stack.push(popped);
+        assertSame(popped, stack.peek());
+        assertEquals("b", stack.peek().qname.getRawname());
+        assertEquals(1, stack.peek().attributes.getLength());
+        assertEquals("x", stack.peek().attributes.getValue(0));
+    }
+
+    @Test
+    public void deepStack() {
+        final InfoStack stack = new InfoStack();
+        final QName div = new QName(null, "div", "div", null);
+        for (int i = 0; i < 100_000; i++) {
+            stack.push(elements_.getElement(HTMLElements.DIV), div, null);
+        }
+        assertEquals(100_000, stack.top);
+        assertEquals(99_999, stack.lastIndexOf(HTMLElements.DIV));
+        assertEquals(99_998, stack.previousIndexOf(99_999));
+
+        stack.popAll();
+        assertEquals(0, stack.top);
+        assertEquals(-1, stack.lastIndexOf(HTMLElements.DIV));
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko;
+
+import static org.htmlunit.cyberneko.TestFiles.parse;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLInputSource;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+
+/**
+ * Tests for the parsing of memory mapped files and byte buffers. The result
+ * has to be the same as for the parsing of a byte stream.
+ */
+public class MappedFileInputTest {
+    @TestFactory
+    public Iterable<DynamicTest> sameAsByteStream() {
+        final List<File> dataFiles = TestFiles.dataFiles();
+
+        final List<DynamicTest> tests = new ArrayList<>();
+        for (final File dataFile : dataFiles) {
+            tests.add(DynamicTest.dynamicTest(dataFile.getName(), () -> {
+                final File settings = new File(dataFile.getPath() + ".settings");
+
+                final String expected;
+                try (InputStream in = new FileInputStream(dataFile)) {
+                    expected = parse(new XMLInputSource(null, "foo", null, in, null), settings);
+                }
+                assertEquals(expected, parse(new XMLInputSource(null, "foo", null, dataFile.toPath(), null), settings));
+
+                try (FileChannel channel = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ)) {
+                    assertEquals(expected, parse(new XMLInputSource(null, "foo", null, channel, null), settings));
+                }
+            }));
+        }
+        return tests;
+    }
+
+    @Test
+    public void encodingChange() throws Exception {
+        final String html = "<html><head><meta charset='utf-8'><title>äöü €</title></head>"
+                                + "<body>äöü</body></html>";
+        final byte[] bytes = html.getBytes(StandardCharsets.UTF_8);
+
+        final String expected = parse(new XMLInputSource(null, "foo", null, new ByteArrayInputStream(bytes), null), null);
+        assertEquals(expected, parse(new XMLInputSource(null, "foo", null, ByteBuffer.wrap(bytes), null), null));
+
+        final ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes);
+        direct.flip();
+        assertEquals(expected, parse(new XMLInputSource(null, "foo", null, direct, null), null));
+    }
+
+    @Test
+    public void byteOrderMark() throws Exception {
+        final byte[] bom = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+        final byte[] html = "<p>äöü</p>".getBytes(StandardCharsets.UTF_8);
+        final byte[] bytes = new byte[bom.length + html.length];
+        System.arraycopy(bom, 0, bytes, 0, bom.length);
+        System.arraycopy(html, 0, bytes, bom.length, html.length);
+
+        final String expected = parse(new XMLInputSource(null, "foo", null, new ByteArrayInputStream(bytes), null), null);
+        assertEquals(expected, parse(new XMLInputSource(null, "foo", null, ByteBuffer.wrap(bytes), null), null));
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.htmlunit.cyberneko.filters.DefaultFilter;
+import org.htmlunit.cyberneko.xerces.xni.Augmentations;
+import org.htmlunit.cyberneko.xerces.xni.QName;
+import org.htmlunit.cyberneko.xerces.xni.XMLAttributes;
+import org.htmlunit.cyberneko.xerces.xni.XMLString;
+import org.htmlunit.cyberneko.xerces.xni.XNIException;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLDocumentFilter;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLInputSource;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link HTMLConfiguration#stopParsing(boolean)}.
+ */
+public class StopParsingTest {
+
+    private static final String HTML = "<html><head><title>The Title</title>"
+            + "<link rel='canonical' href='https://example.com/'></head>"
+            + "<body><p>text</p><script>var x = 1;</script><p>more</p></body></html>";
+
+    @Test
+    public void stopAtEndOfHead() throws Exception {
+        final HTMLConfiguration config = new HTMLConfiguration();
+        final Recorder recorder = new Recorder(config, "head", false);
+        config.setDocumentHandler(recorder);
+
+        config.parse(new XMLInputSource(null, "foo", null, new StringReader(HTML), null));
+        // the end of the head is reported when the body starts, the events of this step are still delivered
+        assertEquals("[start html, start head, start title, text The Title, end title, start link, end link, end head, "
+                + "start body]", recorder.events_.toString());
+    }
+
+    @Test
+    public void stopWithEndDocument() throws Exception {
+        final HTMLConfiguration config = new HTMLConfiguration();
+        final Recorder recorder = new Recorder(config, "p", true);
+        config.setDocumentHandler(recorder);
+
+        config.parse(new XMLInputSource(null, "foo", null, new StringReader(HTML), null));
+        assertEquals("[start html, start head, start title, text The Title, end title, start link, end link, end head, "
+                + "start body, start p, text text, end p, end body, end html, endDocument]",
+                recorder.events_.toString());
+    }
+
+    @Test
+    public void stopInScript() throws Exception {
+        final HTMLConfiguration config = new HTMLConfiguration();
+        final Recorder recorder = new Recorder(config, "script", true);
+        config.setDocumentHandler(recorder);
+
+        config.parse(new XMLInputSource(null, "foo", null, new StringReader(HTML), null));
+        assertTrue(recorder.events_.toString().endsWith("end script, end body, end html, endDocument]"),
+                recorder.events_.toString());
+    }
+
+    @Test
+    public void stopFromFilter() throws Exception {
+        final HTMLConfiguration config = new HTMLConfiguration();
+        final Recorder recorder = new Recorder(config, null, false);
+        config.setDocumentHandler(recorder);
+        config.setProperty("http://cyberneko.org/html/properties/filters", new XMLDocumentFilter[] {new DefaultFilter() {
+            @Override
+            public void endElement(final QName element, final Augmentations augs) throws XNIException {
+                super.endElement(element, augs);
+                if ("title".equals(element.getRawname())) {
+                    config.stopParsing(false);
+                }
+            }
+        }});
+
+        config.parse(new XMLInputSource(null, "foo", null, new StringReader(HTML), null));
+        assertEquals("[start html, start head, start title, text The Title, end title]", recorder.events_.toString());
+    }
+
+    @Test
+    public void restOfStreamNotRead() throws Exception {
+        final StringBuilder html = new StringBuilder("<html><head><title>t</title></head><body>");
+        for (int i = 0; i < 100_000; i++) {
+            html.append("<p>paragraph</p>");
+        }
+        final byte[] bytes = html.toString().getBytes(StandardCharsets.UTF_8);
+        final ByteArrayInputStream in = new ByteArrayInputStream(bytes);
+
+        final HTMLConfiguration config = new HTMLConfiguration();
+        config.setDocumentHandler(new Recorder(config, "head", false));
+        config.parse(new XMLInputSource(null, "foo", null, in, "UTF-8"));
+
+        assertTrue(in.available() > bytes.length - bytes.length / 10, "remaining " + in.available());
+    }
+
+    @Test
+    public void reuse() throws Exception {
+        final HTMLConfiguration config = new HTMLConfiguration();
+        final Recorder recorder = new Recorder(config, "head", false);
+        config.setDocumentHandler(recorder);
+        config.parse(new XMLInputSource(null, "foo", null, new StringReader(HTML), null));
+
+        final Recorder all = new Recorder(config, null, false);
+        config.setDocumentHandler(all);
+        config.parse(new XMLInputSource(null, "foo", null, new StringReader(HTML), null));
+
+        final Recorder fresh = new Recorder(new HTMLConfiguration(), null, false);
+        fresh.config_.setDocumentHandler(fresh);
+        fresh.config_.parse(new XMLInputSource(null, "foo", null, new StringReader(HTML), null));
+
+        assertEquals(fresh.events_, all.events_);
+        assertTrue(all.events_.contains("endDocument"));
+    }
+
+    @Test
+    public void incremental() throws Exception {
+        final HTMLConfiguration config = new HTMLConfiguration();
+        final Recorder recorder = new Recorder(config, "head", false);
+        config.setDocumentHandler(recorder);
+        config.setInputSource(new XMLInputSource(null, "foo", null, new StringReader(HTML), null));
+
+        int steps = 0;
+        while (config.parse(false)) {
+            steps++;
+        }
+        assertTrue(steps > 0);
+        assertFalse(config.parse(false));
+        assertFalse(config.parse(true));
+        assertEquals("start body", recorder.events_.get(recorder.events_.size() - 1));
+    }
+
+    /** Records the events and stops at the end of the given element. */
+    private static final class Recorder extends DefaultFilter {
+        private final HTMLConfiguration config_;
+        private final String stopAt_;
+        private final boolean endDocument_;
+        private final List<String> events_ = new ArrayList<>();
+
+        Recorder(final HTMLConfiguration config, final String stopAt, final boolean endDocument) {
+            config_ = config;
+            stopAt_ = stopAt;
+            endDocument_ = endDocument;
+        }
+
+        @Override
+        public void startElement(final QName element, final XMLAttributes attributes, final Augmentations augs) {
+            events_.add("start " + element.getRawname());
+        }
+
+        @Override
+        public void emptyElement(final QName element, final XMLAttributes attributes, final Augmentations augs) {
+            startElement(element, attributes, augs);
+            endElement(element, augs);
+        }
+
+        @Override
+        public void characters(final XMLString text, final Augmentations augs) {
+            events_.add("text " + text);
+        }
+
+        @Override
+        public void endElement(final QName element, final Augmentations augs) {
+            events_.add("end " + element.getRawname());
+            if (element.getRawname().equals(stopAt_)) {
+                config_.stopParsing(endDocument_);
+            }
+        }
+
+        @Override
+        public void endDocument(final Augmentations augs) {
+            events_.add("endDocument");
+        }
+    }
+}
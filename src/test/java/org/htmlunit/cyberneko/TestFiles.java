@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.StringTokenizer;
+
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLDocumentFilter;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLInputSource;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLParserConfiguration;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * Helpers for the tests comparing the results of the data files
+ * (testfiles/**&#47;test*.html) parsed in different ways.
+ */
+public final class TestFiles {
+
+    /** The directory of the data files. */
+    public static final File DATA_DIR = new File("src/test/resources/org/htmlunit/cyberneko/testfiles");
+
+    private TestFiles() {
+    }
+
+    /**
+     * @return the data files, sorted by path
+     */
+    public static List<File> dataFiles() {
+        final List<File> dataFiles = new ArrayList<>();
+        collect(DATA_DIR, dataFiles);
+        return dataFiles;
+    }
+
+    private static void collect(final File dir, final List<File> dataFiles) {
+        final File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files);
+        for (final File file : files) {
+            if (file.isDirectory()) {
+                if (!"canonical".equals(file.getName())) {
+                    collect(file, dataFiles);
+                }
+            }
+            else if (file.getName().startsWith("test") && file.getName().endsWith(".html")) {
+                dataFiles.add(file);
+            }
+        }
+    }
+
+    /**
+     * Applies the features and properties of a settings file like {@link CanonicalTest}.
+     *
+     * @param parser the parser to configure
+     * @param settings the settings file, nothing is done if it is null or does not exist
+     * @param out where the errors are written to if they are reported
+     * @throws IOException in case of error
+     */
+    public static void applySettings(final XMLParserConfiguration parser, final File settings,
+            final java.io.Writer out) throws IOException {
+        if (settings == null || !settings.exists()) {
+            return;
+        }
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(settings))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final StringTokenizer tokenizer = new StringTokenizer(line);
+                final String type = tokenizer.nextToken();
+                final String id = tokenizer.nextToken();
+                final String value = tokenizer.nextToken();
+                if ("feature".equals(type)) {
+                    parser.setFeature(id, "true".equals(value));
+                    if (HTMLScanner.REPORT_ERRORS.equals(id)) {
+                        parser.setErrorHandler(new HTMLErrorHandler(out));
+                    }
+                }
+                else {
+                    parser.setProperty(id, value);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param source the source to parse
+     * @param settings the settings file (or null)
+     * @return the events written by {@link Writer}
+     * @throws Exception in case of error
+     */
+    public static String parse(final XMLInputSource source, final File settings) throws Exception {
+        final StringWriter out = new StringWriter();
+        final HTMLConfiguration parser = new HTMLConfiguration();
+        parser.setProperty("http://cyberneko.org/html/properties/filters", new XMLDocumentFilter[] {new Writer(out)});
+        applySettings(parser, settings, out);
+
+        parser.parse(source);
+        return out.toString();
+    }
+
+    /**
+     * @param node the node
+     * @return the node type, name, value and attributes of the node and its descendants
+     */
+    public static String dump(final Node node) {
+        final StringBuilder sb = new StringBuilder();
+        dump(node, sb);
+        return sb.toString();
+    }
+
+    private static void dump(final Node node, final StringBuilder sb) {
+        sb.append('(').append(node.getNodeType()).append(' ').append(node.getNodeName());
+        if (node.getNodeValue() != null) {
+            sb.append(" '").append(node.getNodeValue()).append('\'');
+        }
+        final NamedNodeMap attributes = node.getAttributes();
+        if (attributes != null) {
+            for (int i = 0; i < attributes.getLength(); i++) {
+                final Node attribute = attributes.item(i);
+                sb.append(' ').append(attribute.getNodeName()).append("='").append(attribute.getNodeValue()).append('\'');
+            }
+        }
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            dump(child, sb);
+        }
+        sb.append(')');
+    }
+}
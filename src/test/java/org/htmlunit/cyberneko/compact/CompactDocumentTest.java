@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.compact;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringReader;
+
+import org.htmlunit.cyberneko.parsers.CompactDOMParser;
+import org.htmlunit.cyberneko.parsers.DOMParser;
+import org.htmlunit.cyberneko.xerces.dom.DocumentImpl;
+import org.htmlunit.cyberneko.xerces.xni.XMLString;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLInputSource;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+/**
+ * Unit tests for {@link CompactDocument} and {@link CompactDOMParser}.
+ */
+public class CompactDocumentTest {
+
+    private static final String HTML = "<!DOCTYPE html PUBLIC '-//W3C//DTD HTML 4.01//EN'>"
+            + "<html><head><title>Title</title></head>"
+            + "<body id='b'><!-- note --><p class='x' ID='p1'>one <b>two</b> three</p>"
+            + "<table><tr><td>cell</td></tr></table><br><p>four five</p></body></html>";
+
+    @Test
+    public void sameTreeAsDom() throws Exception {
+        final DOMParser domParser = new DOMParser(DocumentImpl.class);
+        domParser.parse(new InputSource(new StringReader(HTML)));
+        final Document expected = domParser.getDocument();
+
+        final CompactDocument document = parse(HTML);
+        assertEquals(toString(expected), toString(document));
+        assertTrue(document.getDocumentElement().isEqualNode(expected.getDocumentElement()));
+    }
+
+    @Test
+    public void navigation() throws Exception {
+        final CompactDocument document = parse(HTML);
+        assertEquals("html", document.getDoctype().getName());
+        assertEquals("-//W3C//DTD HTML 4.01//EN", document.getDoctype().getPublicId());
+
+        final Element p = document.getElementById("p1");
+        assertEquals("p", p.getTagName());
+        assertEquals("x", p.getAttribute("class"));
+        assertEquals("", p.getAttribute("style"));
+        assertEquals(2, p.getAttributes().getLength());
+        assertEquals("one two three", p.getTextContent());
+        assertEquals("body", p.getParentNode().getNodeName());
+        assertEquals(" note ", p.getPreviousSibling().getNodeValue());
+        assertEquals("table", p.getNextSibling().getNodeName());
+        assertTrue(p.getFirstChild().getNextSibling().isSameNode(p.getElementsByTagName("b").item(0)));
+        assertTrue(document.isSameNode(p.getOwnerDocument()));
+
+        final NodeList paragraphs = document.getElementsByTagName("p");
+        assertEquals(2, paragraphs.getLength());
+        assertEquals("four five", paragraphs.item(1).getTextContent());
+        assertEquals(Node.DOCUMENT_POSITION_FOLLOWING, paragraphs.item(0).compareDocumentPosition(paragraphs.item(1)));
+        assertEquals(Node.DOCUMENT_POSITION_CONTAINED_BY | Node.DOCUMENT_POSITION_FOLLOWING,
+                document.getElementById("b").compareDocumentPosition(p));
+        assertNull(document.getElementById("none"));
+    }
+
+    @Test
+    public void previousSibling() throws Exception {
+        final StringBuilder html = new StringBuilder("<div>");
+        for (int i = 0; i < 1000; i++) {
+            html.append("<span>").append(i).append("</span><!--").append(i).append("-->");
+        }
+        final CompactDocument document = parse(html.append("</div>").toString());
+        final Node div = document.getElementsByTagName("div").item(0);
+
+        int count = 0;
+        Node next = null;
+        for (Node child = div.getLastChild(); child != null; child = child.getPreviousSibling()) {
+            assertTrue(next == null ? child.getNextSibling() == null : child.getNextSibling().isSameNode(next));
+            next = child;
+            count++;
+        }
+        assertEquals(2000, count);
+        assertTrue(next.isSameNode(div.getFirstChild()));
+        assertNull(document.getPreviousSibling());
+        assertNull(document.getDocumentElement().getPreviousSibling());
+    }
+
+    @Test
+    public void builder() {
+        final CompactDocument.Builder builder = new CompactDocument.Builder();
+        builder.startElement("root", null);
+        builder.characters(new XMLString("a".toCharArray(), 0, 1));
+        builder.characters(new XMLString("b".toCharArray(), 0, 1));
+        builder.endElement();
+        final CompactDocument document = builder.build();
+
+        assertEquals(3, document.getNodeCount());
+        assertEquals(1, document.getDocumentElement().getChildNodes().getLength());
+        assertEquals("ab", document.getDocumentElement().getFirstChild().getNodeValue());
+    }
+
+    private static CompactDocument parse(final String html) throws Exception {
+        final CompactDOMParser parser = new CompactDOMParser();
+        parser.parse(new XMLInputSource(null, "test", null, new StringReader(html), null));
+        return parser.getDocument();
+    }
+
+    private static String toString(final Node node) {
+        final StringBuilder sb = new StringBuilder();
+        append(node, sb);
+        return sb.toString();
+    }
+
+    private static void append(final Node node, final StringBuilder sb) {
+        sb.append('(').append(node.getNodeType()).append(' ').append(node.getNodeName());
+        if (node.getNodeValue() != null) {
+            sb.append(" '").append(node.getNodeValue()).append('\'');
+        }
+        if (node.getAttributes() != null) {
+            for (int i = 0; i < node.getAttributes().getLength(); i++) {
+                final Node attribute = node.getAttributes().item(i);
+                sb.append(' ').append(attribute.getNodeName()).append("='").append(attribute.getNodeValue()).append('\'');
+            }
+        }
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            append(child, sb);
+        }
+        sb.append(')');
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.html.dom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.StringReader;
+
+import org.htmlunit.cyberneko.HTMLElements;
+import org.htmlunit.cyberneko.parsers.DOMParser;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
+
+/**
+ * Unit tests for the element creation of {@link HTMLDocumentImpl}.
+ */
+public class HTMLDocumentImplTest {
+
+    @Test
+    public void createElement() {
+        final HTMLDocumentImpl document = new HTMLDocumentImpl();
+        assertType(HTMLDivElementImpl.class, "DIV", document.createElement("div"));
+        assertType(HTMLHeadingElementImpl.class, "H3", document.createElement("H3"));
+        assertType(HTMLTableCellElementImpl.class, "TD", document.createElement("tD"));
+        assertType(HTMLElementImpl.class, "SECTION", document.createElement("section"));
+        assertType(HTMLElementImpl.class, "MY-ELEMENT", document.createElement("my-element"));
+    }
+
+    @Test
+    public void createElementByCode() {
+        final HTMLDocumentImpl document = new HTMLDocumentImpl();
+        assertType(HTMLAnchorElementImpl.class, "A", document.createElement("a", HTMLElements.A));
+        assertType(HTMLElementImpl.class, "BLINK", document.createElement("blink", HTMLElements.BLINK));
+        assertType(HTMLDivElementImpl.class, "DIV", document.createElement("div", (short) -1));
+        assertType(HTMLElementImpl.class, "MY-ELEMENT", document.createElement("my-element", HTMLElements.UNKNOWN));
+    }
+
+    @Test
+    public void registerElementFactory() throws Exception {
+        final String html = "<html><body><x-custom>a</x-custom><div>b</div></body></html>";
+        HTMLDocumentImpl.registerElementFactory("x-custom", CustomElement::new);
+        try {
+            final HTMLDocumentImpl document = parse(html);
+            assertType(CustomElement.class, "X-CUSTOM", document.getElementsByTagName("x-custom").item(0));
+            assertType(HTMLDivElementImpl.class, "DIV", document.getElementsByTagName("div").item(0));
+        }
+        finally {
+            HTMLDocumentImpl.unregisterElementFactory("x-custom");
+        }
+
+        final HTMLDocumentImpl document = parse(html);
+        assertType(HTMLElementImpl.class, "X-CUSTOM", document.getElementsByTagName("x-custom").item(0));
+    }
+
+    private static HTMLDocumentImpl parse(final String html) throws Exception {
+        final DOMParser parser = new DOMParser(HTMLDocumentImpl.class);
+        parser.parse(new InputSource(new StringReader(html)));
+        return (HTMLDocumentImpl) parser.getDocument();
+    }
+
+    private static void assertType(final Class<?> expectedClass, final String expectedTagName, final Object element) {
+        assertSame(expectedClass, element.getClass());
+        assertEquals(expectedTagName, ((Element) element).getTagName());
+    }
+
+    private static final class CustomElement extends HTMLElementImpl {
+        CustomElement(final HTMLDocumentImpl owner, final String tagName) {
+            super(owner, tagName);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.io;
+
+import static org.htmlunit.cyberneko.TestFiles.dump;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.htmlunit.cyberneko.HTMLConfiguration;
+import org.htmlunit.cyberneko.HTMLElements;
+import org.htmlunit.cyberneko.TestFiles;
+import org.htmlunit.cyberneko.Writer;
+import org.htmlunit.cyberneko.filters.DefaultFilter;
+import org.htmlunit.cyberneko.html.dom.HTMLDocumentImpl;
+import org.htmlunit.cyberneko.parsers.DOMParser;
+import org.htmlunit.cyberneko.xerces.xni.Augmentations;
+import org.htmlunit.cyberneko.xerces.xni.QName;
+import org.htmlunit.cyberneko.xerces.xni.XMLAttributes;
+import org.htmlunit.cyberneko.xerces.xni.XNIException;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLDocumentFilter;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLInputSource;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+
+/**
+ * Unit tests for {@link BinaryDocumentWriter} and {@link BinaryDocumentReader}.
+ */
+public class BinaryDocumentTest {
+
+    private static final String FILTERS = "http://cyberneko.org/html/properties/filters";
+
+    @Test
+    public void replaySameEvents() throws Exception {
+        final List<File> files = TestFiles.dataFiles();
+        assertFalse(files.isEmpty());
+
+        for (final File file : files) {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final StringWriter expected = new StringWriter();
+
+            final HTMLConfiguration config = new HTMLConfiguration();
+            config.setProperty(FILTERS, new XMLDocumentFilter[] {new BinaryDocumentWriter(bytes), new Writer(expected)});
+            try (InputStream in = new FileInputStream(file)) {
+                config.parse(new XMLInputSource(null, file.toURI().toString(), null, in, null));
+            }
+
+            if (bytes.size() == 0) {
+                // the plaintext scanner does not end every document
+                continue;
+            }
+            final StringWriter actual = new StringWriter();
+            new BinaryDocumentReader(new ByteArrayInputStream(bytes.toByteArray())).replay(new Writer(actual));
+            assertEquals(expected.toString(), actual.toString(), file.getName());
+        }
+    }
+
+    @Test
+    public void readDocument() throws Exception {
+        final String html = "<!DOCTYPE html><html><head><title>t</title></head>"
+                + "<body class='c'><p>one &amp; <b>two</b><br>ä€😀<!--c--></p>"
+                + "<svg><circle r='1'/></svg><table><tr><td>x</td></tr></table></body></html>";
+
+        final DOMParser parser = new DOMParser(HTMLDocumentImpl.class);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        parser.setProperty(FILTERS, new XMLDocumentFilter[] {new BinaryDocumentWriter(bytes)});
+        parser.parse(new InputSource(new StringReader(html)));
+        final Document expected = parser.getDocument();
+
+        final HTMLDocumentImpl document = new HTMLDocumentImpl();
+        new BinaryDocumentReader(new ByteArrayInputStream(bytes.toByteArray())).readDocument(document);
+
+        assertEquals(dump(expected), dump(document));
+        assertEquals("t", document.getTitle());
+    }
+
+    @Test
+    public void reusedWriter() throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final HTMLConfiguration config = new HTMLConfiguration();
+        config.setDocumentHandler(new BinaryDocumentWriter(bytes));
+        config.parse(new XMLInputSource(null, "about:blank", null, new StringReader("<p class='a'>one</p>"), null));
+        final int first = bytes.size();
+        config.parse(new XMLInputSource(null, "about:blank", null, new StringReader("<div class='a'>two</div>"), null));
+        final byte[] content = bytes.toByteArray();
+
+        final StringWriter expected = new StringWriter();
+        final HTMLConfiguration writing = new HTMLConfiguration();
+        writing.setDocumentHandler(new Writer(expected));
+        writing.parse(new XMLInputSource(null, "about:blank", null, new StringReader("<div class='a'>two</div>"), null));
+
+        // one after the other
+        final BinaryDocumentReader reader = new BinaryDocumentReader(new ByteArrayInputStream(content));
+        reader.replay(new DefaultFilter());
+        final StringWriter actual = new StringWriter();
+        reader.replay(new Writer(actual));
+        assertEquals(expected.toString(), actual.toString());
+
+        // on its own
+        final StringWriter alone = new StringWriter();
+        new BinaryDocumentReader(new ByteArrayInputStream(content, first, content.length - first)).replay(new Writer(alone));
+        assertEquals(expected.toString(), alone.toString());
+    }
+
+    @Test
+    public void readDocumentKeepsStrictErrorChecking() throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final HTMLConfiguration config = new HTMLConfiguration();
+        config.setDocumentHandler(new BinaryDocumentWriter(bytes));
+        config.parse(new XMLInputSource(null, "about:blank", null, new StringReader("<p>text</p>"), null));
+
+        final HTMLDocumentImpl document = new HTMLDocumentImpl();
+        new BinaryDocumentReader(new ByteArrayInputStream(bytes.toByteArray())).readDocument(document);
+        assertTrue(document.getStrictErrorChecking());
+
+        final HTMLDocumentImpl lenient = new HTMLDocumentImpl();
+        lenient.setStrictErrorChecking(false);
+        new BinaryDocumentReader(new ByteArrayInputStream(bytes.toByteArray())).readDocument(lenient);
+        assertFalse(lenient.getStrictErrorChecking());
+    }
+
+    @Test
+    public void elementCodes() throws Exception {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final HTMLConfiguration config = new HTMLConfiguration();
+        config.setDocumentHandler(new BinaryDocumentWriter(bytes));
+        config.parse(new XMLInputSource(null, "about:blank", null, new StringReader("<div><p>a<foo>b</foo></p></div>"), null));
+
+        final List<String> codes = new ArrayList<>();
+        new BinaryDocumentReader(new ByteArrayInputStream(bytes.toByteArray())).replay(new DefaultFilter() {
+            @Override
+            public void startElement(final QName element, final XMLAttributes attributes, final Augmentations augs)
+                    throws XNIException {
+                codes.add(element.getRawname().toUpperCase(Locale.ROOT) + "=" + element.getElementCode());
+            }
+        });
+
+        final HTMLElements elements = new HTMLElements();
+        assertEquals("[HTML=" + HTMLElements.HTML + ", HEAD=" + HTMLElements.HEAD + ", BODY=" + HTMLElements.BODY
+                + ", DIV=" + HTMLElements.DIV + ", P=" + HTMLElements.P + ", FOO=" + elements.getElement("foo").code + "]",
+                codes.toString());
+    }
+
+    @Test
+    public void invalidContent() {
+        assertThrows(IOException.class,
+            () -> new BinaryDocumentReader(new ByteArrayInputStream("<html>".getBytes("UTF-8"))).replay(new DefaultFilter()));
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the built-in readers. The result has to be the same as the one
+ * of an {@link InputStreamReader}.
+ */
+public class ByteDecodingReaderTest {
+
+    private static final byte[] INTERESTING_BYTES = {
+        0x41, (byte) 0x80, (byte) 0x81, (byte) 0x9D, (byte) 0xA0, (byte) 0xBF, (byte) 0xC0, (byte) 0xC2,
+        (byte) 0xDF, (byte) 0xE0, (byte) 0xE1, (byte) 0xED, (byte) 0xF0, (byte) 0xF4, (byte) 0xF5, (byte) 0xFF
+    };
+
+    @Test
+    public void forEncoding() {
+        final InputStream in = new ByteArrayInputStream(new byte[0]);
+
+        assertEquals("UTF8", ByteDecodingReader.forEncoding(in, "UTF8").getEncoding());
+        assertEquals("UTF8", ByteDecodingReader.forEncoding(in, "utf-8").getEncoding());
+        assertEquals("ISO8859_1", ByteDecodingReader.forEncoding(in, "ISO8859_1").getEncoding());
+        assertEquals("Cp1252", ByteDecodingReader.forEncoding(in, "Cp1252").getEncoding());
+        assertEquals("Cp1252", ByteDecodingReader.forEncoding(in, "windows-1252").getEncoding());
+
+        assertNull(ByteDecodingReader.forEncoding(in, "UTF-16"));
+        assertNull(ByteDecodingReader.forEncoding(in, "unknown"));
+        assertNull(ByteDecodingReader.forEncoding(in, "in valid"));
+    }
+
+    @Test
+    public void utf8() throws Exception {
+        final String text = "abc äöü € 😀 xyz";
+        final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+
+        assertEquals(text, read(ByteDecodingReader.forEncoding(new ByteArrayInputStream(bytes), "UTF-8"), 1000));
+        // one char at a time, the surrogate pair has to be split
+        assertEquals(text, read(ByteDecodingReader.forEncoding(new ByteArrayInputStream(bytes), "UTF-8"), 1));
+    }
+
+    @Test
+    public void utf8Malformed() throws Exception {
+        assertSameAsInputStreamReader("UTF-8", 0xC0, 0x80);
+        assertSameAsInputStreamReader("UTF-8", 0xE0, 0x80, 0x80);
+        assertSameAsInputStreamReader("UTF-8", 0xED, 0xA0, 0x80);
+        assertSameAsInputStreamReader("UTF-8", 0xED, 0xBC, 0xD1);
+        assertSameAsInputStreamReader("UTF-8", 0xF0, 0x80, 0x80, 0x80);
+        assertSameAsInputStreamReader("UTF-8", 0xF4, 0x90, 0x80, 0x80);
+        assertSameAsInputStreamReader("UTF-8", 0xF5, 0x41);
+        assertSameAsInputStreamReader("UTF-8", 0x41, 0xE1, 0x80);
+        assertSameAsInputStreamReader("UTF-8", 0x41, 0xF0, 0x90, 0x80);
+    }
+
+    @Test
+    public void random() throws Exception {
+        final Random random = new Random(4711);
+        for (final String encoding : new String[] {"UTF-8", "ISO-8859-1", "windows-1252"}) {
+            for (int i = 0; i < 10_000; i++) {
+                final byte[] bytes = new byte[random.nextInt(i % 100 == 0 ? 20_000 : 30)];
+                for (int j = 0; j < bytes.length; j++) {
+                    bytes[j] = random.nextBoolean()
+                                ? INTERESTING_BYTES[random.nextInt(INTERESTING_BYTES.length)]
+                                : (byte) random.nextInt(256);
+                }
+                final int chunk = 1 + random.nextInt(700);
+
+                final String expected = read(new InputStreamReader(new ByteArrayInputStream(bytes), encoding), chunk);
+                final Reader reader = ByteDecodingReader.forEncoding(new TrickleInputStream(bytes, random), encoding);
+                assertEquals(expected, read(reader, chunk));
+            }
+        }
+    }
+
+    private static void assertSameAsInputStreamReader(final String encoding, final int... input) throws IOException {
+        final byte[] bytes = new byte[input.length];
+        for (int i = 0; i < input.length; i++) {
+            bytes[i] = (byte) input[i];
+        }
+
+        final String expected = read(new InputStreamReader(new ByteArrayInputStream(bytes), encoding), 100);
+        assertEquals(expected, read(ByteDecodingReader.forEncoding(new ByteArrayInputStream(bytes), encoding), 100));
+        assertEquals(expected, read(ByteDecodingReader.forEncoding(new TrickleInputStream(bytes, null), encoding), 1));
+    }
+
+    private static String read(final Reader reader, final int chunk) throws IOException {
+        final StringBuilder result = new StringBuilder();
+        final char[] chars = new char[chunk];
+        int count;
+        while ((count = reader.read(chars, 0, chunk)) != -1) {
+            result.append(chars, 0, count);
+        }
+        return result.toString();
+    }
+
+    /**
+     * Delivers the bytes in small random chunks (one by one if no random is given)
+     * to force the sequences to be split.
+     */
+    private static final class TrickleInputStream extends InputStream {
+        private final byte[] bytes_;
+        private final Random random_;
+        private int pos_;
+
+        TrickleInputStream(final byte[] bytes, final Random random) {
+            bytes_ = bytes;
+            random_ = random;
+        }
+
+        @Override
+        public int read() {
+            return pos_ < bytes_.length ? bytes_[pos_++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) {
+            if (pos_ == bytes_.length) {
+                return -1;
+            }
+            final int max = random_ == null ? 1 : 1 + random_.nextInt(9000);
+            final int count = Math.min(Math.min(len, max), bytes_.length - pos_);
+            System.arraycopy(bytes_, pos_, b, off, count);
+            pos_ += count;
+            return count;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.parsers;
+
+import static org.htmlunit.cyberneko.TestFiles.dump;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.List;
+
+import org.htmlunit.cyberneko.TestFiles;
+import org.htmlunit.cyberneko.html.dom.HTMLDocumentImpl;
+import org.htmlunit.cyberneko.xerces.dom.DocumentImpl;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Comment;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.Text;
+import org.xml.sax.InputSource;
+
+/**
+ * Unit tests for the character data arena of {@link DOMParser}.
+ */
+public class CharacterDataArenaTest {
+
+    private static final String CHARACTER_DATA_ARENA = "http://apache.org/xml/features/dom/character-data-arena";
+
+    @Test
+    public void sameTreeAsStrings() throws Exception {
+        final List<File> files = TestFiles.dataFiles();
+        assertFalse(files.isEmpty());
+
+        for (final File file : files) {
+            final Document expected;
+            try {
+                expected = parse(file, false);
+            }
+            catch (final UnsupportedOperationException e) {
+                // duplicate attributes are not supported by the DOM
+                continue;
+            }
+            final Document arena = parse(file, true);
+            assertEquals(dump(expected), dump(arena), file.getName());
+        }
+    }
+
+    @Test
+    public void longText() throws Exception {
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            text.append("line ").append(i).append('\n');
+        }
+        final Document document = parse("<pre>" + text + "</pre><p>a<!--b-->c</p>", true);
+
+        final Element pre = (Element) document.getElementsByTagName("pre").item(0);
+        assertEquals(1, pre.getChildNodes().getLength());
+        assertEquals(text.toString(), pre.getTextContent());
+
+        final Element p = (Element) document.getElementsByTagName("p").item(0);
+        assertEquals("b", ((Comment) p.getChildNodes().item(1)).getData());
+        assertEquals("ac", p.getTextContent());
+    }
+
+    @Test
+    public void sharedWhitespace() throws Exception {
+        final Document document = parse("<div>\n  <p>a</p>\n  <p>b</p>\n  <p>c</p>\n</div>", true);
+
+        final Element div = (Element) document.getElementsByTagName("div").item(0);
+        final Text first = (Text) div.getFirstChild();
+        final Text second = (Text) first.getNextSibling().getNextSibling();
+        assertEquals(3, first.getLength());
+        assertEquals("\n  ", first.getData());
+        assertSame(first.getData(), second.getData());
+        assertEquals("\n", div.getLastChild().getNodeValue());
+    }
+
+    @Test
+    public void modify() throws Exception {
+        final Document document = parse("<p>hello world</p><p> </p>", true);
+
+        final Element p = (Element) document.getElementsByTagName("p").item(0);
+        final Text text = (Text) p.getFirstChild();
+        final Text world = text.splitText(6);
+        assertEquals("hello ", text.getData());
+        assertEquals("world", world.getData());
+
+        world.appendData("!");
+        text.insertData(0, ">");
+        assertEquals(">hello world!", p.getTextContent());
+
+        final Node clone = document.getElementsByTagName("p").item(1).cloneNode(true);
+        assertEquals(" ", clone.getTextContent());
+    }
+
+    private static Document parse(final File file, final boolean arena) throws Exception {
+        final DOMParser parser = new DOMParser(DocumentImpl.class);
+        parser.setFeature(CHARACTER_DATA_ARENA, arena);
+        try (InputStream in = new FileInputStream(file)) {
+            final InputSource source = new InputSource(in);
+            source.setSystemId(file.toURI().toString());
+            parser.parse(source);
+        }
+        return parser.getDocument();
+    }
+
+    private static Document parse(final String html, final boolean arena) throws Exception {
+        final DOMParser parser = new DOMParser(HTMLDocumentImpl.class);
+        parser.setFeature(CHARACTER_DATA_ARENA, arena);
+        parser.parse(new InputSource(new StringReader(html)));
+        return parser.getDocument();
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.parsers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.StringReader;
+
+import org.htmlunit.cyberneko.html.dom.HTMLDocumentImpl;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+
+/**
+ * Unit tests for {@link DOMParser}.
+ */
+public class DOMParserTest {
+
+    /**
+     * Text reported in several chunks ends up in one text node.
+     * @throws Exception in case of error
+     */
+    @Test
+    public void textInChunks() throws Exception {
+        assertEquals("[a&b<c]", text("<p>a&amp;b&lt;c</p>"));
+        assertEquals("[abc]", text("<p>a</b>b</i>c</p>"));
+    }
+
+    private static String text(final String html) throws Exception {
+        final DOMParser parser = new DOMParser(HTMLDocumentImpl.class);
+        parser.parse(new InputSource(new StringReader(html)));
+
+        final StringBuilder text = new StringBuilder();
+        final Node p = parser.getDocument().getElementsByTagName("p").item(0);
+        for (Node child = p.getFirstChild(); child != null; child = child.getNextSibling()) {
+            text.append('[').append(child.getNodeValue()).append(']');
+        }
+        return text.toString();
+    }
+}
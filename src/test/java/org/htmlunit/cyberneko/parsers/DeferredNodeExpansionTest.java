@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.parsers;
+
+import static org.htmlunit.cyberneko.TestFiles.dump;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.List;
+
+import org.htmlunit.cyberneko.TestFiles;
+import org.htmlunit.cyberneko.html.dom.HTMLDocumentImpl;
+import org.htmlunit.cyberneko.xerces.dom.DocumentImpl;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+/**
+ * Unit tests for the deferred node expansion of {@link DOMParser}.
+ */
+public class DeferredNodeExpansionTest {
+
+    private static final String DEFER_NODE_EXPANSION = "http://apache.org/xml/features/dom/defer-node-expansion";
+
+    @Test
+    public void sameTreeAsExpanded() throws Exception {
+        final List<File> files = TestFiles.dataFiles();
+        assertFalse(files.isEmpty());
+
+        for (final File file : files) {
+            final Document expected;
+            try {
+                expected = parse(file, false);
+            }
+            catch (final UnsupportedOperationException e) {
+                // duplicate attributes are not supported by the DOM
+                continue;
+            }
+            final Document deferred = parse(file, true);
+            assertEquals(dump(expected), dump(deferred), file.getName());
+        }
+    }
+
+    @Test
+    public void expandOnAccess() throws Exception {
+        final Document document = parse("<html><head><title>t</title></head>"
+                + "<body><div id='a'><p>one <b>two</b></p></div><div id='b'>three<!--c--></div></body></html>", true);
+
+        final Element html = document.getDocumentElement();
+        assertEquals("HTML", html.getTagName());
+        final Element body = (Element) html.getLastChild();
+        assertEquals("BODY", body.getTagName());
+        assertEquals(2, body.getChildNodes().getLength());
+
+        final Element b = (Element) body.getLastChild();
+        assertEquals("b", b.getAttribute("id"));
+        assertEquals("three", b.getTextContent());
+        assertEquals(Node.COMMENT_NODE, b.getLastChild().getNodeType());
+
+        final Element a = document.getElementById("a");
+        assertSame(body.getFirstChild(), a);
+        assertEquals("one two", a.getTextContent());
+    }
+
+    @Test
+    public void nodeListsStayValid() throws Exception {
+        final Document document = parse("<div><p>1</p><div><p>2</p></div></div><p>3</p>", true);
+
+        final NodeList paragraphs = document.getElementsByTagName("p");
+        final Node first = paragraphs.item(0);
+        assertEquals(3, paragraphs.getLength());
+        assertSame(first, paragraphs.item(0));
+        assertEquals("3", paragraphs.item(2).getTextContent());
+    }
+
+    @Test
+    public void modifyDeferred() throws Exception {
+        final Document document = parse("<div id='d'><section><span>a</span></section></div>", true);
+        final Element div = document.getElementById("d");
+        div.appendChild(document.createTextNode("b"));
+        div.insertBefore(document.createTextNode("c"), div.getFirstChild());
+        assertEquals("cab", div.getTextContent());
+
+        final Node clone = div.getFirstChild().getNextSibling().cloneNode(true);
+        assertEquals("SPAN", clone.getFirstChild().getNodeName());
+        assertEquals("a", clone.getTextContent());
+    }
+
+    private static Document parse(final File file, final boolean defer) throws Exception {
+        final DOMParser parser = new DOMParser(DocumentImpl.class);
+        parser.setFeature(DEFER_NODE_EXPANSION, defer);
+        try (InputStream in = new FileInputStream(file)) {
+            final InputSource source = new InputSource(in);
+            source.setSystemId(file.toURI().toString());
+            parser.parse(source);
+        }
+        return parser.getDocument();
+    }
+
+    private static Document parse(final String html, final boolean defer) throws Exception {
+        final DOMParser parser = new DOMParser(HTMLDocumentImpl.class);
+        parser.setFeature(DEFER_NODE_EXPANSION, defer);
+        parser.parse(new InputSource(new StringReader(html)));
+        return parser.getDocument();
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.parsers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.htmlunit.cyberneko.html.dom.HTMLDocumentImpl;
+import org.htmlunit.cyberneko.parsers.HTMLBatchParser.Result;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLInputSource;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+
+/**
+ * Unit tests for {@link HTMLBatchParser}.
+ */
+public class HTMLBatchParserTest {
+
+    @Test
+    public void ordered() throws Exception {
+        final List<XMLInputSource> sources = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            sources.add(source(i));
+        }
+
+        try (HTMLBatchParser<DOMParser, Document> batch = HTMLBatchParser.forDocuments(4)) {
+            final List<Result<Document>> results = batch.parseAll(sources);
+            assertEquals(200, results.size());
+            for (int i = 0; i < results.size(); i++) {
+                final Result<Document> result = results.get(i);
+                assertEquals(i, result.getIndex());
+                assertFalse(result.isFailed());
+                assertEquals("title " + i, result.getValue().getElementsByTagName("title").item(0).getTextContent());
+                assertTrue(result.getNanos() > 0);
+            }
+        }
+    }
+
+    @Test
+    public void asCompleted() throws Exception {
+        final Set<Integer> indexes = Collections.synchronizedSet(new HashSet<>());
+        final Thread caller = Thread.currentThread();
+
+        try (HTMLBatchParser<DOMParser, String> batch = new HTMLBatchParser<>(
+                () -> new DOMParser(HTMLDocumentImpl.class),
+                (parser, source) -> {
+                    parser.parse(source);
+                    return parser.getDocument().getElementsByTagName("title").item(0).getTextContent();
+                }, 3, false)) {
+            assertFalse(batch.usesVirtualThreads());
+
+            batch.parse(IntStream.range(0, 100).mapToObj(HTMLBatchParserTest::source), false, result -> {
+                assertEquals(caller, Thread.currentThread());
+                assertEquals("title " + result.getIndex(), result.getValue());
+                indexes.add(result.getIndex());
+            });
+        }
+        assertEquals(100, indexes.size());
+    }
+
+    @Test
+    public void boundedParallelism() throws Exception {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger max = new AtomicInteger();
+
+        try (HTMLBatchParser<DOMParser, Integer> batch = new HTMLBatchParser<>(
+                () -> new DOMParser(HTMLDocumentImpl.class),
+                (parser, source) -> {
+                    final int now = running.incrementAndGet();
+                    max.accumulateAndGet(now, Math::max);
+                    try {
+                        Thread.sleep(2);
+                        parser.parse(source);
+                        return now;
+                    }
+                    finally {
+                        running.decrementAndGet();
+                    }
+                }, 2)) {
+
+            final List<XMLInputSource> sources = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                sources.add(source(i));
+            }
+            assertEquals(50, batch.parseAll(sources).size());
+        }
+        assertTrue(max.get() <= 2, "max " + max.get());
+    }
+
+    @Test
+    public void failures() throws Exception {
+        final List<XMLInputSource> sources = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            if (i % 5 == 2) {
+                sources.add(new XMLInputSource(null, "broken" + i, null, new InputStream() {
+                    @Override
+                    public int read() throws IOException {
+                        throw new IOException("connection reset");
+                    }
+                }, "UTF-8"));
+            }
+            else {
+                sources.add(source(i));
+            }
+        }
+
+        try (HTMLBatchParser<DOMParser, Document> batch = HTMLBatchParser.forDocuments(4)) {
+            final List<Result<Document>> results = batch.parseAll(sources);
+            assertEquals(20, results.size());
+            for (final Result<Document> result : results) {
+                if (result.getIndex() % 5 == 2) {
+                    assertTrue(result.isFailed());
+                    assertNull(result.getValue());
+                    assertEquals("connection reset", result.getFailure().getMessage());
+                    assertEquals("broken" + result.getIndex(), result.getSource().getSystemId());
+                }
+                else {
+                    assertFalse(result.isFailed());
+                    assertEquals("title " + result.getIndex(),
+                            result.getValue().getElementsByTagName("title").item(0).getTextContent());
+                }
+            }
+        }
+    }
+
+    private static XMLInputSource source(final int i) {
+        final String html = "<html><head><title>title " + i + "</title></head><body>"
+                                + "<p>paragraph " + i + "<table><tr><td>cell</table></body></html>";
+        return new XMLInputSource(null, "doc" + i, null, new StringReader(html), null);
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.parsers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLInputSource;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link HTMLEventReader}.
+ */
+public class HTMLEventReaderTest {
+
+    @Test
+    public void events() throws Exception {
+        final String html = "<!DOCTYPE html><html><head><title>a &amp; b</title></head>"
+                                + "<body><!--c--><p id='x' class=y>text<br>more</p></body></html>";
+
+        final StringBuilder events = new StringBuilder();
+        try (HTMLEventReader reader = new HTMLEventReader()) {
+            reader.setInputSource(new XMLInputSource(null, "foo", null, new StringReader(html), null));
+            while (reader.hasNext()) {
+                final int type = reader.next();
+                assertEquals(type, reader.getEventType());
+                switch (type) {
+                    case HTMLEventReader.START_DOCUMENT:
+                        events.append("startDocument|");
+                        break;
+                    case HTMLEventReader.DTD:
+                        events.append("dtd ").append(reader.getName().getRawname()).append('|');
+                        break;
+                    case HTMLEventReader.START_ELEMENT:
+                        events.append('<').append(reader.getName().getRawname());
+                        for (int i = 0; i < reader.getAttributes().getLength(); i++) {
+                            events.append(' ').append(reader.getAttributes().getQName(i))
+                                .append('=').append(reader.getAttributes().getValue(i));
+                        }
+                        events.append(">|");
+                        break;
+                    case HTMLEventReader.END_ELEMENT:
+                        assertEquals(0, reader.getAttributes().getLength());
+                        events.append("</").append(reader.getName().getRawname()).append(">|");
+                        break;
+                    case HTMLEventReader.CHARACTERS:
+                        events.append('"').append(reader.getText()).append("\"|");
+                        break;
+                    case HTMLEventReader.COMMENT:
+                        events.append("!").append(reader.getText()).append('|');
+                        break;
+                    case HTMLEventReader.END_DOCUMENT:
+                        assertNull(reader.getName());
+                        assertNull(reader.getText());
+                        events.append("endDocument");
+                        break;
+                    default:
+                        events.append(type).append('|');
+                }
+            }
+            assertFalse(reader.hasNext());
+            assertThrows(NoSuchElementException.class, () -> reader.next());
+        }
+
+        assertEquals("startDocument|dtd html|<html>|<head>|<title>|\"a & b\"|</title>|</head>|"
+                        + "<body>|!c|<p id=x class=y>|\"text\"|<br>|</br>|\"more\"|</p>|</body>|</html>|endDocument",
+                        events.toString());
+    }
+
+    @Test
+    public void stopAfterHead() throws Exception {
+        final StringBuilder html = new StringBuilder("<html><head><title>The Title</title>"
+                                            + "<meta name='description' content='desc'></head><body>");
+        for (int i = 0; i < 100_000; i++) {
+            html.append("<p>paragraph ").append(i).append("</p>");
+        }
+        html.append("</body></html>");
+
+        final byte[] bytes = html.toString().getBytes(StandardCharsets.UTF_8);
+        final int[] read = new int[1];
+        final InputStream in = new ByteArrayInputStream(bytes) {
+            @Override
+            public synchronized int read(final byte[] b, final int off, final int len) {
+                final int count = super.read(b, off, len);
+                if (count > 0) {
+                    read[0] += count;
+                }
+                return count;
+            }
+        };
+
+        String title = null;
+        String description = null;
+        try (HTMLEventReader reader = new HTMLEventReader()) {
+            reader.setInputSource(new XMLInputSource(null, "foo", null, in, "UTF-8"));
+            while (reader.hasNext()) {
+                final int type = reader.next();
+                if (type == HTMLEventReader.START_ELEMENT && "title".equals(reader.getName().getRawname())) {
+                    reader.next();
+                    title = reader.getText();
+                }
+                else if (type == HTMLEventReader.START_ELEMENT && "meta".equals(reader.getName().getRawname())) {
+                    description = reader.getAttributes().getValue("content");
+                }
+                else if (type == HTMLEventReader.END_ELEMENT && "head".equals(reader.getName().getRawname())) {
+                    break;
+                }
+            }
+        }
+
+        assertEquals("The Title", title);
+        assertEquals("desc", description);
+        assertTrue(read[0] < bytes.length / 10, "read " + read[0] + " of " + bytes.length);
+    }
+
+    @Test
+    public void reuse() throws Exception {
+        try (HTMLEventReader reader = new HTMLEventReader()) {
+            reader.setInputSource(new XMLInputSource(null, "foo", null, new StringReader("<p>first</p>"), null));
+            reader.next();
+            reader.next();
+
+            // abandon the first document
+            reader.setInputSource(new XMLInputSource(null, "foo", null, new StringReader("<div>second</div>"), null));
+            assertEquals(HTMLEventReader.START_DOCUMENT, reader.next());
+            assertEquals(HTMLEventReader.START_ELEMENT, reader.next());
+            assertEquals("HTML", reader.getName().getRawname());
+
+            int count = 0;
+            while (reader.hasNext()) {
+                if (reader.next() == HTMLEventReader.CHARACTERS) {
+                    assertEquals("second", reader.getText());
+                }
+                count++;
+            }
+            // head, end head, body, div, text, end div, end body, end html, end document
+            assertEquals(9, count);
+        }
+    }
+
+    @Test
+    public void noCurrentEvent() throws Exception {
+        try (HTMLEventReader reader = new HTMLEventReader()) {
+            reader.setInputSource(new XMLInputSource(null, "foo", null, new StringReader("<p>x</p>"), null));
+            assertThrows(IllegalStateException.class, () -> reader.getEventType());
+        }
+    }
+}
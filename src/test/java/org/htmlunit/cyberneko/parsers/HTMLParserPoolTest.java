@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.parsers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.htmlunit.cyberneko.HTMLConfiguration;
+import org.htmlunit.cyberneko.HTMLTagBalancer;
+import org.htmlunit.cyberneko.html.dom.HTMLDocumentImpl;
+import org.htmlunit.cyberneko.xerces.xni.QName;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLInputSource;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Node;
+
+/**
+ * Unit tests for {@link HTMLParserPool}.
+ */
+public class HTMLParserPoolTest {
+
+    private static final String BROKEN = "<html><body><b>bold<i>both</b>italic<table><tr>lost text<td>cell"
+                                            + "<font color='red'><div>unclosed <!-- " + repeat("comment ", 5000);
+
+    private static final String SIMPLE = "<html><head><title>t</title></head><body><p>hello <b>world</b></p></body></html>";
+
+    @Test
+    public void reuse() throws Exception {
+        final HTMLParserPool<DOMParser> pool = new HTMLParserPool<>(() -> new DOMParser(HTMLDocumentImpl.class), 2);
+        assertEquals(0, pool.getIdleCount());
+
+        final DOMParser parser = pool.borrow();
+        parser.parse(source(SIMPLE));
+        pool.release(parser);
+        assertEquals(1, pool.getIdleCount());
+
+        assertSame(parser, pool.borrow());
+        assertEquals(0, pool.getIdleCount());
+
+        final DOMParser other = pool.borrow();
+        assertNotSame(parser, other);
+        pool.release(parser);
+        pool.release(other);
+        pool.release(new DOMParser(HTMLDocumentImpl.class));
+
+        // bounded
+        assertEquals(2, pool.getIdleCount());
+
+        pool.clear();
+        assertEquals(0, pool.getIdleCount());
+    }
+
+    @Test
+    public void noStateRetained() throws Exception {
+        final HTMLParserPool<DOMParser> pool = new HTMLParserPool<>(() -> new DOMParser(HTMLDocumentImpl.class), 1, 128);
+
+        final DOMParser parser = pool.borrow();
+        parser.parse(source(BROKEN));
+        assertFalse(config(parser).isRecycled());
+
+        pool.release(parser);
+        assertNull(parser.getDocument());
+        assertTrue(config(parser).isRecycled());
+    }
+
+    @Test
+    public void noStateRetainedAfterAbort() throws Exception {
+        final HTMLParserPool<DOMParser> pool = new HTMLParserPool<>(() -> new DOMParser(HTMLDocumentImpl.class), 1);
+
+        final DOMParser parser = pool.borrow();
+        final HTMLConfiguration config = config(parser);
+
+        // stop in the middle of the document
+        config.setInputSource(source(BROKEN));
+        config.parse(false);
+        config.parse(false);
+        assertFalse(config.isRecycled());
+
+        pool.release(parser);
+        assertTrue(config.isRecycled());
+    }
+
+    @Test
+    public void sameResultAsFreshParser() throws Exception {
+        final HTMLParserPool<DOMParser> pool = new HTMLParserPool<>(() -> new DOMParser(HTMLDocumentImpl.class), 1, 16);
+
+        final String[] documents = {BROKEN, SIMPLE, BROKEN, "text only", SIMPLE};
+        for (final String document : documents) {
+            final DOMParser fresh = new DOMParser(HTMLDocumentImpl.class);
+            fresh.parse(source(document));
+
+            final DOMParser pooled = pool.borrow();
+            pooled.parse(source(document));
+            assertEquals(dump(fresh.getDocument()), dump(pooled.getDocument()));
+            pool.release(pooled);
+        }
+    }
+
+    @Test
+    public void fragmentContext() throws Exception {
+        final HTMLParserPool<DOMParser> pool = new HTMLParserPool<>(() -> {
+            final DOMParser parser = new DOMParser(HTMLDocumentImpl.class);
+            try {
+                parser.setProperty(HTMLTagBalancer.FRAGMENT_CONTEXT_STACK,
+                        new QName[] {new QName(null, "html", null, null), new QName(null, "body", null, null)});
+            }
+            catch (final Exception e) {
+                throw new IllegalStateException(e);
+            }
+            return parser;
+        }, 1);
+
+        final DOMParser parser = pool.borrow();
+        parser.parse(source(BROKEN));
+        final String expected = dump(parser.getDocument());
+        pool.release(parser);
+
+        final DOMParser again = pool.borrow();
+        assertSame(parser, again);
+        again.parse(source(BROKEN));
+        assertEquals(expected, dump(again.getDocument()));
+    }
+
+    @Test
+    public void concurrent() throws Exception {
+        final HTMLParserPool<DOMParser> pool = new HTMLParserPool<>(() -> new DOMParser(HTMLDocumentImpl.class), 4);
+
+        final DOMParser reference = new DOMParser(HTMLDocumentImpl.class);
+        reference.parse(source(BROKEN));
+        final String expected = dump(reference.getDocument());
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                results.add(executor.submit(() -> {
+                    final DOMParser parser = pool.borrow();
+                    try {
+                        parser.parse(source(BROKEN));
+                        return dump(parser.getDocument());
+                    }
+                    finally {
+                        pool.release(parser);
+                    }
+                }));
+            }
+            for (final Future<String> result : results) {
+                assertEquals(expected, result.get());
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+        assertTrue(pool.getIdleCount() <= 4);
+    }
+
+    private static HTMLConfiguration config(final DOMParser parser) {
+        return (HTMLConfiguration) parser.getXMLParserConfiguration();
+    }
+
+    private static XMLInputSource source(final String html) {
+        return new XMLInputSource(null, "foo", null, new StringReader(html), null);
+    }
+
+    private static String dump(final Node node) {
+        final StringBuilder sb = new StringBuilder();
+        dump(node, sb);
+        return sb.toString();
+    }
+
+    private static void dump(final Node node, final StringBuilder sb) {
+        sb.append('(').append(node.getNodeName());
+        if (node.getNodeValue() != null) {
+            sb.append(' ').append(node.getNodeValue());
+        }
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            dump(child, sb);
+        }
+        sb.append(')');
+    }
+
+    private static String repeat(final String s, final int count) {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            sb.append(s);
+        }
+        return sb.toString();
+    }
+}
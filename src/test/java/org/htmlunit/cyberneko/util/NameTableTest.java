@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringReader;
+
+import org.htmlunit.cyberneko.HTMLConfiguration;
+import org.htmlunit.cyberneko.filters.DefaultFilter;
+import org.htmlunit.cyberneko.xerces.xni.Augmentations;
+import org.htmlunit.cyberneko.xerces.xni.QName;
+import org.htmlunit.cyberneko.xerces.xni.XMLAttributes;
+import org.htmlunit.cyberneko.xerces.xni.parser.XMLInputSource;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link NameTable}.
+ */
+public class NameTableTest {
+
+    @Test
+    public void sameInstance() {
+        final NameTable table = new NameTable();
+        final String div = "div";
+        assertSame(div, table.add(div));
+
+        final char[] chars = "<div class>".toCharArray();
+        assertSame(div, table.get(chars, 1, 3));
+
+        final String clazz = table.get(chars, 5, 5);
+        assertEquals("class", clazz);
+        assertSame(clazz, table.get("xclass".toCharArray(), 1, 5));
+        assertEquals(2, table.size());
+    }
+
+    @Test
+    public void caseConversion() {
+        final NameTable table = new NameTable();
+        final String div = table.add("div");
+        final String upper = table.get("DiV".toCharArray(), 0, 3);
+
+        assertSame(div, table.toLowerCase(upper));
+        assertSame(div, table.toLowerCase(div));
+        assertSame(table.toUpperCase(div), table.toUpperCase(upper));
+        assertEquals("DIV", table.toUpperCase(div));
+
+        // unknown names are converted anyway
+        assertEquals("span", table.toLowerCase(new String("SPAN")));
+    }
+
+    @Test
+    public void bounded() {
+        final NameTable table = new NameTable(4, 5);
+        for (int i = 0; i < 10; i++) {
+            table.add("n" + i);
+        }
+        assertEquals(4, table.size());
+
+        final char[] chars = "n9".toCharArray();
+        assertNotSame(table.get(chars, 0, 2), table.get(chars, 0, 2));
+
+        final char[] longName = "toolong".toCharArray();
+        final NameTable empty = new NameTable(4, 5);
+        assertNotSame(empty.get(longName, 0, 7), empty.get(longName, 0, 7));
+        assertEquals(0, empty.size());
+    }
+
+    @Test
+    public void sameHashCode() {
+        // "Aa" and "BB" have the same hash code, so have all their combinations
+        final NameTable table = new NameTable();
+        for (int i = 0; i < 256; i++) {
+            final StringBuilder name = new StringBuilder();
+            for (int bit = 0; bit < 8; bit++) {
+                name.append((i & (1 << bit)) == 0 ? "Aa" : "BB");
+            }
+            assertEquals("AaAaAaAaAaAaAaAa".hashCode(), name.toString().hashCode());
+
+            final String added = table.add(name.toString());
+            assertEquals(name.toString(), table.get(name.toString().toCharArray(), 0, 16));
+            assertEquals(name.toString(), added);
+        }
+        // only a few of them are kept
+        assertTrue(table.size() < 10, String.valueOf(table.size()));
+    }
+
+    @Test
+    public void clear() {
+        final NameTable table = new NameTable(4, 5);
+        for (int i = 0; i < 10; i++) {
+            table.add("n" + i);
+        }
+        assertTrue(table.isFull());
+
+        table.clear();
+        assertEquals(0, table.size());
+        final String name = table.add("x");
+        assertSame(name, table.get("x".toCharArray(), 0, 1));
+    }
+
+    @Test
+    public void reusedScanner() throws Exception {
+        final HTMLConfiguration config = new HTMLConfiguration();
+        final StringBuilder html = new StringBuilder();
+        for (int i = 0; i < 10_000; i++) {
+            html.append("<p a").append(i).append("=1>");
+        }
+        config.parse(new XMLInputSource(null, "foo", null, new StringReader(html.toString()), null));
+
+        // the names of the next document are still shared
+        final String[] names = new String[2];
+        config.setDocumentHandler(new DefaultFilter() {
+            @Override
+            public void startElement(final QName element, final XMLAttributes attributes, final Augmentations augs) {
+                names[names[0] == null ? 0 : 1] = attributes.getQName(0);
+            }
+        });
+        config.parse(new XMLInputSource(null, "foo", null, new StringReader("<p b1=1><p b1=2>"), null));
+        assertEquals("b1", names[0]);
+        assertSame(names[0], names[1]);
+    }
+
+    @Test
+    public void scannerNames() throws Exception {
+        final HTMLConfiguration config = new HTMLConfiguration();
+        final String[] names = new String[4];
+        config.setDocumentHandler(new DefaultFilter() {
+            @Override
+            public void startElement(final QName element, final XMLAttributes attributes, final Augmentations augs) {
+                if ("p".equals(element.getLocalpart())) {
+                    final int i = names[0] == null ? 0 : 2;
+                    names[i] = element.getRawname();
+                    names[i + 1] = attributes.getQName(0);
+                }
+            }
+        });
+        config.parse(new XMLInputSource(null, "foo", null,
+                new StringReader("<p data-x='1'>a</p><p DATA-X='2'>b</p>"), null));
+
+        assertSame(names[0], names[2]);
+        assertSame(names[1], names[3]);
+        assertEquals("data-x", names[1]);
+    }
+}
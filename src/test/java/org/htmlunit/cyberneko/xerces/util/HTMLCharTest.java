@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.xerces.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link HTMLChar}.
+ */
+public class HTMLCharTest {
+
+    @Test
+    public void sameAsCharacter() {
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            final String msg = "char " + c;
+            assertEquals(Character.isWhitespace(c), HTMLChar.isWhitespace(c), msg);
+            assertEquals((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z'), HTMLChar.isNameStart(c), msg);
+            assertEquals(Character.isLetterOrDigit(c) || c == '-' || c == '.' || c == ':' || c == '_',
+                    HTMLChar.isName(c), msg);
+            assertEquals(Character.isWhitespace(c) || c == '=' || c == '/' || c == '>',
+                    HTMLChar.isAttributeNameEnd(c), msg);
+        }
+    }
+
+    @Test
+    public void endOfInput() {
+        assertFalse(HTMLChar.isWhitespace(-1));
+        assertFalse(HTMLChar.isNameStart(-1));
+        assertFalse(HTMLChar.isName(-1));
+        assertFalse(HTMLChar.isAttributeNameEnd(-1));
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2017-2024 Ronald Brill
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.htmlunit.cyberneko.xerces.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.htmlunit.cyberneko.xerces.xni.QName;
+import org.htmlunit.cyberneko.xerces.xni.XMLString;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests for {@link XMLAttributesImpl}.
+ */
+public class XMLAttributesImplTest {
+
+    @Test
+    public void charValues() {
+        final XMLAttributesImpl attributes = new XMLAttributesImpl();
+        final XMLString buffer = new XMLString();
+        for (int i = 0; i < 100; i++) {
+            buffer.clear().append("value ").append(Integer.toString(i));
+            attributes.addAttribute(name("a" + i), "CDATA", buffer);
+        }
+        buffer.clear();
+        attributes.addAttribute(name("empty"), "CDATA", buffer);
+
+        assertEquals(101, attributes.getLength());
+        assertEquals("value 42", attributes.getValue(42));
+        assertEquals("value 99", attributes.getValue("a99"));
+        assertEquals("", attributes.getValue("empty"));
+        assertSame(attributes.getValue(7), attributes.getValue(7));
+
+        attributes.setValue(3, "changed");
+        assertEquals("changed", attributes.getValue(3));
+    }
+
+    @Test
+    public void reuse() {
+        final XMLAttributesImpl attributes = new XMLAttributesImpl();
+        attributes.addAttribute(name("a"), "CDATA", new XMLString("1"));
+        attributes.addAttribute(name("b"), "CDATA", "2");
+        final QName first = attributes.getName(0);
+
+        attributes.removeAllAttributes();
+        assertEquals(0, attributes.getLength());
+        assertNull(attributes.getValue("a"));
+
+        attributes.addAttribute(name("c"), "CDATA", new XMLString("3"));
+        assertSame(first, attributes.getName(0));
+        assertEquals("c", attributes.getQName(0));
+        assertEquals("3", attributes.getValue(0));
+    }
+
+    @Test
+    public void removeAttributeAt() {
+        final XMLAttributesImpl attributes = new XMLAttributesImpl();
+        attributes.addAttribute(name("a"), "CDATA", new XMLString("1"));
+        attributes.addAttribute(name("b"), "CDATA", new XMLString("2"));
+        attributes.addAttribute(name("c"), "CDATA", "3");
+
+        attributes.removeAttributeAt(1);
+        assertEquals(2, attributes.getLength());
+        assertEquals("1", attributes.getValue("a"));
+        assertEquals(-1, attributes.getIndex("b"));
+        assertEquals("3", attributes.getValue(1));
+
+        attributes.addAttribute(name("d"), "CDATA", new XMLString("4"));
+        assertEquals("4", attributes.getValue("d"));
+        assertThrows(IndexOutOfBoundsException.class, () -> attributes.removeAttributeAt(3));
+    }
+
+    private static QName name(final String name) {
+        return new QName(null, name, name, null);
+    }
+}
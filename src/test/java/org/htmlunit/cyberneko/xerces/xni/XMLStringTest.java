@@ -626,6 +626,43 @@ public void clearAndAppend() {
         }
     }
 
+    @Test
+    public void clearAndShrink() {
+        // small enough, keep the array
+        {
+            final XMLString a = new XMLString();
+            a.append(CHAR5);
+            a.clearAndShrink(100);
+            assertEquals(XMLString.INITIAL_CAPACITY, a.capacity());
+            assertEquals("", a.toString());
+            assertEquals(0, a.length());
+        }
+        // grown, shrink it
+        {
+            final XMLString a = new XMLString();
+            for (int i = 0; i < 100; i++) {
+                a.append(CHAR5);
+            }
+            a.clearAndShrink(100);
+            assertEquals(100, a.capacity());
+            assertEquals(0, a.length());
+
+            a.append(CHAR5);
+            assertEquals(CHAR5, a.toString());
+        }
+        // down to nothing
+        {
+            final XMLString a = new XMLString();
+            a.append(CHAR5);
+            a.clearAndShrink(0);
+            assertEquals(0, a.capacity());
+            assertEquals(0, a.length());
+
+            a.append('a');
+            assertEquals("a", a.toString());
+        }
+    }
+
     @Test
     public void reduceToContent() {
         final XMLString x = new XMLString();